@@ -1,62 +1,146 @@
 import java.awt.*;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.chrono.IsoChronology;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.FormatStyle;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.List;
-import java.util.Timer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
 import javax.swing.text.*;
 
 public class NetworkAnomalyDetectorGUI extends JFrame {
 
-    // Define HTML color strings MATCHING the PAINTERS used in getPainterForAnomaly
-    private static final String COLOR_CRITICAL_HTML = "#FF0000";    // ANOMALY_CRITICAL_PAINTER (Red)
-    private static final String COLOR_ERROR_HTML = "#FF6464";       // ANOMALY_ERROR_PAINTER (Lighter Red)
-    private static final String COLOR_SECURITY_HTML = "#C896FF";    // ANOMALY_SECURITY_GENERAL_PAINTER (Purple)
-    private static final String COLOR_WARNING_HTML = "#FFB432";     // ANOMALY_WARNING_PAINTER (Orange)
+    // Define HTML color strings MATCHING the row colors used in getColorForAnomaly
+    private static final String COLOR_CRITICAL_HTML = "#FF0000";    // ANOMALY_CRITICAL_COLOR (Red)
+    private static final String COLOR_ERROR_HTML = "#FF6464";       // ANOMALY_ERROR_COLOR (Lighter Red)
+    private static final String COLOR_SECURITY_HTML = "#C896FF";    // ANOMALY_SECURITY_GENERAL_COLOR (Purple)
+    private static final String COLOR_WARNING_HTML = "#FFB432";     // ANOMALY_WARNING_COLOR (Orange)
     // Add a default/info color if needed (e.g., for non-anomalous but listed events)
     private static final String COLOR_DEFAULT_HTML = "#000000"; // Black (or inherit)
 
     // --- Constants ---
-    private static final int ITEMS_PER_PAGE = 100;
-    private static final int MAX_EVENTS_TO_FETCH = 1000; // Limit fetch size per refresh
+    private static final int LOG_LINE_COLUMNS = 220; // Width of the log list in characters (longer lines are clipped)
+    private static final int MAX_EVENTS_TO_FETCH = 1000; // Limit fetch size per refresh, per log queried
+    private static final int MAX_REFRESH_PAGES = 20; // Pages of MAX_EVENTS_TO_FETCH per log and refresh; the rest waits
+    private static final int MAX_EVENTS_IN_MEMORY = 50000; // Oldest events are dropped beyond this
+    private static final int INGEST_QUEUE_CAPACITY = 256; // Raw blocks buffered between reader and analyzer
+    private static final int PUBLISH_BATCH_SIZE = 50; // Entries handed to the EDT per batch
+    private static final long PUBLISH_INTERVAL_MS = 100; // Flush a partial batch at least this often
+    private static final int FILTER_DEBOUNCE_MS = 200; // Pause in typing before "Filter Text" is applied
+    private static final int TOP_TALKERS_SHOWN = 10; // Entries per list in the top talkers panel
+
+    static final int MAX_XPATH_TERMS = 23; // Comparisons per Select; the event log service rejects longer XPath
+    // Per-user settings directory, and the anomaly rules file in it (-Dnad.rules=path to use another)
+    static final Path APP_DIR = Path.of(System.getProperty("user.home"), ".network-anomaly-detector");
+    static final Path RULES_FILE = Path.of(System.getProperty("nad.rules", APP_DIR.resolve("anomaly-rules.txt").toString()));
+    static final Path BASELINE_FILE = APP_DIR.resolve("rate-baseline.tsv"); // Learned event rates, kept across restarts
+    static final Path ARCHIVE_DIR = APP_DIR.resolve("archive"); // Segment files of every fetched event
+    static final Path SNAPSHOT_FILE = APP_DIR.resolve("session.snapshot"); // Last session's view, restored on launch
+    // Machines to collect from, one per line (-Dnad.hosts=path to use another); without it only this machine is read
+    static final Path HOSTS_FILE = Path.of(System.getProperty("nad.hosts", APP_DIR.resolve("hosts.txt").toString()));
+
+    // Rules in effect; replaced as a whole when the rules file changes, read by the parse threads
+    static volatile AnomalyRules anomalyRules = AnomalyRules.defaults();
+
+    // How events leave PowerShell: compact records (default) or, with -Dnad.wireFormat=formatlist, Format-List text.
+    // The reader accepts either, whatever was asked for.
+    static final boolean COMPACT_WIRE_FORMAT = !"formatlist".equalsIgnoreCase(System.getProperty("nad.wireFormat", "compact"));
+    static final String FORMAT_LIST_SELECT = " | Select-Object TimeCreated, LogName, RecordId, Id, LevelDisplayName, Message | Format-List";
+
+    // TimeCreated as Get-WinEvent prints it (en-US), used when events are decoded from a binary source
+    static final DateTimeFormatter EVENT_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("M/d/yyyy h:mm:ss a", Locale.US).withZone(ZoneId.systemDefault());
 
     // --- UI Components ---
-    private JTextPane logPane;
-    private JButton refreshButton, searchButton, exportButton, resetAllButton, prevPageButton, nextPageButton, infoButton; // Added infoButton, renamed clearHighlightButton
+    private JList<Integer> logList; // Virtualized: only the rows in the viewport are rendered
+    private LogListModel logListModel;
+    private LogRowRenderer logRowRenderer;
+    private JButton refreshButton, searchButton, exportButton, importButton, historyButton, diagnosticsButton, resetAllButton, infoButton; // Added infoButton, renamed clearHighlightButton
     private JProgressBar progressBar;
-    private JLabel statusLabel, pageLabel;
+    private JLabel statusLabel;
     private JTextField searchField;
     private JCheckBox autoRefreshCheckbox;
     private JComboBox<String> intervalBox;
     // Removed Threshold Spinners
     private JComboBox<String> anomalyFilterComboBox;
     private JComboBox<String> logNameFilterComboBox;
+    private JComboBox<String> hostFilterComboBox;
+    private final DefaultListModel<String> topSourcesModel = new DefaultListModel<>();
+    private final DefaultListModel<String> topAccountsModel = new DefaultListModel<>();
+    private final DefaultListModel<String> topEventsModel = new DefaultListModel<>();
+    private JDialog diagnosticsDialog; // Created on first use, then only shown and hidden
 
     // --- Data & State ---
-    private List<LogEntry> allLogEntries = new ArrayList<>(); // Holds all fetched logs
-    private List<LogEntry> currentlyFilteredEntries = new ArrayList<>(); // Holds logs after filtering
-    private Timer autoRefreshTimer;
-    private int currentPage = 1;
-    private int totalPages = 1;
-
-    // --- Highlighters ---
-    // Adjusted painter usage based on removed thresholds
-    private static final Highlighter.HighlightPainter ANOMALY_CRITICAL_PAINTER =
-            new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 0, 0, 180)); // Bright Red
-    private static final Highlighter.HighlightPainter ANOMALY_ERROR_PAINTER =
-            new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 100, 100, 150)); // Red
-    private static final Highlighter.HighlightPainter ANOMALY_WARNING_PAINTER =
-            new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 180, 50, 150)); // Orange
-     private static final Highlighter.HighlightPainter ANOMALY_SECURITY_GENERAL_PAINTER = // General Security Anomaly
-             new DefaultHighlighter.DefaultHighlightPainter(new Color(200, 150, 255, 150)); // Light Purple
-    private static final Highlighter.HighlightPainter SEARCH_PAINTER =
-            new DefaultHighlighter.DefaultHighlightPainter(Color.YELLOW);
+    private final EventStore eventStore = new EventStore(); // Holds all fetched logs, column-wise
+    private RowBitmap currentlyFilteredRows = new RowBitmap(); // Store rows left after filtering
+    private SwingWorker<RowBitmap, Void> filterTask; // Latest filter run; older ones are cancelled
+    private SwingWorker<EventStore.Classification, Void> reclassifyTask; // Re-classification after the latest rules reload
+    private boolean refreshQueued; // Events arrived while a filter was running; filter again once it lands (EDT only)
+    private javax.swing.Timer filterDebounceTimer;
+    private boolean scrollToTopOnFilter; // Set by user-initiated filter changes until their result lands
+    private final Map<String, HighWaterMark> highWaterMarks = new HashMap<>(); // Per-log refresh position (EDT only)
+    private QueryPlan loadedPlan = QueryPlan.EVERYTHING; // Source query the stored events were fetched with (EDT only)
+    private boolean fetching; // A fetch worker is running (EDT only)
+    private final List<Host> hosts = loadHosts(); // Each with its own source, detectors and rate baselines
+    private final TopTalkers topTalkers = new TopTalkers(); // Fed by fetch workers; reset with the event store
+    private EventArchive eventArchive; // Fetched events on disk; null if the archive could not be opened
+    private boolean firstPaintReported;
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler(() -> SwingUtilities.invokeLater(this::autoRefreshDue));
+
+    // --- Row Highlight Colors ---
+    // Adjusted color usage based on removed thresholds
+    private static final Color ANOMALY_CRITICAL_COLOR = new Color(255, 0, 0, 180); // Bright Red
+    private static final Color ANOMALY_ERROR_COLOR = new Color(255, 100, 100, 150); // Red
+    private static final Color ANOMALY_WARNING_COLOR = new Color(255, 180, 50, 150); // Orange
+    private static final Color ANOMALY_SECURITY_GENERAL_COLOR = new Color(200, 150, 255, 150); // Light Purple (General Security Anomaly)
+    private static final Color SEARCH_COLOR = Color.YELLOW;
 
     // --- Configuration ---
     private final Map<String, Integer> intervalMap = Map.of(
@@ -66,6 +150,8 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
             "5 min", 300 * 1000
     );
 
+    static final String LOCAL_HOST = "localhost"; // Host of events read on this machine, and of imported files
+
     // Windows Log Names to Query
     private static final List<String> TARGET_LOG_NAMES = List.of(
             "Application", "Security", "System", "Setup"
@@ -78,6 +164,9 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         // Security Specific (Simplified - triggered by specific IDs, not counts)
         FAILED_LOGIN("Sec: Failed Login"),            // Event 4625
         ACCOUNT_LOCKOUT("Sec: Account Lockout"),         // Event 4740
+        // Raised by BurstDetector from event rates, not by the rules
+        BRUTE_FORCE_BURST("Sec: Brute-Force Burst"),     // Many 4625 from one source or against one account
+        LOCKOUT_BURST("Sec: Lockout Burst"),             // Repeated 4740 for one account
         AUDIT_LOG_CLEARED("Sec: Audit Log Cleared!"),    // Event 1102
         USER_ACCOUNT_CHANGE("Sec: User Account Change"),   // Events 4720, 4722, 4726
         PRIVILEGE_ASSIGNED("Sec: Special Privilege Assigned"), // Event 4673
@@ -88,12 +177,17 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         // General Levels (Fallback)
         CRITICAL_EVENT("General: Critical Event"), // Level 1
         ERROR_EVENT("General: Error Event"),       // Level 2
-        WARNING_EVENT("General: Warning Event");    // Level 3
+        WARNING_EVENT("General: Warning Event"),    // Level 3
+        // Raised by RateBaseline when a stream runs far above its usual rate
+        RATE_SPIKE("General: Rate Spike");
 
         private final String displayName;
         AnomalyType(String displayName) { this.displayName = displayName; }
         public String getDisplayName() { return displayName; }
 
+        // Aggregate alerts stand for many events; reclassifying with new rules must leave them alone
+        boolean isAggregate() { return this == BRUTE_FORCE_BURST || this == LOCKOUT_BURST || this == RATE_SPIKE; }
+
         public static AnomalyType fromDisplayName(String name) {
             for (AnomalyType type : values()) {
                 if (type.displayName.equals(name)) return type;
@@ -106,101 +200,5133 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
     private static final String FILTER_SHOW_ALL = "Show All Logs";
     private static final String FILTER_ALL_ANOMALIES = "Show All Anomalies";
     private static final String FILTER_ALL_LOG_NAMES = "All Logs";
+    private static final String FILTER_ALL_HOSTS = "All Hosts";
 
 
     // Log Entry Class (No changes needed here from previous version)
     static class LogEntry {
         String originalLine;
+        String searchText; // originalLine.toLowerCase(), prepared by the parse stage for the text index
         String timestamp;
+        long timeMillis = NO_TIME; // TimeCreated as epoch millis, parsed once at ingest
         String logName = "Unknown";
         int eventId = -1;
+        long recordId = -1; // EventRecordID, -1 when the source did not provide it
         String level = "Information"; // Default level
         String message = "";
         String sourceIp = "N/A";
         String accountName = "N/A";
+        String host = LOCAL_HOST; // Machine the event was collected from
         AnomalyType anomalyType = AnomalyType.NONE;
 
-        // Patterns (pre-compiled for efficiency)
-        private static final Pattern TIME_PATTERN = Pattern.compile("^TimeCreated\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
-        private static final Pattern ID_PATTERN = Pattern.compile("^Id\\s*:\\s*(\\d+)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
-        private static final Pattern LEVEL_PATTERN = Pattern.compile("^LevelDisplayName\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
-        private static final Pattern LOGNAME_PATTERN = Pattern.compile("^LogName\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
-        private static final Pattern MESSAGE_PATTERN = Pattern.compile("^Message\\s*:\\s*(.*)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        // Security Specific Patterns
-        private static final Pattern IP_PATTERN = Pattern.compile("(?:Source Network Address|Client Network Address):\\s*([\\d.:a-fA-F\\-]+)", Pattern.CASE_INSENSITIVE);
-        private static final Pattern ACCOUNT_PATTERN = Pattern.compile("Account Name:\\s*([^\\n\\r]+)", Pattern.CASE_INSENSITIVE);
-        private static final Pattern TARGET_ACCOUNT_PATTERN = Pattern.compile("(?:Account For Which Logon Failed|Target Account Name):.+Account Name:\\s*([^\\n\\r]+)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+        static final long NO_TIME = Long.MIN_VALUE; // Missing or unparseable TimeCreated; sorts as the oldest
+
+        // Security event IDs that carry the network address / account details we extract
+        private static final Set<Integer> SECURITY_DETAIL_IDS = Set.of(4625, 4740, 4720, 4726, 4732, 4756, 4728);
+
+        LogEntry(String block) {
+            this.originalLine = block; // Store the raw block
+            parseLogBlock(block);
+        }
+
+        // For sources that decode the fields directly instead of parsing a Format-List block. originalLine is
+        // either set to a block starting with a "TimeCreated : ..." line or left null, and block() derives it.
+        LogEntry() {
+        }
+
+        // Same shape as a Format-List block, for sources that decode the fields directly, so text search and export
+        // treat every source alike
+        String toFormatList() {
+            return formatList(timestamp, logName, recordId, eventId, level, message);
+        }
+
+        // RecordId is left out when unknown, as in blocks captured without it and in alert rows
+        static String formatList(String timestamp, String logName, long recordId, int eventId, String level, String message) {
+            return "TimeCreated      : " + (timestamp != null ? timestamp : "")
+                    + "\nLogName          : " + logName
+                    + (recordId >= 0 ? "\nRecordId         : " + recordId : "")
+                    + "\nId               : " + eventId
+                    + "\nLevelDisplayName : " + level
+                    + "\nMessage          : " + message;
+        }
+
+        // The Format-List block: as read, or built from the fields when a decoded source left originalLine null, so
+        // only its message is kept in memory until the block is searched, shown or exported
+        String block() {
+            return originalLine != null ? originalLine : toFormatList();
+        }
+
+        // TimeCreated of a decoded event as its derived block shows it
+        static String formatTimestamp(long millis) {
+            return millis == NO_TIME ? null : EVENT_TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+        }
+
+        // Single pass over the Format-List block: each line start is checked against the
+        // "Key : value" headers we need, so no regex or intermediate substrings are involved.
+        // Results match the previous regex cascade (first matching line wins, ASCII case-insensitive keys).
+        private void parseLogBlock(String block) {
+             try {
+                 int len = block.length();
+                 boolean haveTime = false, haveId = false, haveLevel = false, haveLogName = false, haveRecordId = false;
+
+                 // Message is only taken when the block itself starts with it; otherwise the whole block is kept
+                 int messageStart = headerValueStart(block, 0, "Message");
+                 this.message = messageStart >= 0 ? block.substring(messageStart).trim() : block;
+
+                 int pos = 0;
+                 while (pos < len && !(haveTime && haveId && haveLevel && haveLogName && haveRecordId)) {
+                     int valueStart;
+                     switch (block.charAt(pos) | 0x20) { // ASCII lower-case of the first key character
+                         case 't':
+                             if (!haveTime && (valueStart = headerValueStart(block, pos, "TimeCreated")) >= 0) {
+                                 this.timestamp = lineValue(block, valueStart);
+                                 this.timeMillis = EventTimeParser.parse(timestamp);
+                                 haveTime = true;
+                             }
+                             break;
+                         case 'i':
+                             if (!haveId && (valueStart = headerValueStart(block, pos, "Id")) >= 0
+                                     && valueStart < len && isAsciiDigit(block.charAt(valueStart))) {
+                                 this.eventId = parseEventId(block, valueStart);
+                                 haveId = true;
+                             }
+                             break;
+                         case 'l':
+                             if (!haveLevel && (valueStart = headerValueStart(block, pos, "LevelDisplayName")) >= 0) {
+                                 this.level = lineValue(block, valueStart);
+                                 haveLevel = true;
+                             } else if (!haveLogName && (valueStart = headerValueStart(block, pos, "LogName")) >= 0) {
+                                 this.logName = lineValue(block, valueStart);
+                                 haveLogName = true;
+                             }
+                             break;
+                         case 'r':
+                             if (!haveRecordId && (valueStart = headerValueStart(block, pos, "RecordId")) >= 0
+                                     && valueStart < len && isAsciiDigit(block.charAt(valueStart))) {
+                                 this.recordId = parseRecordId(block, valueStart);
+                                 haveRecordId = true;
+                             }
+                             break;
+                     }
+                     pos = nextLineStart(block, pos);
+                 }
+
+                 // --- Security Specific Fields (Only parse if relevant log/ID) ---
+                 if ("Security".equalsIgnoreCase(logName) && SECURITY_DETAIL_IDS.contains(eventId)) {
+                     String ip = findSourceAddress(block);
+                     if (ip != null) this.sourceIp = normalizeSourceIp(ip);
+
+                     String account = findAccountName(block);
+                     if (account != null) this.accountName = normalizeAccountName(account);
+                 }
+
+            } catch (Exception e) {
+                System.err.println("Parsing error for block: " + block.substring(0, Math.min(block.length(), 50)) + "... - " + e.getMessage());
+                if (this.message.isEmpty()) this.message = block; // Ensure message has fallback
+            }
+        }
+
+        static String normalizeSourceIp(String ip) {
+            if (ip.equals("::1") || ip.equals("127.0.0.1")) return "localhost";
+            if (ip.equals("-") || ip.isEmpty()) return "N/A";
+            return ip;
+        }
+
+        static String normalizeAccountName(String account) {
+            return account.equals("-") || account.isEmpty() ? "N/A" : account;
+        }
+
+        // If "key\s*:\s*" starts at pos, returns the index of the value; otherwise -1
+        private static int headerValueStart(String block, int pos, String key) {
+            if (!regionMatchesAscii(block, pos, key)) return -1;
+            int i = skipSpaces(block, pos + key.length());
+            if (i >= block.length() || block.charAt(i) != ':') return -1;
+            return skipSpaces(block, i + 1);
+        }
+
+        // Rest of the line starting at valueStart, trimmed, as a single substring
+        private static String lineValue(String block, int valueStart) {
+            int end = valueStart;
+            while (end < block.length() && !isLineTerminator(block.charAt(end))) end++;
+            int start = valueStart;
+            while (start < end && block.charAt(start) <= ' ') start++;
+            while (end > start && block.charAt(end - 1) <= ' ') end--;
+            return block.substring(start, end);
+        }
+
+        // Parses the digit run at pos straight to an int; overflow is reported as -2 like a bad number
+        private static int parseEventId(String block, int pos) {
+            long value = 0;
+            for (int i = pos; i < block.length() && isAsciiDigit(block.charAt(i)); i++) {
+                value = value * 10 + (block.charAt(i) - '0');
+                if (value > Integer.MAX_VALUE) return -2;
+            }
+            return (int) value;
+        }
+
+        private static long parseRecordId(String block, int pos) {
+            long value = 0;
+            for (int i = pos; i < block.length() && isAsciiDigit(block.charAt(i)); i++) {
+                if (value > (Long.MAX_VALUE - 9) / 10) return -1;
+                value = value * 10 + (block.charAt(i) - '0');
+            }
+            return value;
+        }
+
+        // "Source Network Address:" or "Client Network Address:" followed by an address-like token
+        private static String findSourceAddress(String block) {
+            int from = 0;
+            while (true) {
+                int source = indexOfAscii(block, "Source Network Address:", from);
+                int client = indexOfAscii(block, "Client Network Address:", from);
+                int at = source < 0 ? client : (client < 0 ? source : Math.min(source, client));
+                if (at < 0) return null;
+                int start = skipSpaces(block, at + "Source Network Address:".length()); // Both labels have the same length
+                int end = start;
+                while (end < block.length() && isAddressChar(block.charAt(end))) end++;
+                if (end > start) return block.substring(start, end);
+                from = at + 1;
+            }
+        }
+
+        // First "Account Name:" followed by a non-empty rest of line (trimmed; blank values come back empty)
+        private static String findAccountName(String block) {
+            String label = "Account Name:";
+            int from = 0;
+            while (true) {
+                int at = indexOfAscii(block, label, from);
+                if (at < 0) return null;
+                int valueFrom = at + label.length();
+                int start = skipSpaces(block, valueFrom);
+                if (start < block.length()) {
+                    int end = start;
+                    while (end < block.length() && block.charAt(end) != '\n' && block.charAt(end) != '\r') end++;
+                    while (start < end && block.charAt(start) <= ' ') start++;
+                    while (end > start && block.charAt(end - 1) <= ' ') end--;
+                    return block.substring(start, end);
+                }
+                // Only whitespace remains: it still matches if any of it is not a line break
+                for (int i = valueFrom; i < block.length(); i++) {
+                    if (block.charAt(i) != '\n' && block.charAt(i) != '\r') return "";
+                }
+                from = at + 1;
+            }
+        }
+
+        private static int nextLineStart(String block, int pos) {
+            int len = block.length();
+            while (pos < len) {
+                char c = block.charAt(pos++);
+                if (c == '\r' && pos < len && block.charAt(pos) == '\n') return pos + 1;
+                if (isLineTerminator(c)) return pos;
+            }
+            return len;
+        }
+
+        private static int skipSpaces(String block, int pos) {
+            while (pos < block.length() && isRegexSpace(block.charAt(pos))) pos++;
+            return pos;
+        }
+
+        private static int indexOfAscii(String block, String needle, int from) {
+            for (int i = from, last = block.length() - needle.length(); i <= last; i++) {
+                if (regionMatchesAscii(block, i, needle)) return i;
+            }
+            return -1;
+        }
+
+        private static boolean regionMatchesAscii(String block, int pos, String key) {
+            if (pos + key.length() > block.length()) return false;
+            for (int i = 0; i < key.length(); i++) {
+                char a = block.charAt(pos + i), b = key.charAt(i);
+                if (a != b && toAsciiLower(a) != toAsciiLower(b)) return false;
+            }
+            return true;
+        }
+
+        private static char toAsciiLower(char c) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+        }
+
+        private static boolean isAsciiDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isAddressChar(char c) {
+            return isAsciiDigit(c) || c == '.' || c == ':' || c == '-' || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+
+        // TimeCreated value of a Format-List block (first matching line), or null
+        static String timestampOf(String block) {
+            for (int pos = 0, len = block.length(); pos < len; pos = nextLineStart(block, pos)) {
+                int valueStart = headerValueStart(block, pos, "TimeCreated");
+                if (valueStart >= 0) return lineValue(block, valueStart);
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return displayLine(timestamp, host, logName, eventId, level, message);
+        }
+
+        // Simple representation for the text pane
+        // "[%s] %s ID:%-5d Lvl:%-10s | %s" built by hand; this runs for every row scrolled into view.
+        // Events from other machines show the host in front of the log name ("web01/Security").
+        static String displayLine(String timestamp, String host, String logName, int eventId, String level, String message) {
+            int lineEnd = message.indexOf('\n'); // Show first line of message
+            StringBuilder line = new StringBuilder(64 + (lineEnd >= 0 ? lineEnd : message.length()));
+            line.append('[').append(timestamp != null ? timestamp : "??").append("] ");
+            if (!LOCAL_HOST.equals(host)) line.append(host).append('/');
+            line.append(logName).append(" ID:");
+            int idStart = line.length();
+            line.append(eventId);
+            while (line.length() < idStart + 5) line.append(' ');
+            line.append(" Lvl:").append(level);
+            for (int pad = level.length(); pad < 10; pad++) line.append(' ');
+            line.append(" | ");
+            if (lineEnd >= 0) line.append(message, 0, lineEnd);
+            else line.append(message);
+            return line.toString();
+        }
+    }
+
+    // Struct-of-arrays store for every retained event. Repeated strings (log name, level, address, account)
+    // are dictionary-encoded, numbers stay primitive, and one text per row is the only per-row String: the
+    // message, or of a Format-List block just what follows its "Message :" header, since the header lines
+    // print back from the columns; the block is rebuilt when it is searched, shown or saved. Rows are read
+    // through Row views, and full LogEntry objects only exist while an event is being ingested. Only the EDT
+    // mutates the store (under the write lock) or reads rows; filter(), countAnomalies() and classify() also
+    // run on background threads under the read lock.
+    static final class EventStore {
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final AnomalyType[] ANOMALY_TYPES = AnomalyType.values();
+        private static final int DISPLAY_CACHE_SIZE = 4096; // Power of two; several screens of scroll-back
+        // What texts[row] holds. The block is formatList() of the columns and texts[row], except for TEXT_BLOCK.
+        private static final byte TEXT_MESSAGE = 0; // The message (decoded sources, alerts)
+        private static final byte TEXT_BODY = 1;    // The rest of a block after its header; the whole block is the message
+        private static final byte TEXT_BLOCK = 2;   // A block whose header does not print back the same, kept as read
+        static final int MAX_SHORT_CODES = 1 << 16; // Distinct hosts, log names and levels (unsigned short codes)
+
+        private final StringDictionary hosts = new StringDictionary(MAX_SHORT_CODES);
+        private final StringDictionary logNames = new StringDictionary(MAX_SHORT_CODES);
+        private final StringDictionary levels = new StringDictionary(MAX_SHORT_CODES);
+        private final StringDictionary addresses = new StringDictionary(Integer.MAX_VALUE);
+        private final StringDictionary accounts = new StringDictionary(Integer.MAX_VALUE);
+        private TextIndex textIndex = new TextIndex();
+        private int nextSerial;     // Serials identify rows for the text index; they never move when rows do
+        private int retiredSerials; // Serials of truncated rows still present in the index
+        // Facet bitmaps over row positions (real events only), per host code, per log-name code and per AnomalyType
+        private RowBitmap eventRows = new RowBitmap();
+        private RowBitmap[] hostRows = new RowBitmap[16];    // Grown as codes are assigned
+        private RowBitmap[] logNameRows = new RowBitmap[16];
+        private RowBitmap[] anomalyRows = new RowBitmap[ANOMALY_TYPES.length];
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int layoutVersion; // Bumped whenever existing rows change position; EDT only, under the write lock
+        private int size;
+        private String[] texts = new String[INITIAL_CAPACITY];
+        private byte[] textKinds = new byte[INITIAL_CAPACITY]; // TEXT_MESSAGE, TEXT_BODY or TEXT_BLOCK
+        private long[] times = new long[INITIAL_CAPACITY];         // Epoch millis of TimeCreated, or LogEntry.NO_TIME
+        private long[] recordIds = new long[INITIAL_CAPACITY];
+        private int[] eventIds = new int[INITIAL_CAPACITY];
+        private int[] addressCodes = new int[INITIAL_CAPACITY];
+        private int[] accountCodes = new int[INITIAL_CAPACITY];
+        private short[] hostCodes = new short[INITIAL_CAPACITY];
+        private short[] logNameCodes = new short[INITIAL_CAPACITY];
+        private short[] levelCodes = new short[INITIAL_CAPACITY];
+        private byte[] anomalies = new byte[INITIAL_CAPACITY];
+        private int[] serials = new int[INITIAL_CAPACITY];
+        // Formatted list lines, direct-mapped by serial so a row keeps its entry while other rows move around it
+        private final String[] displayLines = new String[DISPLAY_CACHE_SIZE];
+        private final int[] displaySerials = new int[DISPLAY_CACHE_SIZE];
+
+        int size() { return size; }
+
+        boolean isEmpty() { return size == 0; }
+
+        // Whether any row is a real event rather than a pseudo error message; kept up to date by the facets
+        boolean hasEvents() { return !eventRows.isEmpty(); }
+
+        // Row numbers from a filter taken at an older layout version no longer point at the same events
+        int layoutVersion() { return layoutVersion; }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                size = 0;
+                Arrays.fill(texts, null); // Release the message strings
+                hosts.clear();
+                logNames.clear();
+                levels.clear();
+                addresses.clear();
+                accounts.clear();
+                textIndex = new TextIndex();
+                nextSerial = 0;
+                retiredSerials = 0;
+                Arrays.fill(displayLines, null); // Serials start over
+                rebuildFacets();
+                layoutVersion++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Inserts entries so rows stay ordered oldest first (by TimeCreated, then RecordId). A batch is a few sorted
+        // runs, one per query it spans (each Get-WinEvent query of a full load streams newest first, a refresh pages
+        // oldest first): the runs are k-way merged, then merged into the rows from the point where the batch's
+        // oldest entry belongs. Newer batches, which is what every refresh brings, are plain appends and extend the
+        // facet bitmaps; anything inserted before stored rows (a full load reaching further back, one host's events
+        // among another's) shifts row positions, so the bitmaps are rebuilt from the code columns.
+        void addAll(List<LogEntry> entries) {
+            if (entries.isEmpty()) return;
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                List<LogEntry> batch = mergeRuns(entries);
+                ensureCapacity(size + batch.size());
+                LogEntry oldest = batch.get(0);
+                int insertAt = firstRowNewerThan(oldest.timeMillis, oldest.recordId);
+                int total = size + batch.size();
+                int row = size - 1, next = batch.size() - 1;
+                for (int target = total - 1; next >= 0; target--) { // Backwards, so no row is overwritten before it moves
+                    LogEntry entry = batch.get(next);
+                    if (row >= insertAt && compareKeys(times[row], recordIds[row], entry.timeMillis, entry.recordId) > 0) {
+                        moveRow(row--, target);
+                    } else {
+                        setRow(target, batch.get(next--));
+                    }
+                }
+                int appendedFrom = size;
+                size = total;
+                if (insertAt == appendedFrom) {
+                    for (int appended = appendedFrom; appended < total; appended++) indexFacets(appended);
+                } else {
+                    rebuildFacets();
+                    layoutVersion++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            PipelineMetrics.record(PipelineMetrics.Stage.STORE, System.nanoTime() - start, entries.size());
+        }
+
+        private void indexFacets(int row) {
+            if (eventIds[row] <= 0) return; // Pseudo error messages never match a filter
+            eventRows.add(row);
+            int host = hostCodes[row] & 0xFFFF;
+            if (host >= hostRows.length) hostRows = Arrays.copyOf(hostRows, Math.max(host + 1, hostRows.length * 2));
+            if (hostRows[host] == null) hostRows[host] = new RowBitmap();
+            hostRows[host].add(row);
+            int logName = logNameCodes[row] & 0xFFFF;
+            if (logName >= logNameRows.length) logNameRows = Arrays.copyOf(logNameRows, Math.max(logName + 1, logNameRows.length * 2));
+            if (logNameRows[logName] == null) logNameRows[logName] = new RowBitmap();
+            logNameRows[logName].add(row);
+            addAnomalyRow(anomalyRows, anomalies[row], row);
+        }
+
+        private void rebuildFacets() {
+            eventRows = new RowBitmap();
+            hostRows = new RowBitmap[Math.max(16, hosts.size())];
+            logNameRows = new RowBitmap[Math.max(16, logNames.size())];
+            anomalyRows = new RowBitmap[ANOMALY_TYPES.length];
+            for (int row = 0; row < size; row++) indexFacets(row);
+        }
+
+        void add(LogEntry entry) {
+            addAll(List.of(entry));
+        }
+
+        private void setRow(int row, LogEntry entry) {
+            int headerLength;
+            if (entry.originalLine == null || !entry.message.equals(entry.originalLine)) {
+                texts[row] = entry.message;
+                textKinds[row] = TEXT_MESSAGE;
+            } else if ((headerLength = rebuiltHeaderLength(entry)) >= 0) {
+                texts[row] = entry.originalLine.substring(headerLength);
+                textKinds[row] = TEXT_BODY;
+            } else {
+                texts[row] = entry.originalLine;
+                textKinds[row] = TEXT_BLOCK;
+            }
+            times[row] = entry.timeMillis;
+            recordIds[row] = entry.recordId;
+            eventIds[row] = entry.eventId;
+            addressCodes[row] = addresses.encode(entry.sourceIp);
+            accountCodes[row] = accounts.encode(entry.accountName);
+            hostCodes[row] = (short) hosts.encode(entry.host);
+            logNameCodes[row] = (short) logNames.encode(entry.logName);
+            levelCodes[row] = (short) levels.encode(entry.level);
+            anomalies[row] = (byte) entry.anomalyType.ordinal();
+            serials[row] = nextSerial++;
+            // The parse stage lower-cased the block as read, which a block kept as its message alone may not print back as
+            boolean asRead = entry.originalLine == null || textKinds[row] != TEXT_MESSAGE || entry.originalLine.equals(block(row));
+            textIndex.add(serials[row], entry.searchText != null && asRead ? entry.searchText : block(row).toLowerCase());
+        }
+
+        // Length of the header formatList() prints for the entry's fields if its block starts with exactly that,
+        // else -1: another layout, or a TimeCreated in another format than the one the block is rebuilt with
+        private static int rebuiltHeaderLength(LogEntry entry) {
+            if (entry.timeMillis == LogEntry.NO_TIME) return -1;
+            String header = LogEntry.formatList(LogEntry.formatTimestamp(entry.timeMillis), entry.logName, entry.recordId,
+                                                entry.eventId, entry.level, "");
+            return entry.originalLine.startsWith(header) ? header.length() : -1;
+        }
+
+        private void moveRow(int from, int to) {
+            texts[to] = texts[from];
+            textKinds[to] = textKinds[from];
+            times[to] = times[from];
+            recordIds[to] = recordIds[from];
+            eventIds[to] = eventIds[from];
+            addressCodes[to] = addressCodes[from];
+            accountCodes[to] = accountCodes[from];
+            hostCodes[to] = hostCodes[from];
+            logNameCodes[to] = logNameCodes[from];
+            levelCodes[to] = levelCodes[from];
+            anomalies[to] = anomalies[from];
+            serials[to] = serials[from];
+        }
+
+        // Binary search over the ascending key columns; equal keys stay ahead of the new entry
+        private int firstRowNewerThan(long time, long recordId) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareKeys(times[mid], recordIds[mid], time, recordId) > 0) high = mid;
+                else low = mid + 1;
+            }
+            return low;
+        }
+
+        // Oldest-first merge of the maximal runs in entries: non-descending runs as they are, strictly descending
+        // ones (a full-load query) reversed. Stable for equal keys, which only ever share a non-descending run.
+        static List<LogEntry> mergeRuns(List<LogEntry> entries) {
+            List<List<LogEntry>> runs = new ArrayList<>();
+            for (int start = 0, end; start < entries.size(); start = end) {
+                end = start + 1;
+                if (end < entries.size() && compareKeys(entries.get(end), entries.get(end - 1)) < 0) {
+                    while (end < entries.size() && compareKeys(entries.get(end), entries.get(end - 1)) < 0) end++;
+                    List<LogEntry> run = new ArrayList<>(entries.subList(start, end));
+                    Collections.reverse(run);
+                    runs.add(run);
+                } else {
+                    while (end < entries.size() && compareKeys(entries.get(end), entries.get(end - 1)) >= 0) end++;
+                    runs.add(entries.subList(start, end));
+                }
+            }
+            if (runs.size() == 1) return runs.get(0);
+
+            int[] cursor = new int[runs.size()];
+            PriorityQueue<Integer> heads = new PriorityQueue<>(runs.size(), (a, b) -> {
+                int byKey = compareKeys(runs.get(a).get(cursor[a]), runs.get(b).get(cursor[b]));
+                return byKey != 0 ? byKey : Integer.compare(a, b);
+            });
+            for (int r = 0; r < runs.size(); r++) heads.add(r);
+            List<LogEntry> merged = new ArrayList<>(entries.size());
+            while (!heads.isEmpty()) {
+                int r = heads.poll();
+                merged.add(runs.get(r).get(cursor[r]++));
+                if (cursor[r] < runs.get(r).size()) heads.add(r);
+            }
+            return merged;
+        }
+
+        private static int compareKeys(LogEntry a, LogEntry b) {
+            return compareKeys(a.timeMillis, a.recordId, b.timeMillis, b.recordId);
+        }
+
+        static int compareKeys(long time1, long recordId1, long time2, long recordId2) {
+            int byTime = Long.compare(time1, time2);
+            return byTime != 0 ? byTime : Long.compare(recordId1, recordId2);
+        }
+
+        // Anomaly types of the first size rows under other rules, with their facet bitmaps: computed by classify()
+        // off the EDT, swapped in by apply()
+        static final class Classification {
+            private final int layoutVersion;
+            private final int size;
+            private final byte[] anomalies;
+            private final RowBitmap[] anomalyRows;
+
+            private Classification(int layoutVersion, int size, byte[] anomalies, RowBitmap[] anomalyRows) {
+                this.layoutVersion = layoutVersion;
+                this.size = size;
+                this.anomalies = anomalies;
+                this.anomalyRows = anomalyRows;
+            }
+        }
+
+        // Re-runs classification on every row, e.g. after the anomaly rules changed, leaving the store as it is.
+        // Safe off the EDT; returns null, like filter(), if interrupted or a store update is waiting for the lock.
+        Classification classify(AnomalyRules rules) {
+            lock.readLock().lock();
+            try {
+                byte[] classified = Arrays.copyOf(anomalies, size);
+                RowBitmap[] byType = new RowBitmap[ANOMALY_TYPES.length];
+                for (int row = 0; row < size; row++) {
+                    if ((row & 0x3FF) == 0 && shouldYield()) return null;
+                    if (!ANOMALY_TYPES[classified[row]].isAggregate()) classified[row] = classify(rules, row);
+                    if (eventIds[row] > 0) addAnomalyRow(byType, classified[row], row);
+                }
+                return new Classification(layoutVersion, size, classified, byType);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Swaps in a classification of the current layout; rows appended since it was taken are classified here.
+        // Returns false if rows have moved since, and the classification has to be taken again.
+        boolean apply(Classification classification, AnomalyRules rules) {
+            lock.writeLock().lock();
+            try {
+                if (classification.layoutVersion != layoutVersion) return false;
+                System.arraycopy(classification.anomalies, 0, anomalies, 0, classification.size);
+                anomalyRows = classification.anomalyRows;
+                for (int row = classification.size; row < size; row++) {
+                    if (!ANOMALY_TYPES[anomalies[row]].isAggregate()) anomalies[row] = classify(rules, row);
+                    if (eventIds[row] > 0) addAnomalyRow(anomalyRows, anomalies[row], row);
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private byte classify(AnomalyRules rules, int row) {
+            Row view = row(row);
+            return (byte) rules.classify(view.logName(), eventIds[row], view.level(), view.message()).ordinal();
+        }
+
+        private static void addAnomalyRow(RowBitmap[] anomalyRows, byte type, int row) {
+            if (anomalyRows[type] == null) anomalyRows[type] = new RowBitmap();
+            anomalyRows[type].add(row);
+        }
+
+        // Keeps the newest maxRows rows
+        void truncate(int maxRows) {
+            if (maxRows >= size) return;
+            lock.writeLock().lock();
+            try {
+                int dropped = size - maxRows;
+                for (int row = 0; row < maxRows; row++) moveRow(row + dropped, row);
+                Arrays.fill(texts, maxRows, size, null);
+                retiredSerials += dropped;
+                size = maxRows;
+                rebuildFacets();
+                layoutVersion++;
+                if (retiredSerials > size) rebuildTextIndex(); // Mostly dead postings: start over from the live rows
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private String block(int row) {
+            if (textKinds[row] == TEXT_BLOCK) return texts[row];
+            return LogEntry.formatList(LogEntry.formatTimestamp(times[row]), logNames.decode(logNameCodes[row] & 0xFFFF), recordIds[row],
+                                       eventIds[row], levels.decode(levelCodes[row] & 0xFFFF), texts[row]);
+        }
+
+        private void rebuildTextIndex() {
+            long[] bySerial = new long[size];
+            for (int row = 0; row < size; row++) bySerial[row] = (long) serials[row] << 32 | row;
+            Arrays.sort(bySerial); // The index takes serials in increasing order
+            textIndex = new TextIndex();
+            for (long serialAndRow : bySerial) {
+                int row = (int) serialAndRow;
+                textIndex.add(serials[row], block(row).toLowerCase());
+            }
+            retiredSerials = 0;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= texts.length) return;
+            int capacity = Math.max(required, texts.length + (texts.length >> 1));
+            texts = Arrays.copyOf(texts, capacity);
+            textKinds = Arrays.copyOf(textKinds, capacity);
+            times = Arrays.copyOf(times, capacity);
+            recordIds = Arrays.copyOf(recordIds, capacity);
+            eventIds = Arrays.copyOf(eventIds, capacity);
+            addressCodes = Arrays.copyOf(addressCodes, capacity);
+            accountCodes = Arrays.copyOf(accountCodes, capacity);
+            hostCodes = Arrays.copyOf(hostCodes, capacity);
+            logNameCodes = Arrays.copyOf(logNameCodes, capacity);
+            levelCodes = Arrays.copyOf(levelCodes, capacity);
+            anomalies = Arrays.copyOf(anomalies, capacity);
+            serials = Arrays.copyOf(serials, capacity);
+        }
+
+        // Rows matching the UI filters, in store order; keyword is expected to be lower-case already.
+        // Facet selections are bitmap ORs (case-insensitive log-name matches, anomaly groups) and ANDs.
+        // Safe off the EDT. Returns null if the calling thread is interrupted or a store update is waiting
+        // for the lock: the result would be stale, and the updater refilters afterwards.
+        RowBitmap filter(String selectedHost, String selectedLogName, String selectedAnomalyFilter, String keyword) {
+            lock.readLock().lock();
+            try {
+                RowBitmap rows = eventRows;
+                if (!FILTER_ALL_HOSTS.equals(selectedHost)) {
+                    RowBitmap byHost = new RowBitmap();
+                    for (int code = 0; code < hostRows.length; code++) {
+                        if (hostRows[code] != null && hosts.decode(code).equalsIgnoreCase(selectedHost)) {
+                            byHost = RowBitmap.or(byHost, hostRows[code]);
+                        }
+                    }
+                    rows = byHost;
+                }
+                if (!FILTER_ALL_LOG_NAMES.equals(selectedLogName)) {
+                    RowBitmap byLogName = new RowBitmap();
+                    for (int code = 0; code < logNameRows.length; code++) {
+                        if (logNameRows[code] != null && logNames.decode(code).equalsIgnoreCase(selectedLogName)) {
+                            byLogName = RowBitmap.or(byLogName, logNameRows[code]);
+                        }
+                    }
+                    rows = rows == eventRows ? byLogName : RowBitmap.and(rows, byLogName);
+                }
+                if (!FILTER_SHOW_ALL.equals(selectedAnomalyFilter)) {
+                    AnomalyType selectedType = AnomalyType.fromDisplayName(selectedAnomalyFilter);
+                    RowBitmap byAnomaly = new RowBitmap();
+                    for (AnomalyType type : ANOMALY_TYPES) {
+                        boolean selected = FILTER_ALL_ANOMALIES.equals(selectedAnomalyFilter) ? type != AnomalyType.NONE : type == selectedType;
+                        if (selected && anomalyRows[type.ordinal()] != null) byAnomaly = RowBitmap.or(byAnomaly, anomalyRows[type.ordinal()]);
+                    }
+                    rows = RowBitmap.and(rows, byAnomaly);
+                }
+                if (keyword.isEmpty()) return rows == eventRows ? rows.copy() : rows;
+
+                // Text: only rows whose serial the index returns are considered, and only those need a string check
+                boolean[] exact = {false};
+                BitSet candidates = textIndex.candidates(keyword, nextSerial, exact);
+                RowBitmap matches = new RowBitmap();
+                int[] checked = {0};
+                boolean[] abandoned = {false};
+                rows.forEach(row -> {
+                    if (abandoned[0]) return;
+                    if ((++checked[0] & 0x3FF) == 0 && shouldYield()) {
+                        abandoned[0] = true;
+                        return;
+                    }
+                    if (candidates != null && !candidates.get(serials[row])) return;
+                    if (!exact[0] && !TextIndex.containsLowerCase(block(row), keyword)) return;
+                    matches.add(row);
+                });
+                return abandoned[0] ? null : matches;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean shouldYield() {
+            return Thread.currentThread().isInterrupted() || lock.hasQueuedThreads();
+        }
+
+        // The row as the log list shows it; formatted on first use, then served from the cache
+        String displayLine(int row) {
+            int serial = serials[row];
+            int slot = serial & (DISPLAY_CACHE_SIZE - 1);
+            String line = displayLines[slot];
+            if (line == null || displaySerials[slot] != serial) {
+                line = row(row).toString();
+                displayLines[slot] = line;
+                displaySerials[slot] = serial;
+            }
+            return line;
+        }
+
+        // Number of the given rows classified as any anomaly; safe off the EDT
+        int countAnomalies(RowBitmap rows) {
+            lock.readLock().lock();
+            try {
+                int count = 0;
+                for (AnomalyType type : ANOMALY_TYPES) {
+                    if (type != AnomalyType.NONE && anomalyRows[type.ordinal()] != null) {
+                        count += RowBitmap.and(rows, anomalyRows[type.ordinal()]).cardinality();
+                    }
+                }
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Row row(int row) {
+            Objects.checkIndex(row, size);
+            return new Row(row);
+        }
+
+        // Read-only accessor over one row's columns
+        final class Row {
+            private final int index;
+
+            private Row(int index) { this.index = index; }
+
+            String originalLine() { return block(index); }
+            String timestamp() { return textKinds[index] == TEXT_BLOCK ? LogEntry.timestampOf(texts[index]) : LogEntry.formatTimestamp(times[index]); }
+            long timeMillis() { return times[index]; }
+            String host() { return hosts.decode(hostCodes[index] & 0xFFFF); }
+            String logName() { return logNames.decode(logNameCodes[index] & 0xFFFF); }
+            int eventId() { return eventIds[index]; }
+            long recordId() { return recordIds[index]; }
+            String level() { return levels.decode(levelCodes[index] & 0xFFFF); }
+            String message() { return textKinds[index] == TEXT_MESSAGE ? texts[index] : block(index); }
+            String sourceIp() { return addresses.decode(addressCodes[index]); }
+            String accountName() { return accounts.decode(accountCodes[index]); }
+            AnomalyType anomalyType() { return ANOMALY_TYPES[anomalies[index]]; }
+
+            LogEntry toLogEntry() {
+                LogEntry entry = new LogEntry();
+                entry.originalLine = textKinds[index] == TEXT_MESSAGE ? null : block(index); // Derived again when null
+                entry.timestamp = timestamp();
+                entry.timeMillis = timeMillis();
+                entry.host = host();
+                entry.logName = logName();
+                entry.eventId = eventId();
+                entry.recordId = recordId();
+                entry.level = level();
+                entry.message = message();
+                entry.sourceIp = sourceIp();
+                entry.accountName = accountName();
+                entry.anomalyType = anomalyType();
+                return entry;
+            }
+
+            @Override
+            public String toString() {
+                return LogEntry.displayLine(timestamp(), host(), logName(), eventId(), level(), message());
+            }
+        }
+    }
+
+    // Inverted index behind "Filter Text". Each event's lower-cased block is split into tokens (runs of letters
+    // and digits); every distinct token keeps a posting list of the event serials containing it, delta-varint
+    // encoded (the first posting is held inline, so tokens seen once cost no array). A query is split the same
+    // way: inner runs must equal a token, the runs at its edges match token suffixes/prefixes/substrings found
+    // by scanning the token dictionary, and the runs' posting sets are intersected. Tokens live in one char
+    // arena with an open-addressing hash table, so indexing allocates nothing per token occurrence.
+    static final class TextIndex {
+        private static final int EQUALS = 0, STARTS_WITH = 1, ENDS_WITH = 2, CONTAINS = 3;
+
+        private char[] arena = new char[1 << 16];
+        private int arenaLength;
+        private int tokenCount;
+        private int[] tokenStart = new int[1024];  // Token id -> arena offset; tokenStart[id + 1] is its end
+        private int[] firstSerial = new int[1024];
+        private int[] lastSerial = new int[1024];
+        private byte[][] tailPostings = new byte[1024][]; // Deltas after the first posting
+        private int[] tailLength = new int[1024];
+        private int[] table = new int[2048];       // Open addressing: token id + 1, 0 = empty
+
+        // Serials must be added in increasing order
+        void add(int serial, String lowerText) {
+            int len = lowerText.length();
+            int i = 0;
+            while (i < len) {
+                while (i < len && !isTokenChar(lowerText.charAt(i))) i++;
+                int start = i;
+                while (i < len && isTokenChar(lowerText.charAt(i))) i++;
+                if (i > start) addPosting(internToken(lowerText, start, i), serial);
+            }
+        }
+
+        // Serials that may contain keyword (lower-case), or null when the keyword has no token characters
+        // and every row has to be checked. exact[0] tells whether every candidate is known to match.
+        BitSet candidates(String keyword, int serialLimit, boolean[] exact) {
+            BitSet result = null;
+            int runs = 0;
+            int len = keyword.length();
+            int i = 0;
+            while (i < len) {
+                while (i < len && !isTokenChar(keyword.charAt(i))) i++;
+                int start = i;
+                while (i < len && isTokenChar(keyword.charAt(i))) i++;
+                if (i == start) break;
+                boolean boundedLeft = start > 0, boundedRight = i < len;
+                int mode = boundedLeft ? (boundedRight ? EQUALS : STARTS_WITH) : (boundedRight ? ENDS_WITH : CONTAINS);
+                BitSet matches = postingsMatching(keyword.substring(start, i), mode, serialLimit);
+                if (result == null) result = matches;
+                else result.and(matches);
+                runs++;
+                if (result.isEmpty()) break;
+            }
+            // A keyword that is exactly one token-character run is fully decided by the index
+            exact[0] = runs == 1 && len > 0 && isTokenChar(keyword.charAt(0)) && isTokenChar(keyword.charAt(len - 1));
+            return result;
+        }
+
+        private BitSet postingsMatching(String run, int mode, int serialLimit) {
+            BitSet serials = new BitSet(serialLimit);
+            if (mode == EQUALS) {
+                int id = findToken(run, 0, run.length());
+                if (id >= 0) orPostings(id, serials);
+                return serials;
+            }
+            char[] needle = run.toCharArray();
+            for (int id = 0; id < tokenCount; id++) {
+                int start = tokenStart[id], end = tokenStart[id + 1];
+                if (end - start < needle.length) continue;
+                boolean matches;
+                switch (mode) {
+                    case STARTS_WITH: matches = regionEquals(start, needle); break;
+                    case ENDS_WITH: matches = regionEquals(end - needle.length, needle); break;
+                    default: matches = indexOf(start, end, needle) >= 0; break;
+                }
+                if (matches) orPostings(id, serials);
+            }
+            return serials;
+        }
+
+        private void orPostings(int id, BitSet serials) {
+            int serial = firstSerial[id];
+            serials.set(serial);
+            byte[] tail = tailPostings[id];
+            for (int pos = 0, end = tailLength[id]; pos < end; ) {
+                int delta = 0, shift = 0;
+                byte b;
+                do {
+                    b = tail[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                serial += delta;
+                serials.set(serial);
+            }
+        }
+
+        private void addPosting(int id, int serial) {
+            if (lastSerial[id] == serial) return; // Token repeated within the same event
+            if (lastSerial[id] < 0) {
+                firstSerial[id] = serial;
+            } else {
+                int delta = serial - lastSerial[id];
+                byte[] tail = tailPostings[id];
+                if (tail == null) tail = tailPostings[id] = new byte[4];
+                else if (tailLength[id] + 5 > tail.length) tail = tailPostings[id] = Arrays.copyOf(tail, Math.max(tail.length * 2, tailLength[id] + 5));
+                int pos = tailLength[id];
+                while ((delta & ~0x7F) != 0) {
+                    tail[pos++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                tail[pos++] = (byte) delta;
+                tailLength[id] = pos;
+            }
+            lastSerial[id] = serial;
+        }
+
+        private int internToken(String text, int start, int end) {
+            int slot = hash(text, start, end) & (table.length - 1);
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (tokenEquals(id, text, start, end)) return id;
+                slot = (slot + 1) & (table.length - 1);
+            }
+            int id = tokenCount++;
+            ensureTokenCapacity(tokenCount + 1);
+            int length = end - start;
+            if (arenaLength + length > arena.length) arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + length));
+            text.getChars(start, end, arena, arenaLength);
+            tokenStart[id] = arenaLength;
+            arenaLength += length;
+            tokenStart[id + 1] = arenaLength;
+            lastSerial[id] = -1;
+            table[slot] = id + 1;
+            if (tokenCount * 2 > table.length) rehash();
+            return id;
+        }
+
+        private int findToken(String text, int start, int end) {
+            int slot = hash(text, start, end) & (table.length - 1);
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (tokenEquals(id, text, start, end)) return id;
+                slot = (slot + 1) & (table.length - 1);
+            }
+            return -1;
+        }
+
+        private void rehash() {
+            int[] newTable = new int[table.length * 2];
+            for (int id = 0; id < tokenCount; id++) {
+                int slot = hashArena(id) & (newTable.length - 1);
+                while (newTable[slot] != 0) slot = (slot + 1) & (newTable.length - 1);
+                newTable[slot] = id + 1;
+            }
+            table = newTable;
+        }
+
+        private void ensureTokenCapacity(int required) {
+            if (required < tokenStart.length) return;
+            int capacity = tokenStart.length * 2;
+            tokenStart = Arrays.copyOf(tokenStart, capacity);
+            firstSerial = Arrays.copyOf(firstSerial, capacity);
+            lastSerial = Arrays.copyOf(lastSerial, capacity);
+            tailPostings = Arrays.copyOf(tailPostings, capacity);
+            tailLength = Arrays.copyOf(tailLength, capacity);
+        }
+
+        private boolean tokenEquals(int id, String text, int start, int end) {
+            int tokenFrom = tokenStart[id];
+            if (tokenStart[id + 1] - tokenFrom != end - start) return false;
+            for (int i = start; i < end; i++) {
+                if (arena[tokenFrom++] != text.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private boolean regionEquals(int from, char[] needle) {
+            for (int i = 0; i < needle.length; i++) {
+                if (arena[from + i] != needle[i]) return false;
+            }
+            return true;
+        }
+
+        private int indexOf(int start, int end, char[] needle) {
+            for (int i = start, last = end - needle.length; i <= last; i++) {
+                if (arena[i] == needle[0] && regionEquals(i, needle)) return i;
+            }
+            return -1;
+        }
+
+        private static int hash(String text, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) h = 31 * h + text.charAt(i);
+            return h ^ (h >>> 16);
+        }
+
+        private int hashArena(int id) {
+            int h = 0;
+            for (int i = tokenStart[id]; i < tokenStart[id + 1]; i++) h = 31 * h + arena[i];
+            return h ^ (h >>> 16);
+        }
+
+        static boolean isTokenChar(char c) {
+            return Character.isLetterOrDigit(c);
+        }
+
+        // Same result as text.toLowerCase().contains(lowerKeyword) without copying the text. Characters whose
+        // String lower-casing is context- or locale-dependent (dotted I, sigma, surrogates, Turkic locales) fall back.
+        static boolean containsLowerCase(String text, String lowerKeyword) {
+            if (LOCALE_SENSITIVE_LOWER_CASE) return text.toLowerCase().contains(lowerKeyword);
+            int textLength = text.length(), keywordLength = lowerKeyword.length();
+            for (int i = 0; i < textLength; i++) {
+                char c = text.charAt(i);
+                if (c >= '\u0130' && (c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c))) {
+                    return text.toLowerCase().contains(lowerKeyword);
+                }
+            }
+            if (keywordLength == 0) return true;
+            char first = lowerKeyword.charAt(0);
+            for (int i = 0, last = textLength - keywordLength; i <= last; i++) {
+                if (Character.toLowerCase(text.charAt(i)) != first) continue;
+                int j = 1;
+                while (j < keywordLength && Character.toLowerCase(text.charAt(i + j)) == lowerKeyword.charAt(j)) j++;
+                if (j == keywordLength) return true;
+            }
+            return false;
+        }
+
+        private static final boolean LOCALE_SENSITIVE_LOWER_CASE =
+                Set.of("tr", "az", "lt").contains(Locale.getDefault().getLanguage());
+    }
+
+    // Compressed set of store rows, split into 65536-row containers the way Roaring bitmaps are: a container is
+    // a sorted char[] of low bits while sparse, and a 1024-word bitset once it holds more than 4096 rows. Facet
+    // combinations are container-wise AND/OR, and the kept cardinality gives the result size without a scan.
+    static final class RowBitmap {
+        private static final int ARRAY_LIMIT = 4096;
+        private static final int BITMAP_WORDS = 1024;
+
+        private int containerCount;
+        private char[] keys = new char[4];          // High 16 bits of the rows in each container, ascending
+        private Object[] containers = new Object[4]; // char[] (array container) or long[] (bitmap container)
+        private int[] cardinalities = new int[4];
+        private int cardinality;
+
+        int cardinality() { return cardinality; }
+
+        RowBitmap copy() {
+            RowBitmap copy = new RowBitmap();
+            for (int c = 0; c < containerCount; c++) copy.appendContainer(keys[c], copyContainer(c), cardinalities[c]);
+            return copy;
+        }
+
+        boolean isEmpty() { return cardinality == 0; }
+
+        // Rows must be added in increasing order
+        void add(int row) {
+            char key = (char) (row >>> 16), low = (char) row;
+            int last = containerCount - 1;
+            if (last < 0 || keys[last] != key) {
+                if (last >= 0 && keys[last] > key) throw new IllegalArgumentException("rows must be added in order");
+                appendContainer(key, new char[8], 0);
+                last++;
+            }
+            int count = cardinalities[last];
+            if (containers[last] instanceof char[]) {
+                char[] array = (char[]) containers[last];
+                if (count > 0 && array[count - 1] >= low) {
+                    if (array[count - 1] == low) return;
+                    throw new IllegalArgumentException("rows must be added in order");
+                }
+                if (count == ARRAY_LIMIT) {
+                    long[] words = toWords(array, count);
+                    words[low >>> 6] |= 1L << low;
+                    containers[last] = words;
+                } else {
+                    if (count == array.length) containers[last] = array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, count * 2));
+                    array[count] = low;
+                }
+            } else {
+                long[] words = (long[]) containers[last];
+                if ((words[low >>> 6] & (1L << low)) != 0) return;
+                words[low >>> 6] |= 1L << low;
+            }
+            cardinalities[last]++;
+            cardinality++;
+        }
+
+        boolean contains(int row) {
+            int index = Arrays.binarySearch(keys, 0, containerCount, (char) (row >>> 16));
+            if (index < 0) return false;
+            char low = (char) row;
+            Object container = containers[index];
+            if (container instanceof long[]) return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+        }
+
+        // The index-th smallest row (0-based)
+        int select(int index) {
+            Objects.checkIndex(index, cardinality);
+            int c = 0;
+            while (index >= cardinalities[c]) index -= cardinalities[c++];
+            int high = keys[c] << 16;
+            Object container = containers[c];
+            if (container instanceof char[]) return high | ((char[]) container)[index];
+            long[] words = (long[]) container;
+            for (int w = 0; ; w++) {
+                int bits = Long.bitCount(words[w]);
+                if (index < bits) {
+                    long word = words[w];
+                    for (int i = 0; i < index; i++) word &= word - 1; // Drop the lowest set bits
+                    return high | (w << 6) | Long.numberOfTrailingZeros(word);
+                }
+                index -= bits;
+            }
+        }
+
+        int[] toArray() {
+            int[] rows = new int[cardinality];
+            int[] next = {0};
+            forEach(row -> rows[next[0]++] = row);
+            return rows;
+        }
+
+        void forEach(java.util.function.IntConsumer action) {
+            for (int c = 0; c < containerCount; c++) {
+                int high = keys[c] << 16;
+                Object container = containers[c];
+                if (container instanceof char[]) {
+                    char[] array = (char[]) container;
+                    for (int i = 0; i < cardinalities[c]; i++) action.accept(high | array[i]);
+                } else {
+                    long[] words = (long[]) container;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        for (long word = words[w]; word != 0; word &= word - 1) {
+                            action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        }
+                    }
+                }
+            }
+        }
+
+        static RowBitmap and(RowBitmap a, RowBitmap b) {
+            RowBitmap result = new RowBitmap();
+            int i = 0, j = 0;
+            while (i < a.containerCount && j < b.containerCount) {
+                if (a.keys[i] < b.keys[j]) { i++; continue; }
+                if (a.keys[i] > b.keys[j]) { j++; continue; }
+                long[] words = a.words(i);
+                long[] other = b.containers[j] instanceof long[] ? (long[]) b.containers[j] : b.words(j);
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) count += Long.bitCount(words[w] &= other[w]);
+                if (count > 0) result.appendWords(a.keys[i], words, count);
+                i++;
+                j++;
+            }
+            return result;
+        }
+
+        static RowBitmap or(RowBitmap a, RowBitmap b) {
+            RowBitmap result = new RowBitmap();
+            int i = 0, j = 0;
+            while (i < a.containerCount || j < b.containerCount) {
+                if (j == b.containerCount || (i < a.containerCount && a.keys[i] < b.keys[j])) {
+                    result.appendContainer(a.keys[i], a.copyContainer(i), a.cardinalities[i]);
+                    i++;
+                } else if (i == a.containerCount || b.keys[j] < a.keys[i]) {
+                    result.appendContainer(b.keys[j], b.copyContainer(j), b.cardinalities[j]);
+                    j++;
+                } else {
+                    long[] words = a.words(i);
+                    long[] other = b.containers[j] instanceof long[] ? (long[]) b.containers[j] : b.words(j);
+                    int count = 0;
+                    for (int w = 0; w < BITMAP_WORDS; w++) count += Long.bitCount(words[w] |= other[w]);
+                    result.appendWords(a.keys[i], words, count);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // Container c as a fresh bitset
+        private long[] words(int c) {
+            Object container = containers[c];
+            if (container instanceof long[]) return ((long[]) container).clone();
+            return toWords((char[]) container, cardinalities[c]);
+        }
+
+        private Object copyContainer(int c) {
+            Object container = containers[c];
+            return container instanceof long[] ? ((long[]) container).clone() : Arrays.copyOf((char[]) container, cardinalities[c]);
+        }
+
+        private static long[] toWords(char[] array, int count) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < count; i++) words[array[i] >>> 6] |= 1L << array[i];
+            return words;
+        }
+
+        // Stores a combined container in whichever form is smaller
+        private void appendWords(char key, long[] words, int count) {
+            if (count > ARRAY_LIMIT) {
+                appendContainer(key, words, count);
+                return;
+            }
+            char[] array = new char[count];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    array[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+            appendContainer(key, array, count);
+        }
+
+        private void appendContainer(char key, Object container, int count) {
+            if (containerCount == keys.length) {
+                keys = Arrays.copyOf(keys, containerCount * 2);
+                containers = Arrays.copyOf(containers, containerCount * 2);
+                cardinalities = Arrays.copyOf(cardinalities, containerCount * 2);
+            }
+            keys[containerCount] = key;
+            containers[containerCount] = container;
+            cardinalities[containerCount] = count;
+            containerCount++;
+            cardinality += count;
+        }
+    }
+
+    // Assigns dense int codes to distinct strings; codes stay valid until clear()
+    static final class StringDictionary {
+        private final int maxCodes;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        StringDictionary(int maxCodes) {
+            this.maxCodes = maxCodes;
+        }
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code != null) return code;
+            if (values.size() == maxCodes) throw new IllegalStateException("More than " + maxCodes + " distinct values");
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            return code;
+        }
+
+        String decode(int code) { return values.get(code); }
+
+        int size() { return values.size(); }
+
+        void clear() {
+            codes.clear();
+            values.clear();
+        }
+    }
+
+    // Per-log refresh position: the newest EventRecordID seen, or the time of the last fetch if none was seen yet
+    static final class HighWaterMark {
+        final long recordId;
+        final Instant since;
+
+        HighWaterMark(long recordId, Instant since) {
+            this.recordId = recordId;
+            this.since = since;
+        }
+
+        // XPath condition inside System[...] for the events after a mark without a RecordId; a refresh pages on
+        // from the RecordId otherwise
+        String timeCondition() {
+            return "TimeCreated[@SystemTime>='" + since.truncatedTo(ChronoUnit.MILLIS) + "']";
+        }
+    }
+
+    // The Get-WinEvent request for a fetch, planned from the filter state the view applies: only the selected log, and
+    // for a selected anomaly type only the event IDs and levels of the rules that can produce it. Each log gets its
+    // own -FilterXml query list, with its refresh mark folded into its Selects. Free text, message rules and rate
+    // spikes (which need every event of a stream) stay with the client-side filter. The store remembers the plan it
+    // was loaded with; a filter that plan does not cover needs a new full load.
+    static final class QueryPlan {
+        // Imported or archived events: nothing narrowed them, so every filter is covered
+        static final QueryPlan EVERYTHING = new QueryPlan(allLogs(), Collections.emptyMap(), true);
+
+        private final Map<String, List<String>> selects; // Log -> conditions, one Select each; null = every event
+        private final Map<String, List<String>> ruleIdSelects; // Unnarrowed log -> its rules' event IDs, for full loads
+        private final boolean coversEverything;
+
+        private QueryPlan(Map<String, List<String>> selects, Map<String, List<String>> ruleIdSelects, boolean coversEverything) {
+            this.selects = selects;
+            this.ruleIdSelects = ruleIdSelects;
+            this.coversEverything = coversEverything;
+        }
+
+        private static Map<String, List<String>> allLogs() {
+            Map<String, List<String>> selects = new LinkedHashMap<>();
+            TARGET_LOG_NAMES.forEach(log -> selects.put(log, null));
+            return selects;
+        }
+
+        static QueryPlan forFilter(String logNameFilter, String anomalyFilter, AnomalyRules rules) {
+            List<String> logs = logNameFilter == null || logNameFilter.equals(FILTER_ALL_LOG_NAMES) ? TARGET_LOG_NAMES : List.of(logNameFilter);
+            AnomalyType type = AnomalyType.fromDisplayName(anomalyFilter); // null for "Show All Logs" and "Show All Anomalies"
+            if (type == AnomalyType.BRUTE_FORCE_BURST) type = AnomalyType.FAILED_LOGIN; // Bursts are counted from these
+            if (type == AnomalyType.LOCKOUT_BURST) type = AnomalyType.ACCOUNT_LOCKOUT;
+            Map<String, List<String>> selects = new LinkedHashMap<>();
+            Map<String, List<String>> ruleIdSelects = new HashMap<>();
+            for (String log : logs) {
+                List<String> conditions = type == null || type == AnomalyType.RATE_SPIKE ? null : rules.sourceConditions(log, type);
+                if (conditions == null || !conditions.isEmpty()) selects.put(log, conditions);
+                if (conditions == null && !rules.eventIdConditions(log).isEmpty()) ruleIdSelects.put(log, rules.eventIdConditions(log));
+            }
+            return new QueryPlan(selects, ruleIdSelects, false);
+        }
+
+        Set<String> logNames() { return selects.keySet(); }
+
+        // True when every event the other plan fetches is fetched by this one as well
+        boolean covers(QueryPlan other) {
+            if (coversEverything) return true;
+            if (other.coversEverything) return false;
+            for (Map.Entry<String, List<String>> select : other.selects.entrySet()) {
+                if (!selects.containsKey(select.getKey())) return false;
+                List<String> conditions = selects.get(select.getKey());
+                if (conditions != null && !conditions.equals(select.getValue())) return false;
+            }
+            return true;
+        }
+
+        // One Get-WinEvent call per log, each returning at most MAX_EVENTS_TO_FETCH of it newest first, so a busy log
+        // cannot crowd out the others. A full load of an unnarrowed log adds a call for its rules' event IDs with a
+        // budget of its own, which reaches those anomalies further back; the ingest dedupe drops the overlap. Above a
+        // mark, a log is read oldest first in pages of MAX_EVENTS_TO_FETCH, each starting after the last RecordId of
+        // the one before, until a page comes back short or MAX_REFRESH_PAGES were read; whatever is left follows on
+        // the next refresh instead of being skipped. Every new event is covered there, so the rules' call is not
+        // repeated. Output is piped into `select`; against computerName over remote event log management when it
+        // is not null.
+        String toCommand(Map<String, HighWaterMark> marks, String computerName, String select) {
+            if (selects.isEmpty()) return "@()"; // No rule can produce the selected type in the selected log
+            String computer = computerName == null ? "" : " -ComputerName '" + computerName.replace("'", "''") + "'";
+            List<String> queries = new ArrayList<>();
+            selects.forEach((log, conditions) -> {
+                HighWaterMark mark = marks.get(log);
+                queries.add(query(computer, log, conditions, mark, select));
+                if (mark == null && ruleIdSelects.containsKey(log)) queries.add(query(computer, log, ruleIdSelects.get(log), null, select));
+            });
+            return String.join(" ; ", queries);
+        }
+
+        private static String query(String computer, String log, List<String> conditions, HighWaterMark mark, String select) {
+            StringBuilder query = new StringBuilder("<QueryList><Query Id=\"0\">");
+            for (String condition : conditions != null ? conditions : Collections.<String>singletonList(null)) {
+                List<String> terms = new ArrayList<>(3);
+                if (condition != null) terms.add("(" + condition + ")");
+                if (mark != null && mark.recordId <= 0) terms.add(mark.timeCondition());
+                if (mark != null) terms.add(PAGE_START); // Replaced by the page's starting RecordId below
+                String xpath = terms.isEmpty() ? "*" : "*[System[" + String.join(" and ", terms) + "]]";
+                query.append("<Select Path=\"").append(escapeXml(log)).append("\">").append(escapeXml(xpath)).append("</Select>");
+            }
+            query.append("</Query></QueryList>");
+            String xml = query.toString().replace("'", "''");
+            // A log with nothing to return would otherwise print an error into the stream
+            if (mark == null) {
+                return String.format("Get-WinEvent%s -FilterXml '%s' -MaxEvents %d -ErrorAction SilentlyContinue%s",
+                                     computer, xml, MAX_EVENTS_TO_FETCH, select);
+            }
+            String template = xml.replace("{", "{{").replace("}", "}}").replace(escapeXml(PAGE_START), "EventRecordID&gt;{0}");
+            return String.format("$nadMark = %d; $nadPages = 0; do { $nadPage = @(Get-WinEvent%s -FilterXml ('%s' -f $nadMark) -Oldest"
+                                 + " -MaxEvents %d -ErrorAction SilentlyContinue); $nadPage%s; if ($nadPage.Count) { $nadMark = $nadPage[-1].RecordId }"
+                                 + " } while ($nadPage.Count -eq %d -and ++$nadPages -lt %d)",
+                                 Math.max(mark.recordId, 0), computer, template, MAX_EVENTS_TO_FETCH, select, MAX_EVENTS_TO_FETCH, MAX_REFRESH_PAGES);
+        }
+
+        private static final String PAGE_START = "EventRecordID>@@PAGE";
+
+        private static String escapeXml(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+    }
+
+    // On-disk history: append-only segment files of binary-encoded events, each with a sparse index (.idx) that queries
+    // read through a memory map, so a look back over days only touches the index blocks and records that can match.
+    // A segment is written for SEGMENT_MILLIS (or up to SEGMENT_MAX_BYTES), then a new one starts; whole segments are
+    // deleted once their newest event is older than RETENTION_MILLIS, or oldest first beyond MAX_ARCHIVE_BYTES.
+    // Anomaly types are not stored: events read back are classified with the rules in effect.
+    static final class EventArchive {
+        static final long SEGMENT_MILLIS = Math.max(1, Long.getLong("nad.archive.segmentHours", 24)) * 3_600_000;
+        static final long SEGMENT_MAX_BYTES = 64L << 20;
+        static final long RETENTION_MILLIS = Math.max(1, Long.getLong("nad.archive.retentionDays", 30)) * 86_400_000;
+        static final long MAX_ARCHIVE_BYTES = Math.max(1, Long.getLong("nad.archive.maxMegabytes", 1024)) << 20;
+        static final int INDEX_INTERVAL = 64; // Records per sparse index entry
+
+        // .idx layout (little endian): header, a bit per event ID present, then one entry per INDEX_INTERVAL records
+        private static final int MAGIC = 0x4E414458; // "NADX"
+        private static final int VERSION = 1;
+        private static final int HEADER_BYTES = 40; // magic, version, records, blocks, min time, max time, data length
+        private static final int ID_BITMAP_BYTES = 65536 / 8;
+        private static final int BLOCKS_START = HEADER_BYTES + ID_BITMAP_BYTES;
+        private static final int BLOCK_BYTES = 32; // min time, max time, data offset, 64-bit event ID signature
+
+        // Index of one segment as it is written; dirty entries are flushed after every append
+        private static final class SegmentIndex {
+            final byte[] idBitmap = new byte[ID_BITMAP_BYTES];
+            long[] blocks = new long[4 * 64];
+            int records, blockCount, dirtyFrom;
+            long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE, dataLength;
+
+            void add(long time, int eventId, long offset, int length) {
+                if (records % INDEX_INTERVAL == 0) {
+                    if (4 * (blockCount + 1) > blocks.length) blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                    int b = 4 * blockCount++;
+                    blocks[b] = time;
+                    blocks[b + 1] = time;
+                    blocks[b + 2] = offset;
+                    blocks[b + 3] = 0;
+                }
+                int b = 4 * (blockCount - 1);
+                blocks[b] = Math.min(blocks[b], time);
+                blocks[b + 1] = Math.max(blocks[b + 1], time);
+                blocks[b + 3] |= signature(eventId);
+                if (eventId >= 0 && eventId < 65536) idBitmap[eventId >>> 3] |= (byte) (1 << (eventId & 7));
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+                dataLength = offset + length;
+                records++;
+            }
+
+            void write(FileChannel channel) throws IOException {
+                ByteBuffer header = ByteBuffer.allocate(BLOCKS_START).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(records).putInt(blockCount)
+                      .putLong(minTime).putLong(maxTime).putLong(dataLength).put(idBitmap).flip();
+                writeFully(channel, header, 0);
+                ByteBuffer entries = ByteBuffer.allocate((blockCount - dirtyFrom) * BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int b = dirtyFrom; b < blockCount; b++) {
+                    entries.putLong(blocks[4 * b]).putLong(blocks[4 * b + 1]).putLong(blocks[4 * b + 2]).putLong(blocks[4 * b + 3]);
+                }
+                entries.flip();
+                writeFully(channel, entries, BLOCKS_START + (long) dirtyFrom * BLOCK_BYTES);
+                dirtyFrom = Math.max(0, blockCount - 1); // The last block can still grow
+            }
+        }
+
+        private final Path directory;
+        private final Path marksFile;
+        // Per host and log (hostLogKey), (time, RecordId) of the newest event stored, so overlapping fetches are not stored twice
+        private final Map<String, long[]> marks = new HashMap<>();
+        private FileChannel activeData, activeIndex;
+        private SegmentIndex activeSegment;
+        private long activeCreated;
+
+        // Opens (or creates) the archive, repairing a segment whose index does not match its data after a crash
+        EventArchive(Path directory) throws IOException {
+            this.directory = directory;
+            this.marksFile = directory.resolve("marks.tsv");
+            Files.createDirectories(directory);
+            for (Path data : segmentFiles()) {
+                Path index = indexOf(data);
+                if (!indexMatches(index, Files.size(data))) rebuildIndex(data, index);
+            }
+            if (Files.exists(marksFile)) {
+                for (String line : Files.readAllLines(marksFile, StandardCharsets.UTF_8)) {
+                    String[] fields = line.split("\t");
+                    if (fields.length == 3) marks.put(fields[0], new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+                }
+            }
+            applyRetention();
+        }
+
+        // Stores the entries newer than what is already stored for their log, in time order; called once per fetch
+        synchronized int appendAll(List<LogEntry> entries) throws IOException {
+            List<LogEntry> fresh = new ArrayList<>();
+            for (LogEntry entry : entries) {
+                if (entry.eventId <= 0 || entry.timeMillis == LogEntry.NO_TIME || entry.anomalyType.isAggregate()) continue;
+                long[] mark = marks.get(hostLogKey(entry.host, entry.logName));
+                if (mark == null || EventStore.compareKeys(entry.timeMillis, entry.recordId, mark[0], mark[1]) > 0) fresh.add(entry);
+            }
+            if (fresh.isEmpty()) return 0;
+            fresh.sort(Comparator.comparingLong((LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId));
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(fresh.size() * 512);
+            long bufferStart = activeSegment != null ? activeSegment.dataLength : 0; // Segment offset of buffer[0]
+            for (LogEntry entry : fresh) {
+                if (activeSegment == null || System.currentTimeMillis() - activeCreated >= SEGMENT_MILLIS
+                        || activeSegment.dataLength >= SEGMENT_MAX_BYTES) {
+                    flush(buffer);
+                    roll();
+                    bufferStart = 0;
+                }
+                int start = buffer.size();
+                encode(entry, buffer);
+                activeSegment.add(entry.timeMillis, entry.eventId, bufferStart + start, buffer.size() - start);
+                marks.merge(hostLogKey(entry.host, entry.logName), new long[] {entry.timeMillis, entry.recordId},
+                            (old, mark) -> EventStore.compareKeys(mark[0], mark[1], old[0], old[1]) > 0 ? mark : old);
+            }
+            flush(buffer);
+            saveMarks();
+            return fresh.size();
+        }
+
+        // Data first, then the index that covers it: after a crash the index never points past the data
+        private void flush(ByteArrayOutputStream buffer) throws IOException {
+            if (activeSegment == null || buffer.size() == 0) return;
+            writeFully(activeData, ByteBuffer.wrap(buffer.toByteArray()), activeSegment.dataLength - buffer.size());
+            activeData.force(false);
+            activeSegment.write(activeIndex);
+            buffer.reset();
+        }
+
+        private void roll() throws IOException {
+            if (activeData != null) {
+                activeData.close();
+                activeIndex.close();
+            }
+            activeCreated = System.currentTimeMillis();
+            Path data = directory.resolve(String.format("segment-%013d.dat", activeCreated));
+            activeData = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            activeIndex = FileChannel.open(indexOf(data), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            activeSegment = new SegmentIndex();
+            applyRetention();
+        }
+
+        // Streams the stored events with a time in [fromMillis, toMillis] (and the given event ID, unless it is
+        // negative) to sink, oldest segment first; returns how many matched
+        synchronized int query(long fromMillis, long toMillis, int eventId, Consumer<LogEntry> sink) throws IOException {
+            int matched = 0;
+            for (Path data : segmentFiles()) {
+                try (FileChannel indexChannel = FileChannel.open(indexOf(data), StandardOpenOption.READ);
+                     FileChannel dataChannel = FileChannel.open(data, StandardOpenOption.READ)) {
+                    if (indexChannel.size() < BLOCKS_START) continue;
+                    MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+                    index.order(ByteOrder.LITTLE_ENDIAN);
+                    if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) continue;
+                    int blocks = index.getInt(12);
+                    long dataLength = index.getLong(32);
+                    if (index.getLong(24) < fromMillis || index.getLong(16) > toMillis) continue;
+                    if (eventId >= 0 && (eventId >= 65536 || (index.get(HEADER_BYTES + (eventId >>> 3)) & (1 << (eventId & 7))) == 0)) continue;
+                    for (int b = 0; b < blocks; b++) {
+                        int at = BLOCKS_START + b * BLOCK_BYTES;
+                        if (index.getLong(at + 8) < fromMillis || index.getLong(at) > toMillis) continue;
+                        if (eventId >= 0 && (index.getLong(at + 24) & signature(eventId)) == 0) continue;
+                        long start = index.getLong(at + 16);
+                        long end = b + 1 < blocks ? index.getLong(at + BLOCK_BYTES + 16) : dataLength;
+                        ByteBuffer records = ByteBuffer.allocate((int) (end - start));
+                        readFully(dataChannel, records, start);
+                        records.flip();
+                        while (records.hasRemaining()) {
+                            int length = (int) readVarLong(records);
+                            LogEntry entry = decode(records.slice(records.position(), length));
+                            records.position(records.position() + length);
+                            if (entry.timeMillis < fromMillis || entry.timeMillis > toMillis) continue;
+                            if (eventId >= 0 && entry.eventId != eventId) continue;
+                            entry.anomalyType = classifyEntry(entry);
+                            sink.accept(entry);
+                            matched++;
+                        }
+                    }
+                }
+            }
+            return matched;
+        }
+
+        // Deletes expired segments, then the oldest ones while the archive is over its size limit. On Windows a
+        // segment still mapped by a recent query cannot be deleted yet; it goes on a later pass.
+        private void applyRetention() throws IOException {
+            List<Path> segments = segmentFiles();
+            long cutoff = System.currentTimeMillis() - RETENTION_MILLIS;
+            long total = 0;
+            for (Path data : segments) total += Files.size(data) + Files.size(indexOf(data));
+            for (Path data : segments) {
+                if (activeData != null && data.getFileName().toString().equals(String.format("segment-%013d.dat", activeCreated))) continue;
+                long bytes = Files.size(data) + Files.size(indexOf(data));
+                if (total <= MAX_ARCHIVE_BYTES && newestTime(indexOf(data)) >= cutoff) continue;
+                try {
+                    Files.delete(indexOf(data));
+                    Files.delete(data);
+                    total -= bytes;
+                } catch (IOException e) {
+                    System.err.println("Could not delete archive segment " + data.getFileName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private List<Path> segmentFiles() throws IOException {
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.filter(file -> file.getFileName().toString().matches("segment-\\d+\\.dat")).sorted().collect(Collectors.toList());
+            }
+        }
+
+        private static Path indexOf(Path data) {
+            String name = data.getFileName().toString();
+            return data.resolveSibling(name.substring(0, name.length() - ".dat".length()) + ".idx");
+        }
+
+        private static long newestTime(Path index) throws IOException {
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, 0);
+                return header.getLong(24);
+            }
+        }
+
+        private static boolean indexMatches(Path index, long dataLength) throws IOException {
+            if (Files.notExists(index) || Files.size(index) < BLOCKS_START) return false;
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, 0);
+                return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getLong(32) == dataLength
+                        && Files.size(index) >= BLOCKS_START + (long) header.getInt(12) * BLOCK_BYTES;
+            }
+        }
+
+        // Re-indexes a segment from its records, cutting off a record torn by a crash
+        private static void rebuildIndex(Path data, Path index) throws IOException {
+            SegmentIndex rebuilt = new SegmentIndex();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(data)))) {
+                long offset = 0;
+                while (true) {
+                    long length;
+                    int headerBytes = 0;
+                    try {
+                        long value = 0;
+                        int shift = 0, b;
+                        do {
+                            b = in.readUnsignedByte();
+                            headerBytes++;
+                            value |= (long) (b & 0x7F) << shift;
+                            shift += 7;
+                        } while ((b & 0x80) != 0);
+                        length = value;
+                        byte[] record = new byte[Math.toIntExact(length)];
+                        in.readFully(record);
+                        LogEntry entry = decode(ByteBuffer.wrap(record));
+                        rebuilt.add(entry.timeMillis, entry.eventId, offset, (int) (headerBytes + length));
+                        offset += headerBytes + length;
+                    } catch (EOFException | RuntimeException e) {
+                        break;
+                    }
+                }
+            }
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+                channel.truncate(rebuilt.dataLength);
+            }
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                rebuilt.write(channel);
+            }
+        }
+
+        private void saveMarks() throws IOException {
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, long[]> mark : marks.entrySet()) {
+                text.append(mark.getKey()).append('\t').append(mark.getValue()[0]).append('\t').append(mark.getValue()[1]).append('\n');
+            }
+            Path temporary = marksFile.resolveSibling("marks.tsv.tmp");
+            Files.writeString(temporary, text, StandardCharsets.UTF_8);
+            Files.move(temporary, marksFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // --- Record encoding: varint length, then time (8 bytes), zigzag varints for RecordId and event ID, and
+        // length-prefixed UTF-8 strings; the block is empty when it derives from the fields, the message is only stored
+        // when it differs from the block, and the host only when it is not this machine (records written before
+        // hosts existed simply end after the message) ---
+
+        static void encode(LogEntry entry, ByteArrayOutputStream out) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(entry.message.length() + 64);
+            for (int shift = 56; shift >= 0; shift -= 8) record.write((int) (entry.timeMillis >>> shift));
+            writeVarLong(record, zigzag(entry.recordId));
+            writeVarLong(record, zigzag(entry.eventId));
+            writeString(record, entry.logName);
+            writeString(record, entry.level);
+            writeString(record, entry.sourceIp);
+            writeString(record, entry.accountName);
+            writeString(record, entry.originalLine != null ? entry.originalLine : "");
+            boolean ownMessage = !entry.message.equals(entry.originalLine);
+            record.write(ownMessage ? 1 : 0);
+            if (ownMessage) writeString(record, entry.message);
+            if (!LOCAL_HOST.equals(entry.host)) writeString(record, entry.host);
+            writeVarLong(out, record.size());
+            out.writeBytes(record.toByteArray());
+        }
+
+        static LogEntry decode(ByteBuffer record) {
+            LogEntry entry = new LogEntry();
+            entry.timeMillis = record.getLong(); // Big endian, as written
+            entry.recordId = unzigzag(readVarLong(record));
+            entry.eventId = (int) unzigzag(readVarLong(record));
+            entry.logName = readString(record);
+            entry.level = readString(record);
+            entry.sourceIp = readString(record);
+            entry.accountName = readString(record);
+            String block = readString(record);
+            entry.originalLine = block.isEmpty() ? null : block;
+            entry.message = record.get() != 0 ? readString(record) : block;
+            if (record.hasRemaining()) entry.host = readString(record);
+            entry.timestamp = entry.originalLine != null ? LogEntry.timestampOf(entry.originalLine) : LogEntry.formatTimestamp(entry.timeMillis);
+            entry.searchText = entry.block().toLowerCase();
+            return entry;
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private static String readString(ByteBuffer in) {
+            int length = (int) readVarLong(in);
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+
+        private static void writeVarLong(ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private static long readVarLong(ByteBuffer in) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        private static long zigzag(long value) { return (value << 1) ^ (value >> 63); }
+        private static long unzigzag(long value) { return (value >>> 1) ^ -(value & 1); }
+
+        private static long signature(int eventId) {
+            return 1L << ((eventId * 0x9E3779B9) >>> 26); // One of 64 bits, by Fibonacci hashing
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new EOFException("archive segment ends early");
+                position += read;
+            }
+        }
+    }
+
+    // The previous session's view, written on exit and read on the next launch so events show before any fetch: the
+    // loaded events (archive record encoding plus anomaly type, so burst and spike rows survive), the filters, the
+    // refresh marks and the top talkers. Events are stored in chunks that decode in parallel on the parse pool.
+    static final class SessionSnapshot {
+        private static final int MAGIC = 0x4E414453; // "NADS"
+        private static final int VERSION = 4; // 2 added the host filter, 3 derived (empty) blocks, 4 top-talker errors; all read
+        private static final int CHUNK_RECORDS = 4096;
+
+        final List<LogEntry> entries; // Newest first
+        final String hostFilter, logNameFilter, anomalyFilter, textFilter;
+        final Map<String, HighWaterMark> highWaterMarks; // Keyed by hostLogKey
+        final TopTalkers topTalkers;
+
+        SessionSnapshot(List<LogEntry> entries, String hostFilter, String logNameFilter, String anomalyFilter, String textFilter,
+                        Map<String, HighWaterMark> highWaterMarks, TopTalkers topTalkers) {
+            this.entries = entries;
+            this.hostFilter = hostFilter;
+            this.logNameFilter = logNameFilter;
+            this.anomalyFilter = anomalyFilter;
+            this.textFilter = textFilter;
+            this.highWaterMarks = highWaterMarks;
+            this.topTalkers = topTalkers;
+        }
+
+        void write(Path file) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(hostFilter);
+                out.writeUTF(logNameFilter);
+                out.writeUTF(anomalyFilter);
+                out.writeUTF(textFilter);
+                out.writeInt(highWaterMarks.size());
+                for (Map.Entry<String, HighWaterMark> mark : highWaterMarks.entrySet()) {
+                    out.writeUTF(mark.getKey());
+                    out.writeLong(mark.getValue().recordId);
+                    out.writeLong(mark.getValue().since.toEpochMilli());
+                }
+                topTalkers.writeTo(out);
+                AnomalyType[] types = AnomalyType.values(); // By name, so added types do not shift stored ones
+                out.writeInt(types.length);
+                for (AnomalyType type : types) out.writeUTF(type.name());
+
+                out.writeInt((entries.size() + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+                for (int first = 0; first < entries.size(); first += CHUNK_RECORDS) {
+                    int count = Math.min(CHUNK_RECORDS, entries.size() - first);
+                    chunk.reset();
+                    for (LogEntry entry : entries.subList(first, first + count)) {
+                        chunk.write(entry.anomalyType.ordinal());
+                        EventArchive.encode(entry, chunk);
+                    }
+                    out.writeInt(count);
+                    out.writeInt(chunk.size());
+                    chunk.writeTo(out);
+                }
+            }
+            Files.move(temporary, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Null when there is no snapshot yet
+        static SessionSnapshot read(Path file) throws IOException {
+            if (Files.notExists(file)) return null;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                int version = in.readInt() == MAGIC ? in.readInt() : -1;
+                if (version < 1 || version > VERSION) throw new IOException(file.getFileName() + ": not a session snapshot");
+                String hostFilter = version >= 2 ? in.readUTF() : FILTER_ALL_HOSTS;
+                String logNameFilter = in.readUTF(), anomalyFilter = in.readUTF(), textFilter = in.readUTF();
+                Map<String, HighWaterMark> marks = new HashMap<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    marks.put(in.readUTF(), new HighWaterMark(in.readLong(), Instant.ofEpochMilli(in.readLong())));
+                }
+                TopTalkers talkers = new TopTalkers();
+                talkers.readFrom(in, version >= 4);
+                AnomalyType[] types = new AnomalyType[in.readInt()];
+                for (int i = 0; i < types.length; i++) {
+                    String name = in.readUTF();
+                    types[i] = Arrays.stream(AnomalyType.values()).filter(type -> type.name().equals(name)).findFirst().orElse(null);
+                }
+
+                List<byte[]> chunks = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    in.readInt(); // Record count, for readers that want to presize
+                    byte[] chunk = new byte[in.readInt()];
+                    in.readFully(chunk);
+                    chunks.add(chunk);
+                }
+                Stream<byte[]> chunkStream = ParseStage.PARALLELISM > 1 ? chunks.parallelStream() : chunks.stream();
+                List<LogEntry> entries = ParseStage.compute(() -> chunkStream
+                        .map(chunk -> decodeChunk(chunk, types))
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList())); // Encounter order = stored order = newest first
+                return new SessionSnapshot(entries, hostFilter, logNameFilter, anomalyFilter, textFilter, marks, talkers);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("snapshot restore interrupted");
+            } catch (RuntimeException e) {
+                throw new IOException(file.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        private static List<LogEntry> decodeChunk(byte[] chunk, AnomalyType[] types) {
+            List<LogEntry> entries = new ArrayList<>(CHUNK_RECORDS);
+            ByteBuffer records = ByteBuffer.wrap(chunk);
+            while (records.hasRemaining()) {
+                int typeIndex = records.get() & 0xFF;
+                int length = (int) EventArchive.readVarLong(records);
+                LogEntry entry = EventArchive.decode(records.slice(records.position(), length));
+                records.position(records.position() + length);
+                AnomalyType type = typeIndex < types.length ? types[typeIndex] : null;
+                entry.anomalyType = type != null ? type : classifyEntry(entry); // A type this version no longer has
+                entries.add(entry);
+            }
+            return entries;
+        }
+    }
+
+    // Splits Format-List output into one text block per event (every block starts with "TimeCreated :")
+    static class BlockFramer {
+        private final StringBuilder currentEntryText = new StringBuilder();
+        private final Consumer<String> blockSink;
+
+        BlockFramer(Consumer<String> blockSink) {
+            this.blockSink = blockSink;
+        }
+
+        void acceptLine(String line) {
+            if (CompactRecord.isRecord(line)) { // Already one whole record
+                finish();
+                blockSink.accept(line);
+                return;
+            }
+            boolean blank = isBlank(line);
+            if (blank && currentEntryText.length() > 0) {
+                if (isRecordStart(currentEntryText)) emitCurrent();
+                currentEntryText.setLength(0);
+            } else if (!blank) {
+                if (isRecordStart(line) && currentEntryText.length() > 0) {
+                    emitCurrent();
+                    currentEntryText.setLength(0);
+                }
+                currentEntryText.append(line).append("\n");
+            }
+        }
+
+        // Flushes the trailing block once the stream has ended
+        void finish() {
+            if (currentEntryText.length() > 0 && isRecordStart(currentEntryText)) emitCurrent();
+            currentEntryText.setLength(0);
+        }
+
+        private void emitCurrent() {
+            blockSink.accept(currentEntryText.toString().trim());
+        }
+
+        // Same test as "(?s)^TimeCreated\\s*:.*" without compiling a regex per line
+        static boolean isRecordStart(CharSequence text) {
+            String key = "TimeCreated";
+            if (text.length() <= key.length()) return false;
+            for (int i = 0; i < key.length(); i++) {
+                if (text.charAt(i) != key.charAt(i)) return false;
+            }
+            int i = key.length();
+            while (i < text.length() && isRegexSpace(text.charAt(i))) i++;
+            return i < text.length() && text.charAt(i) == ':';
+        }
+
+        private static boolean isBlank(String line) {
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) > ' ') return false;
+            }
+            return true;
+        }
+    }
+
+    // Compact wire format: one event per line, written by POWERSHELL_SELECT in place of Format-List.
+    //   @NAD1 <TAB> TimeCreated as FILETIME ticks (UTC) <TAB> RecordId <TAB> Id <TAB> Level number <TAB> LogName <TAB> Message
+    // Backslash, tab, CR and LF in the message are escaped as \\ \t \r \n, so a record never spans lines: nothing
+    // is padded or wrapped, framing is a prefix check, and decoding is a single scan that fills the LogEntry fields.
+    static final class CompactRecord {
+        static final String MARKER = "@NAD1\t";
+        static final String POWERSHELL_SELECT = " | ForEach-Object {"
+                + " $t = if ($_.TimeCreated) { $_.TimeCreated.ToFileTimeUtc() } else { 0 };"
+                + " '@NAD1' + \"`t\" + $t + \"`t\" + $_.RecordId + \"`t\" + $_.Id + \"`t\" + $_.Level + \"`t\" + $_.LogName + \"`t\""
+                + " + ([string]$_.Message).Replace('\\', '\\\\').Replace(\"`t\", '\\t').Replace(\"`r\", '\\r').Replace(\"`n\", '\\n') }";
+
+        // Events come in bursts that share a second, so each parse thread keeps the last timestamp it formatted
+        private static final ThreadLocal<LastTimestamp> LAST_TIMESTAMP = ThreadLocal.withInitial(LastTimestamp::new);
+
+        private static final class LastTimestamp {
+            long second = Long.MIN_VALUE;
+            String text;
+        }
+
+        private CompactRecord() {}
+
+        static boolean isRecord(String line) {
+            return line.startsWith(MARKER);
+        }
+
+        static LogEntry decode(String line) {
+            LogEntry entry = new LogEntry();
+            int start = MARKER.length();
+            int end = fieldEnd(line, start);
+            long fileTime = parseLong(line, start, end, 0);
+            if (fileTime > 0) {
+                entry.timeMillis = EvtxReader.fileTimeToEpochMillis(fileTime);
+                entry.timestamp = timestamp(entry.timeMillis);
+            }
+            end = fieldEnd(line, start = end + 1);
+            entry.recordId = parseLong(line, start, end, -1);
+            end = fieldEnd(line, start = end + 1);
+            long eventId = parseLong(line, start, end, -1);
+            entry.eventId = eventId > Integer.MAX_VALUE ? -2 : (int) eventId;
+            end = fieldEnd(line, start = end + 1);
+            entry.level = EvtxReader.levelDisplayName((int) parseLong(line, start, end, 4));
+            end = fieldEnd(line, start = end + 1);
+            if (end > start) entry.logName = line.substring(start, end);
+            entry.message = (start = end + 1) < line.length() ? unescape(line, start) : "";
+
+            if ("Security".equalsIgnoreCase(entry.logName) && LogEntry.SECURITY_DETAIL_IDS.contains(entry.eventId)) {
+                String ip = LogEntry.findSourceAddress(entry.message);
+                if (ip != null) entry.sourceIp = LogEntry.normalizeSourceIp(ip);
+                String account = LogEntry.findAccountName(entry.message);
+                if (account != null) entry.accountName = LogEntry.normalizeAccountName(account);
+            }
+            return entry; // The Format-List block derives from the fields
+        }
+
+        private static String timestamp(long millis) {
+            LastTimestamp last = LAST_TIMESTAMP.get();
+            long second = Math.floorDiv(millis, 1000);
+            if (second != last.second) {
+                last.text = EVENT_TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+                last.second = second;
+            }
+            return last.text;
+        }
+
+        private static int fieldEnd(String line, int start) {
+            if (start > line.length()) return line.length();
+            int end = line.indexOf('\t', start);
+            return end < 0 ? line.length() : end;
+        }
+
+        // Digits between start and end; fallback when the field is empty or not a plain number
+        private static long parseLong(String line, int start, int end, long fallback) {
+            if (start >= end || end - start > 18) return fallback;
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') return fallback;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private static String unescape(String line, int start) {
+            int escape = line.indexOf('\\', start);
+            if (escape < 0) return line.substring(start);
+            StringBuilder text = new StringBuilder(line.length() - start);
+            text.append(line, start, escape);
+            for (int i = escape; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c != '\\' || i + 1 == line.length()) {
+                    text.append(c);
+                    continue;
+                }
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    default: text.append(next); // \\ and anything unexpected
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    // Parses TimeCreated as Format-List prints it. Get-WinEvent formats dates with the machine's culture, so the
+    // default locale's short date + long time pattern is tried, then en-US and a few common culture layouts.
+    // Formatters are built once and are immutable, and always tried in that order, so an ambiguous date such as
+    // 03/04 reads the same way whatever came before it: the locale's pattern wins whenever it parses. Events come
+    // in bursts, so each thread also remembers the last minute it parsed and only reads the seconds digits on a hit.
+    static final class EventTimeParser {
+        private static final ZoneId ZONE = ZoneId.systemDefault();
+        private static final DateTimeFormatter[] FORMATS = buildFormats();
+        private static final ThreadLocal<MinuteCache> MINUTE_CACHE = ThreadLocal.withInitial(MinuteCache::new);
+
+        // Last text whose two digits after the final ':' were verified to be the seconds field
+        private static final class MinuteCache {
+            String text;
+            int secondsAt = -1;
+            long minuteMillis;
+        }
+
+        private EventTimeParser() {}
+
+        static long parse(String text) {
+            if (text == null || text.isEmpty()) return LogEntry.NO_TIME;
+            String normalized = text.replace('\u202F', ' ').replace('\u00A0', ' '); // Newer cultures put no-break spaces before AM/PM
+
+            int secondsAt = normalized.lastIndexOf(':') + 1;
+            if (secondsAt == 0 || secondsAt + 2 > normalized.length()
+                    || !isDigit(normalized.charAt(secondsAt)) || !isDigit(normalized.charAt(secondsAt + 1))) {
+                return parseFormatted(normalized);
+            }
+            int seconds = (normalized.charAt(secondsAt) - '0') * 10 + (normalized.charAt(secondsAt + 1) - '0');
+            MinuteCache cache = MINUTE_CACHE.get();
+            if (cache.secondsAt == secondsAt && cache.text.length() == normalized.length()
+                    && normalized.regionMatches(0, cache.text, 0, secondsAt)
+                    && normalized.regionMatches(secondsAt + 2, cache.text, secondsAt + 2, normalized.length() - secondsAt - 2)) {
+                return cache.minuteMillis + seconds * 1000L;
+            }
+
+            long millis = parseFormatted(normalized);
+            if (millis == LogEntry.NO_TIME) return millis;
+            // Only cache if changing those digits moves the result by whole seconds (i.e. they really are seconds)
+            int probe = seconds == 0 ? 1 : 0;
+            String probeText = normalized.substring(0, secondsAt) + "0" + probe + normalized.substring(secondsAt + 2);
+            long probeMillis = parseFormatted(probeText);
+            if (probeMillis != LogEntry.NO_TIME && probeMillis - millis == (probe - seconds) * 1000L) {
+                cache.text = normalized;
+                cache.secondsAt = secondsAt;
+                cache.minuteMillis = millis - seconds * 1000L;
+            }
+            return millis;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static long parseFormatted(String normalized) {
+            for (DateTimeFormatter format : FORMATS) {
+                ParsePosition position = new ParsePosition(0);
+                // Layouts that do not fit are turned down without the cost of an exception
+                if (format.parseUnresolved(normalized, position) == null || position.getIndex() != normalized.length()) continue;
+                try {
+                    return LocalDateTime.parse(normalized, format).atZone(ZONE).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    // Fits the layout but is not a valid date in it (e.g. month 13); try the next layout
+                }
+            }
+            return LogEntry.NO_TIME;
+        }
+
+        private static DateTimeFormatter[] buildFormats() {
+            Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+            String date = DateTimeFormatterBuilder.getLocalizedDateTimePattern(FormatStyle.SHORT, null, IsoChronology.INSTANCE, locale);
+            String time = DateTimeFormatterBuilder.getLocalizedDateTimePattern(null, FormatStyle.MEDIUM, IsoChronology.INSTANCE, locale);
+            date = date.replaceAll("y+", "yyyy"); // Windows short dates use four-digit years
+            time = time.replace('\u202F', ' ').replace('\u00A0', ' ');
+
+            Map<String, Locale> patterns = new LinkedHashMap<>();
+            patterns.put(date + " " + time, locale);
+            patterns.putIfAbsent("M/d/yyyy h:mm:ss a", Locale.US);
+            patterns.putIfAbsent("d/M/yyyy H:mm:ss", Locale.ROOT);
+            patterns.putIfAbsent("d.M.yyyy H:mm:ss", Locale.ROOT);
+            patterns.putIfAbsent("yyyy-M-d H:mm:ss", Locale.ROOT);
+            patterns.putIfAbsent("yyyy/M/d H:mm:ss", Locale.ROOT);
+
+            List<DateTimeFormatter> formats = new ArrayList<>();
+            for (Map.Entry<String, Locale> pattern : patterns.entrySet()) {
+                try {
+                    formats.add(new DateTimeFormatterBuilder().parseCaseInsensitive()
+                            .appendPattern(pattern.getKey()).toFormatter(pattern.getValue()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping timestamp pattern '" + pattern.getKey() + "': " + e.getMessage());
+                }
+            }
+            return formats.toArray(new DateTimeFormatter[0]);
+        }
+    }
+
+    // Matches the regex \s class: [ \t\n\x0B\f\r]
+    static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Anomaly rules loaded from a text file (defaults below). Rules are tried in order and the first match
+    // wins. Compiling resolves that order ahead of time for every (log, level, event ID) combination: event
+    // IDs map to a column (IDs named by exactly the same rules share one), and a byte table holds the
+    // resulting AnomalyType per (log, level, column). Classifying is then two small hash probes, a column load
+    // and a table load; only cells where a message rule could apply fall back to walking the rules.
+    static final class AnomalyRules {
+        static final String DEFAULT_RULES = """
+                # Network Anomaly Detector rules. The first matching line wins; edits are picked up while running.
+                #
+                #   log name | event IDs | level | message contains | anomaly type
+                #
+                # '*' or an empty field matches anything. Event IDs are comma-separated numbers or ranges
+                # (4720-4726); message text is matched case-insensitively. The anomaly type is an AnomalyType
+                # name (FAILED_LOGIN) or its display name (Sec: Failed Login). With an anomaly type selected in
+                # the filter, only the logs, event IDs and levels of the rules for that type are fetched.
+
+                # Security
+                Security | 4625                | * | | FAILED_LOGIN
+                Security | 4740                | * | | ACCOUNT_LOCKOUT
+                Security | 1102                | * | | AUDIT_LOG_CLEARED
+                Security | 4720, 4722, 4726    | * | | USER_ACCOUNT_CHANGE
+                Security | 4673                | * | | PRIVILEGE_ASSIGNED
+                Security | 4732, 4756, 4728    | * | | GROUP_MEMBERSHIP_CHANGE
+
+                # System
+                System   | 7034, 7031          | * | | SERVICE_CRASH
+                System   | 6008, 41            | * | | UNEXPECTED_SHUTDOWN
+
+                # Level fallback for everything else
+                *        | *                   | Critical | | CRITICAL_EVENT
+                *        | *                   | Error    | | ERROR_EVENT
+                *        | *                   | Warning  | | WARNING_EVENT
+                """;
+        private static final AnomalyType[] TYPES = AnomalyType.values();
+        // System/Level values of the level names; Information also covers 0 and provider-defined levels, so it is not pushed down
+        private static final Map<String, Integer> LEVEL_NUMBERS = Map.of("critical", 1, "error", 2, "warning", 3, "verbose", 5);
+        private static final int EVENT_ID_LIMIT = 65536; // Event IDs are 16-bit
+        private static final byte SCAN = -1;
+
+        private final List<Rule> rules;
+        private final String[] logNames;  // Logs named by some rule; index 0 stands for every other log
+        private final String[] levels;    // Likewise for levels
+        private final int[] logNameSlots, levelSlots; // Hash tables over the names, so unnamed values cost no compare
+        private final char[] idColumns = new char[EVENT_ID_LIMIT]; // Column 0: IDs no rule names
+        private final int columnCount;
+        private final byte[] table;       // [(log * levels.length + level) * columnCount + column] -> ordinal or SCAN
+
+        private static final class Rule {
+            final String logName;     // null = any
+            final BitSet eventIds;    // null = any
+            final String level;       // null = any
+            final String messageText; // Lower-case; null = any
+            final AnomalyType type;
+
+            Rule(String logName, BitSet eventIds, String level, String messageText, AnomalyType type) {
+                this.logName = logName;
+                this.eventIds = eventIds;
+                this.level = level;
+                this.messageText = messageText;
+                this.type = type;
+            }
+
+            boolean matches(String logName, int eventId, String level) {
+                return (this.logName == null || this.logName.equalsIgnoreCase(logName))
+                        && (eventIds == null || (eventId >= 0 && eventIds.get(eventId)))
+                        && (this.level == null || this.level.equalsIgnoreCase(level));
+            }
+        }
+
+        private AnomalyRules(List<Rule> rules) {
+            this.rules = rules;
+            logNames = distinctNames(rules, rule -> rule.logName);
+            levels = distinctNames(rules, rule -> rule.level);
+            logNameSlots = slotTable(logNames);
+            levelSlots = slotTable(levels);
+
+            // Give each distinct set of naming rules its own column
+            Map<BitSet, Integer> columns = new HashMap<>();
+            columns.put(new BitSet(), 0);
+            List<Integer> representatives = new ArrayList<>(List.of(-1)); // An event ID per column
+            BitSet namedIds = new BitSet();
+            for (Rule rule : rules) if (rule.eventIds != null) namedIds.or(rule.eventIds);
+            for (int id = namedIds.nextSetBit(0); id >= 0; id = namedIds.nextSetBit(id + 1)) {
+                BitSet namedBy = new BitSet(rules.size());
+                for (int r = 0; r < rules.size(); r++) {
+                    if (rules.get(r).eventIds != null && rules.get(r).eventIds.get(id)) namedBy.set(r);
+                }
+                Integer column = columns.get(namedBy);
+                if (column == null) {
+                    column = columns.size();
+                    columns.put(namedBy, column);
+                    representatives.add(id);
+                }
+                idColumns[id] = (char) (int) column;
+            }
+            columnCount = columns.size();
+
+            table = new byte[logNames.length * levels.length * columnCount];
+            for (int log = 0; log < logNames.length; log++) {
+                for (int level = 0; level < levels.length; level++) {
+                    for (int column = 0; column < columnCount; column++) {
+                        table[(log * levels.length + level) * columnCount + column] =
+                                resolve(logNames[log], representatives.get(column), levels[level]);
+                    }
+                }
+            }
+        }
+
+        // First rule that matches the cell; a message rule in the way means it depends on the event's text
+        private byte resolve(String logName, int eventId, String level) {
+            for (Rule rule : rules) {
+                if (!rule.matches(logName, eventId, level)) continue;
+                return rule.messageText != null ? SCAN : (byte) rule.type.ordinal();
+            }
+            return (byte) AnomalyType.NONE.ordinal();
+        }
+
+        // Index 0 is null, i.e. a name no rule mentions
+        private static String[] distinctNames(List<Rule> rules, java.util.function.Function<Rule, String> name) {
+            List<String> names = new ArrayList<>();
+            names.add(null);
+            for (Rule rule : rules) {
+                String value = name.apply(rule);
+                if (value != null && names.stream().noneMatch(value::equalsIgnoreCase)) names.add(value);
+            }
+            return names.toArray(new String[0]);
+        }
+
+        // Open addressing on length and first letter, which equalsIgnoreCase cannot disagree with; slot value = index
+        private static int[] slotTable(String[] names) {
+            int[] slots = new int[Integer.highestOneBit(Math.max(1, names.length) * 4 - 1) << 1];
+            for (int i = 1; i < names.length; i++) {
+                int slot = nameHash(names[i]) & (slots.length - 1);
+                while (slots[slot] != 0) slot = (slot + 1) & (slots.length - 1);
+                slots[slot] = i;
+            }
+            return slots;
+        }
+
+        private static int nameHash(String name) {
+            char first = name.charAt(0);
+            int folded = first < 0x80 ? first | 0x20 : Character.toLowerCase(Character.toUpperCase(first)); // ASCII without the table lookups
+            int h = name.length() * 31 + folded;
+            return h ^ (h >>> 4);
+        }
+
+        private static int indexOf(String[] names, int[] slots, String name) {
+            if (name == null || name.isEmpty()) return 0;
+            for (int slot = nameHash(name) & (slots.length - 1); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                if (names[slots[slot]].equalsIgnoreCase(name)) return slots[slot];
+            }
+            return 0;
+        }
+
+        AnomalyType classify(String logName, int eventId, String level, String message) {
+            int column = eventId >= 0 && eventId < EVENT_ID_LIMIT ? idColumns[eventId] : 0;
+            byte type = table[(indexOf(logNames, logNameSlots, logName) * levels.length + indexOf(levels, levelSlots, level)) * columnCount + column];
+            if (type != SCAN) return TYPES[type];
+            for (Rule rule : rules) {
+                if (rule.matches(logName, eventId, level)
+                        && (rule.messageText == null || (message != null && TextIndex.containsLowerCase(message, rule.messageText)))) {
+                    return rule.type;
+                }
+            }
+            return AnomalyType.NONE;
+        }
+
+        int size() { return rules.size(); }
+
+        // Source-side conditions (inside System[...]) for the events of a log that a rule typed `type` could match:
+        // each rule's event IDs and level, packed into as few Selects as MAX_XPATH_TERMS allows with two terms left
+        // for a refresh mark (its RecordId, and its time when it has no RecordId). Message text is not pushed down, which only widens the result. Null when some such
+        // rule bounds neither IDs nor level; empty when no rule applies to the log.
+        List<String> sourceConditions(String logName, AnomalyType type) {
+            Map<Integer, BitSet> idsByLevel = new TreeMap<>(); // Level number (-1 = any) -> IDs, null = any ID
+            for (Rule rule : rules) {
+                if (rule.type != type || (rule.logName != null && !rule.logName.equalsIgnoreCase(logName))) continue;
+                int level = rule.level == null ? -1 : LEVEL_NUMBERS.getOrDefault(rule.level.toLowerCase(Locale.ROOT), -1);
+                if (rule.eventIds == null && level < 0) return null;
+                if (rule.eventIds == null) {
+                    idsByLevel.put(level, null);
+                } else if (!idsByLevel.containsKey(level)) {
+                    idsByLevel.put(level, (BitSet) rule.eventIds.clone());
+                } else if (idsByLevel.get(level) != null) {
+                    idsByLevel.get(level).or(rule.eventIds);
+                }
+            }
+
+            int budget = MAX_XPATH_TERMS - 2;
+            List<String> clauses = new ArrayList<>();
+            List<Integer> costs = new ArrayList<>();
+            idsByLevel.forEach((level, ids) -> {
+                if (ids == null) {
+                    clauses.add("Level=" + level);
+                    costs.add(1);
+                    return;
+                }
+                List<String> terms = new ArrayList<>();
+                List<Integer> termCosts = new ArrayList<>();
+                idTerms(ids, terms, termCosts);
+                if (level < 0) {
+                    clauses.addAll(terms);
+                    costs.addAll(termCosts);
+                    return;
+                }
+                List<String> group = new ArrayList<>();
+                int groupCost = 0;
+                for (int i = 0; i <= terms.size(); i++) {
+                    if (!group.isEmpty() && (i == terms.size() || groupCost + termCosts.get(i) > budget - 1)) {
+                        clauses.add("((" + String.join(" or ", group) + ") and Level=" + level + ")");
+                        costs.add(groupCost + 1);
+                        group.clear();
+                        groupCost = 0;
+                    }
+                    if (i == terms.size()) break;
+                    group.add(terms.get(i));
+                    groupCost += termCosts.get(i);
+                }
+            });
+
+            return packSelects(clauses, costs);
+        }
+
+        // Source-side conditions for every event ID the rules name for this log specifically, levels aside: the
+        // dedicated query that reaches those anomalies further back than a load of the whole log does. Empty when
+        // no rule names IDs for the log.
+        List<String> eventIdConditions(String logName) {
+            BitSet ids = new BitSet();
+            for (Rule rule : rules) {
+                if (rule.logName != null && rule.eventIds != null && rule.logName.equalsIgnoreCase(logName)) ids.or(rule.eventIds);
+            }
+            List<String> terms = new ArrayList<>();
+            List<Integer> costs = new ArrayList<>();
+            idTerms(ids, terms, costs);
+            return packSelects(terms, costs);
+        }
+
+        // Joins clauses with "or" into as few Selects as MAX_XPATH_TERMS allows, two terms left for a refresh mark
+        private static List<String> packSelects(List<String> clauses, List<Integer> costs) {
+            int budget = MAX_XPATH_TERMS - 2;
+            List<String> conditions = new ArrayList<>();
+            List<String> select = new ArrayList<>();
+            int used = 0;
+            for (int i = 0; i < clauses.size(); i++) {
+                if (used + costs.get(i) > budget) {
+                    conditions.add(String.join(" or ", select));
+                    select.clear();
+                    used = 0;
+                }
+                select.add(clauses.get(i));
+                used += costs.get(i);
+            }
+            if (!select.isEmpty()) conditions.add(String.join(" or ", select));
+            return conditions;
+        }
+
+        // One comparison per event ID, or a range (two) for runs of three or more
+        private static void idTerms(BitSet ids, List<String> terms, List<Integer> costs) {
+            for (int from = ids.nextSetBit(0); from >= 0; from = ids.nextSetBit(ids.nextClearBit(from))) {
+                int to = ids.nextClearBit(from) - 1;
+                if (to - from >= 2) {
+                    terms.add("(EventID>=" + from + " and EventID<=" + to + ")");
+                    costs.add(2);
+                } else {
+                    for (int id = from; id <= to; id++) {
+                        terms.add("EventID=" + id);
+                        costs.add(1);
+                    }
+                }
+            }
+        }
+
+        static AnomalyRules defaults() { return parse(DEFAULT_RULES); }
+
+        static AnomalyRules load(Path file) throws IOException {
+            try {
+                return parse(Files.readString(file, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        static AnomalyRules parse(String text) {
+            List<Rule> rules = new ArrayList<>();
+            String[] lines = text.split("\r?\n");
+            for (int n = 0; n < lines.length; n++) {
+                String line = lines[n].strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\|", -1);
+                if (fields.length != 5) {
+                    throw new IllegalArgumentException("line " + (n + 1) + ": expected 5 '|'-separated fields, found " + fields.length);
+                }
+                String typeName = fields[4].strip();
+                AnomalyType type = AnomalyType.fromDisplayName(typeName);
+                if (type == null) {
+                    try {
+                        type = AnomalyType.valueOf(typeName.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("line " + (n + 1) + ": unknown anomaly type '" + typeName + "'");
+                    }
+                }
+                if (type.isAggregate()) {
+                    throw new IllegalArgumentException("line " + (n + 1) + ": " + type + " is raised by the burst detector, not by rules");
+                }
+                String message = wildcard(fields[3]);
+                rules.add(new Rule(wildcard(fields[0]), parseEventIds(fields[1], n + 1), wildcard(fields[2]),
+                                   message != null ? message.toLowerCase() : null, type));
+            }
+            return new AnomalyRules(rules);
+        }
+
+        private static String wildcard(String field) {
+            String value = field.strip();
+            return value.isEmpty() || value.equals("*") ? null : value;
+        }
+
+        private static BitSet parseEventIds(String field, int lineNumber) {
+            if (wildcard(field) == null) return null;
+            BitSet ids = new BitSet();
+            for (String part : field.split(",")) {
+                String item = part.strip();
+                try {
+                    int dash = item.indexOf('-', 1);
+                    int first = Integer.parseInt((dash < 0 ? item : item.substring(0, dash)).strip());
+                    int last = dash < 0 ? first : Integer.parseInt(item.substring(dash + 1).strip());
+                    if (first < 0 || last >= EVENT_ID_LIMIT || first > last) throw new NumberFormatException();
+                    ids.set(first, last + 1);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": bad event ID '" + item + "'");
+                }
+            }
+            return ids;
+        }
+    }
+
+    // Watches the rules file and hands each successfully compiled version to onReload; a file that fails to
+    // parse is reported through onError and the previous rules stay in effect
+    static class RuleFileWatcher implements Runnable {
+        private static final long SETTLE_MS = 200; // Editors often save in several writes
+
+        private final Path file;
+        private final Consumer<AnomalyRules> onReload;
+        private final Consumer<String> onError;
+
+        RuleFileWatcher(Path file, Consumer<AnomalyRules> onReload, Consumer<String> onError) {
+            this.file = file.toAbsolutePath();
+            this.onReload = onReload;
+            this.onError = onError;
+        }
+
+        @Override
+        public void run() {
+            try (java.nio.file.WatchService watcher = file.getFileSystem().newWatchService()) {
+                file.getParent().register(watcher, java.nio.file.StandardWatchEventKinds.ENTRY_CREATE,
+                                          java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
+                while (true) {
+                    java.nio.file.WatchKey key = watcher.take();
+                    boolean changed = key.pollEvents().stream().anyMatch(event -> file.getFileName().equals(event.context()));
+                    key.reset();
+                    if (!changed) continue;
+                    Thread.sleep(SETTLE_MS);
+                    for (java.nio.file.WatchKey more = watcher.poll(); more != null; more = watcher.poll()) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    try {
+                        onReload.accept(AnomalyRules.load(file));
+                    } catch (IOException e) {
+                        onError.accept(e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                onError.accept("cannot watch " + file + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Turns runs of failed logons (4625) and lockouts (4740) into one aggregate alert per burst. Each source IP and
+    // each account keeps a ring of per-bucket counts spanning one window, so an event costs a map lookup and a bucket
+    // increment. Keys idle for longer than IDLE_MILLIS (by event time) are dropped, and at most MAX_TRACKED_KEYS are
+    // kept, least recently updated first out. Counts are relative to each key's newest event, and an event more than
+    // a window older than that (or more than IDLE_MILLIS older than the newest event overall) is ignored, so events
+    // must arrive oldest first. Refreshes read each log oldest first, and events decoded in one go (drop folders,
+    // --input, imports, history) are fed oldest first. A full load streams newest first, so IngestEngine holds its
+    // events back from the detectors and feeds them oldest first once the query ends.
+    static final class BurstDetector {
+        static final int BUCKETS = 10;
+        static final long WINDOW_MILLIS = Math.max(BUCKETS, Long.getLong("nad.burst.windowSeconds", 300) * 1000);
+        static final long BUCKET_MILLIS = WINDOW_MILLIS / BUCKETS;
+        static final int FAILED_LOGON_THRESHOLD = Math.max(1, Integer.getInteger("nad.burst.failedLogons", 20));
+        static final int LOCKOUT_THRESHOLD = Math.max(1, Integer.getInteger("nad.burst.lockouts", 3));
+        static final long IDLE_MILLIS = Math.max(WINDOW_MILLIS, Long.getLong("nad.burst.idleMinutes", 60) * 60_000);
+        static final int MAX_TRACKED_KEYS = Math.max(1, Integer.getInteger("nad.burst.maxKeys", 10_000));
+
+        private static final class WindowCounter {
+            final int[] counts = new int[BUCKETS]; // Slot = bucket number mod BUCKETS
+            long newestBucket;
+            long newestMillis;
+            long alertedBucket = Long.MIN_VALUE; // newestBucket when the last alert fired
+            int total;
+
+            WindowCounter(long millis) {
+                newestBucket = Math.floorDiv(millis, BUCKET_MILLIS);
+                newestMillis = millis;
+            }
+
+            // Counts the event; false when it is older than the window
+            boolean add(long millis) {
+                long bucket = Math.floorDiv(millis, BUCKET_MILLIS);
+                if (bucket > newestBucket) {
+                    long steps = Math.min(bucket - newestBucket, BUCKETS);
+                    for (long b = bucket - steps + 1; b <= bucket; b++) {
+                        int slot = (int) Math.floorMod(b, (long) BUCKETS);
+                        total -= counts[slot];
+                        counts[slot] = 0;
+                    }
+                    newestBucket = bucket;
+                } else if (bucket <= newestBucket - BUCKETS) {
+                    return false;
+                }
+                newestMillis = Math.max(newestMillis, millis);
+                counts[(int) Math.floorMod(bucket, (long) BUCKETS)]++;
+                total++;
+                return true;
+            }
+
+            // True once per window: the next alert needs the window to have moved past this one
+            boolean shouldAlert(int threshold) {
+                if (total < threshold || alertedBucket > newestBucket - BUCKETS) return false;
+                alertedBucket = newestBucket;
+                return true;
+            }
+        }
+
+        // Access order: the eldest entry is the least recently updated key
+        private final LinkedHashMap<String, WindowCounter> counters = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WindowCounter> eldest) {
+                return size() > MAX_TRACKED_KEYS;
+            }
+        };
+        private long newestMillis = LogEntry.NO_TIME;
+
+        // Feeds one classified event; returns the alert entry when it completes a burst, otherwise null
+        synchronized LogEntry accept(LogEntry entry) {
+            AnomalyType burstType;
+            int threshold;
+            if (entry.anomalyType == AnomalyType.FAILED_LOGIN) {
+                burstType = AnomalyType.BRUTE_FORCE_BURST;
+                threshold = FAILED_LOGON_THRESHOLD;
+            } else if (entry.anomalyType == AnomalyType.ACCOUNT_LOCKOUT) {
+                burstType = AnomalyType.LOCKOUT_BURST;
+                threshold = LOCKOUT_THRESHOLD;
+            } else {
+                return null;
+            }
+            long millis = entry.timeMillis;
+            if (millis == LogEntry.NO_TIME) return null;
+            if (millis > newestMillis) newestMillis = millis;
+            else if (millis < newestMillis - IDLE_MILLIS) return null;
+            evictIdle();
+
+            LogEntry alert = null;
+            if (!"N/A".equals(entry.sourceIp)) {
+                alert = count(burstType, "from " + entry.sourceIp, entry, millis, threshold);
+            }
+            if (!"N/A".equals(entry.accountName)) {
+                LogEntry accountAlert = count(burstType, "for account " + entry.accountName, entry, millis, threshold);
+                if (alert == null) alert = accountAlert;
+            }
+            return alert;
+        }
+
+        private LogEntry count(AnomalyType burstType, String subject, LogEntry entry, long millis, int threshold) {
+            String key = burstType.ordinal() + " " + subject;
+            WindowCounter counter = counters.get(key);
+            if (counter == null) counters.put(key, counter = new WindowCounter(millis));
+            if (!counter.add(millis) || !counter.shouldAlert(threshold)) return null;
+            return alertEntry(burstType, subject, entry, counter, threshold);
+        }
+
+        // Entries are updated in roughly time order, so idle keys collect at the head of the access order
+        private void evictIdle() {
+            Iterator<WindowCounter> it = counters.values().iterator();
+            while (it.hasNext() && it.next().newestMillis < newestMillis - IDLE_MILLIS) it.remove();
+        }
+
+        synchronized void clear() {
+            counters.clear();
+            newestMillis = LogEntry.NO_TIME;
+        }
+
+        // Dated at the newest event of the window, shaped like a Format-List block so search and export treat it alike
+        private static LogEntry alertEntry(AnomalyType burstType, String subject, LogEntry trigger, WindowCounter counter, int threshold) {
+            LogEntry alert = new LogEntry();
+            alert.timeMillis = counter.newestMillis;
+            alert.timestamp = EVENT_TIME_FORMAT.format(Instant.ofEpochMilli(counter.newestMillis));
+            alert.logName = trigger.logName;
+            alert.eventId = trigger.eventId;
+            alert.level = "Warning";
+            alert.sourceIp = trigger.sourceIp;
+            alert.accountName = trigger.accountName;
+            alert.anomalyType = burstType;
+            String what = burstType == AnomalyType.BRUTE_FORCE_BURST ? "failed logons" : "account lockouts";
+            alert.message = String.format("%s: %d %s %s within %d s (threshold %d)", burstType.getDisplayName(),
+                                          counter.total, what, subject, WINDOW_MILLIS / 1000, threshold);
+            alert.originalLine = "TimeCreated      : " + alert.timestamp
+                    + "\nLogName          : " + alert.logName
+                    + "\nId               : " + alert.eventId
+                    + "\nLevelDisplayName : " + alert.level
+                    + "\nMessage          : " + alert.message;
+            alert.searchText = alert.originalLine.toLowerCase();
+            return alert;
+        }
+    }
+
+    // Learns the usual rate of every (log, event ID, level) stream and flags a bucket that runs far above it. Each
+    // stream keeps an exponentially weighted mean and variance of its per-bucket counts (Finch's incremental form), so
+    // state and update cost are constant per stream; buckets without events count as zero. Each log's events must
+    // be folded in time order, which IngestEngine sees to. The state is saved after every fetch and reloaded on start.
+    static final class RateBaseline {
+        static final long BUCKET_MILLIS = Math.max(1, Long.getLong("nad.baseline.bucketMinutes", 5)) * 60_000;
+        static final double ALPHA = Double.parseDouble(System.getProperty("nad.baseline.alpha", "0.1"));
+        static final double SIGMAS = Double.parseDouble(System.getProperty("nad.baseline.sigmas", "3"));
+        static final int WARMUP_BUCKETS = 12; // A stream needs this much history before it can spike
+        static final int MIN_SPIKE_COUNT = 5; // A bucket with fewer events is never a spike
+        static final double MIN_STDDEV = 1.0; // Near-constant streams would otherwise spike on a single extra event
+        static final int MAX_STREAMS = 4096;
+        private static final int ZERO_FOLD_LIMIT = 256; // After this many empty buckets the old mean has decayed away
+
+        private static final class StreamState {
+            final String logName, level;
+            final int eventId;
+            long bucket; // Open bucket, still counting
+            int count;
+            double mean, variance;
+            int buckets; // Closed buckets folded so far
+            boolean alerted; // Open bucket already reported
+
+            StreamState(String logName, int eventId, String level, long bucket) {
+                this.logName = logName;
+                this.eventId = eventId;
+                this.level = level;
+                this.bucket = bucket;
+            }
+
+            void advanceTo(long newBucket) {
+                fold(count);
+                long empty = Math.min(newBucket - bucket - 1, ZERO_FOLD_LIMIT);
+                for (long i = 0; i < empty; i++) fold(0);
+                bucket = newBucket;
+                count = 0;
+                alerted = false;
+            }
+
+            private void fold(int x) {
+                if (buckets == 0) {
+                    mean = x;
+                } else {
+                    double diff = x - mean, increment = ALPHA * diff;
+                    mean += increment;
+                    variance = (1 - ALPHA) * (variance + diff * increment);
+                }
+                if (buckets < Integer.MAX_VALUE) buckets++;
+            }
+
+            boolean isSpike() {
+                return buckets >= WARMUP_BUCKETS && count >= MIN_SPIKE_COUNT
+                        && count > mean + SIGMAS * Math.max(Math.sqrt(variance), MIN_STDDEV);
+            }
+        }
+
+        // Access order: past MAX_STREAMS the stream updated longest ago is dropped
+        private final LinkedHashMap<String, StreamState> streams = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StreamState> eldest) {
+                return size() > MAX_STREAMS;
+            }
+        };
+        // Per log, the (time, RecordId) of the newest event folded; older ones were counted already (e.g. before a restart)
+        private final Map<String, long[]> folded = new HashMap<>();
+
+        // Folds one event; returns the alert entry when it makes its bucket a spike, otherwise null
+        synchronized LogEntry accept(LogEntry entry) {
+            if (entry.eventId <= 0 || entry.timeMillis == LogEntry.NO_TIME || entry.anomalyType.isAggregate()) return null;
+            long[] mark = folded.get(entry.logName);
+            if (mark != null && EventStore.compareKeys(entry.timeMillis, entry.recordId, mark[0], mark[1]) <= 0) return null;
+            folded.put(entry.logName, new long[] {entry.timeMillis, entry.recordId});
+
+            long bucket = Math.floorDiv(entry.timeMillis, BUCKET_MILLIS);
+            String key = entry.logName + '\t' + entry.eventId + '\t' + entry.level;
+            StreamState state = streams.get(key);
+            if (state == null) {
+                streams.put(key, state = new StreamState(entry.logName, entry.eventId, entry.level, bucket));
+            } else if (bucket > state.bucket) {
+                state.advanceTo(bucket);
+            } else if (bucket < state.bucket) {
+                return null; // Bucket already closed
+            }
+            state.count++;
+            if (state.alerted || !state.isSpike()) return null;
+            state.alerted = true;
+            return spikeEntry(state, entry.timeMillis);
+        }
+
+        // Dated at the event that crossed the threshold, shaped like a Format-List block
+        private static LogEntry spikeEntry(StreamState state, long millis) {
+            LogEntry spike = new LogEntry();
+            spike.timeMillis = millis;
+            spike.timestamp = EVENT_TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+            spike.logName = state.logName;
+            spike.eventId = state.eventId;
+            spike.level = state.level;
+            spike.anomalyType = AnomalyType.RATE_SPIKE;
+            spike.message = String.format(Locale.ROOT, "%s: %d or more events within %d min, usual %.1f ± %.1f",
+                                          AnomalyType.RATE_SPIKE.getDisplayName(), state.count, BUCKET_MILLIS / 60_000,
+                                          state.mean, Math.sqrt(state.variance));
+            spike.originalLine = "TimeCreated      : " + spike.timestamp
+                    + "\nLogName          : " + spike.logName
+                    + "\nId               : " + spike.eventId
+                    + "\nLevelDisplayName : " + spike.level
+                    + "\nMessage          : " + spike.message;
+            spike.searchText = spike.originalLine.toLowerCase();
+            return spike;
+        }
+
+        // Tab-separated text; written to a temporary file first so a crash never leaves half a baseline
+        synchronized void save(Path file) throws IOException {
+            StringBuilder text = new StringBuilder("# Event rate baselines, rewritten after every fetch\n");
+            text.append("bucketMillis\t").append(BUCKET_MILLIS).append('\n');
+            for (Map.Entry<String, long[]> mark : folded.entrySet()) {
+                text.append("folded\t").append(mark.getKey()).append('\t').append(mark.getValue()[0])
+                    .append('\t').append(mark.getValue()[1]).append('\n');
+            }
+            for (StreamState state : streams.values()) {
+                text.append("stream\t").append(state.logName).append('\t').append(state.eventId).append('\t').append(state.level)
+                    .append('\t').append(state.bucket).append('\t').append(state.count).append('\t').append(state.mean)
+                    .append('\t').append(state.variance).append('\t').append(state.buckets).append('\n');
+            }
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temporary, text, StandardCharsets.UTF_8);
+            Files.move(temporary, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Replaces the state with the file's; a missing file, or one written with another bucket size, leaves it empty
+        synchronized void load(Path file) throws IOException {
+            streams.clear();
+            folded.clear();
+            if (Files.notExists(file)) return;
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            try {
+                for (String line : lines) {
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    String[] fields = line.split("\t", -1);
+                    switch (fields[0]) {
+                        case "bucketMillis":
+                            if (Long.parseLong(fields[1]) != BUCKET_MILLIS) return;
+                            break;
+                        case "folded":
+                            folded.put(fields[1], new long[] {Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+                            break;
+                        case "stream":
+                            StreamState state = new StreamState(fields[1], Integer.parseInt(fields[2]), fields[3], Long.parseLong(fields[4]));
+                            state.count = Integer.parseInt(fields[5]);
+                            state.mean = Double.parseDouble(fields[6]);
+                            state.variance = Double.parseDouble(fields[7]);
+                            state.buckets = Integer.parseInt(fields[8]);
+                            state.alerted = true; // Reported (or not) before the restart
+                            streams.put(fields[1] + '\t' + fields[2] + '\t' + fields[3], state);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown record '" + fields[0] + "'");
+                    }
+                }
+            } catch (RuntimeException e) {
+                streams.clear();
+                folded.clear();
+                throw new IOException(file.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Fixed-memory frequency summary. Space-Saving tracks the CAPACITY heaviest keys (an untracked key takes over the
+    // lightest slot and inherits its count as possible overcount), and a Count-Min sketch bounds every key's count
+    // from above; reported counts are the smaller of the two. A tracked key's true count lies between its count less
+    // its error and its count; an untracked one's is at most the lightest count. Summaries of separate streams merge
+    // into one with the same bounds.
+    static final class HeavyHitters {
+        static final int CAPACITY = 64;
+        private static final int DEPTH = 4, WIDTH = 1 << 11; // Power of two, indexed by masking
+
+        private final String[] keys = new String[CAPACITY]; // Min-heap on counts: slot 0 is the lightest key
+        private final long[] counts = new long[CAPACITY];
+        private final long[] errors = new long[CAPACITY]; // How much of each count may be overcount
+        private final Map<String, Integer> slots = new HashMap<>(CAPACITY * 2);
+        private final long[] sketch = new long[DEPTH * WIDTH];
+        private int size;
+
+        void add(String key) {
+            int hash = mix(key.hashCode());
+            for (int row = 0; row < DEPTH; row++) sketch[sketchIndex(hash, row)]++;
+            track(key, 1, 0);
+        }
+
+        // Adds other's counts into this summary (the mergeable Space-Saving of Agarwal et al.). A key one side does not
+        // track may have been counted there up to that side's lightest count (nothing while it has free slots), so it
+        // is credited that much, as count and as error; of the union, the CAPACITY heaviest keys stay.
+        void merge(HeavyHitters other) {
+            for (int i = 0; i < sketch.length; i++) sketch[i] += other.sketch[i];
+            long untrackedHere = lightest(), untrackedThere = other.lightest();
+            Map<String, long[]> union = new HashMap<>((size + other.size) * 2); // Key -> count, error
+            for (int slot = 0; slot < size; slot++) {
+                union.put(keys[slot], new long[] {counts[slot] + untrackedThere, errors[slot] + untrackedThere});
+            }
+            for (int slot = 0; slot < other.size; slot++) {
+                long[] merged = union.get(other.keys[slot]);
+                if (merged == null) {
+                    union.put(other.keys[slot], new long[] {other.counts[slot] + untrackedHere, other.errors[slot] + untrackedHere});
+                } else {
+                    merged[0] += other.counts[slot] - untrackedThere;
+                    merged[1] += other.errors[slot] - untrackedThere;
+                }
+            }
+            List<Map.Entry<String, long[]>> heaviest = new ArrayList<>(union.entrySet());
+            heaviest.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed());
+            clearTracked();
+            for (Map.Entry<String, long[]> entry : heaviest.subList(0, Math.min(CAPACITY, heaviest.size()))) {
+                track(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+
+        // Most an untracked key can have been counted
+        private long lightest() {
+            return size < CAPACITY ? 0 : counts[0];
+        }
+
+        void clear() {
+            clearTracked();
+            Arrays.fill(sketch, 0);
+        }
+
+        private void clearTracked() {
+            Arrays.fill(keys, null);
+            Arrays.fill(counts, 0);
+            Arrays.fill(errors, 0);
+            slots.clear();
+            size = 0;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int slot = 0; slot < size; slot++) {
+                out.writeUTF(keys[slot]);
+                out.writeLong(counts[slot]);
+                out.writeLong(errors[slot]);
+            }
+            for (long cell : sketch) out.writeLong(cell);
+        }
+
+        // Summaries written without errors count them as all overcount
+        void readFrom(DataInputStream in, boolean withErrors) throws IOException {
+            clear();
+            int tracked = in.readInt();
+            for (int i = 0; i < tracked; i++) {
+                String key = in.readUTF();
+                long count = in.readLong();
+                track(key, count, withErrors ? in.readLong() : count);
+            }
+            for (int i = 0; i < sketch.length; i++) sketch[i] = in.readLong();
+        }
+
+        // Tracked keys with their count and error, lightest first
+        List<Map.Entry<String, long[]>> tracked() {
+            List<Map.Entry<String, long[]>> tracked = new ArrayList<>(size);
+            for (int slot = 0; slot < size; slot++) tracked.add(Map.entry(keys[slot], new long[] {counts[slot], errors[slot]}));
+            tracked.sort(Comparator.comparingLong(entry -> entry.getValue()[0]));
+            return tracked;
+        }
+
+        // Up to n keys, heaviest first
+        List<Map.Entry<String, Long>> top(int n) {
+            List<Map.Entry<String, Long>> top = new ArrayList<>(size);
+            for (int slot = 0; slot < size; slot++) {
+                top.add(Map.entry(keys[slot], Math.min(counts[slot], estimate(keys[slot]))));
+            }
+            top.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            return top.size() > n ? top.subList(0, n) : top;
+        }
+
+        long estimate(String key) {
+            int hash = mix(key.hashCode());
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) estimate = Math.min(estimate, sketch[sketchIndex(hash, row)]);
+            return estimate;
+        }
+
+        private void track(String key, long n, long error) {
+            Integer slot = slots.get(key);
+            if (slot != null) {
+                counts[slot] += n;
+                errors[slot] += error;
+                siftDown(slot);
+            } else if (size < CAPACITY) {
+                keys[size] = key;
+                counts[size] = n;
+                errors[size] = error;
+                slots.put(key, size);
+                siftUp(size++);
+            } else {
+                slots.remove(keys[0]);
+                keys[0] = key;
+                errors[0] = counts[0] + error; // Space-Saving: the newcomer may have been counted in the evicted key's total
+                counts[0] += n;
+                slots.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (counts[parent] <= counts[slot]) return;
+                swap(slot, parent);
+                slot = parent;
+            }
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= size) return;
+                if (child + 1 < size && counts[child + 1] < counts[child]) child++;
+                if (counts[slot] <= counts[child]) return;
+                swap(slot, child);
+                slot = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String key = keys[a]; keys[a] = keys[b]; keys[b] = key;
+            long count = counts[a]; counts[a] = counts[b]; counts[b] = count;
+            long error = errors[a]; errors[a] = errors[b]; errors[b] = error;
+            slots.put(keys[a], a);
+            slots.put(keys[b], b);
+        }
+
+        // Row-specific index from one 32-bit hash (double hashing, as in Kirsch & Mitzenmacher)
+        private static int sketchIndex(int hash, int row) {
+            return row * WIDTH + ((hash + row * ((hash >>> 16) | 1)) & (WIDTH - 1));
+        }
+
+        private static int mix(int h) { // murmur3 finalizer
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Live "top talkers": failing source IPs, targeted accounts and noisiest (log, event ID) pairs since the last
+    // full load, counted at ingest so the side panel never scans the event store. Thread-safe; updated by fetch workers.
+    static final class TopTalkers {
+        private final HeavyHitters failingSources = new HeavyHitters();
+        private final HeavyHitters targetedAccounts = new HeavyHitters();
+        private final HeavyHitters noisyEvents = new HeavyHitters();
+
+        synchronized void accept(LogEntry entry) {
+            if (entry.eventId <= 0 || entry.anomalyType.isAggregate()) return;
+            noisyEvents.add(hostLogKey(entry.host, entry.logName) + " " + entry.eventId);
+            if (entry.anomalyType == AnomalyType.FAILED_LOGIN && !"N/A".equals(entry.sourceIp)) failingSources.add(entry.sourceIp);
+            if ((entry.anomalyType == AnomalyType.FAILED_LOGIN || entry.anomalyType == AnomalyType.ACCOUNT_LOCKOUT)
+                    && !"N/A".equals(entry.accountName)) {
+                targetedAccounts.add(entry.accountName);
+            }
+        }
+
+        synchronized void merge(TopTalkers other) {
+            synchronized (other) {
+                failingSources.merge(other.failingSources);
+                targetedAccounts.merge(other.targetedAccounts);
+                noisyEvents.merge(other.noisyEvents);
+            }
+        }
+
+        synchronized void clear() {
+            failingSources.clear();
+            targetedAccounts.clear();
+            noisyEvents.clear();
+        }
+
+        synchronized List<Map.Entry<String, Long>> topSources(int n) { return failingSources.top(n); }
+        synchronized List<Map.Entry<String, Long>> topAccounts(int n) { return targetedAccounts.top(n); }
+        synchronized List<Map.Entry<String, Long>> topEvents(int n) { return noisyEvents.top(n); }
+
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            failingSources.writeTo(out);
+            targetedAccounts.writeTo(out);
+            noisyEvents.writeTo(out);
+        }
+
+        synchronized void readFrom(DataInputStream in, boolean withErrors) throws IOException {
+            failingSources.readFrom(in, withErrors);
+            targetedAccounts.readFrom(in, withErrors);
+            noisyEvents.readFrom(in, withErrors);
+        }
+    }
+
+    // One long-lived PowerShell process runs every fetch, so the runtime is not started again on each refresh.
+    // Line protocol, UTF-8 both ways:
+    //   request   @@NAD-REQUEST <id> <command, Base64 of its UTF-8 bytes>
+    //   response  the command's output lines; then one "@@NAD-ERROR <id> <error id> <message, Base64 of its UTF-8 bytes>"
+    //             per error the command recorded, and "@@NAD-END <id> <status>" (status 0 when it recorded none)
+    // Get-WinEvent records NoMatchingEventsFound when a query matches nothing, so the session does not count that one:
+    // an empty refresh is not a failure. The worker's stderr is kept for the error text of a failing request.
+    // The worker starts on first use and again after it dies; a request that outlives its timeout kills it.
+    // -Dnad.powershell.worker="sh tools/powershell-replay.sh capture.txt" runs a stand-in with the same protocol.
+    static final class PowerShellSession implements Closeable {
+        static final String REQUEST_MARKER = "@@NAD-REQUEST";
+        static final String ERROR_MARKER = "@@NAD-ERROR";
+        static final String END_MARKER = "@@NAD-END";
+        static final String NO_MATCHING_EVENTS = "NoMatchingEventsFound"; // Error id prefix of an empty Get-WinEvent
+        private static final int MAX_ERROR_OUTPUT = 8192; // Characters of stderr kept per request
+        static final long TIMEOUT_MILLIS = Long.getLong("nad.powershell.timeoutSeconds", 300) * 1000;
+        private static final String WORKER_SCRIPT = String.join("\n",
+                "$OutputEncoding = [Console]::OutputEncoding = New-Object System.Text.UTF8Encoding $false",
+                "while ($null -ne ($line = [Console]::In.ReadLine())) {",
+                "    $fields = $line.Split(' ')",
+                "    if ($fields.Length -ne 3 -or $fields[0] -ne '" + REQUEST_MARKER + "') { continue }",
+                "    $command = [Text.Encoding]::UTF8.GetString([Convert]::FromBase64String($fields[2]))",
+                "    $Error.Clear()",
+                "    try {",
+                "        # Strings (compact records) are written as they are; Out-String would wrap them at the console width",
+                "        Invoke-Expression $command | ForEach-Object { if ($_ -is [string]) { [Console]::Out.WriteLine($_) } else { $_ } } |",
+                "            Out-String -Stream | ForEach-Object { [Console]::Out.WriteLine($_) }",
+                "    } catch {",
+                "        # Recorded in $Error like the non-terminating ones, and reported below",
+                "    }",
+                "    foreach ($record in $Error) {",
+                "        $errorId = if ($record -is [Management.Automation.ErrorRecord]) { $record.FullyQualifiedErrorId -replace '\\s', '' } else { 'Exception' }",
+                "        $text = [Convert]::ToBase64String([Text.Encoding]::UTF8.GetBytes($record.ToString()))",
+                "        [Console]::Out.WriteLine('" + ERROR_MARKER + " ' + $fields[1] + ' ' + $errorId + ' ' + $text)",
+                "    }",
+                "    $status = if ($Error.Count -gt 0) { 1 } else { 0 }",
+                "    [Console]::Out.WriteLine('" + END_MARKER + " ' + $fields[1] + ' ' + $status)",
+                "    [Console]::Out.Flush()",
+                "}");
+
+        private final List<String> launchCommand;
+        private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PowerShellWatchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private Process worker;
+        private BufferedReader fromWorker;
+        private Writer toWorker;
+        private Response active;
+        private final StringBuilder errorOutput = new StringBuilder(); // The worker's stderr since the last request
+
+        PowerShellSession(List<String> launchCommand) {
+            this.launchCommand = launchCommand;
+        }
+
+        static PowerShellSession create() {
+            String standIn = System.getProperty("nad.powershell.worker", "").trim();
+            if (!standIn.isEmpty()) return new PowerShellSession(List.of(standIn.split("\\s+")));
+            // -EncodedCommand takes Base64 of UTF-16LE and sidesteps quoting the script on the command line
+            String encoded = Base64.getEncoder().encodeToString(WORKER_SCRIPT.getBytes(StandardCharsets.UTF_16LE));
+            return new PowerShellSession(List.of("powershell.exe", "-NoProfile", "-NonInteractive", "-EncodedCommand", encoded));
+        }
+
+        // Sends one command. Read the response to its end, or close it, before the next request; closing it early
+        // (or a timeout) stops the worker, and the next request starts a fresh one.
+        synchronized Response execute(String command, long timeoutMillis) throws IOException {
+            if (active != null) {
+                active.close();
+                if (active.stoppedWorker) stopWorker();
+                active = null;
+            }
+            String id = UUID.randomUUID().toString(); // Cannot plausibly occur in event text, so the end line is unambiguous
+            String request = REQUEST_MARKER + " " + id + " " + Base64.getEncoder().encodeToString(command.getBytes(StandardCharsets.UTF_8)) + "\n";
+            synchronized (errorOutput) {
+                errorOutput.setLength(0);
+            }
+            for (int attempt = 0; ; attempt++) {
+                ensureStarted();
+                try {
+                    toWorker.write(request);
+                    toWorker.flush();
+                    break;
+                } catch (IOException e) {
+                    stopWorker(); // Died since the last request: start a fresh one and send again, once
+                    if (attempt > 0) throw e;
+                }
+            }
+            Response response = new Response(id, worker, fromWorker, errorOutput, timeoutMillis);
+            response.timeout = watchdog.schedule(response::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+            active = response;
+            return response;
+        }
+
+        private void ensureStarted() throws IOException {
+            if (worker != null && worker.isAlive()) return;
+            stopWorker();
+            long start = System.nanoTime();
+            worker = new ProcessBuilder(launchCommand).start();
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.SPAWN, start);
+            Reader stderr = new InputStreamReader(worker.getErrorStream(), StandardCharsets.UTF_8);
+            Thread drain = new Thread(() -> drainErrors(stderr), "PowerShellStderr");
+            drain.setDaemon(true);
+            drain.start();
+            fromWorker = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+            toWorker = new BufferedWriter(new OutputStreamWriter(worker.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        // Until the worker exits, keeping the last MAX_ERROR_OUTPUT characters; a full stderr pipe would block it
+        private void drainErrors(Reader stderr) {
+            char[] buffer = new char[1024];
+            try (stderr) {
+                for (int count; (count = stderr.read(buffer)) >= 0; ) {
+                    synchronized (errorOutput) {
+                        errorOutput.append(buffer, 0, count);
+                        if (errorOutput.length() > MAX_ERROR_OUTPUT) errorOutput.delete(0, errorOutput.length() - MAX_ERROR_OUTPUT);
+                    }
+                }
+            } catch (IOException e) {
+                // The worker was stopped
+            }
+        }
+
+        private void stopWorker() {
+            if (worker == null) return;
+            worker.destroyForcibly();
+            try {
+                worker.waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+            fromWorker = null;
+            toWorker = null;
+        }
+
+        @Override
+        public synchronized void close() {
+            stopWorker();
+            watchdog.shutdownNow();
+        }
+
+        // The output of one request as a character stream, ending just before the end line
+        static final class Response extends Reader {
+            private final String errorPrefix;
+            private final String endPrefix;
+            private final Process worker;
+            private final BufferedReader lines;
+            private final StringBuilder errorOutput;
+            private final long timeoutMillis;
+            private final List<String> errors = new ArrayList<>(); // Messages of the reported errors that count
+            private boolean matchedNothing; // Reported NoMatchingEventsFound
+            private ScheduledFuture<?> timeout;
+            private volatile boolean expired;
+            private boolean ended;
+            private boolean stoppedWorker;
+            private int status = -1;
+            private String line = "";
+            private int position;
+
+            private Response(String id, Process worker, BufferedReader lines, StringBuilder errorOutput, long timeoutMillis) {
+                this.errorPrefix = ERROR_MARKER + " " + id + " ";
+                this.endPrefix = END_MARKER + " " + id + " ";
+                this.worker = worker;
+                this.lines = lines;
+                this.errorOutput = errorOutput;
+                this.timeoutMillis = timeoutMillis;
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (length == 0) return 0;
+                while (position == line.length()) {
+                    if (!nextLine()) return -1;
+                }
+                int count = Math.min(length, line.length() - position);
+                line.getChars(position, position + count, buffer, offset);
+                position += count;
+                return count;
+            }
+
+            private boolean nextLine() throws IOException {
+                if (ended) return false;
+                String next;
+                try {
+                    next = lines.readLine();
+                } catch (IOException e) {
+                    throw fail(e);
+                }
+                if (next == null) throw fail(null);
+                if (next.startsWith(errorPrefix)) {
+                    recordError(next.substring(errorPrefix.length()));
+                    return true;
+                }
+                if (next.startsWith(endPrefix)) {
+                    ended = true;
+                    timeout.cancel(false);
+                    try {
+                        status = Integer.parseInt(next.substring(endPrefix.length()).trim());
+                    } catch (NumberFormatException e) {
+                        status = 1;
+                    }
+                    if (status != 0 && errors.isEmpty() && matchedNothing) status = 0; // Only "no events": a quiet log
+                    return false;
+                }
+                line = next + "\n";
+                position = 0;
+                return true;
+            }
+
+            // "<error id> <Base64 message>"; leaves the current line alone, so nothing of it reaches the reader
+            private void recordError(String fields) {
+                int space = fields.indexOf(' ');
+                String errorId = space < 0 ? fields : fields.substring(0, space);
+                if (errorId.startsWith(NO_MATCHING_EVENTS)) {
+                    matchedNothing = true;
+                    return;
+                }
+                String message;
+                try {
+                    message = space < 0 ? errorId : new String(Base64.getDecoder().decode(fields.substring(space + 1).trim()), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    message = errorId;
+                }
+                errors.add(message.trim());
+            }
+
+            private IOException fail(IOException cause) {
+                ended = true;
+                stoppedWorker = true;
+                timeout.cancel(false);
+                worker.destroyForcibly();
+                String stderr = errorOutput();
+                String detail = stderr.isEmpty() ? "" : ": " + stderr;
+                return expired ? new IOException("PowerShell did not answer within " + timeoutMillis + " ms" + detail)
+                               : new IOException("PowerShell worker exited during the request" + detail, cause);
+            }
+
+            private String errorOutput() {
+                synchronized (errorOutput) {
+                    return errorOutput.toString().trim();
+                }
+            }
+
+            // Runs on the watchdog thread; the reader then sees the output end and fails
+            private void expire() {
+                expired = true;
+                worker.destroyForcibly();
+            }
+
+            // The worker's status for the request: 0 when it recorded no errors but NoMatchingEventsFound. Only valid
+            // once the output has ended.
+            int status() { return status; }
+
+            // What went wrong, for a non-zero status: the reported messages, then whatever the worker wrote to stderr
+            // during the request. Empty when there is nothing to say.
+            String errors() {
+                List<String> parts = new ArrayList<>(errors);
+                String stderr = errorOutput();
+                if (!stderr.isEmpty()) parts.add(stderr);
+                return String.join("\n", parts);
+            }
+
+            @Override
+            public void close() {
+                if (ended) return;
+                ended = true; // Abandoned mid-response: the rest of it would be read as the next answer
+                stoppedWorker = true;
+                timeout.cancel(false);
+                worker.destroyForcibly();
+            }
+        }
+    }
+
+    // PowerShell sessions shared by the hosts read through this machine's PowerShell (itself, and other computers
+    // over -ComputerName), so a long hosts file keeps at most `size` powershell.exe processes rather than one per
+    // host. Sessions are created as they are first needed; the last source to release the pool stops them.
+    static final class PowerShellSessionPool {
+        private final int size;
+        private final Supplier<PowerShellSession> factory;
+        private final BlockingQueue<PowerShellSession> idle = new LinkedBlockingQueue<>();
+        private final List<PowerShellSession> sessions = new ArrayList<>(); // Guarded by this
+        private int users; // Guarded by this
+
+        PowerShellSessionPool(int size, Supplier<PowerShellSession> factory) {
+            this.size = size;
+            this.factory = factory;
+        }
+
+        synchronized void retain() { users++; }
+
+        // An idle session, a new one while there are fewer than size, otherwise the next one given back
+        PowerShellSession take() throws InterruptedException {
+            PowerShellSession session = idle.poll();
+            if (session != null) return session;
+            synchronized (this) {
+                if (sessions.size() < size) {
+                    session = factory.get();
+                    sessions.add(session);
+                    return session;
+                }
+            }
+            return idle.take();
+        }
+
+        void give(PowerShellSession session) { idle.add(session); }
+
+        void release() {
+            List<PowerShellSession> stopping;
+            synchronized (this) {
+                if (--users > 0) return;
+                stopping = new ArrayList<>(sessions);
+                sessions.clear();
+            }
+            idle.clear();
+            stopping.forEach(PowerShellSession::close);
+        }
+    }
+
+    // Reads the PowerShell output on its own thread and hands framed blocks to the analyzer through a bounded queue
+    static class BlockReader implements Runnable {
+        static final String END_OF_STREAM = new String("<end-of-stream>"); // Compared by identity
+
+        private final Reader input;
+        private final BlockingQueue<String> blockQueue;
+        private volatile IOException failure;
+        private final long created = System.nanoTime();
+        private long lastHandOff; // When the previous block left, so each block is timed from there
+
+        BlockReader(Reader input, BlockingQueue<String> blockQueue) {
+            this.input = input;
+            this.blockQueue = blockQueue;
+        }
+
+        BlockReader(InputStream input, BlockingQueue<String> blockQueue) {
+            this(new InputStreamReader(input, StandardCharsets.UTF_8), blockQueue);
+        }
+
+        @Override
+        public void run() {
+            BlockFramer framer = new BlockFramer(this::handOff);
+            try (BufferedReader reader = new BufferedReader(input)) {
+                String line = reader.readLine();
+                lastHandOff = line == null ? System.nanoTime() : PipelineMetrics.recordSince(PipelineMetrics.Stage.FIRST_BYTE, created);
+                // Interrupted when the analyzer gave up; nobody would take the rest
+                while (line != null && !Thread.currentThread().isInterrupted()) {
+                    framer.acceptLine(line);
+                    line = reader.readLine();
+                }
+                framer.finish();
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                handOff(END_OF_STREAM);
+            }
+        }
+
+        private void handOff(String block) {
+            if (block != END_OF_STREAM) PipelineMetrics.recordSince(PipelineMetrics.Stage.FRAMING, lastHandOff);
+            try {
+                blockQueue.put(block); // Blocks only when the analyzer is a full queue behind
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lastHandOff = System.nanoTime(); // Time blocked on a full queue is not framing time
+        }
+
+        IOException getFailure() { return failure; }
+    }
+
+    // Parses and classifies framed blocks on the parse pool in batches, then hands the entries to the sink in
+    // their original order, on the caller's thread. With -Dnad.parseThreads=1 everything runs inline instead.
+    static final class ParseStage {
+        static final int PARALLELISM = Math.max(1, Integer.getInteger("nad.parseThreads", Runtime.getRuntime().availableProcessors()));
+        static final int BATCH_SIZE = 256; // Blocks per task; large enough to amortise the hand-off
+        private static final int MAX_IN_FLIGHT = PARALLELISM * 2; // Beyond this the caller waits, which backs up the reader
+        private static ForkJoinPool pool;
+
+        private final Consumer<LogEntry> sink;
+        private final ArrayDeque<Future<List<LogEntry>>> inFlight = new ArrayDeque<>();
+        private List<String> batch = new ArrayList<>(BATCH_SIZE);
+        private long batchStarted;
+
+        ParseStage(Consumer<LogEntry> sink) {
+            this.sink = sink;
+        }
+
+        static synchronized ForkJoinPool pool() {
+            if (pool == null) pool = new ForkJoinPool(PARALLELISM); // Worker threads are daemons
+            return pool;
+        }
+
+        // Runs task on the parse pool so any parallel stream inside it uses the same workers
+        static <T> T compute(Callable<T> task) throws InterruptedException {
+            if (PARALLELISM == 1) {
+                try { return task.call(); } catch (RuntimeException e) { throw e; } catch (Exception e) { throw new IllegalStateException(e); }
+            }
+            return await(pool().submit(task));
+        }
+
+        static LogEntry parse(String block) {
+            long start = System.nanoTime();
+            LogEntry entry = CompactRecord.isRecord(block) ? CompactRecord.decode(block) : new LogEntry(block);
+            entry.searchText = entry.block().toLowerCase();
+            start = PipelineMetrics.recordSince(PipelineMetrics.Stage.PARSE, start);
+            entry.anomalyType = classifyEntry(entry);
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.CLASSIFY, start);
+            return entry;
+        }
+
+        void accept(String block) throws InterruptedException {
+            if (PARALLELISM == 1) {
+                sink.accept(parse(block));
+                return;
+            }
+            if (batch.isEmpty()) batchStarted = System.currentTimeMillis();
+            batch.add(block);
+            // A slow source still streams: partial batches go out once they are a publish interval old
+            if (batch.size() >= BATCH_SIZE || System.currentTimeMillis() - batchStarted >= PUBLISH_INTERVAL_MS) submitBatch();
+            deliverCompleted();
+        }
+
+        // Called when the source is idle: submit whatever is buffered and deliver finished batches
+        void flush() throws InterruptedException {
+            submitBatch();
+            deliverCompleted();
+        }
+
+        void finish() throws InterruptedException {
+            submitBatch();
+            while (!inFlight.isEmpty()) deliver(inFlight.poll());
+        }
+
+        private void submitBatch() throws InterruptedException {
+            if (batch.isEmpty()) return;
+            List<String> blocks = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            while (inFlight.size() >= MAX_IN_FLIGHT) deliver(inFlight.poll());
+            inFlight.add(pool().submit(() -> {
+                List<LogEntry> entries = new ArrayList<>(blocks.size());
+                for (String block : blocks) entries.add(parse(block));
+                return entries;
+            }));
+        }
+
+        private void deliverCompleted() throws InterruptedException {
+            while (!inFlight.isEmpty() && inFlight.peek().isDone()) deliver(inFlight.poll());
+        }
+
+        private void deliver(Future<List<LogEntry>> result) throws InterruptedException {
+            for (LogEntry entry : await(result)) sink.accept(entry);
+        }
+
+        private static <T> T await(Future<T> result) throws InterruptedException {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    // Where a refresh spends its time: one latency histogram per pipeline stage, cheap enough to stay on in
+    // production. Published as the MXBean NetworkAnomalyDetector:type=PipelineMetrics (jconsole, any JMX client),
+    // shown by the Diagnostics dialog and printed by the headless collector after a run. Totals are since start
+    // or the last reset.
+    static final class PipelineMetrics implements PipelineMetricsMXBean {
+        enum Stage {
+            SPAWN("Process spawn"),
+            FIRST_BYTE("First byte"),
+            FRAMING("Read & frame block"),
+            PARSE("Parse block"),
+            CLASSIFY("Classify"),
+            DEDUPE("Dedupe"),
+            DETECT("Burst & top talkers"),
+            STORE("Store merge (sort)"),
+            FILTER("Filter"),
+            RENDER("Render list"),
+            EDT_QUEUE("EDT queue latency"),
+            SNAPSHOT_SAVE("Session snapshot save"),
+            SNAPSHOT_RESTORE("Session snapshot restore");
+
+            private final String displayName;
+
+            Stage(String displayName) { this.displayName = displayName; }
+
+            String getDisplayName() { return displayName; }
+        }
+
+        private static final Stage[] STAGES = Stage.values();
+        static final PipelineMetrics INSTANCE = new PipelineMetrics();
+        static final String OBJECT_NAME = "NetworkAnomalyDetector:type=PipelineMetrics";
+
+        private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+        private PipelineMetrics() {
+            for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+        }
+
+        static void record(Stage stage, long elapsedNanos, long items) {
+            INSTANCE.histograms[stage.ordinal()].record(elapsedNanos, items);
+        }
+
+        // Records one item since startNanos and returns the current time, so consecutive stages can chain
+        static long recordSince(Stage stage, long startNanos) {
+            long now = System.nanoTime();
+            record(stage, now - startNanos, 1);
+            return now;
+        }
+
+        static void register() {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.err.println("Pipeline metrics not published over JMX: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public List<StageStats> getStages() {
+            List<StageStats> stats = new ArrayList<>(STAGES.length);
+            for (Stage stage : STAGES) stats.add(histograms[stage.ordinal()].stats(stage.getDisplayName()));
+            return stats;
+        }
+
+        @Override
+        public void reset() {
+            for (LatencyHistogram histogram : histograms) histogram.reset();
+        }
+
+        // Plain-text table of the stages that saw any samples
+        String summary() {
+            StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-22s %10s %10s %10s %10s %12s%n",
+                                                                  "Stage", "Samples", "p50 us", "p99 us", "Max us", "Items/s"));
+            for (StageStats stats : getStages()) {
+                if (stats.getCount() == 0) continue;
+                table.append(String.format(Locale.ROOT, "%-22s %,10d %10.1f %10.1f %10.1f %,12.0f%n", stats.getStage(), stats.getCount(),
+                                           stats.getP50Micros(), stats.getP99Micros(), stats.getMaxMicros(), stats.getItemsPerSecond()));
+            }
+            return table.toString();
+        }
+    }
+
+    public interface PipelineMetricsMXBean {
+        List<StageStats> getStages();
+
+        void reset();
+    }
+
+    // One stage's figures as JMX clients see them (the MXBean maps it to CompositeData)
+    public static final class StageStats {
+        private final String stage;
+        private final long count;
+        private final double p50Micros, p99Micros, maxMicros;
+        private final double itemsPerSecond;
+
+        @java.beans.ConstructorProperties({"stage", "count", "p50Micros", "p99Micros", "maxMicros", "itemsPerSecond"})
+        public StageStats(String stage, long count, double p50Micros, double p99Micros, double maxMicros, double itemsPerSecond) {
+            this.stage = stage;
+            this.count = count;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+            this.itemsPerSecond = itemsPerSecond;
+        }
+
+        public String getStage() { return stage; }
+        public long getCount() { return count; }
+        public double getP50Micros() { return p50Micros; }
+        public double getP99Micros() { return p99Micros; }
+        public double getMaxMicros() { return maxMicros; }
+        // Items handled per second of time spent in the stage, i.e. what the stage alone could sustain
+        public double getItemsPerSecond() { return itemsPerSecond; }
+    }
+
+    // Nanosecond latencies in log-linear buckets: 8 per power of two, so a percentile is within 12.5% of the
+    // recorded value. Recording is a few atomic adds and never blocks, from any number of threads.
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos, long itemCount) {
+            if (nanos < 0) nanos = 0;
+            counts.incrementAndGet(bucket(nanos));
+            totalNanos.add(nanos);
+            items.add(itemCount);
+            if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        // Largest value that lands in the bucket
+        static long bucketLimit(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+
+        StageStats stats(String stage) {
+            long[] snapshot = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) count += snapshot[i] = counts.get(i);
+            long maxNanos = max.get();
+            double seconds = totalNanos.sum() / 1e9;
+            return new StageStats(stage, count, percentile(snapshot, count, 0.50, maxNanos) / 1e3,
+                                  percentile(snapshot, count, 0.99, maxNanos) / 1e3, maxNanos / 1e3,
+                                  seconds > 0 ? items.sum() / seconds : 0);
+        }
+
+        private static long percentile(long[] snapshot, long count, double quantile, long maxNanos) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(quantile * count), seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return Math.min(bucketLimit(i), maxNanos);
+            }
+            return maxNanos;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+            totalNanos.reset();
+            items.reset();
+            max.set(0);
+        }
+    }
+
+    // The ingest pipeline without any Swing in it: a reader thread frames blocks, the parse stage parses and
+    // classifies them, and this thread drops duplicates and anything below the high-water marks before running the
+    // burst and rate detectors oldest first. The GUI's fetch worker and the headless collector both drive it, one engine per host;
+    // everything it passes on is tagged with that host.
+    static final class IngestEngine {
+        private final String host;
+        private final Map<String, HighWaterMark> marks;
+        private final BurstDetector burstDetector;
+        private final TopTalkers topTalkers;
+        private final RateBaseline rateBaseline;
+        private final Set<String> seenKeys = new HashSet<>();
+        private final List<LogEntry> held = new ArrayList<>(); // Events of the run not yet shown to the detectors
+        private long acceptedCount;
+        private long anomalyCount;
+        private long duplicateCount;
+
+        IngestEngine(String host, Map<String, HighWaterMark> marks, BurstDetector burstDetector, TopTalkers topTalkers, RateBaseline rateBaseline) {
+            this.host = host;
+            this.marks = marks;
+            this.burstDetector = burstDetector;
+            this.topTalkers = topTalkers;
+            this.rateBaseline = rateBaseline;
+        }
+
+        // Streams Format-List text into sink until the input ends: each accepted event, then any burst or rate-spike
+        // alert it completes. A log with a mark is read oldest first, so its events reach the detectors as they arrive; a log
+        // without one is a full load (or a capture) read newest first, so its events are held and fed to the detectors
+        // oldest first once the input ends, and their alerts follow them. onPoll runs after every block and whenever no
+        // block arrived within pollMillis, so the caller can flush its own batches. A source may be several streams.
+        void run(InputStream input, Consumer<LogEntry> sink, long pollMillis, Runnable onPoll) throws IOException, InterruptedException {
+            run(new InputStreamReader(input, StandardCharsets.UTF_8), sink, pollMillis, onPoll);
+        }
+
+        void run(Reader input, Consumer<LogEntry> sink, long pollMillis, Runnable onPoll) throws IOException, InterruptedException {
+            ParseStage parseStage = new ParseStage(entry -> accept(entry, sink, marks.containsKey(entry.logName)));
+            // Reader thread only frames blocks; a bounded queue keeps memory flat if parsing falls behind
+            BlockingQueue<String> blockQueue = new ArrayBlockingQueue<>(INGEST_QUEUE_CAPACITY);
+            BlockReader blockReader = new BlockReader(input, blockQueue);
+            Thread readerThread = new Thread(blockReader, "LogBlockReader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            boolean drained = false;
+            try {
+                while (true) {
+                    String block = blockQueue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                    if (block == BlockReader.END_OF_STREAM) break;
+                    if (block != null) parseStage.accept(block);
+                    else parseStage.flush();
+                    onPoll.run();
+                }
+                parseStage.finish();
+                drained = true;
+            } finally {
+                // A detector or sink threw, or the caller was interrupted: the reader must not stay blocked on a full
+                // queue. The source is closed by its owner, which ends a read still waiting for input.
+                if (!drained) readerThread.interrupt();
+            }
+            if (blockReader.getFailure() != null) throw blockReader.getFailure();
+            detectHeld(sink);
+        }
+
+        // Same as run for events that were decoded already (.evtx files), which must come oldest first
+        void runEntries(List<LogEntry> entries, Consumer<LogEntry> sink) {
+            for (LogEntry entry : entries) accept(entry, sink, true);
+        }
+
+        private void accept(LogEntry entry, Consumer<LogEntry> sink, boolean oldestFirst) {
+            entry.host = host;
+            long start = System.nanoTime();
+            boolean duplicate = isBelowHighWaterMark(entry, marks) || !seenKeys.add(dedupeKey(entry));
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.DEDUPE, start);
+            if (duplicate) {
+                duplicateCount++;
+                return;
+            }
+            if (entry.anomalyType != AnomalyType.NONE) anomalyCount++;
+            acceptedCount++;
+            sink.accept(entry);
+            start = System.nanoTime();
+            topTalkers.accept(entry);
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.DETECT, start);
+            if (oldestFirst) detect(entry, sink);
+            else held.add(entry);
+        }
+
+        // Each log's events only need to be in order among themselves, so one sort over the run will do
+        private void detectHeld(Consumer<LogEntry> sink) {
+            held.sort(Comparator.comparingLong((LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId));
+            for (LogEntry entry : held) detect(entry, sink);
+            held.clear();
+        }
+
+        private void detect(LogEntry entry, Consumer<LogEntry> sink) {
+            long start = System.nanoTime();
+            LogEntry alert = burstDetector.accept(entry);
+            LogEntry spike = rateBaseline.accept(entry);
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.DETECT, start);
+            if (alert != null) emitAlert(alert, sink);
+            if (spike != null) emitAlert(spike, sink);
+        }
+
+        private void emitAlert(LogEntry alert, Consumer<LogEntry> sink) {
+            alert.host = host;
+            anomalyCount++;
+            sink.accept(alert);
+        }
+
+        long acceptedCount() { return acceptedCount; }
+        long anomalyCount() { return anomalyCount; }
+        long duplicateCount() { return duplicateCount; }
+    }
+
+    // Where one host's events come from. collect() feeds everything after the host's marks through engine into sink
+    // and returns the errors the source reported although it finished (null when it reported none).
+    interface HostSource extends Closeable {
+        String collect(QueryPlan plan, Map<String, HighWaterMark> marks, long timeoutMillis, IngestEngine engine,
+                    Consumer<LogEntry> sink, Runnable onPoll) throws IOException, InterruptedException;
+    }
+
+    // Get-WinEvent through a PowerShell session from the pool: this machine when computerName is null, otherwise the
+    // named one over remote event log management (-ComputerName). A stand-in worker can take the session's place.
+    static final class PowerShellSource implements HostSource {
+        private final PowerShellSessionPool sessions;
+        private final String computerName;
+
+        PowerShellSource(PowerShellSessionPool sessions, String computerName) {
+            this.sessions = sessions;
+            this.computerName = computerName;
+            sessions.retain();
+        }
+
+        @Override
+        public String collect(QueryPlan plan, Map<String, HighWaterMark> marks, long timeoutMillis, IngestEngine engine,
+                           Consumer<LogEntry> sink, Runnable onPoll) throws IOException, InterruptedException {
+            PowerShellSession session = sessions.take();
+            try {
+                PowerShellSession.Response response = session.execute(buildFetchCommand(plan, marks, computerName), timeoutMillis);
+                boolean complete = false;
+                try {
+                    engine.run(response, sink, PUBLISH_INTERVAL_MS, onPoll);
+                    complete = true;
+                } finally {
+                    if (!complete) response.close(); // Failed or cancelled: stop the worker rather than leave it streaming
+                }
+                if (response.status() == 0) return null;
+                String errors = response.errors();
+                return errors.isEmpty() ? "status " + response.status() : errors;
+            } finally {
+                sessions.give(session);
+            }
+        }
+
+        @Override
+        public void close() {
+            sessions.release();
+        }
+    }
+
+    // A directory another job fills with one host's exported .evtx files or captured Get-WinEvent text (Format-List or
+    // compact records). Each collection reads the files added or rewritten since the last one, oldest first; a file
+    // modified within SETTLE_MILLIS may still be being copied and waits for the next collection. The marks drop
+    // whatever a rewritten file repeats, and the view's own filters narrow the rest, so the plan is not needed here.
+    static final class DropSource implements HostSource {
+        static final long SETTLE_MILLIS = 2_000;
+
+        private final Path directory;
+        private final Map<Path, Long> collected = new HashMap<>(); // File -> modification time when it was read
+
+        DropSource(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public String collect(QueryPlan plan, Map<String, HighWaterMark> marks, long timeoutMillis, IngestEngine engine,
+                           Consumer<LogEntry> sink, Runnable onPoll) throws IOException, InterruptedException {
+            if (!Files.isDirectory(directory)) throw new IOException(directory + " is not a directory");
+            if (marks.isEmpty()) collected.clear(); // A full load reads every file again
+            long settled = System.currentTimeMillis() - SETTLE_MILLIS;
+            Map<Path, Long> pending = new HashMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    long modified = Files.getLastModifiedTime(file).toMillis();
+                    if (modified <= settled && !Long.valueOf(modified).equals(collected.get(file))) pending.put(file, modified);
+                }
+            }
+            List<Path> ordered = new ArrayList<>(pending.keySet());
+            ordered.sort(Comparator.comparing((Path file) -> pending.get(file)).thenComparing(Comparator.naturalOrder()));
+            for (Path file : ordered) {
+                if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".evtx")) {
+                    List<LogEntry> entries = EvtxReader.read(file);
+                    Collections.reverse(entries); // Oldest first, as events decoded in one go reach the detectors
+                    engine.runEntries(entries, sink);
+                    onPoll.run();
+                } else {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        engine.run(in, sink, PUBLISH_INTERVAL_MS, onPoll);
+                    }
+                }
+                collected.put(file, pending.get(file));
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // A machine to collect from: its source, how long a collection may take, and its own detectors and rate baselines
+    // (a burst or a rate is only meaningful on one machine). Hosts come from HOSTS_FILE, one per line:
+    //   name [| source [| timeout seconds]]
+    // where source is "remote: COMPUTER", "drop: DIRECTORY" or "worker: COMMAND" (a stand-in PowerShell worker).
+    // Without a source, "localhost" (or ".") is this machine and any other name is read remotely under that name.
+    static final class Host implements Closeable {
+        final String name;
+        final HostSource source;
+        final long timeoutMillis;
+        final BurstDetector burstDetector = new BurstDetector(); // Reset with the event store
+        final RateBaseline rateBaseline = new RateBaseline(); // Persistent, in baselineFile()
+
+        Host(String name, HostSource source, long timeoutMillis) {
+            this.name = name;
+            this.source = source;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        static Host local() {
+            return new Host(LOCAL_HOST, new PowerShellSource(new PowerShellSessionPool(1, PowerShellSession::create), null), PowerShellSession.TIMEOUT_MILLIS);
+        }
+
+        boolean isLocal() { return LOCAL_HOST.equals(name); }
+
+        Path baselineFile() {
+            return isLocal() ? BASELINE_FILE : APP_DIR.resolve("rate-baseline-" + name.replaceAll("[^A-Za-z0-9._-]", "_") + ".tsv");
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        // Just this machine when the file does not exist. The hosts read through PowerShell share one pool of
+        // sessions, as many as MultiHostCollector runs hosts at once.
+        static List<Host> loadList(Path file) throws IOException {
+            if (Files.notExists(file)) return new ArrayList<>(List.of(local()));
+            List<Host> hosts = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            PowerShellSessionPool sessions = new PowerShellSessionPool(MultiHostCollector.MAX_PARALLEL_HOSTS, PowerShellSession::create);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            try {
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    try {
+                        if (hosts.size() == EventStore.MAX_SHORT_CODES) {
+                            throw new IllegalArgumentException("more than " + EventStore.MAX_SHORT_CODES + " hosts, the most the event store can tell apart");
+                        }
+                        Host host = parse(line, sessions);
+                        if (!names.add(host.name.toLowerCase(Locale.ROOT))) throw new IllegalArgumentException("host " + host.name + " is listed twice");
+                        hosts.add(host);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage(), e);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                for (Host host : hosts) host.close();
+                throw new IOException(file.getFileName() + " " + e.getMessage(), e);
+            }
+            if (hosts.isEmpty()) hosts.add(local());
+            return hosts;
+        }
+
+        private static Host parse(String line, PowerShellSessionPool sessions) {
+            String[] fields = line.split("\\|", -1);
+            if (fields.length > 3) throw new IllegalArgumentException("expected name [| source [| timeout seconds]]");
+            String name = fields[0].trim();
+            if (name.isEmpty()) throw new IllegalArgumentException("missing host name");
+            if (name.equals(".")) name = LOCAL_HOST;
+            long timeoutMillis = PowerShellSession.TIMEOUT_MILLIS;
+            if (fields.length == 3) {
+                try {
+                    timeoutMillis = Long.parseLong(fields[2].trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("timeout must be a number of seconds: " + fields[2].trim());
+                }
+                if (timeoutMillis <= 0) throw new IllegalArgumentException("timeout must be positive");
+            }
+            String source = fields.length > 1 ? fields[1].trim() : "";
+            int colon = source.indexOf(':');
+            String kind = colon < 0 ? source : source.substring(0, colon).trim();
+            String value = colon < 0 ? "" : source.substring(colon + 1).trim();
+            if (!source.isEmpty() && value.isEmpty()) throw new IllegalArgumentException("source needs a value: " + source);
+            switch (kind) {
+                case "":
+                    String computer = name.equals(LOCAL_HOST) ? null : name;
+                    return new Host(name, new PowerShellSource(sessions, computer), timeoutMillis);
+                case "remote": return new Host(name, new PowerShellSource(sessions, value), timeoutMillis);
+                case "drop": return new Host(name, new DropSource(Path.of(value)), timeoutMillis);
+                case "worker":
+                    List<String> command = List.of(value.split("\\s+"));
+                    return new Host(name, new PowerShellSource(new PowerShellSessionPool(1, () -> new PowerShellSession(command)), null), timeoutMillis);
+                default: throw new IllegalArgumentException("unknown source " + kind + " (expected remote, drop or worker)");
+            }
+        }
+    }
+
+    // Collects from every host at once, one task per host on its own thread: virtual threads where the JVM has them
+    // (21 and later), plain daemon threads otherwise. At most MAX_PARALLEL_HOSTS tasks collect at a time, the rest
+    // queue for a slot, and a host's timeout runs from when it got one. Each task has the host's marks and an engine
+    // over the host's detectors; a host that fails or is still busy past its timeout is reported in its outcome and
+    // cancelled, and its slot is handed on, without holding up the others. Sinks are called on the host's thread, so
+    // each host gets its own.
+    static final class MultiHostCollector {
+        static final long GRACE_MILLIS = 5_000; // Past a host's timeout, for a source to notice and fail by itself
+        static final int MAX_PARALLEL_HOSTS = Math.max(1, Integer.getInteger("nad.hosts.parallel", 8)); // Also the PowerShell sessions kept
+        private static final long POLL_MILLIS = 1_000; // Longest wait before the hosts' deadlines are looked at again
+
+        interface HostSink extends Consumer<LogEntry> {
+            default void poll() {}  // After every block and whenever the source is idle, as IngestEngine.run's onPoll
+            default void flush() {} // Once the host is done, failed or not
+        }
+
+        static final class Outcome {
+            final Host host;
+            final IngestEngine engine;
+            volatile String reported; // Errors the source reported although it finished; null if none
+            volatile String error; // Why the host failed; null if it did not
+            private volatile boolean abandoned; // Timed out: anything it still produces is dropped
+            private volatile long started; // When the host got a slot; 0 while it waits for one
+            private final AtomicBoolean holdsSlot = new AtomicBoolean();
+
+            Outcome(Host host, IngestEngine engine) {
+                this.host = host;
+                this.engine = engine;
+            }
+
+            boolean succeeded() { return error == null; }
+            boolean abandoned() { return abandoned; }
+
+            // Once, by the task when it ends or by the collector when it gives up on the task
+            private void releaseSlot(Semaphore slots) {
+                if (holdsSlot.compareAndSet(true, false)) slots.release();
+            }
+        }
+
+        private MultiHostCollector() {}
+
+        // marks are keyed by hostLogKey; returns one outcome per host, in the order given
+        static List<Outcome> collect(List<Host> hosts, QueryPlan plan, Map<String, HighWaterMark> marks, TopTalkers topTalkers,
+                                     Function<Host, HostSink> sinks) throws InterruptedException {
+            List<Outcome> outcomes = new ArrayList<>();
+            List<Future<?>> tasks = new ArrayList<>();
+            Semaphore slots = new Semaphore(MAX_PARALLEL_HOSTS);
+            ExecutorService executor = newThreadPerTaskExecutor();
+            try {
+                for (Host host : hosts) {
+                    Map<String, HighWaterMark> hostMarks = marksOf(marks, host.name);
+                    Outcome outcome = new Outcome(host, new IngestEngine(host.name, hostMarks, host.burstDetector, topTalkers, host.rateBaseline));
+                    HostSink sink = sinks.apply(host);
+                    Consumer<LogEntry> guarded = entry -> {
+                        if (!outcome.abandoned) sink.accept(entry);
+                    };
+                    outcomes.add(outcome);
+                    tasks.add(executor.submit(() -> {
+                        slots.acquire();
+                        outcome.holdsSlot.set(true);
+                        outcome.started = System.currentTimeMillis();
+                        try {
+                            outcome.reported = host.source.collect(plan, hostMarks, host.timeoutMillis, outcome.engine, guarded, sink::poll);
+                        } finally {
+                            if (!outcome.abandoned) sink.flush();
+                            outcome.releaseSlot(slots);
+                        }
+                        return null;
+                    }));
+                }
+                // Waits on the running host due first; one past its deadline is abandoned
+                while (true) {
+                    int next = -1;
+                    long nextDue = Long.MAX_VALUE;
+                    for (int i = 0; i < tasks.size(); i++) {
+                        Outcome outcome = outcomes.get(i);
+                        if (tasks.get(i).isDone() || outcome.abandoned) continue;
+                        long started = outcome.started;
+                        long due = started == 0 ? Long.MAX_VALUE : started + outcome.host.timeoutMillis + GRACE_MILLIS;
+                        if (next < 0 || due < nextDue) {
+                            next = i;
+                            nextDue = due;
+                        }
+                    }
+                    if (next < 0) break;
+                    long remaining = nextDue == Long.MAX_VALUE ? POLL_MILLIS : nextDue - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        Outcome outcome = outcomes.get(next);
+                        outcome.abandoned = true;
+                        if (!tasks.get(next).cancel(true)) { // Finished after all, just now
+                            outcome.abandoned = false;
+                            continue;
+                        }
+                        outcome.error = "no answer within " + outcome.host.timeoutMillis / 1000 + " s";
+                        outcome.releaseSlot(slots);
+                        continue;
+                    }
+                    try {
+                        tasks.get(next).get(Math.min(remaining, POLL_MILLIS), TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException | ExecutionException e) {
+                        // Looked at again on the next pass; failures are collected below
+                    }
+                }
+                for (int i = 0; i < tasks.size(); i++) {
+                    Outcome outcome = outcomes.get(i);
+                    if (outcome.abandoned) continue;
+                    try {
+                        tasks.get(i).get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        outcome.error = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+                    }
+                }
+            } finally {
+                executor.shutdownNow(); // Only does something when the wait was interrupted
+            }
+            return outcomes;
+        }
+
+        // The host's part of marks, keyed by log name as the engine and the query expect
+        static Map<String, HighWaterMark> marksOf(Map<String, HighWaterMark> marks, String host) {
+            Map<String, HighWaterMark> hostMarks = new HashMap<>();
+            for (String logName : TARGET_LOG_NAMES) {
+                HighWaterMark mark = marks.get(hostLogKey(host, logName));
+                if (mark != null) hostMarks.put(logName, mark);
+            }
+            return hostMarks;
+        }
+
+        // Executors.newVirtualThreadPerTaskExecutor() on 21+; the build targets 17, so it is looked up at run time
+        private static ExecutorService newThreadPerTaskExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "HostCollector");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    // Collector mode for servers and pipelines: no window, no EDT. Runs the ingest engine over one input, or over every
+    // host of the hosts file at once, and writes every event (or only the anomalies) as JSON lines or CSV, then reports
+    // throughput on stderr.
+    // Start the JVM with -Djava.awt.headless=true; AWT settles that before main runs.
+    static final class HeadlessCollector {
+        static final String USAGE = "Usage: --headless [--input FILE.evtx|FILE.txt|- | --hosts FILE] [--output FILE] [--format jsonl|csv] [--anomalies-only]\n"
+                + "  Without --input the collector runs the same Get-WinEvent query as the window's first refresh, on every host\n"
+                + "  listed in --hosts (default " + HOSTS_FILE + "; just this machine if there is none).";
+        private static final String[] CSV_COLUMNS = {"time", "timestamp", "host", "logName", "eventId", "recordId", "level",
+                                                     "anomaly", "sourceIp", "accountName", "message"};
+
+        private String input; // null = the hosts, "-" = stdin
+        private Path hostsFile; // null = HOSTS_FILE
+        private String output; // null = stdout
+        private boolean csv;
+        private boolean anomaliesOnly;
+        private long written;
+
+        private HeadlessCollector() {}
+
+        static int run(String[] args) {
+            HeadlessCollector collector = new HeadlessCollector();
+            try {
+                collector.parseArgs(args);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(USAGE);
+                return 2;
+            }
+            try {
+                return collector.collect();
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Collection failed: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        private void parseArgs(String[] args) {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--input": input = value(args, ++i); break;
+                    case "--hosts": hostsFile = Path.of(value(args, ++i)); break;
+                    case "--output": output = value(args, ++i); break;
+                    case "--format":
+                        String format = value(args, ++i);
+                        if (!format.equals("jsonl") && !format.equals("csv")) throw new IllegalArgumentException("Unknown format: " + format);
+                        csv = format.equals("csv");
+                        break;
+                    case "--anomalies-only": anomaliesOnly = true; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (input != null && hostsFile != null) throw new IllegalArgumentException("--input and --hosts cannot be combined");
+        }
+
+        private static String value(String[] args, int i) {
+            if (i >= args.length) throw new IllegalArgumentException(args[i - 1] + " needs a value");
+            return args[i];
+        }
+
+        private int collect() throws IOException, InterruptedException {
+            try {
+                if (Files.exists(RULES_FILE)) anomalyRules = AnomalyRules.load(RULES_FILE);
+            } catch (IOException e) {
+                System.err.println("Using built-in anomaly rules: " + e.getMessage());
+            }
+            TopTalkers talkers = new TopTalkers();
+            List<IngestEngine> engines = new ArrayList<>();
+            long start = System.nanoTime();
+            int exitCode = 0;
+            OutputStream target = output == null ? new FileOutputStream(FileDescriptor.out) : Files.newOutputStream(Path.of(output));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 1 << 16)) {
+                if (csv) writer.write(String.join(",", CSV_COLUMNS) + "\n");
+                MultiHostCollector.HostSink sink = entry -> write(writer, entry); // Hosts write whole records, one at a time
+                try {
+                    if (input == null) {
+                        List<Host> hosts = Host.loadList(hostsFile != null ? hostsFile : HOSTS_FILE);
+                        try {
+                            QueryPlan plan = QueryPlan.forFilter(FILTER_ALL_LOG_NAMES, FILTER_SHOW_ALL, anomalyRules);
+                            for (MultiHostCollector.Outcome outcome : MultiHostCollector.collect(hosts, plan, new HashMap<>(), talkers, host -> sink)) {
+                                engines.add(outcome.engine);
+                                String prefix = hosts.size() > 1 || !outcome.host.isLocal() ? outcome.host.name + ": " : "";
+                                if (!outcome.succeeded()) {
+                                    System.err.println("Warning: " + prefix + outcome.error);
+                                    exitCode = 1;
+                                } else if (outcome.reported != null) {
+                                    System.err.println("Warning: " + prefix + "PowerShell reported errors: " + outcome.reported);
+                                    exitCode = 1;
+                                }
+                            }
+                        } finally {
+                            for (Host host : hosts) host.close();
+                        }
+                    } else {
+                        IngestEngine engine = new IngestEngine(LOCAL_HOST, new HashMap<>(), new BurstDetector(), talkers, new RateBaseline());
+                        engines.add(engine);
+                        if (input.equals("-")) {
+                            engine.run(System.in, sink, PUBLISH_INTERVAL_MS, () -> {});
+                        } else if (input.toLowerCase(Locale.ROOT).endsWith(".evtx")) {
+                            List<LogEntry> entries = EvtxReader.read(Path.of(input));
+                            Collections.reverse(entries); // Oldest first, as events decoded in one go reach the detectors
+                            engine.runEntries(entries, sink);
+                        } else {
+                            try (InputStream in = Files.newInputStream(Path.of(input))) {
+                                engine.run(in, sink, PUBLISH_INTERVAL_MS, () -> {});
+                            }
+                        }
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+            long events = 0, anomalies = 0, duplicates = 0;
+            for (IngestEngine engine : engines) {
+                events += engine.acceptedCount();
+                anomalies += engine.anomalyCount();
+                duplicates += engine.duplicateCount();
+            }
+            System.err.printf(Locale.ROOT, "Processed %,d events in %.2f s (%,.0f events/s): %,d anomalies, %,d duplicates dropped, %,d records written.%n",
+                              events, seconds, events / seconds, anomalies, duplicates, written);
+            for (Map.Entry<String, Long> top : talkers.topSources(5)) {
+                System.err.printf(Locale.ROOT, "  top failing source %-40s %,d%n", top.getKey(), top.getValue());
+            }
+            System.err.print(PipelineMetrics.INSTANCE.summary());
+            return exitCode == 0 ? 0 : 1;
+        }
+
+        private synchronized void write(Writer writer, LogEntry entry) {
+            if (anomaliesOnly && entry.anomalyType == AnomalyType.NONE) return;
+            try {
+                if (csv) writeCsv(writer, entry);
+                else writeJson(writer, entry);
+                written++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // The Message value alone; for Format-List input LogEntry.message keeps the whole block
+        static String messageText(LogEntry entry) {
+            String block = entry.originalLine;
+            if (block == null || !block.equals(entry.message)) return entry.message;
+            for (int pos = 0; pos < block.length(); pos = LogEntry.nextLineStart(block, pos)) {
+                int valueStart = LogEntry.headerValueStart(block, pos, "Message");
+                if (valueStart >= 0) return block.substring(valueStart).trim();
+            }
+            return entry.message;
+        }
+
+        private static String isoTime(LogEntry entry) {
+            return entry.timeMillis == LogEntry.NO_TIME ? "" : Instant.ofEpochMilli(entry.timeMillis).toString();
+        }
+
+        static void writeJson(Writer out, LogEntry entry) throws IOException {
+            out.write("{\"time\":");
+            if (entry.timeMillis == LogEntry.NO_TIME) out.write("null");
+            else jsonString(out, isoTime(entry));
+            out.write(",\"timestamp\":"); jsonString(out, entry.timestamp);
+            out.write(",\"host\":"); jsonString(out, entry.host);
+            out.write(",\"logName\":"); jsonString(out, entry.logName);
+            out.write(",\"eventId\":" + entry.eventId);
+            out.write(",\"recordId\":" + entry.recordId);
+            out.write(",\"level\":"); jsonString(out, entry.level);
+            out.write(",\"anomaly\":"); jsonString(out, entry.anomalyType.name());
+            out.write(",\"sourceIp\":"); jsonString(out, entry.sourceIp);
+            out.write(",\"accountName\":"); jsonString(out, entry.accountName);
+            out.write(",\"message\":"); jsonString(out, messageText(entry));
+            out.write("}\n");
+        }
+
+        private static void jsonString(Writer out, String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                        else out.write(c);
+                }
+            }
+            out.write('"');
+        }
+
+        static void writeCsv(Writer out, LogEntry entry) throws IOException {
+            String[] fields = {isoTime(entry), entry.timestamp, entry.host, entry.logName, String.valueOf(entry.eventId), String.valueOf(entry.recordId),
+                               entry.level, entry.anomalyType.name(), entry.sourceIp, entry.accountName, messageText(entry)};
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) out.write(',');
+                String field = fields[i] == null ? "" : fields[i];
+                // RFC 4180: quote fields holding separators, quotes or line breaks and double the quotes
+                if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                    out.write('"');
+                    out.write(field.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(field);
+                }
+            }
+            out.write('\n');
+        }
+    }
+
+    // Auto-refresh pacing. Only one fetch runs at a time: the next one is scheduled a delay after the previous one
+    // completes, so slow fetches are never skipped or stacked. The delay starts at the chosen interval and adapts:
+    // it shrinks while events arrive quickly, stretches while the logs are quiet or fetches are expensive, and backs
+    // off exponentially after failures.
+    static final class RefreshScheduler {
+        static final long MIN_DELAY_MS = 5_000;
+        static final long MAX_BACKOFF_MS = 15 * 60_000;
+        private static final int QUIET_STRETCH = 4; // Quiet logs are polled at most this many intervals apart
+        private static final int BUSY_SHRINK = 4; // Busy logs at most this many times per interval
+        private static final int COST_FACTOR = 5; // The delay is at least 5x the last fetch, so fetching stays under ~20%
+        private static final int BUSY_EVENTS_PER_INTERVAL = 1000;
+        private static final double RATE_ALPHA = 0.3; // Weight of the newest arrival-rate sample
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LogAutoRefresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final Runnable trigger;
+        private ScheduledFuture<?> pending;
+        private long intervalMillis; // 0 while stopped
+        private long delayMillis;
+        private long dueAt;
+        private long lastCompletedAt;
+        private long lagMillis;
+        private int failures;
+        private double eventsPerSecond = -1; // Smoothed arrival rate, -1 until two fetches have completed
+        private String reason = "";
+
+        // trigger runs on the scheduler thread when a refresh is due, and must report back through completed()
+        RefreshScheduler(Runnable trigger) {
+            this.trigger = trigger;
+        }
+
+        synchronized void start(long intervalMillis) {
+            stop();
+            this.intervalMillis = intervalMillis;
+            delayMillis = intervalMillis;
+            failures = 0;
+            eventsPerSecond = -1;
+            lastCompletedAt = 0;
+            reason = "";
+            schedule(delayMillis);
+        }
+
+        synchronized void stop() {
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            intervalMillis = 0;
+        }
+
+        synchronized boolean isRunning() { return intervalMillis > 0; }
+
+        // Called when a due refresh actually begins; the lag is how late that is (e.g. behind a busy EDT)
+        synchronized void started() {
+            lagMillis = Math.max(0, System.currentTimeMillis() - dueAt);
+        }
+
+        // A due refresh could not start because something else is running; it is retried shortly instead of dropped
+        synchronized void postpone() {
+            if (!isRunning()) return;
+            reason = "busy, retrying";
+            schedule(MIN_DELAY_MS);
+        }
+
+        synchronized void completed(long fetchMillis, int newEvents, boolean failed) {
+            if (!isRunning()) return;
+            long now = System.currentTimeMillis();
+            if (failed) {
+                failures++;
+                delayMillis = Math.min(MAX_BACKOFF_MS, intervalMillis << Math.min(failures, 10));
+                reason = "backing off after " + failures + (failures == 1 ? " failure" : " failures");
+            } else {
+                failures = 0;
+                if (lastCompletedAt > 0) {
+                    double rate = newEvents * 1000.0 / Math.max(1, now - lastCompletedAt);
+                    eventsPerSecond = eventsPerSecond < 0 ? rate : RATE_ALPHA * rate + (1 - RATE_ALPHA) * eventsPerSecond;
+                }
+                double perInterval = eventsPerSecond * intervalMillis / 1000.0;
+                if (eventsPerSecond < 0) {
+                    delayMillis = intervalMillis;
+                    reason = "";
+                } else if (perInterval >= BUSY_EVENTS_PER_INTERVAL) {
+                    delayMillis = Math.max(MIN_DELAY_MS, intervalMillis / BUSY_SHRINK);
+                    reason = String.format(Locale.ROOT, "%.0f events/s arriving", eventsPerSecond);
+                } else if (perInterval < 1) {
+                    delayMillis = Math.min(delayMillis * 2, intervalMillis * QUIET_STRETCH);
+                    reason = "quiet logs";
+                } else {
+                    delayMillis = intervalMillis;
+                    reason = "";
+                }
+                if (delayMillis < fetchMillis * COST_FACTOR) {
+                    delayMillis = fetchMillis * COST_FACTOR;
+                    reason = "fetches take " + (fetchMillis + 500) / 1000 + " s";
+                }
+            }
+            lastCompletedAt = now;
+            schedule(delayMillis);
+        }
+
+        private void schedule(long delay) {
+            if (pending != null) pending.cancel(false);
+            dueAt = System.currentTimeMillis() + delay;
+            pending = executor.schedule(trigger, delay, TimeUnit.MILLISECONDS);
+        }
+
+        // For the status bar, e.g. "next auto-refresh in 2 min (quiet logs), last one started 15 ms late"
+        synchronized String describe() {
+            if (!isRunning()) return "auto-refresh off";
+            if (pending.isDone()) return "auto-refresh running";
+            long seconds = Math.max(0, (dueAt - System.currentTimeMillis() + 500) / 1000);
+            String next = seconds >= 120 ? (seconds + 30) / 60 + " min" : seconds + " s";
+            return "next auto-refresh in " + next + (reason.isEmpty() ? "" : " (" + reason + ")")
+                    + (lagMillis > 0 ? ", last one started " + lagMillis + " ms late" : "");
+        }
+    }
+
+    // Reads exported .evtx files without PowerShell: file header, 64KB chunks and BinXML records are decoded
+    // straight into LogEntry fields. Chunks carry their own string and template tables, so they decode in parallel.
+    static final class EvtxReader {
+        private static final int FILE_HEADER_SIZE = 4096;
+        private static final int CHUNK_SIZE = 65536;
+        private static final int CHUNK_HEADER_SIZE = 512;
+        private static final int RECORD_HEADER_SIZE = 24;
+        private static final int CHUNKS_PER_MAPPING = 16384; // Map at most 1 GB at a time
+        private static final int RECORD_SIGNATURE = 0x00002a2a; // "**\0\0"
+        private static final byte[] FILE_SIGNATURE = "ElfFile\0".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] CHUNK_SIGNATURE = "ElfChnk\0".getBytes(StandardCharsets.US_ASCII);
+        private static final long FILETIME_EPOCH_OFFSET = 116444736000000000L; // 100ns ticks from 1601 to 1970
+
+        private EvtxReader() {}
+
+        // Entries of one file, newest first like Get-WinEvent
+        static List<LogEntry> read(Path file) throws IOException {
+            List<ByteBuffer> chunks = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < FILE_HEADER_SIZE) throw new IOException("Not an EVTX file (too small): " + file);
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_SIZE);
+                if (!hasSignature(header, 0, FILE_SIGNATURE)) throw new IOException("Not an EVTX file (bad signature): " + file);
+
+                long chunkCount = (size - FILE_HEADER_SIZE) / CHUNK_SIZE;
+                for (long first = 0; first < chunkCount; first += CHUNKS_PER_MAPPING) {
+                    int count = (int) Math.min(CHUNKS_PER_MAPPING, chunkCount - first);
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                            FILE_HEADER_SIZE + first * CHUNK_SIZE, (long) count * CHUNK_SIZE);
+                    for (int i = 0; i < count; i++) {
+                        chunks.add(window.slice(i * CHUNK_SIZE, CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+                    }
+                }
+            } // Mappings stay valid after the channel is closed
+            // A full log wraps around and overwrites its oldest chunks, so file order is not record order
+            chunks.sort(Comparator.comparingLong(EvtxReader::firstRecordId));
+
+            Stream<ByteBuffer> chunkStream = ParseStage.PARALLELISM > 1 ? chunks.parallelStream() : chunks.stream();
+            List<LogEntry> entries;
+            try {
+                entries = ParseStage.compute(() -> chunkStream
+                        .map(EvtxReader::readChunk)
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList())); // Encounter order = record order = oldest first
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("EVTX import interrupted");
+            }
+            Collections.reverse(entries);
+            return entries;
+        }
+
+        // First EventRecordID in the chunk header; unused chunks go last
+        private static long firstRecordId(ByteBuffer chunk) {
+            return hasSignature(chunk, 0, CHUNK_SIGNATURE) ? chunk.getLong(24) : Long.MAX_VALUE;
+        }
+
+        private static List<LogEntry> readChunk(ByteBuffer chunk) {
+            List<LogEntry> entries = new ArrayList<>();
+            if (!hasSignature(chunk, 0, CHUNK_SIGNATURE)) return entries; // Pre-allocated, never written
+            int freeSpaceOffset = chunk.getInt(48);
+            int end = freeSpaceOffset > CHUNK_HEADER_SIZE && freeSpaceOffset <= CHUNK_SIZE ? freeSpaceOffset : CHUNK_SIZE;
+
+            ChunkDecoder decoder = new ChunkDecoder(chunk);
+            int offset = CHUNK_HEADER_SIZE;
+            while (offset + RECORD_HEADER_SIZE + 4 <= end && chunk.getInt(offset) == RECORD_SIGNATURE) {
+                int size = chunk.getInt(offset + 4);
+                if (size < RECORD_HEADER_SIZE + 4 || offset + size > end) break;
+                try {
+                    LogEntry entry = decoder.decodeRecord(offset, size);
+                    entry.anomalyType = classifyEntry(entry);
+                    entry.searchText = entry.block().toLowerCase();
+                    entries.add(entry);
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping unreadable EVTX record at chunk offset " + offset + ": " + e);
+                }
+                offset += size;
+            }
+            return entries;
+        }
+
+        private static boolean hasSignature(ByteBuffer buffer, int offset, byte[] signature) {
+            for (int i = 0; i < signature.length; i++) {
+                if (buffer.get(offset + i) != signature[i]) return false;
+            }
+            return true;
+        }
+
+        static long fileTimeToEpochMillis(long fileTime) {
+            return (fileTime - FILETIME_EPOCH_OFFSET) / 10_000;
+        }
+
+        // --- BinXML model: template trees hold Substitution slots that are filled per record ---
+
+        static final class XmlElement {
+            final String name;
+            final List<String[]> attributes = new ArrayList<>(2); // {name, value}
+            final List<Object> content = new ArrayList<>(2);      // String or XmlElement (or Substitution in templates)
+            final List<Object[]> templateAttributes;              // {name, List<Object> parts} before substitution
+
+            XmlElement(String name, boolean template) {
+                this.name = name;
+                this.templateAttributes = template ? new ArrayList<>(2) : null;
+            }
+
+            String text() {
+                StringBuilder text = new StringBuilder();
+                for (Object part : content) {
+                    if (part instanceof String) text.append((String) part);
+                }
+                return text.toString();
+            }
+
+            String attribute(String attributeName) {
+                for (String[] attribute : attributes) {
+                    if (attribute[0].equals(attributeName)) return attribute[1];
+                }
+                return null;
+            }
+
+            XmlElement child(String childName) {
+                for (Object part : content) {
+                    if (part instanceof XmlElement && ((XmlElement) part).name.equals(childName)) return (XmlElement) part;
+                }
+                return null;
+            }
+        }
+
+        static final class Substitution {
+            final int index;
+            final boolean optional;
+
+            Substitution(int index, boolean optional) {
+                this.index = index;
+                this.optional = optional;
+            }
+        }
+
+        // Decodes the records of one chunk; name and template caches are keyed by chunk-relative offset
+        static final class ChunkDecoder {
+            private final ByteBuffer chunk;
+            private final Map<Integer, String> names = new HashMap<>();
+            private final Map<Integer, List<Object>> templates = new HashMap<>();
+            private int pos;
+
+            ChunkDecoder(ByteBuffer chunk) {
+                this.chunk = chunk;
+            }
+
+            LogEntry decodeRecord(int offset, int size) {
+                long recordId = chunk.getLong(offset + 8);
+                long writtenTime = chunk.getLong(offset + 16);
+                pos = offset + RECORD_HEADER_SIZE;
+                List<Object> nodes = parseStream(offset + size - 4, null, null);
+
+                XmlElement event = null;
+                for (Object node : nodes) {
+                    if (node instanceof XmlElement) { event = (XmlElement) node; break; }
+                }
+                if (event == null) throw new IllegalStateException("record " + recordId + " has no Event element");
+                return toLogEntry(event, recordId, writtenTime);
+            }
+
+            // Parses tokens up to EndOfStream (or limit). In a template definition, substitutions become
+            // placeholders; for a record, values[] are the template instance's substitution values.
+            private List<Object> parseStream(int limit, int[] valueTypes, int[] valueOffsets) {
+                List<Object> nodes = new ArrayList<>(2);
+                while (pos < limit) {
+                    int token = u8(pos);
+                    switch (token & 0x0F) {
+                        case 0x00: // EndOfStream
+                            pos++;
+                            return nodes;
+                        case 0x0F: // FragmentHeader: token, major, minor, flags
+                            pos += 4;
+                            break;
+                        case 0x0C: // TemplateInstance
+                            nodes.addAll(parseTemplateInstance());
+                            break;
+                        case 0x01: // OpenStartElement
+                            nodes.add(parseElement(valueTypes != null));
+                            break;
+                        default:
+                            throw new IllegalStateException(String.format("unexpected BinXML token 0x%02x at %d", token, pos));
+                    }
+                }
+                return nodes;
+            }
+
+            private XmlElement parseElement(boolean template) {
+                boolean hasAttributes = (u8(pos) & 0x40) != 0;
+                pos += 1 + 2 + 4; // token, dependency id, data size
+                String name = readName();
+                XmlElement element = new XmlElement(name, template);
+                if (hasAttributes) {
+                    pos += 4; // attribute list size
+                    while ((u8(pos) & 0x0F) == 0x06) {
+                        pos++;
+                        String attributeName = readName();
+                        List<Object> parts = new ArrayList<>(1);
+                        while (isValueToken(u8(pos))) parts.add(parseValueNode());
+                        if (template) element.templateAttributes.add(new Object[] {attributeName, parts});
+                        else element.attributes.add(new String[] {attributeName, joinText(parts)});
+                    }
+                }
+
+                int close = u8(pos++);
+                if (close == 0x03) return element; // CloseEmptyElement
+                if (close != 0x02) throw new IllegalStateException(String.format("expected CloseStartElement, got 0x%02x", close));
+
+                while (true) {
+                    int token = u8(pos);
+                    int type = token & 0x0F;
+                    if (type == 0x04) { pos++; return element; } // EndElement
+                    if (type == 0x01) element.content.add(parseElement(template));
+                    else if (isValueToken(token)) element.content.add(parseValueNode());
+                    else if (type == 0x07) { pos++; element.content.add(readCountedString()); } // CDATA
+                    else if (type == 0x0A) { pos++; readName(); } // PITarget
+                    else if (type == 0x0B) { pos++; readCountedString(); } // PIData
+                    else if (type == 0x00) return element; // Truncated fragment
+                    else throw new IllegalStateException(String.format("unexpected BinXML token 0x%02x in element %s", token, name));
+                }
+            }
+
+            private static boolean isValueToken(int token) {
+                int type = token & 0x0F;
+                return type == 0x05 || type == 0x08 || type == 0x09 || type == 0x0D || type == 0x0E;
+            }
+
+            // Value text, character/entity reference, or a substitution placeholder
+            private Object parseValueNode() {
+                int token = u8(pos++);
+                switch (token & 0x0F) {
+                    case 0x05: { // Value: type byte then (for strings) a counted UTF-16 string
+                        int valueType = u8(pos++);
+                        if (valueType == 0x01) return readCountedString();
+                        throw new IllegalStateException("unsupported inline value type " + valueType);
+                    }
+                    case 0x08: { // CharRef
+                        char c = (char) u16(pos);
+                        pos += 2;
+                        return String.valueOf(c);
+                    }
+                    case 0x09: { // EntityRef
+                        String entity = readName();
+                        switch (entity) {
+                            case "amp": return "&";
+                            case "lt": return "<";
+                            case "gt": return ">";
+                            case "quot": return "\"";
+                            case "apos": return "'";
+                            default: return "&" + entity + ";";
+                        }
+                    }
+                    default: { // NormalSubstitution (0x0D) / OptionalSubstitution (0x0E)
+                        int index = u16(pos);
+                        pos += 3; // id, value type
+                        return new Substitution(index, (token & 0x0F) == 0x0E);
+                    }
+                }
+            }
+
+            private List<Object> parseTemplateInstance() {
+                pos += 2; // token, unknown
+                pos += 4; // template id
+                int definitionOffset = chunk.getInt(pos);
+                pos += 4;
+
+                List<Object> template = templates.get(definitionOffset);
+                if (definitionOffset == pos) { // Definition is inline here: next offset, GUID, data size, fragment
+                    int dataSize = chunk.getInt(pos + 20);
+                    int dataStart = pos + 24;
+                    if (template == null) template = parseTemplateDefinition(dataStart, dataSize);
+                    pos = dataStart + dataSize;
+                } else if (template == null) { // Defined by an earlier record in this chunk
+                    int saved = pos;
+                    template = parseTemplateDefinition(definitionOffset + 24, chunk.getInt(definitionOffset + 20));
+                    pos = saved;
+                }
+                templates.put(definitionOffset, template);
+
+                int count = chunk.getInt(pos);
+                pos += 4;
+                int[] sizes = new int[count];
+                int[] types = new int[count];
+                for (int i = 0; i < count; i++) {
+                    sizes[i] = u16(pos);
+                    types[i] = u8(pos + 2);
+                    pos += 4;
+                }
+                int[] offsets = new int[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = pos;
+                    pos += sizes[i];
+                }
+
+                int resume = pos;
+                List<Object> resolved = new ArrayList<>(template.size());
+                for (Object node : template) {
+                    if (node instanceof XmlElement) resolved.add(instantiate((XmlElement) node, types, offsets, sizes));
+                }
+                pos = resume;
+                return resolved;
+            }
+
+            private List<Object> parseTemplateDefinition(int dataStart, int dataSize) {
+                pos = dataStart;
+                return parseStream(dataStart + dataSize, new int[0], new int[0]);
+            }
+
+            // Copies a template tree, replacing each substitution with its rendered value
+            private XmlElement instantiate(XmlElement template, int[] types, int[] offsets, int[] sizes) {
+                XmlElement element = new XmlElement(template.name, false);
+                for (Object[] attribute : template.templateAttributes) {
+                    @SuppressWarnings("unchecked")
+                    List<Object> parts = (List<Object>) attribute[1];
+                    StringBuilder value = new StringBuilder();
+                    for (Object part : parts) {
+                        if (part instanceof Substitution) value.append(renderSubstitution((Substitution) part, types, offsets, sizes, null));
+                        else value.append(part);
+                    }
+                    element.attributes.add(new String[] {(String) attribute[0], value.toString()});
+                }
+                for (Object part : template.content) {
+                    if (part instanceof XmlElement) {
+                        element.content.add(instantiate((XmlElement) part, types, offsets, sizes));
+                    } else if (part instanceof Substitution) {
+                        String text = renderSubstitution((Substitution) part, types, offsets, sizes, element);
+                        if (!text.isEmpty()) element.content.add(text);
+                    } else {
+                        element.content.add(part);
+                    }
+                }
+                return element;
+            }
+
+            // Embedded BinXML values (EventData/UserData payloads) are appended to parent as elements
+            private String renderSubstitution(Substitution substitution, int[] types, int[] offsets, int[] sizes, XmlElement parent) {
+                int i = substitution.index;
+                if (i >= types.length) return "";
+                if (types[i] == 0x21) {
+                    if (parent != null && sizes[i] > 0) {
+                        int saved = pos;
+                        pos = offsets[i];
+                        for (Object node : parseStream(offsets[i] + sizes[i], null, null)) {
+                            if (node instanceof XmlElement) parent.content.add(node);
+                        }
+                        pos = saved;
+                    }
+                    return "";
+                }
+                return renderValue(types[i], offsets[i], sizes[i]);
+            }
+
+            private String renderValue(int type, int offset, int size) {
+                switch (type) {
+                    case 0x00: return "";
+                    case 0x01: return utf16(offset, size);
+                    case 0x02: return stripNulls(new String(bytes(offset, size), StandardCharsets.ISO_8859_1));
+                    case 0x03: return Byte.toString(chunk.get(offset));
+                    case 0x04: return Integer.toString(u8(offset));
+                    case 0x05: return Short.toString(chunk.getShort(offset));
+                    case 0x06: return Integer.toString(u16(offset));
+                    case 0x07: return Integer.toString(chunk.getInt(offset));
+                    case 0x08: return Integer.toUnsignedString(chunk.getInt(offset));
+                    case 0x09: return Long.toString(chunk.getLong(offset));
+                    case 0x0A: return Long.toUnsignedString(chunk.getLong(offset));
+                    case 0x0B: return Float.toString(chunk.getFloat(offset));
+                    case 0x0C: return Double.toString(chunk.getDouble(offset));
+                    case 0x0D: return chunk.getInt(offset) != 0 ? "true" : "false";
+                    case 0x0F: return guid(offset);
+                    case 0x10: return size == 8 ? "0x" + Long.toHexString(chunk.getLong(offset)) : "0x" + Integer.toHexString(chunk.getInt(offset));
+                    case 0x11: return Instant.ofEpochMilli(fileTimeToEpochMillis(chunk.getLong(offset))).toString();
+                    case 0x12: return systemTime(offset);
+                    case 0x13: return sid(offset, size);
+                    case 0x14: return "0x" + Integer.toHexString(chunk.getInt(offset));
+                    case 0x15: return "0x" + Long.toHexString(chunk.getLong(offset));
+                    case 0x81: return String.join(", ", utf16(offset, size).split("\0"));
+                    default: return hex(offset, size); // Binary (0x0E) and anything unrecognised
+                }
+            }
+
+            private LogEntry toLogEntry(XmlElement event, long recordId, long writtenTime) {
+                LogEntry entry = new LogEntry();
+                XmlElement system = event.child("System");
+                String provider = "";
+                long createdMillis = fileTimeToEpochMillis(writtenTime);
+                entry.recordId = recordId;
+                if (system != null) {
+                    XmlElement providerElement = system.child("Provider");
+                    if (providerElement != null && providerElement.attribute("Name") != null) provider = providerElement.attribute("Name");
+                    entry.eventId = parseIntOr(childText(system, "EventID"), -2);
+                    entry.level = levelDisplayName(parseIntOr(childText(system, "Level"), 4));
+                    String channel = childText(system, "Channel");
+                    if (channel != null && !channel.isEmpty()) entry.logName = channel;
+                    String recordText = childText(system, "EventRecordID");
+                    if (recordText != null && !recordText.isEmpty()) entry.recordId = Long.parseLong(recordText.trim());
+                    XmlElement created = system.child("TimeCreated");
+                    if (created != null && created.attribute("SystemTime") != null) {
+                        try { createdMillis = Instant.parse(created.attribute("SystemTime")).toEpochMilli(); }
+                        catch (RuntimeException ignored) { /* Keep the record's written time */ }
+                    }
+                }
+                entry.timestamp = EVENT_TIME_FORMAT.format(Instant.ofEpochMilli(createdMillis));
+                entry.timeMillis = createdMillis;
+
+                // Event payload as "Name: value" lines (EventData/Data or the leaves of UserData)
+                Map<String, String> data = new LinkedHashMap<>();
+                XmlElement eventData = event.child("EventData");
+                if (eventData != null) {
+                    int unnamed = 0;
+                    for (Object part : eventData.content) {
+                        if (!(part instanceof XmlElement)) continue;
+                        XmlElement field = (XmlElement) part;
+                        String name = field.attribute("Name");
+                        data.put(name != null ? name : "Data" + (unnamed++), field.text());
+                    }
+                }
+                XmlElement userData = event.child("UserData");
+                if (userData != null) collectLeaves(userData, data);
+
+                StringBuilder message = new StringBuilder();
+                message.append(provider.isEmpty() ? "Event" : provider).append(" event ").append(entry.eventId).append('.');
+                for (Map.Entry<String, String> field : data.entrySet()) {
+                    message.append("\n\t").append(field.getKey()).append(":\t").append(field.getValue());
+                }
+                entry.message = message.toString();
+
+                if ("Security".equalsIgnoreCase(entry.logName) && LogEntry.SECURITY_DETAIL_IDS.contains(entry.eventId)) {
+                    String ip = firstPresent(data, "IpAddress", "ClientAddress");
+                    if (ip != null) entry.sourceIp = LogEntry.normalizeSourceIp(ip.trim());
+                    String account = firstPresent(data, "TargetUserName", "MemberName", "SubjectUserName");
+                    if (account != null) entry.accountName = LogEntry.normalizeAccountName(account.trim());
+                }
+
+                return entry; // The Format-List block derives from the fields
+            }
+
+            private static void collectLeaves(XmlElement element, Map<String, String> data) {
+                boolean hasChildren = false;
+                for (Object part : element.content) {
+                    if (part instanceof XmlElement) {
+                        hasChildren = true;
+                        collectLeaves((XmlElement) part, data);
+                    }
+                }
+                if (!hasChildren && !element.name.equals("UserData")) data.putIfAbsent(element.name, element.text());
+            }
+
+            private static String firstPresent(Map<String, String> data, String... names) {
+                for (String name : names) {
+                    String value = data.get(name);
+                    if (value != null) return value;
+                }
+                return null;
+            }
+
+            private static String childText(XmlElement parent, String name) {
+                XmlElement child = parent.child(name);
+                return child != null ? child.text() : null;
+            }
+
+            private static int parseIntOr(String text, int fallback) {
+                if (text == null) return fallback;
+                try { return Integer.parseInt(text.trim()); } catch (NumberFormatException e) { return fallback; }
+            }
+
+            // --- Low-level readers (all offsets chunk-relative) ---
+
+            // Name reference; when the name structure is defined right here, step over it
+            private String readName() {
+                int offset = chunk.getInt(pos);
+                pos += 4;
+                String name = names.get(offset);
+                if (name == null) {
+                    int length = u16(offset + 6);
+                    name = utf16(offset + 8, length * 2);
+                    names.put(offset, name);
+                }
+                if (offset == pos) pos += 10 + u16(offset + 6) * 2; // next, hash, count, chars, NUL
+                return name;
+            }
+
+            private String readCountedString() {
+                int length = u16(pos);
+                String text = utf16(pos + 2, length * 2);
+                pos += 2 + length * 2;
+                return text;
+            }
+
+            private String utf16(int offset, int size) {
+                return stripNulls(new String(bytes(offset, size), StandardCharsets.UTF_16LE));
+            }
+
+            private byte[] bytes(int offset, int size) {
+                byte[] bytes = new byte[size];
+                chunk.get(offset, bytes);
+                return bytes;
+            }
+
+            private static String stripNulls(String text) {
+                int end = text.length();
+                while (end > 0 && text.charAt(end - 1) == '\0') end--;
+                return text.substring(0, end);
+            }
+
+            private String guid(int offset) {
+                return String.format("{%08X-%04X-%04X-%02X%02X-%02X%02X%02X%02X%02X%02X}",
+                        chunk.getInt(offset), chunk.getShort(offset + 4), chunk.getShort(offset + 6),
+                        chunk.get(offset + 8), chunk.get(offset + 9), chunk.get(offset + 10), chunk.get(offset + 11),
+                        chunk.get(offset + 12), chunk.get(offset + 13), chunk.get(offset + 14), chunk.get(offset + 15));
+            }
+
+            private String systemTime(int offset) {
+                return String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", u16(offset), u16(offset + 2), u16(offset + 6),
+                        u16(offset + 8), u16(offset + 10), u16(offset + 12), u16(offset + 14));
+            }
+
+            private String sid(int offset, int size) {
+                if (size < 8) return hex(offset, size);
+                int subCount = u8(offset + 1);
+                long authority = 0;
+                for (int i = 2; i < 8; i++) authority = (authority << 8) | u8(offset + i);
+                StringBuilder sid = new StringBuilder("S-").append(u8(offset)).append('-').append(authority);
+                for (int i = 0; i < subCount && 8 + i * 4 + 4 <= size; i++) {
+                    sid.append('-').append(Integer.toUnsignedString(chunk.getInt(offset + 8 + i * 4)));
+                }
+                return sid.toString();
+            }
+
+            private String hex(int offset, int size) {
+                StringBuilder hex = new StringBuilder(size * 2);
+                for (int i = 0; i < size; i++) hex.append(String.format("%02X", chunk.get(offset + i)));
+                return hex.toString();
+            }
+
+            private static String joinText(List<Object> parts) {
+                StringBuilder text = new StringBuilder();
+                for (Object part : parts) {
+                    if (part instanceof String) text.append((String) part);
+                }
+                return text.toString();
+            }
+
+            private int u8(int offset) { return chunk.get(offset) & 0xFF; }
 
-        LogEntry(String block) {
-            this.originalLine = block; // Store the raw block
-            parseLogBlock(block);
+            private int u16(int offset) { return chunk.getShort(offset) & 0xFFFF; }
         }
 
-        private void parseLogBlock(String block) {
-             try {
-                 Matcher m;
-
-                 m = TIME_PATTERN.matcher(block);
-                 if (m.find()) this.timestamp = m.group(1).trim();
+        static String levelDisplayName(int level) {
+            switch (level) {
+                case 1: return "Critical";
+                case 2: return "Error";
+                case 3: return "Warning";
+                case 5: return "Verbose";
+                default: return "Information"; // 0 (LogAlways) and 4 both display as Information
+            }
+        }
+    }
 
-                 m = ID_PATTERN.matcher(block);
-                 if (m.find()) {
-                     try { this.eventId = Integer.parseInt(m.group(1).trim()); }
-                     catch (NumberFormatException nfe) { this.eventId = -2; } // Indicate parsing error
-                 }
 
-                 m = LEVEL_PATTERN.matcher(block);
-                 if (m.find()) this.level = m.group(1).trim();
+    // ListModel over a filter result: element i is the store row of the i-th match counted from the newest
+    // (the store keeps rows oldest first), so the list only resolves the rows it is about to paint. Once the
+    // store's rows move, the old result is stale until the refilter lands; its elements read as -1 (a blank
+    // line) instead of pointing at other events.
+    @SuppressWarnings("serial") // Never serialized
+    static final class LogListModel extends AbstractListModel<Integer> {
+        private final EventStore store;
+        private RowBitmap rows = new RowBitmap();
+        private int layoutVersion;
+
+        LogListModel(EventStore store) { this.store = store; }
+
+        void setRows(RowBitmap rows) {
+            int oldSize = this.rows.cardinality();
+            this.rows = rows;
+            layoutVersion = store.layoutVersion();
+            if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+            if (rows.cardinality() > 0) fireIntervalAdded(this, 0, rows.cardinality() - 1);
+        }
 
-                 m = LOGNAME_PATTERN.matcher(block);
-                  if (m.find()) this.logName = m.group(1).trim();
+        @Override
+        public int getSize() { return rows.cardinality(); }
 
-                 m = MESSAGE_PATTERN.matcher(block);
-                 if (m.find()){
-                     this.message = m.group(1).trim();
-                 } else {
-                     this.message = block; // Fallback
-                 }
+        @Override
+        public Integer getElementAt(int index) {
+            return layoutVersion == store.layoutVersion() ? rows.select(rows.cardinality() - 1 - index) : -1;
+        }
+    }
 
-                 // --- Security Specific Fields (Only parse if relevant log/ID) ---
-                 if ("Security".equalsIgnoreCase(logName) && (eventId == 4625 || eventId == 4740 || eventId == 4720 || eventId == 4726 || eventId == 4732 || eventId == 4756 || eventId == 4728)) { // Added relevant IDs
-                     m = IP_PATTERN.matcher(block);
-                     if (m.find()) {
-                         this.sourceIp = m.group(1).trim();
-                         if (this.sourceIp.equals("::1") || this.sourceIp.equals("127.0.0.1")) this.sourceIp = "localhost";
-                         else if (this.sourceIp.equals("-") || this.sourceIp.trim().isEmpty()) this.sourceIp = "N/A";
-                     }
+    // Paints one log line: anomaly rows get their severity color as background and keyword hits a
+    // highlight. Lines come from the store's display cache, so scrolling rarely formats anything.
+    @SuppressWarnings("serial") // Never serialized
+    static final class LogRowRenderer extends JComponent implements ListCellRenderer<Integer> {
+        private static final int TEXT_INSET = 4;
+        private final EventStore store;
+        private final Color[] rowColors = new Color[AnomalyType.values().length]; // Opaque: blended once, not per pixel
+        private Color rowColorsBackground;
+        private String keyword = ""; // Lower-case, as used for filtering
+        private String line = "";
+        private Color rowColor;
+        private boolean selected;
+        private Color selectionBackground, selectionForeground;
+
+        LogRowRenderer(EventStore store) {
+            this.store = store;
+            setOpaque(true);
+        }
 
-                     m = ACCOUNT_PATTERN.matcher(block);
-                     if (m.find()) {
-                         this.accountName = m.group(1).trim();
-                         if (this.accountName.equals("-") || this.accountName.trim().isEmpty()) this.accountName = "N/A";
-                     } else {
-                          m = TARGET_ACCOUNT_PATTERN.matcher(block);
-                          if (m.find()) {
-                              this.accountName = m.group(1).trim();
-                              if (this.accountName.equals("-") || this.accountName.trim().isEmpty()) this.accountName = "N/A";
-                          }
-                     }
-                 }
+        void setKeyword(String keyword) { this.keyword = keyword; }
 
-            } catch (Exception e) {
-                System.err.println("Parsing error for block: " + block.substring(0, Math.min(block.length(), 50)) + "... - " + e.getMessage());
-                if (this.message.isEmpty()) this.message = block; // Ensure message has fallback
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Integer> list, Integer row, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            if (!list.getBackground().equals(rowColorsBackground)) {
+                rowColorsBackground = list.getBackground();
+                for (AnomalyType type : AnomalyType.values()) {
+                    Color color = getColorForAnomaly(type);
+                    rowColors[type.ordinal()] = color != null ? blend(color, rowColorsBackground) : null;
+                }
             }
+            line = row >= 0 ? store.displayLine(row) : "";
+            rowColor = row >= 0 ? rowColors[store.row(row).anomalyType().ordinal()] : null;
+            selected = isSelected;
+            setFont(list.getFont());
+            setBackground(list.getBackground());
+            setForeground(list.getForeground());
+            selectionBackground = list.getSelectionBackground();
+            selectionForeground = list.getSelectionForeground();
+            return this;
         }
 
-
         @Override
-        public String toString() {
-            // Simple representation for the text pane
-             return String.format("[%s] %s ID:%-5d Lvl:%-10s | %s",
-                     timestamp != null ? timestamp : "??",
-                     logName,
-                     eventId,
-                     level,
-                     message.split("\n")[0] // Show first line of message
-             );
+        protected void paintComponent(Graphics g) {
+            Map<?, ?> textHints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (textHints != null) ((Graphics2D) g).addRenderingHints(textHints);
+
+            int width = getWidth(), height = getHeight();
+            g.setColor(selected ? selectionBackground : rowColor != null ? rowColor : getBackground());
+            g.fillRect(0, 0, width, height);
+
+            FontMetrics metrics = g.getFontMetrics(getFont());
+            if (!keyword.isEmpty()) {
+                String lowerCaseLine = line.toLowerCase();
+                g.setColor(SEARCH_COLOR);
+                for (int hit = lowerCaseLine.indexOf(keyword); hit >= 0; hit = lowerCaseLine.indexOf(keyword, hit + 1)) {
+                    int start = Math.min(hit, line.length()), end = Math.min(hit + keyword.length(), line.length());
+                    int x = TEXT_INSET + metrics.stringWidth(line.substring(0, start));
+                    g.fillRect(x, 0, metrics.stringWidth(line.substring(start, end)), height);
+                }
+            }
+            g.setFont(getFont());
+            g.setColor(selected ? selectionForeground : getForeground());
+            g.drawString(line, TEXT_INSET, (height - metrics.getHeight()) / 2 + metrics.getAscent());
+        }
+
+        // The translucent color as it looks painted over the background
+        private static Color blend(Color color, Color background) {
+            float alpha = color.getAlpha() / 255f;
+            return new Color(Math.round(color.getRed() * alpha + background.getRed() * (1 - alpha)),
+                             Math.round(color.getGreen() * alpha + background.getGreen() * (1 - alpha)),
+                             Math.round(color.getBlue() * alpha + background.getBlue() * (1 - alpha)));
         }
     }
 
@@ -231,14 +5357,54 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         add(topPanel, BorderLayout.NORTH);
 
         // --- Center Panel (Log Display) ---
-        logPane = new JTextPane();
-        logPane.setEditable(false);
-        logPane.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        JScrollPane scrollPane = new JScrollPane(logPane);
+        logListModel = new LogListModel(eventStore);
+        logList = new JList<>(logListModel) {
+            @Override
+            public int getNextMatch(String prefix, int startIndex, Position.Bias bias) {
+                return -1; // Type-ahead search would format every row
+            }
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                PipelineMetrics.recordSince(PipelineMetrics.Stage.RENDER, start);
+                if (!firstPaintReported && getModel().getSize() > 0) reportFirstPaint();
+            }
+        };
+        logList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        logRowRenderer = new LogRowRenderer(eventStore);
+        logList.setCellRenderer(logRowRenderer);
+        // Fixed cell sizes keep the list from measuring every row; only visible rows are rendered
+        FontMetrics logMetrics = logList.getFontMetrics(logList.getFont());
+        logList.setFixedCellHeight(logMetrics.getHeight() + 2);
+        logList.setFixedCellWidth(logMetrics.charWidth('m') * LOG_LINE_COLUMNS);
+        logList.setTransferHandler(new TransferHandler() { // Ctrl+C copies the selected lines, not row numbers
+            @Override
+            public int getSourceActions(JComponent c) { return COPY; }
+
+            @Override
+            protected java.awt.datatransfer.Transferable createTransferable(JComponent c) {
+                StringBuilder text = new StringBuilder();
+                for (int row : logList.getSelectedValuesList()) {
+                    if (row >= 0) text.append(eventStore.displayLine(row)).append('\n');
+                }
+                return new java.awt.datatransfer.StringSelection(text.toString());
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(logList);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         scrollPane.getHorizontalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
 
+        // --- Right Panel (Top Talkers, counted at ingest) ---
+        JPanel topTalkersPanel = new JPanel(new GridLayout(3, 1, 0, 5));
+        topTalkersPanel.setPreferredSize(new Dimension(260, 0));
+        topTalkersPanel.add(topTalkersList("Top Failing Sources", topSourcesModel));
+        topTalkersPanel.add(topTalkersList("Most Targeted Accounts", topAccountsModel));
+        topTalkersPanel.add(topTalkersList("Noisiest Events", topEventsModel));
+        add(topTalkersPanel, BorderLayout.EAST);
+
         // --- Bottom Control Panel (GridBagLayout) ---
         JPanel controlPanel = new JPanel(new GridBagLayout());
         controlPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
@@ -275,7 +5441,7 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
 
         gbc.gridx = 5; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx=0.5;
         searchField = new JTextField();
-        searchField.setToolTipText("Enter text to filter logs (case-insensitive)");
+        searchField.setToolTipText("Type to filter logs (case-insensitive); applied as you type");
         controlPanel.add(searchField, gbc);
         gbc.fill = GridBagConstraints.NONE; gbc.weightx=0;
 
@@ -289,12 +5455,12 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
 
         gbc.gridx = 0; gbc.gridwidth = 1;
         refreshButton = new JButton("Refresh"); // Simplified text
-        refreshButton.setToolTipText("Fetch latest logs ("+MAX_EVENTS_TO_FETCH+" max) and perform anomaly detection");
+        refreshButton.setToolTipText("Fetch events newer than the last refresh ("+MAX_EVENTS_TO_FETCH+" max per log) and perform anomaly detection");
         controlPanel.add(refreshButton, gbc);
 
         gbc.gridx = 1;
         exportButton = new JButton("Export Visible");
-        exportButton.setToolTipText("Export the currently displayed logs (on this page) to a text file");
+        exportButton.setToolTipText("Export the logs matching the current filters to a text file");
         controlPanel.add(exportButton, gbc);
 
         // Info Button added here
@@ -317,8 +5483,13 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         intervalBox.setToolTipText("Set the auto-refresh interval");
         controlPanel.add(intervalBox, gbc);
 
+        gbc.gridx = 5;
+        importButton = new JButton("Import .evtx");
+        importButton.setToolTipText("Load exported .evtx files directly (no PowerShell needed)");
+        controlPanel.add(importButton, gbc);
+
         // Reset All Button
-        gbc.gridx = 5; gbc.gridwidth=2; // Span remaining columns
+        gbc.gridx = 6; gbc.gridwidth=1;
         gbc.anchor = GridBagConstraints.EAST; // Align Reset button to the right
         resetAllButton = new JButton("Reset All & Refresh");
         resetAllButton.setToolTipText("Reset all filters to default and fetch fresh logs");
@@ -326,19 +5497,30 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         gbc.anchor = GridBagConstraints.WEST; // Reset anchor
         gbc.fill = GridBagConstraints.NONE;
 
-        // --- Row 2: Pagination Controls ---
-         gbc.gridy = 2; gbc.gridx = 0; gbc.gridwidth = 7;
-         gbc.anchor = GridBagConstraints.CENTER;
-         JPanel paginationPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
-         prevPageButton = new JButton("<< Previous");
-         pageLabel = new JLabel("Page 1 of 1");
-         nextPageButton = new JButton("Next >>");
-         paginationPanel.add(prevPageButton);
-         paginationPanel.add(pageLabel);
-         paginationPanel.add(nextPageButton);
-         controlPanel.add(paginationPanel, gbc);
-         gbc.anchor = GridBagConstraints.WEST;
+        // --- Row 2: Host filter (only with more than one host), History, Diagnostics ---
+        gbc.gridy = 2; gbc.gridx = 0;
+        JLabel hostLabel = new JLabel("Host:");
+        controlPanel.add(hostLabel, gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        hostFilterComboBox = new JComboBox<>();
+        hostFilterComboBox.addItem(FILTER_ALL_HOSTS);
+        hosts.forEach(host -> hostFilterComboBox.addItem(host.name));
+        hostFilterComboBox.setToolTipText("Filter logs by the machine they were collected from (hosts are listed in " + HOSTS_FILE + ")");
+        controlPanel.add(hostFilterComboBox, gbc);
+        hostLabel.setVisible(hosts.size() > 1);
+        hostFilterComboBox.setVisible(hosts.size() > 1);
+
+        gbc.gridx = 5;
+        historyButton = new JButton("History...");
+        historyButton.setToolTipText("Load archived events from the last days (kept in " + ARCHIVE_DIR + ")");
+        controlPanel.add(historyButton, gbc);
+        gbc.gridx = 6;
+        diagnosticsButton = new JButton("Diagnostics");
+        diagnosticsButton.setToolTipText("Time spent in each pipeline stage (also published over JMX as " + PipelineMetrics.OBJECT_NAME + ")");
+        controlPanel.add(diagnosticsButton, gbc);
+        gbc.fill = GridBagConstraints.NONE;
 
+        // --- Removed Pagination Controls (the log list scrolls through every match) ---
         // --- Row 3: Removed Threshold Configuration ---
         // The layout automatically adjusts
 
@@ -349,16 +5531,192 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         refreshButton.addActionListener(e -> loadAndAnalyzeLogs());
         searchButton.addActionListener(e -> applyFiltersAndDisplay());
         searchField.addActionListener(e -> applyFiltersAndDisplay());
-        logNameFilterComboBox.addActionListener(e -> applyFiltersAndDisplay());
-        anomalyFilterComboBox.addActionListener(e -> applyFiltersAndDisplay());
+        filterDebounceTimer = new javax.swing.Timer(FILTER_DEBOUNCE_MS, e -> startFilterTask());
+        filterDebounceTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { requestFilter(true, true); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { requestFilter(true, true); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { }
+        });
+        // Checked after the event, so a caller that starts a load right after changing the selection wins
+        logNameFilterComboBox.addActionListener(e -> { applyFiltersAndDisplay(); SwingUtilities.invokeLater(this::reloadIfFilterWidened); });
+        hostFilterComboBox.addActionListener(e -> applyFiltersAndDisplay()); // Every host is always fetched
+        anomalyFilterComboBox.addActionListener(e -> { applyFiltersAndDisplay(); SwingUtilities.invokeLater(this::reloadIfFilterWidened); });
         exportButton.addActionListener(e -> exportLogs());
+        importButton.addActionListener(e -> importEvtxFiles());
+        historyButton.addActionListener(e -> loadHistory());
+        diagnosticsButton.addActionListener(e -> showDiagnostics());
         autoRefreshCheckbox.addActionListener(e -> toggleAutoRefresh(autoRefreshCheckbox.isSelected()));
         infoButton.addActionListener(e -> showEventIdInfo()); // Bind Info Button
         resetAllButton.addActionListener(e -> resetAllFiltersAndRefresh()); // Bind Reset Button
-        prevPageButton.addActionListener(e -> changePage(-1));
-        nextPageButton.addActionListener(e -> changePage(1));
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                saveSessionSnapshot(); // Runs before EXIT_ON_CLOSE ends the JVM
+                for (Host host : hosts) {
+                    try {
+                        host.close();
+                    } catch (IOException ex) {
+                        System.err.println("Could not close " + host.name + ": " + ex.getMessage());
+                    }
+                }
+            }
+        });
+
+        loadAnomalyRules();
+        for (Host host : hosts) {
+            try {
+                host.rateBaseline.load(host.baselineFile());
+            } catch (IOException e) {
+                System.err.println("Starting with empty rate baselines for " + host.name + ": " + e.getMessage());
+            }
+        }
+        try {
+            eventArchive = new EventArchive(ARCHIVE_DIR);
+        } catch (IOException e) {
+            System.err.println("Event archive disabled: " + e.getMessage());
+            historyButton.setEnabled(false);
+        }
+    }
+
+    // The hosts file's hosts, or just this machine if the file cannot be used
+    private static List<Host> loadHosts() {
+        try {
+            return Host.loadList(HOSTS_FILE);
+        } catch (IOException e) {
+            System.err.println("Collecting from this machine only: " + e.getMessage());
+            return new ArrayList<>(List.of(Host.local()));
+        }
+    }
 
-        updatePaginationControls();
+    // Writes what is loaded now, so the next launch can show it right away (runs on the EDT)
+    private void saveSessionSnapshot() {
+        long start = System.nanoTime();
+        List<LogEntry> entries = new ArrayList<>(eventStore.size());
+        for (int row = eventStore.size() - 1; row >= 0; row--) entries.add(eventStore.row(row).toLogEntry()); // Newest first
+        try {
+            new SessionSnapshot(entries, (String) hostFilterComboBox.getSelectedItem(), (String) logNameFilterComboBox.getSelectedItem(), (String) anomalyFilterComboBox.getSelectedItem(),
+                                searchField.getText(), highWaterMarks, topTalkers).write(SNAPSHOT_FILE);
+            PipelineMetrics.recordSince(PipelineMetrics.Stage.SNAPSHOT_SAVE, start);
+        } catch (IOException e) {
+            System.err.println("Could not save the session snapshot: " + e.getMessage());
+        }
+    }
+
+    // Shows the previous session's events, filters and top talkers; refresh marks carry over, so the next
+    // refresh only fetches what is newer (runs on the EDT)
+    private void restoreSessionSnapshot(SessionSnapshot snapshot, long readMillis) {
+        if (snapshot == null || snapshot.entries.isEmpty() || eventStore.size() > 0) return; // Nothing saved, or a fetch won
+        long start = System.nanoTime();
+        eventStore.addAll(snapshot.entries);
+        highWaterMarks.putAll(snapshot.highWaterMarks);
+        loadedPlan = QueryPlan.forFilter(snapshot.logNameFilter, snapshot.anomalyFilter, anomalyRules); // At most what it was fetched with
+        topTalkers.merge(snapshot.topTalkers);
+        refreshTopTalkers();
+        hostFilterComboBox.setSelectedItem(snapshot.hostFilter); // Stays on All Hosts if the host is no longer listed
+        logNameFilterComboBox.setSelectedItem(snapshot.logNameFilter);
+        anomalyFilterComboBox.setSelectedItem(snapshot.anomalyFilter);
+        searchField.setText(snapshot.textFilter);
+        applyFiltersAndDisplay();
+        PipelineMetrics.record(PipelineMetrics.Stage.SNAPSHOT_RESTORE, readMillis * 1_000_000 + System.nanoTime() - start, snapshot.entries.size());
+    }
+
+    // Time from JVM start until the log list first shows events, appended to the status line
+    private void reportFirstPaint() {
+        firstPaintReported = true;
+        long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+        SwingUtilities.invokeLater(() -> statusLabel.setText(statusLabel.getText() + " (first paint " + millis + " ms after launch)"));
+    }
+
+    // Runs the privilege check off the EDT and warns once the answer is in
+    private void probeAdminRights() {
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                try { // Use a command that requires admin privileges
+                    ProcessBuilder pb = new ProcessBuilder("cmd", "/c", "openfiles > nul 2>&1");
+                    // Alternative: "fsutil dirty query %systemdrive% > nul 2>&1"
+                    Process p = pb.start();
+                    return p.waitFor() == 0;
+                } catch (Exception io) {
+                    return false; // Ignore, assume not admin
+                }
+            }
+
+            @Override
+            protected void done() {
+                boolean isAdmin = false;
+                try { isAdmin = get(); } catch (Exception ignored) { }
+                if (!isAdmin) {
+                    JOptionPane.showMessageDialog(NetworkAnomalyDetectorGUI.this,
+                        "WARNING: Application likely lacks administrator privileges.\n" +
+                        "Fetching Security logs and some System logs might fail.\n\n" +
+                        "Please restart the application 'Run as administrator' for full functionality.",
+                        "Permissions Warning", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Loads the rules file (writing the defaults there on first run) and reloads it whenever it changes
+    private void loadAnomalyRules() {
+        try {
+            if (Files.notExists(RULES_FILE)) {
+                Files.createDirectories(RULES_FILE.toAbsolutePath().getParent());
+                Files.writeString(RULES_FILE, AnomalyRules.DEFAULT_RULES, StandardCharsets.UTF_8);
+            }
+            anomalyRules = AnomalyRules.load(RULES_FILE);
+        } catch (IOException e) {
+            System.err.println("Using built-in anomaly rules: " + e.getMessage());
+            statusLabel.setText("Status: ⚠️ Using built-in anomaly rules (" + e.getMessage() + ")");
+        }
+        Thread watcherThread = new Thread(new RuleFileWatcher(RULES_FILE,
+                rules -> SwingUtilities.invokeLater(() -> applyAnomalyRules(rules)),
+                error -> SwingUtilities.invokeLater(() -> setStatus("⚠️ Anomaly rules not reloaded: " + error, progressBar.isVisible()))),
+                "RuleFileWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    // Swaps in reloaded rules and re-classifies what is already loaded in the background (runs on the EDT)
+    private void applyAnomalyRules(AnomalyRules rules) {
+        anomalyRules = rules;
+        startReclassifyTask(rules);
+        setStatus("Reloaded " + rules.size() + " anomaly rules from " + RULES_FILE, false);
+        reloadIfFilterWidened(); // The filtered type may now come from other event IDs
+    }
+
+    // Classifies the stored rows with the rules on a background thread, then swaps the result into the store
+    // and refilters. Like a filter run, it runs again if store updates got in its way or moved rows meanwhile.
+    private void startReclassifyTask(AnomalyRules rules) {
+        if (reclassifyTask != null) reclassifyTask.cancel(true);
+        reclassifyTask = new SwingWorker<>() {
+            @Override
+            protected EventStore.Classification doInBackground() {
+                return eventStore.classify(rules);
+            }
+
+            @Override
+            protected void done() {
+                if (reclassifyTask != this) return; // Superseded by a newer reload
+                reclassifyTask = null;
+                EventStore.Classification classification;
+                try {
+                    classification = get();
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    setStatus("❌ Error applying anomaly rules: " + e.getCause().getMessage(), false);
+                    return;
+                }
+                if (classification == null || !eventStore.apply(classification, rules)) {
+                    startReclassifyTask(rules);
+                    return;
+                }
+                refreshDisplayKeepingPosition();
+            }
+        };
+        reclassifyTask.execute();
     }
 
     // Helper to populate anomaly filter dropdown
@@ -464,7 +5822,7 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
                 "<span style='color: " + COLOR_WARNING_HTML + ";'>Warning</span>",
 
                 // Event Descriptions - Use direct HTML concatenation/formatting for color spans
-                // Match color to the painter used in getPainterForAnomaly for the corresponding AnomalyType
+                // Match color to the row color used in getColorForAnomaly for the corresponding AnomalyType
                 "<span style='color: " + COLOR_SECURITY_HTML + ";'>* <b>4625:</b> Failed Logon (Check reason/sub-status code in message)</span>", // FAILED_LOGIN -> SECURITY
                 "<span style='color: " + COLOR_SECURITY_HTML + ";'>* <b>4740:</b> Account Lockout (Often follows multiple 4625 events)</span>", // ACCOUNT_LOCKOUT -> SECURITY
                 "<span style='color: " + COLOR_WARNING_HTML + ";'>* <b>4771:</b> Kerberos Pre-Authentication Failed (Often bad password before 4625)</span>", // WARNING (Not specific AnomalyType)
@@ -538,324 +5896,398 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
             progressBar.setVisible(busy);
             refreshButton.setEnabled(!busy);
             searchButton.setEnabled(!busy);
+            hostFilterComboBox.setEnabled(!busy);
             logNameFilterComboBox.setEnabled(!busy);
             anomalyFilterComboBox.setEnabled(!busy);
             searchField.setEnabled(!busy);
             infoButton.setEnabled(!busy);
+            importButton.setEnabled(!busy);
+            historyButton.setEnabled(!busy && eventArchive != null);
             resetAllButton.setEnabled(!busy);
-            prevPageButton.setEnabled(!busy && currentPage > 1);
-            nextPageButton.setEnabled(!busy && currentPage < totalPages);
         });
     }
 
 
+    private static JScrollPane topTalkersList(String title, DefaultListModel<String> model) {
+        JList<String> list = new JList<>(model);
+        list.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(title));
+        return scrollPane;
+    }
+
+    // Reads the sketches only; cost does not depend on how many events are loaded
+    private void refreshTopTalkers() {
+        showTopTalkers(topSourcesModel, topTalkers.topSources(TOP_TALKERS_SHOWN));
+        showTopTalkers(topAccountsModel, topTalkers.topAccounts(TOP_TALKERS_SHOWN));
+        showTopTalkers(topEventsModel, topTalkers.topEvents(TOP_TALKERS_SHOWN));
+    }
+
+    private static void showTopTalkers(DefaultListModel<String> model, List<Map.Entry<String, Long>> top) {
+        model.clear();
+        for (Map.Entry<String, Long> entry : top) model.addElement(String.format("%,8d  %s", entry.getValue(), entry.getKey()));
+    }
+
+
     private void loadAndAnalyzeLogs() {
-        setStatus("Fetching & analyzing logs...", true);
-        logPane.setText("");
-        allLogEntries.clear();
-        currentlyFilteredEntries.clear();
-        currentPage = 1;
-        totalPages = 1;
-        clearHighlights(); // Clear painters on the pane
-
-        SwingWorker<List<LogEntry>, String> worker = new SwingWorker<>() {
-            private List<LogEntry> fetchedEntries = new ArrayList<>();
+        // Once every log has a high-water mark, a refresh only asks for newer events and appends them. A full load
+        // narrows the source query to the current filters; refreshes keep the query the store was loaded with.
+        boolean incremental = !highWaterMarks.isEmpty();
+        if (!incremental) loadedPlan = currentQueryPlan();
+        QueryPlan plan = loadedPlan;
+        fetching = true;
+        if (incremental) {
+            setStatus("Fetching new events...", true);
+        } else {
+            setStatus("Fetching & analyzing logs...", true);
+            eventStore.clear();
+            hosts.forEach(host -> host.burstDetector.clear());
+            topTalkers.clear();
+            refreshTopTalkers();
+            currentlyFilteredRows = new RowBitmap();
+            logListModel.setRows(currentlyFilteredRows);
+        }
+        Map<String, HighWaterMark> marks = new HashMap<>(highWaterMarks);
+        Instant fetchStart = Instant.now();
+
+        // Every host streams on its own thread; entries are parsed and classified as soon as their block is framed,
+        // then each host hands them to the EDT in batches
+        SwingWorker<Void, LogEntry> worker = new SwingWorker<>() {
             private String errorMessage = null;
-            private long currentAnomalyCount = 0;
+            private boolean failed; // The query failed on every host, as opposed to finding nothing
+            private final AtomicLong currentAnomalyCount = new AtomicLong();
+            private int newEntryCount = 0;
+            private final AtomicLong uniqueCount = new AtomicLong();
+            private final List<String> succeededHosts = new ArrayList<>(); // Hosts all of whose logs get marks
+            private final Map<String, Long> newestRecordIds = new HashMap<>(); // By hostLogKey; updated on the EDT only
+            private final Map<String, List<LogEntry>> toArchive = new ConcurrentHashMap<>(); // Host -> its fetched events
+            private volatile long queuedSince; // nanoTime of the oldest batch the EDT has not picked up yet, 0 if none
+
+            private void publishBatch(List<LogEntry> batch) {
+                if (queuedSince == 0) queuedSince = System.nanoTime();
+                publish(batch.toArray(new LogEntry[0]));
+                batch.clear();
+            }
+
+            // One per host, used on that host's thread only; also keeps the host's events for the archive, if any
+            private MultiHostCollector.HostSink batchingSink(Host host) {
+                List<LogEntry> batch = new ArrayList<>(PUBLISH_BATCH_SIZE);
+                List<LogEntry> archived = eventArchive != null ? toArchive.computeIfAbsent(host.name, name -> new ArrayList<>()) : null;
+                long[] lastPublish = {System.currentTimeMillis()};
+                return new MultiHostCollector.HostSink() {
+                    @Override
+                    public void accept(LogEntry entry) {
+                        batch.add(entry);
+                        if (entry.anomalyType != AnomalyType.NONE) currentAnomalyCount.incrementAndGet();
+                        if (entry.anomalyType.isAggregate()) return;
+                        uniqueCount.incrementAndGet();
+                        if (archived != null) archived.add(entry);
+                    }
+
+                    @Override
+                    public void poll() {
+                        long now = System.currentTimeMillis();
+                        if (!batch.isEmpty() && (batch.size() >= PUBLISH_BATCH_SIZE || now - lastPublish[0] >= PUBLISH_INTERVAL_MS)) {
+                            publishBatch(batch);
+                            lastPublish[0] = now;
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                        if (!batch.isEmpty()) publishBatch(batch);
+                    }
+                };
+            }
 
             @Override
-            protected List<LogEntry> doInBackground() throws Exception {
-                publish("Fetching logs from " + String.join(", ", TARGET_LOG_NAMES) + "...");
-                progressBar.setString("Fetching...");
-
-                // Adjusted PowerShell Command - Simpler, gets all levels + specific Security IDs
-                // Rely on Get-WinEvent's default newest-first ordering
-                String logNameFilter = "(@('" + String.join("','", TARGET_LOG_NAMES) + "'))";
-                String securityIds = "@(4625, 4740, 1102, 4720, 4722, 4726, 4673, 4732, 4756, 4728)"; // IDs to fetch specifically
-                String commandFilter = String.format(
-                    "Get-WinEvent -FilterHashtable @{LogName=%s} -MaxEvents %d | Select-Object TimeCreated, LogName, Id, LevelDisplayName, Message | Format-List ; " +
-                    "Get-WinEvent -FilterHashtable @{LogName='Security'; ID=%s} -MaxEvents %d | Select-Object TimeCreated, LogName, Id, LevelDisplayName, Message | Format-List",
-                    logNameFilter, MAX_EVENTS_TO_FETCH, securityIds, MAX_EVENTS_TO_FETCH
-                );
-
-                String[] command = {"powershell.exe", "-NoProfile", "-Command", commandFilter };
+            protected Void doInBackground() throws Exception {
+                String from = hosts.size() > 1 ? " on " + hosts.size() + " hosts" : "";
+                setStatus((incremental ? "Fetching new events from " : "Fetching logs from ") + String.join(", ", plan.logNames()) + from + "...", true);
+                SwingUtilities.invokeLater(() -> progressBar.setString("Streaming..."));
 
+                List<MultiHostCollector.Outcome> outcomes;
                 try {
-                    ProcessBuilder pb = new ProcessBuilder(command);
-                    pb.redirectErrorStream(true);
-                    Process process = pb.start();
-
-                    Map<String, LogEntry> uniqueEntries = new LinkedHashMap<>();
-
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-                        String line;
-                        StringBuilder currentEntryText = new StringBuilder();
-                        while ((line = reader.readLine()) != null) {
-                            if (line.trim().isEmpty() && currentEntryText.length() > 0) {
-                                if (currentEntryText.toString().matches("(?s)^TimeCreated\\s*:.*")) {
-                                    String block = currentEntryText.toString().trim();
-                                    LogEntry entry = new LogEntry(block);
-                                    String key = entry.timestamp + "|" + entry.eventId + "|" + entry.logName + "|" + entry.message.hashCode(); // Improved key for deduplication
-                                    uniqueEntries.putIfAbsent(key, entry);
-                                }
-                                currentEntryText.setLength(0);
-                            } else if (!line.trim().isEmpty()) {
-                                if (line.matches("^TimeCreated\\s*:.*") && currentEntryText.length() > 0) {
-                                    String block = currentEntryText.toString().trim();
-                                     LogEntry entry = new LogEntry(block);
-                                     String key = entry.timestamp + "|" + entry.eventId + "|" + entry.logName + "|" + entry.message.hashCode();
-                                     uniqueEntries.putIfAbsent(key, entry);
-                                    currentEntryText.setLength(0);
-                                }
-                                currentEntryText.append(line).append("\n");
-                            }
+                    outcomes = MultiHostCollector.collect(hosts, plan, marks, topTalkers, this::batchingSink);
+                } catch (InterruptedException ex) {
+                    failed = true;
+                    errorMessage = "❌ Error running PowerShell: " + ex.getMessage();
+                    System.err.println(errorMessage);
+                    return null;
+                }
+
+                List<String> problems = new ArrayList<>();
+                for (MultiHostCollector.Outcome outcome : outcomes) {
+                    Host host = outcome.host;
+                    String problem = null;
+                    // What a failed host stored stays and its marks move past it, so it is archived as well; a host
+                    // abandoned past its timeout may still be adding to its list
+                    if (eventArchive != null && !outcome.abandoned()) {
+                        try {
+                            eventArchive.appendAll(toArchive.getOrDefault(host.name, List.of()));
+                        } catch (IOException e) {
+                            System.err.println("Could not archive fetched events: " + e.getMessage());
                         }
-                         if (currentEntryText.length() > 0 && currentEntryText.toString().matches("(?s)^TimeCreated\\s*:.*")) {
-                              String block = currentEntryText.toString().trim();
-                              LogEntry entry = new LogEntry(block);
-                              String key = entry.timestamp + "|" + entry.eventId + "|" + entry.logName + "|" + entry.message.hashCode();
-                              uniqueEntries.putIfAbsent(key, entry);
-                         }
-                    } // end reader try
-
-                    fetchedEntries.addAll(uniqueEntries.values());
-
-                    // Sort entries chronologically DESCENDING (newest first)
-                    // Assuming timestamp format is reasonably sortable as string (like ISO 8601 or consistent system format)
-                    fetchedEntries.sort(Comparator.comparing((LogEntry e) -> e.timestamp,
-                                                             Comparator.nullsLast(Comparator.reverseOrder())));
-
-
-                    int exitCode = process.waitFor();
-                    if (exitCode != 0) {
-                        System.err.println("Warning: PowerShell process exited with code " + exitCode);
-                        if (fetchedEntries.isEmpty()) {
-                             errorMessage = "❌ PowerShell Error (Code " + exitCode + "). Run as Admin? Check command.";
-                             fetchedEntries.add(new LogEntry(errorMessage));
+                    }
+                    if (outcome.succeeded()) {
+                        try {
+                            host.rateBaseline.save(host.baselineFile());
+                        } catch (IOException e) {
+                            System.err.println("Could not save rate baselines of " + host.name + ": " + e.getMessage());
+                        }
+                        if (outcome.reported != null) {
+                            System.err.println("Warning: " + (host.isLocal() ? "" : host.name + ": ") + "PowerShell reported errors: " + outcome.reported);
+                            if (outcome.engine.acceptedCount() == 0) {
+                                String firstError = outcome.reported.lines().findFirst().orElse("");
+                                problem = host.isLocal() ? "❌ PowerShell Error: " + firstError + " Run as Admin? Check command."
+                                                         : "❌ " + host.name + ": PowerShell Error: " + firstError;
+                            }
                         }
+                    } else {
+                        problem = host.isLocal() ? "❌ Error running PowerShell: " + outcome.error : "❌ " + host.name + ": " + outcome.error;
+                        System.err.println(problem);
+                    }
+                    if (problem == null) {
+                        succeededHosts.add(host.name);
+                    } else {
+                        problems.add(problem);
+                        if (!incremental) publish(new LogEntry(problem));
                     }
-
-                } catch (IOException | InterruptedException ex) {
-                    errorMessage = "❌ Error running PowerShell: " + ex.getMessage();
-                    System.err.println(errorMessage); ex.printStackTrace();
-                    fetchedEntries.add(new LogEntry(errorMessage));
+                }
+                if (!problems.isEmpty()) {
+                    failed = succeededHosts.isEmpty();
+                    errorMessage = String.join(" ", problems);
                 }
 
-                if (fetchedEntries.isEmpty() && errorMessage == null) {
+                if (uniqueCount.get() == 0 && errorMessage == null && !incremental) {
                     errorMessage = "⚠️ No relevant events found in the specified logs.";
-                    fetchedEntries.add(new LogEntry(errorMessage));
-                }
-
-                // --- Anomaly Analysis (Simpler: Based on ID/Level only) ---
-                publish("Analyzing " + fetchedEntries.size() + " unique events...");
-                progressBar.setString("Analyzing...");
-
-                 for (LogEntry entry : fetchedEntries) { // Iterate directly over the final sorted list
-                      entry.anomalyType = AnomalyType.NONE; // Reset
-
-                      // Assign anomaly based on Log Name, Event ID, or Level
-                      if ("Security".equalsIgnoreCase(entry.logName)) {
-                           switch (entry.eventId) {
-                               case 4625: entry.anomalyType = AnomalyType.FAILED_LOGIN; break;
-                               case 4740: entry.anomalyType = AnomalyType.ACCOUNT_LOCKOUT; break;
-                               case 1102: entry.anomalyType = AnomalyType.AUDIT_LOG_CLEARED; break;
-                               case 4720: case 4722: case 4726: entry.anomalyType = AnomalyType.USER_ACCOUNT_CHANGE; break;
-                               case 4673: entry.anomalyType = AnomalyType.PRIVILEGE_ASSIGNED; break;
-                               case 4732: case 4756: case 4728: entry.anomalyType = AnomalyType.GROUP_MEMBERSHIP_CHANGE; break;
-                           }
-                      } else if ("System".equalsIgnoreCase(entry.logName)) {
-                           switch (entry.eventId) {
-                               case 7034: case 7031: entry.anomalyType = AnomalyType.SERVICE_CRASH; break;
-                               case 6008: case 41: entry.anomalyType = AnomalyType.UNEXPECTED_SHUTDOWN; break;
-                           }
-                      }
-
-                      // General Level-Based Anomaly (if not already flagged by specific ID)
-                      if (entry.anomalyType == AnomalyType.NONE) {
-                            if ("Critical".equalsIgnoreCase(entry.level)) entry.anomalyType = AnomalyType.CRITICAL_EVENT;
-                            else if ("Error".equalsIgnoreCase(entry.level)) entry.anomalyType = AnomalyType.ERROR_EVENT;
-                            else if ("Warning".equalsIgnoreCase(entry.level)) entry.anomalyType = AnomalyType.WARNING_EVENT;
-                      }
-                 } // End analysis loop
-
-                // Count total anomalies
-                currentAnomalyCount = fetchedEntries.stream().filter(e -> e.anomalyType != AnomalyType.NONE).count();
-
-                return fetchedEntries; // Return the final, sorted list
+                    publish(new LogEntry(errorMessage));
+                }
+                return null;
             }
 
             @Override
-            protected void process(List<String> chunks) {
-                for (String status : chunks) { setStatus(status, true); }
+            protected void process(List<LogEntry> chunks) {
+                // Runs on the EDT: append the batch and refresh the list without resetting its scroll position
+                long queued = queuedSince;
+                queuedSince = 0;
+                if (queued != 0) PipelineMetrics.recordSince(PipelineMetrics.Stage.EDT_QUEUE, queued);
+                eventStore.addAll(chunks);
+                for (LogEntry entry : chunks) {
+                    if (entry.recordId > 0) newestRecordIds.merge(hostLogKey(entry.host, entry.logName), entry.recordId, Math::max);
+                    if (entry.eventId > 0 && !entry.anomalyType.isAggregate()) newEntryCount++;
+                }
+                refreshDisplayKeepingPosition();
+                refreshTopTalkers();
+                setStatus(String.format("Streaming... %d new events so far, %d anomalies.",
+                                        newEntryCount, currentAnomalyCount.get()), true);
             }
 
             @Override
             protected void done() {
+                fetching = false;
                 try {
-                    allLogEntries = get(); // Get the final sorted list
-                    applyFiltersAndDisplay(); // Apply current filters (usually defaults after reset) and show first page
+                    get(); // Surface any exception thrown in doInBackground
+                    advanceHighWaterMarks(hosts.stream().map(host -> host.name).collect(Collectors.toList()), succeededHosts, plan.logNames(), newestRecordIds, fetchStart);
+
+                    eventStore.truncate(MAX_EVENTS_IN_MEMORY); // Drops the oldest
+                    refreshDisplayKeepingPosition();
+                    refreshTopTalkers();
 
                     String finalStatus;
-                     if (errorMessage != null && allLogEntries.stream().allMatch(e -> e.eventId <= 0)) {
+                    if (incremental && errorMessage == null) {
+                        finalStatus = String.format("Fetched %d new events (%d total). Detected %d new anomalies.",
+                                                    newEntryCount, eventStore.size(), currentAnomalyCount.get());
+                    } else if (errorMessage != null && !eventStore.hasEvents()) {
                         finalStatus = errorMessage;
                     } else if (errorMessage != null) {
                          finalStatus = String.format("⚠️ Fetched %d events (potential errors). Detected %d anomalies.",
-                                                    allLogEntries.size(), currentAnomalyCount);
+                                                    eventStore.size(), currentAnomalyCount.get());
+                         if (hosts.size() > 1) finalStatus += " " + errorMessage; // Which hosts failed
                     } else {
                         finalStatus = String.format("Fetched %d events. Detected %d anomalies.",
-                                                    allLogEntries.size(), currentAnomalyCount);
+                                                    eventStore.size(), currentAnomalyCount.get());
+                    }
+                    if (refreshScheduler.isRunning()) {
+                        refreshScheduler.completed(Duration.between(fetchStart, Instant.now()).toMillis(), newEntryCount, failed);
+                        finalStatus += " | " + refreshScheduler.describe();
                     }
                     setStatus(finalStatus, false);
                     progressBar.setString("Done");
+                    reloadIfFilterWidened(); // Rules may have been reloaded meanwhile
 
                 } catch (Exception e) {
                      setStatus("❌ Error processing results: " + e.getMessage(), false);
-                     logPane.setText("Error displaying results:\n" + e.getMessage());
-                    e.printStackTrace();
+                    refreshScheduler.completed(Duration.between(fetchStart, Instant.now()).toMillis(), 0, true);
                 }
             }
         };
         worker.execute();
     }
 
-    // Central method to apply all filters and update display
-    private void applyFiltersAndDisplay() {
-        filterLogEntries();
-        currentPage = 1;
-        displayCurrentPage();
+    // Fetch command for the next refresh: the plan's queries, above each log's mark once refreshes are incremental;
+    // on computerName when it is not null
+    static String buildFetchCommand(QueryPlan plan, Map<String, HighWaterMark> marks, String computerName) {
+        return plan.toCommand(marks, computerName, COMPACT_WIRE_FORMAT ? CompactRecord.POWERSHELL_SELECT : FORMAT_LIST_SELECT);
     }
 
-    // Applies filters based on UI selections, updates currentlyFilteredEntries
-    private void filterLogEntries() {
-        String selectedLogName = (String) logNameFilterComboBox.getSelectedItem();
-        String selectedAnomalyFilter = (String) anomalyFilterComboBox.getSelectedItem();
-        String keyword = searchField.getText().trim().toLowerCase();
+    // The source query for the filters as they are now
+    private QueryPlan currentQueryPlan() {
+        return QueryPlan.forFilter((String) logNameFilterComboBox.getSelectedItem(), (String) anomalyFilterComboBox.getSelectedItem(), anomalyRules);
+    }
 
-        // Debugging filter application
-        System.out.println("Filtering - Log: " + selectedLogName + ", Anomaly: " + selectedAnomalyFilter + ", Text: '" + keyword + "'");
-
-        currentlyFilteredEntries = allLogEntries.stream()
-                .filter(entry -> entry.eventId > 0) // Exclude pseudo error messages
-                .filter(entry -> FILTER_ALL_LOG_NAMES.equals(selectedLogName) || entry.logName.equalsIgnoreCase(selectedLogName))
-                .filter(entry -> {
-                    // Anomaly Filter Logic
-                    if (FILTER_SHOW_ALL.equals(selectedAnomalyFilter)) {
-                        return true; // Show all if 'Show All Logs' is selected
-                    } else if (FILTER_ALL_ANOMALIES.equals(selectedAnomalyFilter)) {
-                        boolean isAnomaly = entry.anomalyType != AnomalyType.NONE;
-                        // System.out.println(" Event ID " + entry.eventId + " Is Anomaly? " + isAnomaly + " (Type: " + entry.anomalyType + ")"); // Debugging line
-                        return isAnomaly; // Show if 'Show All Anomalies' is selected AND it's an anomaly
-                    } else {
-                        // Specific Anomaly Type Filter
-                        AnomalyType type = AnomalyType.fromDisplayName(selectedAnomalyFilter);
-                        return type != null && entry.anomalyType == type; // Show if specific type matches
-                    }
-                })
-                .filter(entry -> keyword.isEmpty() || entry.originalLine.toLowerCase().contains(keyword)) // Text Filter
-                .collect(Collectors.toList());
+    // A filter the stored events were not fetched for needs events that never arrived; reload them with its query
+    private void reloadIfFilterWidened() {
+        if (fetching || loadedPlan.covers(currentQueryPlan())) return;
+        highWaterMarks.clear();
+        loadAndAnalyzeLogs();
+    }
+
+    // Key of a host's log in the refresh and archive marks; this machine's logs keep their bare names
+    static String hostLogKey(String host, String logName) {
+        return LOCAL_HOST.equals(host) ? logName : host + "\\" + logName;
+    }
+
+    // Guards against records at or below the mark if the source returns an overlapping range
+    static boolean isBelowHighWaterMark(LogEntry entry, Map<String, HighWaterMark> marks) {
+        HighWaterMark mark = marks.get(entry.logName);
+        return mark != null && mark.recordId > 0 && entry.recordId > 0 && entry.recordId <= mark.recordId;
+    }
 
-        totalPages = (int) Math.ceil((double) currentlyFilteredEntries.size() / ITEMS_PER_PAGE);
-        if (totalPages == 0) totalPages = 1;
-        System.out.println("Filtering resulted in " + currentlyFilteredEntries.size() + " entries across " + totalPages + " pages.");
+    // Called on the EDT after a fetch. A log's mark moves up to the newest record stored from it even when its host
+    // failed partway: a refresh reads oldest first, so everything below was stored too, and fetching it again would
+    // store it twice (a failed full load, read newest first, just reached less far back). On the hosts the fetch
+    // succeeded on, logs that returned nothing fall back to the fetch start time. newestRecordIds is keyed by hostLogKey.
+    private void advanceHighWaterMarks(Collection<String> hostNames, Collection<String> succeededHosts, Set<String> logNames,
+                                       Map<String, Long> newestRecordIds, Instant fetchStart) {
+        for (String host : hostNames) {
+            for (String logName : logNames) {
+                String key = hostLogKey(host, logName);
+                if (!succeededHosts.contains(host) && !newestRecordIds.containsKey(key)) continue;
+                HighWaterMark previous = highWaterMarks.get(key);
+                long recordId = Math.max(newestRecordIds.getOrDefault(key, -1L), previous != null ? previous.recordId : -1L);
+                highWaterMarks.put(key, new HighWaterMark(recordId, fetchStart));
+            }
+        }
     }
 
+    // Assign anomaly based on Log Name, Event ID, or Level
+    static AnomalyType classifyEntry(LogEntry entry) {
+        return anomalyRules.classify(entry.logName, entry.eventId, entry.level, entry.message);
+    }
 
-    // Displays the logs corresponding to the current page from currentlyFilteredEntries
-    private void displayCurrentPage() {
-        logPane.setText("");
-        Highlighter highlighter = logPane.getHighlighter();
-        highlighter.removeAllHighlights(); // Clear previous highlights on redraw
+    // Key used to drop duplicates returned by the overlapping PowerShell queries
+    static String dedupeKey(LogEntry entry) {
+        return entry.timestamp + "|" + entry.eventId + "|" + entry.logName + "|" + entry.message.hashCode();
+    }
 
-        if (currentlyFilteredEntries.isEmpty() && !progressBar.isVisible()) {
-            logPane.setText("ℹ️ No logs match the current filter criteria.");
-            updatePaginationControls();
-            updateStatusForFilter(0, 0);
+    // Re-applies filters after new entries arrive; the list keeps its scroll position
+    // Called for every streamed batch. A filter already running is left to finish rather than restarted, and one more
+    // run follows it, so a large fetch rescans the store once per completed filter instead of once per batch.
+    private void refreshDisplayKeepingPosition() {
+        if (filterTask != null) {
+            refreshQueued = true;
             return;
         }
+        requestFilter(false, false);
+    }
 
-        StyledDocument doc = logPane.getStyledDocument();
-        SimpleAttributeSet normalAttrs = new SimpleAttributeSet();
-        StyleConstants.setFontFamily(normalAttrs, "Monospaced");
-        StyleConstants.setFontSize(normalAttrs, 12);
+    // Central method to apply all filters and update display
+    private void applyFiltersAndDisplay() {
+        requestFilter(false, true);
+    }
 
-        int startIndex = (currentPage - 1) * ITEMS_PER_PAGE;
-        int endIndex = Math.min(startIndex + ITEMS_PER_PAGE, currentlyFilteredEntries.size());
+    // Filtering runs off the EDT. Keystrokes restart a short debounce timer; every other trigger starts a
+    // run at once. A new run cancels the one in flight, and only the latest result reaches the list.
+    private void requestFilter(boolean debounce, boolean scrollToTop) {
+        scrollToTopOnFilter |= scrollToTop;
+        if (debounce) {
+            filterDebounceTimer.restart();
+        } else {
+            filterDebounceTimer.stop();
+            startFilterTask();
+        }
+    }
 
-        int displayedOnPage = 0;
-        int anomaliesOnPage = 0;
-        int currentOffset = 0;
+    // Filters on a background thread with the criteria as they are now, then swaps the result into the view
+    private void startFilterTask() {
+        if (filterTask != null) filterTask.cancel(true);
+        refreshQueued = false; // This run sees every event stored so far
+        String selectedHost = (String) hostFilterComboBox.getSelectedItem();
+        String selectedLogName = (String) logNameFilterComboBox.getSelectedItem();
+        String selectedAnomalyFilter = (String) anomalyFilterComboBox.getSelectedItem();
         String keyword = searchField.getText().trim().toLowerCase();
+        int layoutVersion = eventStore.layoutVersion();
 
-        // Make sure startIndex is valid before proceeding
-         if (startIndex < currentlyFilteredEntries.size()) {
-             for (int i = startIndex; i < endIndex; i++) {
-                 LogEntry entry = currentlyFilteredEntries.get(i);
-                 String line = entry.toString() + "\n";
-
-                 try {
-                     int startOffset = currentOffset;
-                     int endOffset = startOffset + line.length();
-                     doc.insertString(startOffset, line, normalAttrs);
-
-                     // Anomaly Highlighting
-                     if (entry.anomalyType != AnomalyType.NONE) {
-                         Highlighter.HighlightPainter painter = getPainterForAnomaly(entry.anomalyType); // Simpler call now
-                         if (painter != null) {
-                             try {
-                                 highlighter.addHighlight(startOffset, endOffset - 1, painter);
-                             } catch (BadLocationException ble) { /* Ignore */ }
-                         }
-                         anomaliesOnPage++;
-                     }
+        filterTask = new SwingWorker<>() {
+            private int anomalies;
 
-                     // Search Highlighting
-                     if (!keyword.isEmpty()) {
-                         String displayedTextLower = line.toLowerCase();
-                         int kwIdx = displayedTextLower.indexOf(keyword);
-                         while (kwIdx >= 0) {
-                             try {
-                                 int kwStart = startOffset + kwIdx;
-                                 int kwEnd = kwStart + keyword.length();
-                                 highlighter.addHighlight(kwStart, kwEnd, SEARCH_PAINTER);
-                                 kwIdx = displayedTextLower.indexOf(keyword, kwIdx + 1);
-                             } catch (BadLocationException ble) { break; }
-                         }
-                     }
+            @Override
+            protected RowBitmap doInBackground() {
+                long start = System.nanoTime();
+                RowBitmap rows = eventStore.filter(selectedHost, selectedLogName, selectedAnomalyFilter, keyword);
+                if (rows != null) {
+                    anomalies = eventStore.countAnomalies(rows);
+                    PipelineMetrics.record(PipelineMetrics.Stage.FILTER, System.nanoTime() - start, eventStore.size());
+                }
+                return rows;
+            }
 
-                     currentOffset = endOffset;
-                     displayedOnPage++;
+            @Override
+            protected void done() {
+                if (filterTask != this) return; // Superseded by a newer request
+                filterTask = null;
+                RowBitmap rows;
+                try {
+                    rows = get();
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    setStatus("❌ Error filtering logs: " + e.getCause().getMessage(), false);
+                    return;
+                }
+                if (rows == null || layoutVersion != eventStore.layoutVersion()) { // Rows moved meanwhile; run again
+                    startFilterTask();
+                    return;
+                }
+                currentlyFilteredRows = rows;
+                displayFilteredRows(keyword, anomalies);
+                if (refreshQueued) startFilterTask();
+            }
+        };
+        filterTask.execute();
+    }
 
-                 } catch (BadLocationException e) {
-                     e.printStackTrace();
-                     setStatus("Error updating display.", false);
-                     return;
-                 }
-             }
-         } else if (!allLogEntries.isEmpty() && !progressBar.isVisible()){
-             logPane.setText("ℹ️ No logs found for this page with current filters.");
-         }
 
+    // Points the log list at currentlyFilteredRows; the list repaints only the rows in view
+    private void displayFilteredRows(String keyword, int anomalies) {
+        logRowRenderer.setKeyword(keyword);
+        logListModel.setRows(currentlyFilteredRows);
+        logList.repaint(); // Keyword highlights may have changed even if the rows did not
+        if (scrollToTopOnFilter && !currentlyFilteredRows.isEmpty()) logList.ensureIndexIsVisible(0);
+        scrollToTopOnFilter = false;
 
-        logPane.setCaretPosition(0);
-        updatePaginationControls();
         if (!progressBar.isVisible()) {
-            updateStatusForFilter(displayedOnPage, anomaliesOnPage);
+            updateStatusForFilter(anomalies);
         }
     }
 
-     // Helper to get the correct painter based on anomaly type (level no longer needed here)
-     private Highlighter.HighlightPainter getPainterForAnomaly(AnomalyType type) {
+     // Helper to get the row color for an anomaly type (level no longer needed here)
+     static Color getColorForAnomaly(AnomalyType type) {
          switch (type) {
              // Critical/Severe first
              case AUDIT_LOG_CLEARED:
+             case BRUTE_FORCE_BURST:
+             case LOCKOUT_BURST:
              case CRITICAL_EVENT:
-                 return ANOMALY_CRITICAL_PAINTER;
+                 return ANOMALY_CRITICAL_COLOR;
 
              // Errors
              case SERVICE_CRASH:
              case UNEXPECTED_SHUTDOWN:
+             case RATE_SPIKE:
              case ERROR_EVENT:
-                 return ANOMALY_ERROR_PAINTER;
+                 return ANOMALY_ERROR_COLOR;
 
              // Specific Security Events (treated distinctly)
              case FAILED_LOGIN:
@@ -863,11 +6295,11 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
              case USER_ACCOUNT_CHANGE:
              case PRIVILEGE_ASSIGNED:
              case GROUP_MEMBERSHIP_CHANGE:
-                 return ANOMALY_SECURITY_GENERAL_PAINTER; // Purple for these
+                 return ANOMALY_SECURITY_GENERAL_COLOR; // Purple for these
 
              // Warnings
              case WARNING_EVENT:
-                 return ANOMALY_WARNING_PAINTER;
+                 return ANOMALY_WARNING_COLOR;
 
              // Should not happen if logic is correct, but have a fallback
              case NONE:
@@ -877,14 +6309,19 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
      }
 
 
-    // Updates the status bar based on filtering and pagination results
-    private void updateStatusForFilter(int displayedOnPage, int anomaliesOnPage) {
+    // Updates the status bar based on filtering results
+    private void updateStatusForFilter(int anomalies) {
         String filterDesc = "";
+        String hostFilter = (String) hostFilterComboBox.getSelectedItem();
         String logFilter = (String) logNameFilterComboBox.getSelectedItem();
         String anomalyFilter = (String) anomalyFilterComboBox.getSelectedItem();
         String textFilter = searchField.getText().trim();
 
-        if (!FILTER_ALL_LOG_NAMES.equals(logFilter)) filterDesc += "Log: " + logFilter;
+        if (!FILTER_ALL_HOSTS.equals(hostFilter)) filterDesc += "Host: " + hostFilter;
+        if (!FILTER_ALL_LOG_NAMES.equals(logFilter)) {
+            if (!filterDesc.isEmpty()) filterDesc += " | ";
+            filterDesc += "Log: " + logFilter;
+        }
         if (!FILTER_SHOW_ALL.equals(anomalyFilter)) {
             if (!filterDesc.isEmpty()) filterDesc += " | ";
             filterDesc += "Anomaly: " + anomalyFilter;
@@ -895,30 +6332,14 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         }
         if (filterDesc.isEmpty()) filterDesc = "All Logs";
 
-        setStatus(String.format("Showing %d logs (%d anomalies) on page %d of %d. Total matching: %d. Filter: [%s]",
-                displayedOnPage, anomaliesOnPage, currentPage, totalPages, currentlyFilteredEntries.size(), filterDesc), false);
-    }
-
-    // Updates the enabled state and text of pagination controls
-    private void updatePaginationControls() {
-         pageLabel.setText(String.format("Page %d of %d", currentPage, totalPages));
-         prevPageButton.setEnabled(currentPage > 1 && !progressBar.isVisible());
-         nextPageButton.setEnabled(currentPage < totalPages && !progressBar.isVisible());
-    }
-
-    // Handles changing the page
-    private void changePage(int direction) {
-        int newPage = currentPage + direction;
-        if (newPage >= 1 && newPage <= totalPages) {
-            currentPage = newPage;
-            displayCurrentPage();
-        }
+        setStatus(String.format("Showing %d matching logs (%d anomalies). Filter: [%s]",
+                currentlyFilteredRows.cardinality(), anomalies, filterDesc), false);
     }
 
     // --- Reset All Method ---
     private void resetAllFiltersAndRefresh() {
-        System.out.println("Resetting filters and refreshing...");
         // Reset filter components to default
+        hostFilterComboBox.setSelectedItem(FILTER_ALL_HOSTS);
         logNameFilterComboBox.setSelectedItem(FILTER_ALL_LOG_NAMES);
         anomalyFilterComboBox.setSelectedItem(FILTER_SHOW_ALL);
         searchField.setText("");
@@ -929,12 +6350,13 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         }
 
         // Clear current display immediately (optional, looks cleaner)
-        logPane.setText("");
-        allLogEntries.clear();
-        currentlyFilteredEntries.clear();
-        currentPage = 1;
-        totalPages = 1;
-        updatePaginationControls();
+        eventStore.clear();
+        hosts.forEach(host -> host.burstDetector.clear());
+        topTalkers.clear();
+        refreshTopTalkers();
+        highWaterMarks.clear(); // Next load is a full fetch
+        currentlyFilteredRows = new RowBitmap();
+        logListModel.setRows(currentlyFilteredRows);
         statusLabel.setText("Status: Resetting and fetching fresh logs...");
 
         // Trigger a fresh load and analysis
@@ -942,28 +6364,24 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
     }
 
 
-    // Clears all highlight painters from the log pane (Used internally now)
-    private void clearHighlights() {
-        if (logPane != null && logPane.getHighlighter() != null) {
-            logPane.getHighlighter().removeAllHighlights();
-        }
-    }
-
-
     private void exportLogs() {
-        // Export only the logs currently visible on the page
+        // Export the logs currently in the list (everything matching the filters)
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Export Visible Logs (Page " + currentPage + ")");
+        fileChooser.setDialogTitle("Export Visible Logs (" + currentlyFilteredRows.cardinality() + " entries)");
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
         String filters = ((String)logNameFilterComboBox.getSelectedItem()).replace(" ", "_") + "_" +
                          ((String)anomalyFilterComboBox.getSelectedItem()).replace(" ", "_");
-        fileChooser.setSelectedFile(new File("network_logs_" + filters + "_Page" + currentPage + "_" + timeStamp + ".txt"));
+        fileChooser.setSelectedFile(new File("network_logs_" + filters + "_" + timeStamp + ".txt"));
         int option = fileChooser.showSaveDialog(this);
 
         if (option == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
             try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
-                 logPane.write(writer);
+                 int[] rows = currentlyFilteredRows.toArray();
+                 for (int i = rows.length - 1; i >= 0; i--) { // Newest first, as listed
+                     writer.write(eventStore.displayLine(rows[i]));
+                     writer.write('\n');
+                 }
                  setStatus("✅ Visible logs exported to " + file.getName(), false);
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "❌ Error exporting logs: " + ex.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
@@ -972,61 +6390,239 @@ public class NetworkAnomalyDetectorGUI extends JFrame {
         }
     }
 
+    private void importEvtxFiles() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Event Log Files");
+        fileChooser.setMultiSelectionEnabled(true);
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Windows Event Logs (*.evtx)", "evtx"));
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File[] files = fileChooser.getSelectedFiles();
+
+        // Imported archives replace the live view; stop auto-refresh so they are not overwritten
+        if (autoRefreshCheckbox.isSelected()) {
+            autoRefreshCheckbox.setSelected(false);
+            toggleAutoRefresh(false);
+        }
+        setStatus("Importing " + files.length + " .evtx file(s)...", true);
+
+        SwingWorker<List<LogEntry>, Void> worker = new SwingWorker<>() {
+            private final List<String> failures = new ArrayList<>();
+            private final TopTalkers importedTalkers = new TopTalkers(); // Merged into the panel's once the import lands
+
+            @Override
+            protected List<LogEntry> doInBackground() {
+                List<LogEntry> imported = new ArrayList<>();
+                for (File file : files) {
+                    try {
+                        imported.addAll(EvtxReader.read(file.toPath())); // Decoded and classified on the parse pool
+                    } catch (IOException ex) {
+                        failures.add(file.getName() + ": " + ex.getMessage());
+                        System.err.println("Error importing " + file + ": " + ex.getMessage());
+                    }
+                }
+                imported.addAll(analyzeLoadedEvents(imported, importedTalkers));
+                return imported;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<LogEntry> imported = get();
+                    showLoadedEvents(imported, importedTalkers); // Each file is a newest-first run
+
+                    long anomalies = imported.stream().filter(e -> e.anomalyType != AnomalyType.NONE).count();
+                    long events = imported.stream().filter(e -> !e.anomalyType.isAggregate()).count();
+                    String status = String.format("Imported %d events from %d file(s). Detected %d anomalies.",
+                                                  events, files.length - failures.size(), anomalies);
+                    if (!failures.isEmpty()) {
+                        status = "⚠️ " + status + " " + failures.size() + " file(s) failed.";
+                        JOptionPane.showMessageDialog(NetworkAnomalyDetectorGUI.this, "❌ Could not import:\n" + String.join("\n", failures),
+                                                      "Import Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    setStatus(status, false);
+                } catch (Exception e) {
+                    setStatus("❌ Error importing .evtx files: " + e.getMessage(), false);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    // Loads archived events of the last few days (optionally one event ID) in place of the live view
+    private void loadHistory() {
+        JSpinner daysSpinner = new JSpinner(new SpinnerNumberModel(7, 1, 3650, 1));
+        JTextField eventIdField = new JTextField(6);
+        JPanel query = new JPanel(new GridLayout(2, 2, 5, 5));
+        query.add(new JLabel("Days to look back:"));
+        query.add(daysSpinner);
+        query.add(new JLabel("Event ID (blank for all):"));
+        query.add(eventIdField);
+        if (JOptionPane.showConfirmDialog(this, query, "Load History", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        int days = (Integer) daysSpinner.getValue();
+        int eventId;
+        try {
+            eventId = eventIdField.getText().isBlank() ? -1 : Integer.parseInt(eventIdField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "❌ Not an event ID: " + eventIdField.getText(), "Load History", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // History replaces the live view, like an import
+        if (autoRefreshCheckbox.isSelected()) {
+            autoRefreshCheckbox.setSelected(false);
+            toggleAutoRefresh(false);
+        }
+        setStatus("Loading " + days + " day(s) of history...", true);
+        long to = System.currentTimeMillis(), from = to - days * 86_400_000L;
+
+        SwingWorker<List<LogEntry>, Void> worker = new SwingWorker<>() {
+            private final TopTalkers loadedTalkers = new TopTalkers();
+            private int matched;
+
+            @Override
+            protected List<LogEntry> doInBackground() throws IOException {
+                // Only the newest MAX_EVENTS_IN_MEMORY matches are kept while the segments stream past
+                Comparator<LogEntry> byTime = Comparator.comparingLong((LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId);
+                PriorityQueue<LogEntry> newest = new PriorityQueue<>(byTime);
+                matched = eventArchive.query(from, to, eventId, entry -> {
+                    newest.add(entry);
+                    if (newest.size() > MAX_EVENTS_IN_MEMORY) newest.poll();
+                });
+                List<LogEntry> loaded = new ArrayList<>(newest);
+                loaded.sort(byTime.reversed()); // Newest first, like a fetch
+                loaded.addAll(analyzeLoadedEvents(loaded, loadedTalkers));
+                return loaded;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<LogEntry> loaded = get();
+                    showLoadedEvents(loaded, loadedTalkers);
+                    long anomalies = loaded.stream().filter(e -> e.anomalyType != AnomalyType.NONE).count();
+                    setStatus(String.format("Loaded %d of %d archived events from the last %d day(s)%s. Detected %d anomalies.",
+                                            Math.min(matched, MAX_EVENTS_IN_MEMORY), matched, days,
+                                            eventId >= 0 ? " with ID " + eventId : "", anomalies), false);
+                } catch (Exception e) {
+                    setStatus("❌ Error loading history: " + e.getMessage(), false);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    // Live per-stage latencies; refreshed once a second while the dialog is open
+    private void showDiagnostics() {
+        if (diagnosticsDialog == null) {
+            JTextArea table = new JTextArea(14, 90);
+            table.setEditable(false);
+            table.setFont(new Font("Monospaced", Font.PLAIN, 12));
+            javax.swing.Timer refresher = new javax.swing.Timer(1000, e -> table.setText(PipelineMetrics.INSTANCE.summary()));
+            JButton resetButton = new JButton("Reset");
+            resetButton.addActionListener(e -> {
+                PipelineMetrics.INSTANCE.reset();
+                table.setText(PipelineMetrics.INSTANCE.summary());
+            });
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttons.add(resetButton);
+
+            diagnosticsDialog = new JDialog(this, "Pipeline Diagnostics", false);
+            diagnosticsDialog.add(new JScrollPane(table), BorderLayout.CENTER);
+            diagnosticsDialog.add(buttons, BorderLayout.SOUTH);
+            diagnosticsDialog.pack();
+            diagnosticsDialog.setLocationRelativeTo(this);
+            diagnosticsDialog.addComponentListener(new java.awt.event.ComponentAdapter() {
+                @Override public void componentShown(java.awt.event.ComponentEvent e) { refresher.start(); }
+                @Override public void componentHidden(java.awt.event.ComponentEvent e) { refresher.stop(); }
+            });
+            refresher.setInitialDelay(0);
+        }
+        diagnosticsDialog.setVisible(true);
+    }
+
+    // Burst, rate-spike and top-talker analysis of events loaded in one go (imports, history), with fresh detectors
+    // and an unsaved baseline; returns the alerts, which go after the events they summarize. The events are fed
+    // oldest first, as DropSource and the headless collector feed decoded files.
+    private static List<LogEntry> analyzeLoadedEvents(List<LogEntry> entries, TopTalkers talkers) {
+        BurstDetector detector = new BurstDetector();
+        RateBaseline baseline = new RateBaseline();
+        List<LogEntry> alerts = new ArrayList<>();
+        List<LogEntry> oldestFirst = new ArrayList<>(entries); // Several files, each newest first
+        oldestFirst.sort(Comparator.comparingLong((LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId));
+        for (LogEntry entry : oldestFirst) {
+            talkers.accept(entry);
+            LogEntry alert = detector.accept(entry);
+            if (alert != null) alerts.add(alert);
+            LogEntry spike = baseline.accept(entry);
+            if (spike != null) alerts.add(spike);
+        }
+        return alerts;
+    }
+
+    // Replaces the live view with loaded events (runs on the EDT)
+    private void showLoadedEvents(List<LogEntry> entries, TopTalkers talkers) {
+        eventStore.clear();
+        eventStore.addAll(entries);
+        eventStore.truncate(MAX_EVENTS_IN_MEMORY);
+        highWaterMarks.clear(); // Marks belong to the live logs; the next refresh reloads them in full
+        loadedPlan = QueryPlan.EVERYTHING;
+        topTalkers.clear();
+        topTalkers.merge(talkers);
+        refreshTopTalkers();
+        applyFiltersAndDisplay();
+    }
+
     private void toggleAutoRefresh(boolean enabled) {
         if (enabled) {
-            if (autoRefreshTimer != null) autoRefreshTimer.cancel();
             int interval = intervalMap.getOrDefault(intervalBox.getSelectedItem().toString(), 60000);
-            autoRefreshTimer = new Timer("LogAutoRefreshTimer", true);
-            autoRefreshTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    SwingUtilities.invokeLater(() -> {
-                        if (!progressBar.isVisible()) {
-                            System.out.println(new SimpleDateFormat("HH:mm:ss").format(new Date()) + " - Auto-refresh triggered...");
-                            loadAndAnalyzeLogs();
-                        } else {
-                            System.out.println(new SimpleDateFormat("HH:mm:ss").format(new Date()) + " - Skipping auto-refresh, busy.");
-                        }
-                    });
-                }
-            }, interval, interval);
-            setStatus("Auto-refresh enabled (" + intervalBox.getSelectedItem() + ")", false);
+            refreshScheduler.start(interval);
+            setStatus("Auto-refresh enabled (" + intervalBox.getSelectedItem() + "), " + refreshScheduler.describe(), false);
             intervalBox.setEnabled(false);
             refreshButton.setEnabled(false);
         } else {
-            if (autoRefreshTimer != null) {
-                autoRefreshTimer.cancel();
-                autoRefreshTimer = null;
-                System.out.println(new SimpleDateFormat("HH:mm:ss").format(new Date()) + " - Auto-refresh stopped.");
-            }
+            refreshScheduler.stop();
             if (!progressBar.isVisible()) setStatus("Auto-refresh stopped. Ready.", false);
             intervalBox.setEnabled(true);
             refreshButton.setEnabled(true);
         }
     }
 
+    // A scheduled refresh is due (runs on the EDT); the fetch worker reports back when it is done
+    private void autoRefreshDue() {
+        if (!refreshScheduler.isRunning()) return; // Stopped while the tick was queued
+        refreshScheduler.started();
+        if (progressBar.isVisible()) {
+            refreshScheduler.postpone();
+            return;
+        }
+        loadAndAnalyzeLogs();
+    }
+
     // --- Main Method ---
     public static void main(String[] args) {
+        PipelineMetrics.register();
+        if (args.length > 0 && args[0].equals("--headless")) {
+            System.exit(HeadlessCollector.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // The last session's snapshot is read and decoded while the window is being built
+        long restoreStart = System.nanoTime();
+        CompletableFuture<SessionSnapshot> snapshot = CompletableFuture.supplyAsync(() -> {
+            try {
+                return SessionSnapshot.read(SNAPSHOT_FILE);
+            } catch (IOException e) {
+                System.err.println("Starting without the last session: " + e.getMessage());
+                return null;
+            }
+        });
         SwingUtilities.invokeLater(() -> {
             NetworkAnomalyDetectorGUI gui = new NetworkAnomalyDetectorGUI();
-            // Check for Admin rights (basic check)
-            boolean isAdmin = false;
-            try { // Use a command that requires admin privileges
-                 ProcessBuilder pb = new ProcessBuilder("cmd", "/c", "openfiles > nul 2>&1");
-                 // Alternative: "fsutil dirty query %systemdrive% > nul 2>&1"
-                 Process p = pb.start();
-                 isAdmin = (p.waitFor() == 0);
-             } catch (Exception io) { /* Ignore, assume not admin */ }
-
-            if (!isAdmin) {
-                 JOptionPane.showMessageDialog(gui,
-                    "WARNING: Application likely lacks administrator privileges.\n" +
-                    "Fetching Security logs and some System logs might fail.\n\n" +
-                    "Please restart the application 'Run as administrator' for full functionality.",
-                    "Permissions Warning", JOptionPane.WARNING_MESSAGE);
-            }
-
             gui.setVisible(true);
+            snapshot.thenAccept(restored -> {
+                long readMillis = (System.nanoTime() - restoreStart) / 1_000_000;
+                SwingUtilities.invokeLater(() -> gui.restoreSessionSnapshot(restored, readMillis));
+            });
+            // Check for Admin rights (basic check) without holding up the window
+            gui.probeAdminRights();
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListModel;
+
+/*
+ * The application lives in the unnamed package, which Java code in a named package cannot reference
+ * (and JMH refuses benchmarks in the unnamed package). These constant method handles reach the same
+ * package-private code paths; the JIT inlines static final handles, so they add no measurable cost.
+ */
+final class AppHooks {
+
+    private static final MethodHandle NEW_LOG_ENTRY;
+    private static final MethodHandle CLASSIFY_ENTRY;
+    private static final MethodHandle SET_ANOMALY_TYPE;
+    private static final MethodHandle DEDUPE_KEY;
+    private static final MethodHandle NEW_EVENT_STORE;
+    private static final MethodHandle STORE_ADD_ALL;
+    private static final MethodHandle STORE_FILTER;
+    private static final MethodHandle NEW_LOG_LIST_MODEL;
+    private static final MethodHandle SET_LIST_ROWS;
+    private static final MethodHandle NEW_LOG_ROW_RENDERER;
+    private static final MethodHandle SET_RENDERER_KEYWORD;
+    private static final MethodHandle NEW_BLOCK_FRAMER;
+    private static final MethodHandle ACCEPT_LINE;
+    private static final MethodHandle FINISH;
+    private static final MethodHandle IS_RECORD_START;
+    private static final MethodHandle NEW_PARSE_STAGE;
+    private static final MethodHandle PARSE_STAGE_ACCEPT;
+    private static final MethodHandle PARSE_STAGE_FINISH;
+
+    static {
+        try {
+            Class<?> gui = Class.forName("NetworkAnomalyDetectorGUI");
+            Class<?> logEntry = Class.forName("NetworkAnomalyDetectorGUI$LogEntry");
+            Class<?> framer = Class.forName("NetworkAnomalyDetectorGUI$BlockFramer");
+            Class<?> parseStage = Class.forName("NetworkAnomalyDetectorGUI$ParseStage");
+            Class<?> eventStore = Class.forName("NetworkAnomalyDetectorGUI$EventStore");
+            Class<?> rowBitmap = Class.forName("NetworkAnomalyDetectorGUI$RowBitmap");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            NEW_LOG_ENTRY = unreflect(lookup, logEntry.getDeclaredConstructor(String.class));
+            CLASSIFY_ENTRY = unreflect(lookup, gui.getDeclaredMethod("classifyEntry", logEntry));
+            java.lang.reflect.Field anomalyField = logEntry.getDeclaredField("anomalyType");
+            anomalyField.setAccessible(true);
+            SET_ANOMALY_TYPE = lookup.unreflectSetter(anomalyField)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            DEDUPE_KEY = unreflect(lookup, gui.getDeclaredMethod("dedupeKey", logEntry));
+            NEW_EVENT_STORE = unreflect(lookup, eventStore.getDeclaredConstructor());
+            STORE_ADD_ALL = unreflect(lookup, eventStore.getDeclaredMethod("addAll", List.class));
+            STORE_FILTER = unreflect(lookup, eventStore.getDeclaredMethod("filter", String.class, String.class, String.class, String.class));
+            Class<?> listModel = Class.forName("NetworkAnomalyDetectorGUI$LogListModel");
+            Class<?> rowRenderer = Class.forName("NetworkAnomalyDetectorGUI$LogRowRenderer");
+            NEW_LOG_LIST_MODEL = unreflect(lookup, listModel.getDeclaredConstructor(eventStore));
+            SET_LIST_ROWS = unreflect(lookup, listModel.getDeclaredMethod("setRows", rowBitmap));
+            NEW_LOG_ROW_RENDERER = unreflect(lookup, rowRenderer.getDeclaredConstructor(eventStore));
+            SET_RENDERER_KEYWORD = unreflect(lookup, rowRenderer.getDeclaredMethod("setKeyword", String.class));
+            NEW_BLOCK_FRAMER = unreflect(lookup, framer.getDeclaredConstructor(Consumer.class));
+            ACCEPT_LINE = unreflect(lookup, framer.getDeclaredMethod("acceptLine", String.class));
+            FINISH = unreflect(lookup, framer.getDeclaredMethod("finish"));
+            IS_RECORD_START = unreflect(lookup, framer.getDeclaredMethod("isRecordStart", CharSequence.class));
+            NEW_PARSE_STAGE = unreflect(lookup, parseStage.getDeclaredConstructor(Consumer.class));
+            PARSE_STAGE_ACCEPT = unreflect(lookup, parseStage.getDeclaredMethod("accept", String.class));
+            PARSE_STAGE_FINISH = unreflect(lookup, parseStage.getDeclaredMethod("finish"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private AppHooks() {}
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, java.lang.reflect.Executable member) throws IllegalAccessException {
+        member.setAccessible(true);
+        MethodHandle handle = member instanceof java.lang.reflect.Constructor
+                ? lookup.unreflectConstructor((java.lang.reflect.Constructor<?>) member)
+                : lookup.unreflect((java.lang.reflect.Method) member);
+        return handle.asType(handle.type().generic());
+    }
+
+    static Object newLogEntry(String block) {
+        try { return NEW_LOG_ENTRY.invokeExact((Object) block); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static Object classifyEntry(Object entry) {
+        try { return CLASSIFY_ENTRY.invokeExact(entry); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void setAnomalyType(Object entry, Object type) {
+        try { SET_ANOMALY_TYPE.invokeExact(entry, type); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static String dedupeKey(Object entry) {
+        try { Object key = DEDUPE_KEY.invokeExact(entry); return (String) key; } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static Object newEventStore() {
+        try { return NEW_EVENT_STORE.invokeExact(); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void addAll(Object store, List<Object> entries) {
+        try { Object ignored = STORE_ADD_ALL.invokeExact(store, (Object) entries); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static Object filter(Object store, String host, String logName, String anomalyFilter, String keyword) {
+        try { return STORE_FILTER.invokeExact(store, (Object) host, (Object) logName, (Object) anomalyFilter, (Object) keyword); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    @SuppressWarnings("unchecked")
+    static ListModel<Integer> newLogListModel(Object store, Object rows) {
+        try {
+            Object model = NEW_LOG_LIST_MODEL.invokeExact(store);
+            Object ignored = SET_LIST_ROWS.invokeExact(model, rows);
+            return (ListModel<Integer>) model;
+        } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    @SuppressWarnings("unchecked")
+    static ListCellRenderer<Integer> newLogRowRenderer(Object store, String keyword) {
+        try {
+            Object renderer = NEW_LOG_ROW_RENDERER.invokeExact(store);
+            Object ignored = SET_RENDERER_KEYWORD.invokeExact(renderer, (Object) keyword);
+            return (ListCellRenderer<Integer>) renderer;
+        } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static Object newBlockFramer(Consumer<String> sink) {
+        try { return NEW_BLOCK_FRAMER.invokeExact((Object) sink); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void acceptLine(Object framer, String line) {
+        try { Object ignored = ACCEPT_LINE.invokeExact(framer, (Object) line); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void finish(Object framer) {
+        try { Object ignored = FINISH.invokeExact(framer); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static boolean isRecordStart(CharSequence text) {
+        try { Object start = IS_RECORD_START.invokeExact((Object) text); return (Boolean) start; } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static Object newParseStage(Consumer<Object> sink) {
+        try { return NEW_PARSE_STAGE.invokeExact((Object) sink); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void parseStageAccept(Object stage, String block) {
+        try { Object ignored = PARSE_STAGE_ACCEPT.invokeExact(stage, (Object) block); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    static void parseStageFinish(Object stage) {
+        try { Object ignored = PARSE_STAGE_FINISH.invokeExact(stage); } catch (Throwable t) { throw rethrow(t); }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,82 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Builds Format-List corpora of any size from the recorded sample in corpus/formatlist-sample.txt
+final class BenchmarkCorpus {
+
+    private static final String SAMPLE = "/corpus/formatlist-sample.txt";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy h:mm:ss a", Locale.US);
+    private static final LocalDateTime NEWEST = LocalDateTime.of(2025, 4, 19, 11, 50, 0);
+
+    private BenchmarkCorpus() {}
+
+    // Recorded event blocks in their original newest-first order
+    static List<String> sampleBlocks() {
+        List<String> blocks = new ArrayList<>();
+        Object framer = AppHooks.newBlockFramer(blocks::add);
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(SAMPLE)) {
+            if (in == null) throw new IllegalStateException("Missing benchmark corpus " + SAMPLE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) AppHooks.acceptLine(framer, line);
+            AppHooks.finish(framer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return blocks;
+    }
+
+    // Event blocks cycled from the sample, each with its own TimeCreated one second apart (newest first)
+    static List<String> blocks(int count) {
+        List<String> templates = sampleBlocks().stream()
+                .filter(AppHooks::isRecordStart)
+                .toList();
+        List<String> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String template = templates.get(i % templates.size());
+            int lineEnd = template.indexOf('\n');
+            String rest = lineEnd < 0 ? "" : template.substring(lineEnd);
+            blocks.add("TimeCreated      : " + TIME_FORMAT.format(NEWEST.minusSeconds(i)) + rest);
+        }
+        return blocks;
+    }
+
+    // The same events rendered as one Format-List stream, as read from the PowerShell process
+    static String formatListText(int count) {
+        List<String> blocks = blocks(count);
+        StringBuilder text = new StringBuilder(blocks.size() * 700);
+        for (String block : blocks) {
+            text.append('\n').append(block).append('\n');
+        }
+        return text.append('\n').toString();
+    }
+
+    // Parsed and classified entries, as handed to the event store during a fetch
+    static List<Object> entries(int count) {
+        List<Object> entries = new ArrayList<>(count);
+        for (String block : blocks(count)) {
+            Object entry = AppHooks.newLogEntry(block);
+            AppHooks.setAnomalyType(entry, AppHooks.classifyEntry(entry));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // Event store holding the entries above (stored oldest first)
+    static Object eventStore(List<Object> entries) {
+        Object store = AppHooks.newEventStore();
+        AppHooks.addAll(store, entries);
+        return store;
+    }
+}
@@ -0,0 +1,174 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Hot paths of a refresh, each measured over a whole batch of N events (one op = one batch).
+ *
+ *   mvn -B -Pbench package
+ *   java -jar target/benchmarks.jar -prof gc                 # all sizes
+ *   java -jar target/benchmarks.jar -p events=100000 -prof gc parse
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true"})
+public class PipelineBenchmark {
+
+    private static final int VISIBLE_ROWS = 100;
+    private static final int ROW_WIDTH = 1600, ROW_HEIGHT = 17;
+
+    @State(Scope.Benchmark)
+    public static class FormatListStream {
+        @Param({"1000", "100000", "1000000"})
+        public int events;
+        String text;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            text = BenchmarkCorpus.formatListText(events);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RawBlocks {
+        @Param({"1000", "100000", "1000000"})
+        public int events;
+        List<String> blocks;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            blocks = BenchmarkCorpus.blocks(events);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ParsedEntries {
+        @Param({"1000", "100000", "1000000"})
+        public int events;
+        List<Object> entries;
+        Object store;
+        Object filtered;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            entries = BenchmarkCorpus.entries(events);
+            store = BenchmarkCorpus.eventStore(entries);
+            filtered = AppHooks.filter(store, "All Hosts", "All Logs", "Show All Anomalies", "");
+        }
+    }
+
+    // Block-splitting loop that feeds the analyzer during a fetch
+    @Benchmark
+    public void frameBlocks(FormatListStream state, Blackhole bh) throws IOException {
+        Object framer = AppHooks.newBlockFramer(bh::consume);
+        BufferedReader reader = new BufferedReader(new StringReader(state.text));
+        String line;
+        while ((line = reader.readLine()) != null) AppHooks.acceptLine(framer, line);
+        AppHooks.finish(framer);
+    }
+
+    // LogEntry construction (field extraction from each block)
+    @Benchmark
+    public void parse(RawBlocks state, Blackhole bh) {
+        for (String block : state.blocks) {
+            bh.consume(AppHooks.newLogEntry(block));
+        }
+    }
+
+    // Parse + classify fanned out over the parse pool and delivered in order (-jvmArgs -Dnad.parseThreads=N)
+    @Benchmark
+    public void parseStage(RawBlocks state, Blackhole bh) {
+        Object stage = AppHooks.newParseStage(bh::consume);
+        for (String block : state.blocks) AppHooks.parseStageAccept(stage, block);
+        AppHooks.parseStageFinish(stage);
+    }
+
+    // Duplicate detection across the two overlapping queries
+    @Benchmark
+    public int dedupe(ParsedEntries state) {
+        Set<String> seen = new HashSet<>();
+        for (Object entry : state.entries) {
+            seen.add(AppHooks.dedupeKey(entry));
+        }
+        return seen.size();
+    }
+
+    // AnomalyType assignment
+    @Benchmark
+    public void classify(ParsedEntries state, Blackhole bh) {
+        for (Object entry : state.entries) {
+            bh.consume(AppHooks.classifyEntry(entry));
+        }
+    }
+
+    // Appending a fetch's entries to the columnar event store
+    @Benchmark
+    public Object storeAppend(ParsedEntries state) {
+        Object store = AppHooks.newEventStore();
+        AppHooks.addAll(store, state.entries);
+        return store;
+    }
+
+    // filterLogEntries() with a log-name + anomaly selection
+    @Benchmark
+    public Object filterFacets(ParsedEntries state) {
+        return AppHooks.filter(state.store, "All Hosts", "Security", "Sec: Failed Login", "");
+    }
+
+    // filterLogEntries() with free text
+    @Benchmark
+    public Object filterText(ParsedEntries state) {
+        return AppHooks.filter(state.store, "All Hosts", "All Logs", "Show All Logs", "svc_backup");
+    }
+
+    // One screenful of the virtualized log list painted from a fresh model and renderer, the way
+    // BasicListUI drives them (renderer component per row, sized to the fixed cell, then painted)
+    @Benchmark
+    public BufferedImage renderRows(ParsedEntries state) {
+        ListModel<Integer> model = AppHooks.newLogListModel(state.store, state.filtered);
+        ListCellRenderer<Integer> renderer = AppHooks.newLogRowRenderer(state.store, "error");
+        JList<Integer> list = new JList<>(model);
+        list.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        int rows = Math.min(VISIBLE_ROWS, model.getSize());
+        BufferedImage image = new BufferedImage(ROW_WIDTH, ROW_HEIGHT * VISIBLE_ROWS, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < rows; i++) {
+            Component cell = renderer.getListCellRendererComponent(list, model.getElementAt(i), i, false, false);
+            cell.setSize(ROW_WIDTH, ROW_HEIGHT);
+            Graphics2D cellGraphics = (Graphics2D) g.create(0, i * ROW_HEIGHT, ROW_WIDTH, ROW_HEIGHT);
+            cell.paint(cellGraphics);
+            cellGraphics.dispose();
+        }
+        g.dispose();
+        return image;
+    }
+
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import java.lang.ref.Reference;
+import java.util.List;
+
+/*
+ * Retained heap per event of the columnar event store (text index and facet bitmaps included) against a
+ * List<LogEntry> of the same parsed blocks. Not a JMH benchmark: it reads the used heap after full
+ * collections, so it runs on its own, in a fresh JVM.
+ *
+ *   mvn -B -Pbench package
+ *   java -Xmx4g -cp target/benchmarks.jar bench.StoreFootprint 100000
+ */
+public final class StoreFootprint {
+
+    private StoreFootprint() {}
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        BenchmarkCorpus.eventStore(BenchmarkCorpus.entries(100)); // Class initialization is not part of either
+
+        long base = usedAfterGc();
+        List<Object> entries = BenchmarkCorpus.entries(events);
+        long listBytes = usedAfterGc() - base;
+        Object store = BenchmarkCorpus.eventStore(entries);
+        Reference.reachabilityFence(entries);
+        entries = null;
+        long storeBytes = usedAfterGc() - base;
+        Reference.reachabilityFence(store);
+
+        System.out.printf("%d events: List<LogEntry> %.1f bytes/event, EventStore %.1f bytes/event%n",
+                          events, (double) listBytes / events, (double) storeBytes / events);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // Until a collection frees nothing more
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+}
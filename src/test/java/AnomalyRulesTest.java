@@ -0,0 +1,260 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Compiled AnomalyRules against walking the rule lines in order, and the conditions they push down to the source
+// against the events those rules can match
+class AnomalyRulesTest {
+    private static final String[] LOGS = {"Security", "security", "System", "Application"};
+    private static final String[] LEVELS = {"Critical", "Error", "warning", "Information", "Verbose"};
+    private static final String[] MESSAGES = {"failed", "Denied"};
+    static final Map<String, Integer> LEVEL_NUMBERS = Map.of("critical", 1, "error", 2, "warning", 3, "verbose", 5);
+    static final int ID_RANGE = 120; // Rule IDs are drawn below this, events a little beyond it
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void classifyMatchesTheFirstMatchingLine() throws IOException {
+        Random random = new Random(42);
+        String[] eventLogs = {"Security", "SECURITY", "System", "Application", "Setup"};
+        String[] eventLevels = {"Critical", "ERROR", "Warning", "Information", "Verbose", "", null};
+        String[] eventMessages = {"Access DENIED", "Logon failed twice", "ok", null};
+        for (int round = 0; round < 30; round++) {
+            List<String[]> lines = randomRules(random, 1 + random.nextInt(25));
+            NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.load(write(lines));
+            assertEquals(lines.size(), rules.size());
+            for (int i = 0; i < 3000; i++) {
+                String log = eventLogs[random.nextInt(eventLogs.length)];
+                int id = random.nextInt(20) == 0 ? (random.nextBoolean() ? -1 : 70_000) : random.nextInt(ID_RANGE + 10);
+                String level = eventLevels[random.nextInt(eventLevels.length)];
+                String message = eventMessages[random.nextInt(eventMessages.length)];
+                assertEquals(naiveClassify(lines, log, id, level, message), rules.classify(log, id, level, message),
+                             log + "/" + id + "/" + level + "/" + message + " under " + describe(lines));
+            }
+        }
+    }
+
+    @Test
+    void defaultsCompileAndClassify() {
+        NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.defaults();
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, rules.classify("security", 4625, "Information", "x"));
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.SERVICE_CRASH, rules.classify("System", 7031, "Error", "x"));
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.ERROR_EVENT, rules.classify("Application", 1000, "Error", "x"));
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.NONE, rules.classify("Application", 1000, "Information", "x"));
+    }
+
+    @Test
+    void loadNamesTheFileAndTheBadLine() throws IOException {
+        Map<String, String> bad = Map.of(
+                "Security | 4625 | * | FAILED_LOGIN", "line 2: expected 5 '|'-separated fields, found 4",
+                "Security | 4625 | * | | NOT_A_TYPE", "line 2: unknown anomaly type 'NOT_A_TYPE'",
+                "Security | 4625 | * | | BRUTE_FORCE_BURST", "line 2: BRUTE_FORCE_BURST is raised by the burst detector, not by rules",
+                "Security | 4625-4620 | * | | FAILED_LOGIN", "line 2: bad event ID '4625-4620'",
+                "Security | 65536 | * | | FAILED_LOGIN", "line 2: bad event ID '65536'",
+                "Security | 4625, x | * | | FAILED_LOGIN", "line 2: bad event ID 'x'");
+        for (Map.Entry<String, String> line : bad.entrySet()) {
+            Path file = Files.writeString(directory.resolve("anomaly-rules.txt"), "# comment\n" + line.getKey() + "\n");
+            IOException failure = assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.AnomalyRules.load(file), line.getKey());
+            assertEquals("anomaly-rules.txt: " + line.getValue(), failure.getMessage());
+        }
+        // Display names, ranges, CRLF line ends and blank fields are all accepted
+        Path file = Files.writeString(directory.resolve("anomaly-rules.txt"),
+                "\r\n  # indented comment\r\nSecurity | 4720 - 4722, 4726 | | | Sec: User Account Change\r\n");
+        NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.load(file);
+        assertEquals(1, rules.size());
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.USER_ACCOUNT_CHANGE, rules.classify("Security", 4721, null, null));
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.NONE, rules.classify("Security", 4723, null, null));
+    }
+
+    @Test
+    void pushedDownConditionsSelectWhatTheRulesCanMatch() {
+        Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            List<String[]> lines = randomRules(random, 1 + random.nextInt(12));
+            NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.parse(String.join("\n", toText(lines)));
+            for (String log : List.of("Security", "System", "Setup")) {
+                for (NetworkAnomalyDetectorGUI.AnomalyType type : NetworkAnomalyDetectorGUI.AnomalyType.values()) {
+                    if (type.isAggregate() || type == NetworkAnomalyDetectorGUI.AnomalyType.NONE) continue;
+                    List<String> conditions = rules.sourceConditions(log, type);
+                    String context = log + "/" + type + " under " + describe(lines) + ": " + conditions;
+                    List<String[]> applicable = lines.stream().filter(line -> line[4].equals(type.name()) && matchesLog(line[0], log)).toList();
+                    if (applicable.stream().anyMatch(line -> line[1].equals("*") && levelNumber(line[2]) < 0)) {
+                        assertNull(conditions, context);
+                        continue;
+                    }
+                    if (applicable.isEmpty()) assertTrue(conditions.isEmpty(), context);
+                    for (int id = 0; id < ID_RANGE + 10; id++) {
+                        for (int level = 0; level <= 5; level++) {
+                            int eventId = id, eventLevel = level;
+                            boolean expected = applicable.stream().anyMatch(line -> matchesIds(line[1], eventId)
+                                    && (levelNumber(line[2]) < 0 || levelNumber(line[2]) == eventLevel));
+                            boolean selected = conditions.stream().anyMatch(condition -> matches(condition, eventId, eventLevel));
+                            assertEquals(expected, selected, "ID " + id + ", level " + level + ": " + context);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void planCoversTheNarrowerFilters() {
+        NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.defaults();
+        NetworkAnomalyDetectorGUI.QueryPlan everything = NetworkAnomalyDetectorGUI.QueryPlan.forFilter("All Logs", "Show All Logs", rules);
+        NetworkAnomalyDetectorGUI.QueryPlan security = NetworkAnomalyDetectorGUI.QueryPlan.forFilter("Security", "Show All Logs", rules);
+        NetworkAnomalyDetectorGUI.QueryPlan failedLogons = NetworkAnomalyDetectorGUI.QueryPlan.forFilter("All Logs", "Sec: Failed Login", rules);
+        NetworkAnomalyDetectorGUI.QueryPlan bursts = NetworkAnomalyDetectorGUI.QueryPlan.forFilter("All Logs", "Sec: Brute-Force Burst", rules);
+
+        assertEquals(List.of("Application", "Security", "System", "Setup"), new ArrayList<>(everything.logNames()));
+        assertEquals(List.of("Security"), new ArrayList<>(failedLogons.logNames())); // No other log has a rule for it
+        for (NetworkAnomalyDetectorGUI.QueryPlan plan : List.of(everything, security, failedLogons, bursts)) {
+            assertTrue(everything.covers(plan));
+            assertTrue(plan.covers(plan));
+            assertTrue(NetworkAnomalyDetectorGUI.QueryPlan.EVERYTHING.covers(plan));
+        }
+        assertTrue(security.covers(failedLogons));
+        assertTrue(bursts.covers(failedLogons)); // Bursts are counted from the failed logons themselves
+        assertFalse(security.covers(everything));
+        assertFalse(failedLogons.covers(security));
+        assertFalse(everything.covers(NetworkAnomalyDetectorGUI.QueryPlan.EVERYTHING));
+        assertEquals("@()", NetworkAnomalyDetectorGUI.QueryPlan.forFilter("Setup", "Sec: Failed Login", rules).toCommand(Map.of(), null, ""));
+    }
+
+    // Rule lines as {log, IDs, level, message, type}, with '*' for any
+    static List<String[]> randomRules(Random random, int count) {
+        NetworkAnomalyDetectorGUI.AnomalyType[] types = Arrays.stream(NetworkAnomalyDetectorGUI.AnomalyType.values())
+                .filter(type -> !type.isAggregate() && type != NetworkAnomalyDetectorGUI.AnomalyType.NONE)
+                .limit(5) // Few types, so several rules share one
+                .toArray(NetworkAnomalyDetectorGUI.AnomalyType[]::new);
+        List<String[]> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String log = random.nextInt(3) == 0 ? "*" : LOGS[random.nextInt(LOGS.length)];
+            String level = random.nextInt(3) == 0 ? "*" : LEVELS[random.nextInt(LEVELS.length)];
+            String message = random.nextInt(4) == 0 ? MESSAGES[random.nextInt(MESSAGES.length)] : "*";
+            lines.add(new String[] {log, randomIds(random), level, message, types[random.nextInt(types.length)].name()});
+        }
+        return lines;
+    }
+
+    // '*', or single IDs and ranges, scattered or in runs
+    private static String randomIds(Random random) {
+        if (random.nextInt(4) == 0) return "*";
+        List<String> items = new ArrayList<>();
+        for (int i = 1 + random.nextInt(6); i > 0; i--) {
+            int first = random.nextInt(ID_RANGE - 10);
+            items.add(random.nextBoolean() ? String.valueOf(first) : first + "-" + (first + random.nextInt(10)));
+        }
+        return String.join(", ", items);
+    }
+
+    static List<String> toText(List<String[]> lines) {
+        List<String> text = new ArrayList<>();
+        for (String[] line : lines) text.add(String.join(" | ", line[0], line[1], line[2], line[3].equals("*") ? "" : line[3], line[4]));
+        return text;
+    }
+
+    private Path write(List<String[]> lines) throws IOException {
+        return Files.write(directory.resolve("anomaly-rules.txt"), toText(lines));
+    }
+
+    private static NetworkAnomalyDetectorGUI.AnomalyType naiveClassify(List<String[]> lines, String log, int id, String level, String message) {
+        for (String[] line : lines) {
+            if (matchesLog(line[0], log) && (line[1].equals("*") || (id >= 0 && matchesIds(line[1], id)))
+                    && (line[2].equals("*") || line[2].equalsIgnoreCase(level))
+                    && (line[3].equals("*") || (message != null && message.toLowerCase(Locale.ROOT).contains(line[3].toLowerCase(Locale.ROOT))))) {
+                return NetworkAnomalyDetectorGUI.AnomalyType.valueOf(line[4]);
+            }
+        }
+        return NetworkAnomalyDetectorGUI.AnomalyType.NONE;
+    }
+
+    private static boolean matchesLog(String field, String log) {
+        return field.equals("*") || field.equalsIgnoreCase(log);
+    }
+
+    static boolean matchesIds(String field, int id) {
+        if (field.equals("*")) return true;
+        for (String item : field.split(",")) {
+            String[] bounds = item.strip().split("-");
+            int first = Integer.parseInt(bounds[0].strip()), last = bounds.length > 1 ? Integer.parseInt(bounds[1].strip()) : first;
+            if (id >= first && id <= last) return true;
+        }
+        return false;
+    }
+
+    // System/Level number a level name is pushed down as, or -1 when it is not (any level)
+    static int levelNumber(String field) {
+        return LEVEL_NUMBERS.getOrDefault(field.toLowerCase(Locale.ROOT), -1);
+    }
+
+    private static String describe(List<String[]> lines) {
+        return String.join("; ", toText(lines));
+    }
+
+    // Evaluates a pushed-down condition (comparisons of EventID and Level joined by and/or, in parentheses) for an event
+    static boolean matches(String condition, int eventId, int level) {
+        Deque<String> tokens = new ArrayDeque<>();
+        for (String token : condition.replace("(", " ( ").replace(")", " ) ").trim().split("\\s+")) tokens.add(token);
+        boolean result = or(tokens, eventId, level);
+        assertTrue(tokens.isEmpty(), "trailing tokens in " + condition);
+        return result;
+    }
+
+    private static boolean or(Deque<String> tokens, int eventId, int level) {
+        boolean result = and(tokens, eventId, level);
+        while ("or".equals(tokens.peek())) {
+            tokens.pop();
+            result |= and(tokens, eventId, level);
+        }
+        return result;
+    }
+
+    private static boolean and(Deque<String> tokens, int eventId, int level) {
+        boolean result = term(tokens, eventId, level);
+        while ("and".equals(tokens.peek())) {
+            tokens.pop();
+            result &= term(tokens, eventId, level);
+        }
+        return result;
+    }
+
+    private static boolean term(Deque<String> tokens, int eventId, int level) {
+        String token = tokens.pop();
+        if (token.equals("(")) {
+            boolean result = or(tokens, eventId, level);
+            assertEquals(")", tokens.pop());
+            return result;
+        }
+        String[] comparison = token.split("(?<=[A-Za-z])(?=[<>=])|(?<=[<>=])(?=\\d)");
+        int value = Integer.parseInt(comparison[2]);
+        int actual = switch (comparison[0]) {
+            case "EventID" -> eventId;
+            case "Level" -> level;
+            default -> throw new AssertionError("unexpected comparison " + token);
+        };
+        return switch (comparison[1]) {
+            case "=" -> actual == value;
+            case ">=" -> actual >= value;
+            case "<=" -> actual <= value;
+            default -> throw new AssertionError("unexpected comparison " + token);
+        };
+    }
+}
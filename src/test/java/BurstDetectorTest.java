@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+// BurstDetector against the sliding-window rule recounted from scratch for every event, and the ingest engine's
+// ordering of a full load read newest first
+class BurstDetectorTest {
+    private static final long T0 = 1_790_000_000_000L;
+
+    @Test
+    void thresholdsMatchANaiveCount() {
+        Random random = new Random(42);
+        for (NetworkAnomalyDetectorGUI.AnomalyType type : List.of(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN,
+                                                                  NetworkAnomalyDetectorGUI.AnomalyType.ACCOUNT_LOCKOUT)) {
+            int threshold = type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN
+                    ? NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD : NetworkAnomalyDetectorGUI.BurstDetector.LOCKOUT_THRESHOLD;
+            List<NetworkAnomalyDetectorGUI.LogEntry> events = new ArrayList<>();
+            long millis = T0;
+            for (int i = 0; i < 3000; i++) {
+                // Mostly seconds apart, now and then a quiet spell longer than the window or the idle time
+                int gap = random.nextInt(50);
+                millis += gap == 0 ? 2 * 3_600_000 : gap < 3 ? 400_000 : random.nextInt(type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN ? 5_000 : 60_000);
+                events.add(event(type, millis, "key-" + random.nextInt(3)));
+            }
+
+            NetworkAnomalyDetectorGUI.BurstDetector detector = new NetworkAnomalyDetectorGUI.BurstDetector();
+            List<Integer> alerts = new ArrayList<>();
+            for (int i = 0; i < events.size(); i++) {
+                if (detector.accept(events.get(i)) != null) alerts.add(i);
+            }
+            List<Integer> expected = naiveAlerts(events, threshold);
+            assertEquals(expected, alerts, type.toString());
+            assertTrue(expected.size() > 10, "too few bursts to tell anything: " + expected.size());
+        }
+    }
+
+    @Test
+    void alertSummarizesTheWindow() {
+        NetworkAnomalyDetectorGUI.BurstDetector detector = new NetworkAnomalyDetectorGUI.BurstDetector();
+        NetworkAnomalyDetectorGUI.LogEntry alert = null;
+        for (int i = 0; i < NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD; i++) {
+            assertNull(alert);
+            alert = detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0 + i * 1_000L, "10.0.0.5"));
+        }
+        assertNotNull(alert);
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.BRUTE_FORCE_BURST, alert.anomalyType);
+        assertEquals(T0 + (NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD - 1) * 1_000L, alert.timeMillis);
+        assertEquals("10.0.0.5", alert.sourceIp);
+        assertTrue(alert.message.contains(NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD + " failed logons from 10.0.0.5"), alert.message);
+    }
+
+    @Test
+    void keysPastTheCapAreForgottenLeastRecentlyUpdatedFirst() {
+        int threshold = NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD;
+        int cap = NetworkAnomalyDetectorGUI.BurstDetector.MAX_TRACKED_KEYS;
+        for (int others : new int[] {cap - 1, cap}) {
+            NetworkAnomalyDetectorGUI.BurstDetector detector = new NetworkAnomalyDetectorGUI.BurstDetector();
+            for (int i = 0; i < threshold - 1; i++) detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0, "watched"));
+            for (int i = 0; i < others; i++) detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0, "other-" + i));
+            NetworkAnomalyDetectorGUI.LogEntry alert = detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0, "watched"));
+            if (others < cap) assertNotNull(alert, "still tracked beside " + others + " others");
+            else assertNull(alert, "pushed out by " + others + " others");
+        }
+    }
+
+    @Test
+    void eventsLongBeforeTheNewestAreIgnored() {
+        int threshold = NetworkAnomalyDetectorGUI.BurstDetector.FAILED_LOGON_THRESHOLD;
+        NetworkAnomalyDetectorGUI.BurstDetector detector = new NetworkAnomalyDetectorGUI.BurstDetector();
+        for (int i = 0; i < threshold - 1; i++) detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0, "watched"));
+        detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0 + NetworkAnomalyDetectorGUI.BurstDetector.IDLE_MILLIS + 1, "other"));
+        assertNull(detector.accept(event(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, T0, "watched")));
+    }
+
+    @Test
+    void fullLoadReadNewestFirstFindsEveryBurst() throws IOException, InterruptedException {
+        // Two bursts from one address 90 minutes apart, as Get-WinEvent streams them: newest first
+        List<String> blocks = new ArrayList<>();
+        for (String time : List.of("1:30:%02d PM", "12:00:%02d PM")) {
+            for (int second = 19; second >= 0; second--) {
+                blocks.add(failedLogonBlock(String.format(time, second), blocks.size() < 20 ? 2000 + second : 1000 + second));
+            }
+        }
+        NetworkAnomalyDetectorGUI.IngestEngine engine = new NetworkAnomalyDetectorGUI.IngestEngine("localhost", new HashMap<>(),
+                new NetworkAnomalyDetectorGUI.BurstDetector(), new NetworkAnomalyDetectorGUI.TopTalkers(), new NetworkAnomalyDetectorGUI.RateBaseline());
+        List<NetworkAnomalyDetectorGUI.LogEntry> received = new ArrayList<>();
+        engine.run(new StringReader(String.join("", blocks)), received::add, 50, () -> {});
+
+        List<NetworkAnomalyDetectorGUI.AnomalyType> types = received.stream().map(entry -> entry.anomalyType).collect(Collectors.toList());
+        assertEquals(42, types.size());
+        // The events stream through first; the alerts follow once the detectors have seen them oldest first
+        assertEquals(List.of(NetworkAnomalyDetectorGUI.AnomalyType.BRUTE_FORCE_BURST, NetworkAnomalyDetectorGUI.AnomalyType.BRUTE_FORCE_BURST),
+                     types.subList(40, 42));
+        assertTrue(types.subList(0, 40).stream().allMatch(type -> type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN));
+        assertTrue(received.get(40).timeMillis < received.get(41).timeMillis);
+    }
+
+    // Indices of the events that raise an alert: those that bring their key's count over the last BUCKETS buckets
+    // to the threshold, unless the key alerted within those buckets already
+    private static List<Integer> naiveAlerts(List<NetworkAnomalyDetectorGUI.LogEntry> events, int threshold) {
+        long bucketMillis = NetworkAnomalyDetectorGUI.BurstDetector.BUCKET_MILLIS;
+        int buckets = NetworkAnomalyDetectorGUI.BurstDetector.BUCKETS;
+        Map<String, Long> alertedBucket = new HashMap<>();
+        List<Integer> alerts = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            String key = key(events.get(i));
+            long bucket = Math.floorDiv(events.get(i).timeMillis, bucketMillis);
+            int count = 0;
+            for (int j = 0; j <= i; j++) {
+                if (key(events.get(j)).equals(key) && Math.floorDiv(events.get(j).timeMillis, bucketMillis) > bucket - buckets) count++;
+            }
+            Long alerted = alertedBucket.get(key);
+            if (count >= threshold && (alerted == null || alerted <= bucket - buckets)) {
+                alertedBucket.put(key, bucket);
+                alerts.add(i);
+            }
+        }
+        return alerts;
+    }
+
+    private static String key(NetworkAnomalyDetectorGUI.LogEntry entry) {
+        return "N/A".equals(entry.sourceIp) ? entry.accountName : entry.sourceIp;
+    }
+
+    // Failed logons are keyed by source address, lockouts by account
+    private static NetworkAnomalyDetectorGUI.LogEntry event(NetworkAnomalyDetectorGUI.AnomalyType type, long millis, String key) {
+        NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+        entry.timeMillis = millis;
+        entry.logName = "Security";
+        entry.eventId = type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN ? 4625 : 4740;
+        entry.anomalyType = type;
+        entry.sourceIp = type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN ? key : "N/A";
+        entry.accountName = type == NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN ? "N/A" : key;
+        return entry;
+    }
+
+    private static String failedLogonBlock(String time, long recordId) {
+        return "TimeCreated      : 10/1/2026 " + time + "\n"
+                + "LogName          : Security\n"
+                + "RecordId         : " + recordId + "\n"
+                + "Id               : 4625\n"
+                + "LevelDisplayName : Information\n"
+                + "Message          : An account failed to log on.\n"
+                + "                   Network Information:\n"
+                + "                   \tSource Network Address:\t10.0.0.5\n"
+                + "\n";
+    }
+}
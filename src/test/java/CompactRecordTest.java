@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// CompactRecord.decode against the fields each @NAD1 line was written from, and against parsing the same event as a
+// Format-List block
+class CompactRecordTest {
+    private static final long FILETIME_EPOCH_OFFSET = 116_444_736_000_000_000L; // 1601-01-01 to 1970-01-01, in ticks
+    private static final long T0 = 1_790_000_000_000L;
+    private static final String[] LEVELS = {"Information", "Critical", "Error", "Warning", "Information", "Verbose"};
+    private static final String[] LOGS = {"Application", "Security", "System", "Microsoft-Windows-PowerShell/Operational"};
+    private static final String[] PIECES = {"a", "Z", " ", "\t", "\n", "\r\n", "\\", "\\n", "\\\\t", "ü", "€", "😀", ":", "@NAD1"};
+
+    @Test
+    void linesDecodeToTheFieldsTheyWereWrittenFrom() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long millis = T0 + random.nextInt(1_000_000_000) - 500_000_000;
+            long recordId = random.nextInt(10) == 0 ? 0 : 1 + (random.nextLong() >>> 20);
+            int eventId = random.nextInt(10) == 0 ? 0 : random.nextInt(65536);
+            int level = random.nextInt(LEVELS.length);
+            String log = LOGS[random.nextInt(LOGS.length)];
+            String message = randomMessage(random);
+            String line = write(millis * 10_000 + FILETIME_EPOCH_OFFSET + random.nextInt(10_000), recordId, eventId, level, log, message);
+
+            assertTrue(NetworkAnomalyDetectorGUI.CompactRecord.isRecord(line));
+            NetworkAnomalyDetectorGUI.LogEntry entry = NetworkAnomalyDetectorGUI.CompactRecord.decode(line);
+            String context = line;
+            assertEquals(millis, entry.timeMillis, context);
+            assertEquals(NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(millis), entry.timestamp, context);
+            assertEquals(recordId, entry.recordId, context);
+            assertEquals(eventId, entry.eventId, context);
+            assertEquals(LEVELS[level], entry.level, context);
+            assertEquals(log, entry.logName, context);
+            assertEquals(message, entry.message, context);
+            assertNull(entry.originalLine, context);
+        }
+    }
+
+    @Test
+    void securityDetailsMatchTheFormatListParse() {
+        Random random = new Random(7);
+        String[] addresses = {"10.0.0.5", "::ffff:192.168.1.20", "-", "fe80::1%4", "127.0.0.1"};
+        String[] accounts = {"alice", "CORP\\bob", "-", "", "  carol  ", "DESKTOP-1$"};
+        for (int i = 0; i < 5_000; i++) {
+            int eventId = random.nextBoolean() ? 4625 : new int[] {4740, 4720, 4726, 4624, 7036}[random.nextInt(5)];
+            String log = random.nextInt(4) == 0 ? "System" : random.nextBoolean() ? "Security" : "security";
+            String message = "An account failed to log on.\n\nSubject:\n\tAccount Name:\t\t" + accounts[random.nextInt(accounts.length)]
+                    + (random.nextBoolean() ? "\n\nAccount For Which Logon Failed:\n\tAccount Name:\t\t" + accounts[random.nextInt(accounts.length)] : "")
+                    + (random.nextBoolean() ? "\n\nNetwork Information:\n\tSource Network Address:\t" + addresses[random.nextInt(addresses.length)] : "")
+                    + (random.nextBoolean() ? "\r\n\tClient Network Address:\t" + addresses[random.nextInt(addresses.length)] : "")
+                    + randomMessage(random);
+            long millis = T0 + i * 1_000L;
+            NetworkAnomalyDetectorGUI.LogEntry decoded = NetworkAnomalyDetectorGUI.CompactRecord.decode(
+                    write(millis * 10_000 + FILETIME_EPOCH_OFFSET, i + 1, eventId, 0, log, message));
+            NetworkAnomalyDetectorGUI.LogEntry parsed = new NetworkAnomalyDetectorGUI.LogEntry(NetworkAnomalyDetectorGUI.LogEntry.formatList(
+                    NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(millis), log, i + 1, eventId, "Information", message));
+            String context = eventId + "/" + log + ": " + message;
+            assertEquals(parsed.sourceIp, decoded.sourceIp, context);
+            assertEquals(parsed.accountName, decoded.accountName, context);
+            assertEquals(parsed.block(), decoded.block(), context);
+        }
+    }
+
+    @Test
+    void missingOrBadFieldsFallBack() {
+        NetworkAnomalyDetectorGUI.LogEntry entry = NetworkAnomalyDetectorGUI.CompactRecord.decode("@NAD1\t0\t\tx\t9\t\t");
+        assertEquals(NetworkAnomalyDetectorGUI.LogEntry.NO_TIME, entry.timeMillis);
+        assertNull(entry.timestamp);
+        assertEquals(-1, entry.recordId);
+        assertEquals(-1, entry.eventId);
+        assertEquals("Information", entry.level);
+        assertEquals("Unknown", entry.logName);
+        assertEquals("", entry.message);
+
+        entry = NetworkAnomalyDetectorGUI.CompactRecord.decode("@NAD1\t12x\t5");
+        assertEquals(NetworkAnomalyDetectorGUI.LogEntry.NO_TIME, entry.timeMillis);
+        assertEquals(5, entry.recordId);
+        assertEquals(-1, entry.eventId);
+        assertEquals("Unknown", entry.logName);
+
+        entry = NetworkAnomalyDetectorGUI.CompactRecord.decode("@NAD1\t\t1\t4294967295\t2\tSystem\tends in \\");
+        assertEquals(-2, entry.eventId); // Above int range: not a real event ID, and not "missing" either
+        assertEquals("Error", entry.level);
+        assertEquals("ends in \\", entry.message); // A lone trailing backslash is kept
+    }
+
+    // One line as POWERSHELL_SELECT writes it
+    private static String write(long fileTime, long recordId, int eventId, int level, String log, String message) {
+        String escaped = message.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+        return String.join("\t", "@NAD1", String.valueOf(fileTime), String.valueOf(recordId), String.valueOf(eventId),
+                           String.valueOf(level), log, escaped);
+    }
+
+    // Text mixing the characters the format escapes with literal escape sequences and non-ASCII
+    private static String randomMessage(Random random) {
+        StringBuilder message = new StringBuilder();
+        for (int i = random.nextInt(12); i > 0; i--) message.append(PIECES[random.nextInt(PIECES.length)]);
+        return message.toString();
+    }
+}
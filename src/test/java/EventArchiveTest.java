@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// EventArchive segments and their sparse indexes against the plain list of the events each append should have stored
+class EventArchiveTest {
+    private static final String[] HOSTS = {NetworkAnomalyDetectorGUI.LOCAL_HOST, "web01"};
+    private static final String[] LOGS = {"System", "Security"};
+    private static final int[] EVENT_IDS = {7036, 4625, 1000, 65535, 12};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void queriesReturnTheStoredEventsInRange() throws IOException {
+        Random random = new Random(42);
+        long start = System.currentTimeMillis() - 2 * 86_400_000L; // Inside the retention period
+        NetworkAnomalyDetectorGUI.EventArchive archive = new NetworkAnomalyDetectorGUI.EventArchive(directory);
+        History history = new History(start);
+        for (int batch = 0; batch < 40; batch++) append(archive, history, history.batch(random));
+        checkQueries(archive, history.stored, random);
+
+        // Reopened: the same events, and replays of them are still recognized as stored
+        archive = new NetworkAnomalyDetectorGUI.EventArchive(directory);
+        checkQueries(archive, history.stored, random);
+        for (int batch = 0; batch < 5; batch++) append(archive, history, history.batch(random));
+        checkQueries(archive, history.stored, random);
+    }
+
+    @Test
+    void tornRecordIsCutOffOnOpen() throws IOException {
+        Random random = new Random(7);
+        NetworkAnomalyDetectorGUI.EventArchive archive = new NetworkAnomalyDetectorGUI.EventArchive(directory);
+        History history = new History(System.currentTimeMillis() - 86_400_000L);
+        for (int batch = 0; batch < 10; batch++) append(archive, history, history.batch(random));
+        Path data;
+        try (var files = Files.list(directory)) {
+            data = files.filter(file -> file.getFileName().toString().endsWith(".dat")).findFirst().orElseThrow();
+        }
+        long length = Files.size(data);
+        Files.write(data, new byte[] {(byte) 0xC8, 0x01, 0, 0, 0}, StandardOpenOption.APPEND); // 200 bytes promised, 3 written
+
+        archive = new NetworkAnomalyDetectorGUI.EventArchive(directory);
+        assertEquals(length, Files.size(data));
+        checkQueries(archive, history.stored, random);
+        append(archive, history, history.batch(random)); // Into a new segment
+        checkQueries(archive, history.stored, random);
+    }
+
+    private static void append(NetworkAnomalyDetectorGUI.EventArchive archive, History history,
+                               List<NetworkAnomalyDetectorGUI.LogEntry> batch) throws IOException {
+        assertEquals(history.store(batch), archive.appendAll(batch));
+    }
+
+    // Random time ranges and event IDs (absent ones and -1 for any included) against filtering the list
+    private static void checkQueries(NetworkAnomalyDetectorGUI.EventArchive archive, List<NetworkAnomalyDetectorGUI.LogEntry> stored,
+                                     Random random) throws IOException {
+        long first = stored.stream().mapToLong(entry -> entry.timeMillis).min().orElseThrow();
+        long last = stored.stream().mapToLong(entry -> entry.timeMillis).max().orElseThrow();
+        for (int i = 0; i < 60; i++) {
+            long from = i == 0 ? Long.MIN_VALUE : first - 1000 + (long) (random.nextDouble() * (last - first + 2000));
+            long to = i == 0 ? Long.MAX_VALUE : from + (long) (random.nextDouble() * (last - first) / (1 + random.nextInt(20)));
+            int eventId = i % 3 == 0 ? -1 : random.nextInt(8) == 0 ? 4624 : EVENT_IDS[random.nextInt(EVENT_IDS.length)];
+            List<String> expected = new ArrayList<>();
+            for (NetworkAnomalyDetectorGUI.LogEntry entry : stored) {
+                if (entry.timeMillis >= from && entry.timeMillis <= to && (eventId < 0 || entry.eventId == eventId)) expected.add(describe(entry));
+            }
+            List<String> actual = new ArrayList<>();
+            int matched = archive.query(from, to, eventId, entry -> actual.add(describe(entry)));
+            String context = "[" + from + ", " + to + "] ID " + eventId;
+            assertEquals(expected, actual, context);
+            assertEquals(expected.size(), matched, context);
+        }
+    }
+
+    private static String describe(NetworkAnomalyDetectorGUI.LogEntry entry) {
+        return String.join("|", entry.host, entry.logName, String.valueOf(entry.eventId), String.valueOf(entry.recordId),
+                           String.valueOf(entry.timeMillis), entry.level, entry.sourceIp, entry.accountName, entry.message, entry.block());
+    }
+
+    // The events fetched so far per host and log, and the ones an archive should hold, in the order it stored them
+    private static final class History {
+        final List<NetworkAnomalyDetectorGUI.LogEntry> stored = new ArrayList<>();
+        final List<NetworkAnomalyDetectorGUI.LogEntry> fetched = new ArrayList<>();
+        final Map<String, long[]> marks = new HashMap<>();
+        long time;
+        long recordId;
+
+        History(long start) {
+            time = start;
+        }
+
+        // New events a few seconds apart, mixed with replays of fetched ones and events the archive skips
+        List<NetworkAnomalyDetectorGUI.LogEntry> batch(Random random) {
+            List<NetworkAnomalyDetectorGUI.LogEntry> batch = new ArrayList<>();
+            for (int i = random.nextInt(300); i > 0; i--) {
+                int roll = random.nextInt(20);
+                if (roll < 3 && !fetched.isEmpty()) {
+                    batch.add(fetched.get(fetched.size() - 1 - random.nextInt(Math.min(fetched.size(), 200))));
+                    continue;
+                }
+                NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+                time += random.nextInt(5_000);
+                entry.timeMillis = roll == 3 ? NetworkAnomalyDetectorGUI.LogEntry.NO_TIME : time;
+                entry.timestamp = NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(time);
+                entry.host = HOSTS[random.nextInt(HOSTS.length)];
+                entry.logName = LOGS[random.nextInt(LOGS.length)];
+                entry.eventId = roll == 4 ? 0 : EVENT_IDS[random.nextInt(EVENT_IDS.length)];
+                entry.recordId = ++recordId;
+                entry.level = random.nextBoolean() ? "Information" : "Error";
+                entry.message = "event " + recordId + (random.nextBoolean() ? "\n\tparam1:\tüñí" : "");
+                if (roll == 5) entry.anomalyType = NetworkAnomalyDetectorGUI.AnomalyType.RATE_SPIKE;
+                if (roll == 6) {
+                    entry.sourceIp = "10.0.0." + random.nextInt(256);
+                    entry.accountName = "user" + random.nextInt(10);
+                }
+                if (roll == 7) entry.originalLine = entry.toFormatList() + "\nExtra            : kept as read";
+                fetched.add(entry);
+                batch.add(entry);
+            }
+            return batch;
+        }
+
+        // What appendAll should keep of a batch: archivable events above their log's mark, in (time, RecordId) order
+        int store(List<NetworkAnomalyDetectorGUI.LogEntry> batch) {
+            List<NetworkAnomalyDetectorGUI.LogEntry> fresh = new ArrayList<>();
+            for (NetworkAnomalyDetectorGUI.LogEntry entry : batch) {
+                if (entry.eventId <= 0 || entry.timeMillis == NetworkAnomalyDetectorGUI.LogEntry.NO_TIME || entry.anomalyType.isAggregate()) continue;
+                long[] mark = marks.get(entry.host + "/" + entry.logName);
+                if (mark == null || entry.timeMillis > mark[0] || (entry.timeMillis == mark[0] && entry.recordId > mark[1])) fresh.add(entry);
+            }
+            fresh.sort(Comparator.comparingLong((NetworkAnomalyDetectorGUI.LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId));
+            for (NetworkAnomalyDetectorGUI.LogEntry entry : fresh) {
+                long[] mark = marks.computeIfAbsent(entry.host + "/" + entry.logName, key -> new long[] {Long.MIN_VALUE, 0});
+                mark[0] = entry.timeMillis;
+                mark[1] = entry.recordId;
+            }
+            stored.addAll(fresh);
+            return fresh.size();
+        }
+    }
+}
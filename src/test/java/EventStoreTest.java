@@ -0,0 +1,214 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+// EventStore rows against the LogEntry objects they were stored from and the order they were stored in
+class EventStoreTest {
+    private static final long T0 = 1_790_000_000_000L;
+    private static final Comparator<NetworkAnomalyDetectorGUI.LogEntry> BY_KEY =
+            Comparator.comparingLong((NetworkAnomalyDetectorGUI.LogEntry entry) -> entry.timeMillis).thenComparingLong(entry -> entry.recordId);
+
+    private static final String SERVICE_STOPPED = "TimeCreated      : " + NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(T0) + "\n"
+            + "LogName          : System\n"
+            + "RecordId         : 5120\n"
+            + "Id               : 7036\n"
+            + "LevelDisplayName : Information\n"
+            + "Message          : The Print Spooler service entered the stopped state.\n"
+            + "                   \tparam1:\tSpooler";
+
+    @Test
+    void rowsGiveBackTheBlocksAndFieldsTheyWereStoredFrom() {
+        NetworkAnomalyDetectorGUI.LogEntry decoded = new NetworkAnomalyDetectorGUI.LogEntry();
+        decoded.timeMillis = T0;
+        decoded.timestamp = NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(T0);
+        decoded.logName = "Application";
+        decoded.eventId = 1000;
+        decoded.recordId = 77;
+        decoded.level = "Error";
+        decoded.message = "Faulting application name: chrome.exe";
+        NetworkAnomalyDetectorGUI.LogEntry alert = null;
+        NetworkAnomalyDetectorGUI.BurstDetector detector = new NetworkAnomalyDetectorGUI.BurstDetector();
+        for (int i = 0; alert == null; i++) {
+            NetworkAnomalyDetectorGUI.LogEntry failed = new NetworkAnomalyDetectorGUI.LogEntry();
+            failed.timeMillis = T0 + i * 1_000L;
+            failed.logName = "Security";
+            failed.eventId = 4625;
+            failed.anomalyType = NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN;
+            failed.sourceIp = "10.0.0.5";
+            alert = detector.accept(failed);
+        }
+
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = List.of(
+                new NetworkAnomalyDetectorGUI.LogEntry(SERVICE_STOPPED),                                  // Rebuilt from its columns
+                new NetworkAnomalyDetectorGUI.LogEntry(SERVICE_STOPPED.replace("RecordId         : 5120\n", "")),
+                new NetworkAnomalyDetectorGUI.LogEntry(SERVICE_STOPPED.replace("\n", "\r\n")),             // Kept as read from here on
+                new NetworkAnomalyDetectorGUI.LogEntry(SERVICE_STOPPED.replace("System\n", "System  \n")),
+                new NetworkAnomalyDetectorGUI.LogEntry(SERVICE_STOPPED.replace(NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(T0), "not a time")),
+                new NetworkAnomalyDetectorGUI.LogEntry("❌ Error running PowerShell: unreachable"),
+                decoded,
+                alert);
+        for (NetworkAnomalyDetectorGUI.LogEntry entry : entries) {
+            NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+            store.add(entry);
+            NetworkAnomalyDetectorGUI.EventStore.Row row = store.row(0);
+            String context = "entry: " + entry.block();
+            assertEquals(entry.block(), row.originalLine(), context);
+            assertEquals(entry.message, row.message(), context);
+            assertEquals(entry.timestamp, row.timestamp(), context);
+            assertEquals(entry.toString(), store.displayLine(0), context);
+            if (entry.eventId > 0) assertEquals(1, store.filter("All Hosts", "All Logs", "Show All Logs", entry.level.toLowerCase()).cardinality(), context);
+        }
+    }
+
+    @Test
+    void refreshesAppendAndTruncateDropsTheOldest() {
+        NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+        List<NetworkAnomalyDetectorGUI.LogEntry> fullLoad = events(0, 100);
+        Collections.reverse(fullLoad); // Read newest first
+        store.addAll(fullLoad.subList(0, 50));
+        int layoutVersion = store.layoutVersion();
+        store.addAll(fullLoad.subList(50, 100)); // Further back: in front of the stored rows
+        assertTrue(store.layoutVersion() != layoutVersion);
+
+        layoutVersion = store.layoutVersion();
+        store.addAll(events(100, 120)); // A refresh, read oldest first
+        store.addAll(events(120, 121));
+        assertEquals(layoutVersion, store.layoutVersion(), "a refresh moved stored rows");
+        assertEquals(121, store.size());
+        for (int row = 0; row < store.size(); row++) assertEquals(T0 + row * 1_000L, store.row(row).timeMillis());
+        assertEquals(121, store.filter("All Hosts", "All Logs", "Show All Logs", "").cardinality());
+
+        store.truncate(30);
+        assertEquals(30, store.size());
+        for (int row = 0; row < store.size(); row++) assertEquals(T0 + (91 + row) * 1_000L, store.row(row).timeMillis());
+        NetworkAnomalyDetectorGUI.RowBitmap rows = store.filter("All Hosts", "All Logs", "Show All Logs", "service 95");
+        assertEquals(1, rows.cardinality());
+        assertEquals(T0 + 95_000L, store.row(rows.select(0)).timeMillis());
+    }
+
+    @Test
+    void reclassificationMatchesClassifyingEveryRow() {
+        NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = events(0, 3000);
+        NetworkAnomalyDetectorGUI.LogEntry alert = entries.get(1234);
+        alert.anomalyType = NetworkAnomalyDetectorGUI.AnomalyType.RATE_SPIKE; // Aggregate: left alone
+        store.addAll(entries);
+        NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.parse(
+                "System | 7036 | * | service 1 | SERVICE_CRASH\n* | * | * | service 2 | ERROR_EVENT\n");
+
+        NetworkAnomalyDetectorGUI.EventStore.Classification classification = store.classify(rules);
+        store.addAll(events(3000, 3100)); // Appended meanwhile: classified when the result is swapped in
+        assertTrue(store.apply(classification, rules));
+        for (int row = 0; row < store.size(); row++) {
+            NetworkAnomalyDetectorGUI.EventStore.Row view = store.row(row);
+            NetworkAnomalyDetectorGUI.AnomalyType expected = row == 1234 ? NetworkAnomalyDetectorGUI.AnomalyType.RATE_SPIKE
+                    : rules.classify(view.logName(), view.eventId(), view.level(), view.message());
+            assertEquals(expected, view.anomalyType(), "row " + row);
+        }
+        for (NetworkAnomalyDetectorGUI.AnomalyType type : NetworkAnomalyDetectorGUI.AnomalyType.values()) {
+            long expected = IntStream.range(0, store.size()).filter(row -> store.row(row).anomalyType() == type).count();
+            assertEquals(expected, store.filter("All Hosts", "All Logs", type.getDisplayName(), "").cardinality(), type.toString());
+        }
+
+        classification = store.classify(NetworkAnomalyDetectorGUI.AnomalyRules.defaults());
+        store.truncate(100); // Rows moved: the result no longer fits
+        assertFalse(store.apply(classification, NetworkAnomalyDetectorGUI.AnomalyRules.defaults()));
+        assertEquals(rules.classify("System", 7036, "Information", store.row(0).message()), store.row(0).anomalyType());
+    }
+
+    @Test
+    void blockWithItsOwnMessageIsSearchedAsItPrintsBack() {
+        NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry("Message : First line\nsecond line\nId : 7036\nLogName : System\n");
+        NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+        store.add(entry);
+        NetworkAnomalyDetectorGUI.EventStore.Row row = store.row(0);
+        assertEquals(entry.message, row.message());
+        assertTrue(row.originalLine().contains(entry.message), row.originalLine());
+        for (String keyword : List.of("second line", "message          : first", "logname          : system")) {
+            assertEquals(1, store.filter("All Hosts", "All Logs", "Show All Logs", keyword).cardinality(), keyword);
+        }
+    }
+
+    @Test
+    void mergedRunsMatchAStableSort() {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+            List<NetworkAnomalyDetectorGUI.LogEntry> all = new ArrayList<>();
+            for (int batch = 1 + random.nextInt(4); batch > 0; batch--) {
+                List<NetworkAnomalyDetectorGUI.LogEntry> entries = randomRuns(random, all.size());
+                List<NetworkAnomalyDetectorGUI.LogEntry> expected = new ArrayList<>(entries);
+                expected.sort(BY_KEY);
+                assertEquals(messages(expected), messages(NetworkAnomalyDetectorGUI.EventStore.mergeRuns(entries)));
+                store.addAll(entries);
+                all.addAll(entries);
+            }
+            all.sort(BY_KEY); // Stored batches keep their order among equal keys, ahead of later ones
+            List<String> stored = new ArrayList<>();
+            for (int row = 0; row < store.size(); row++) stored.add(store.row(row).message());
+            assertEquals(messages(all), stored);
+        }
+    }
+
+    // Decoded System events from..to-1, a second apart, oldest first
+    private static List<NetworkAnomalyDetectorGUI.LogEntry> events(int from, int to) {
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+            entry.timeMillis = T0 + i * 1_000L;
+            entry.timestamp = NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(entry.timeMillis);
+            entry.logName = "System";
+            entry.eventId = 7036;
+            entry.recordId = i + 1;
+            entry.message = "Service Control Manager event 7036.\n\tparam1:\tservice " + i;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // A batch as sources deliver them: ascending runs with equal keys (an import), strictly descending ones (a full
+    // load), single events out of place and events without a time, numbered from first in their messages
+    private static List<NetworkAnomalyDetectorGUI.LogEntry> randomRuns(Random random, int first) {
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = new ArrayList<>();
+        for (int run = random.nextInt(6); run >= 0; run--) {
+            int kind = random.nextInt(4), length = 1 + random.nextInt(40);
+            long time = T0 + random.nextInt(200) * 1_000L, recordId = random.nextInt(50);
+            for (int i = 0; i < length; i++) {
+                NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+                switch (kind) {
+                    case 0 -> { // Non-descending, keys repeating
+                        if (random.nextInt(3) > 0) recordId++;
+                        if (random.nextInt(4) == 0) time += 1_000L;
+                    }
+                    case 1 -> recordId--; // Strictly descending
+                    case 2 -> {
+                        time = T0 + random.nextInt(200) * 1_000L;
+                        recordId = random.nextInt(5);
+                    }
+                    default -> time = random.nextInt(3) == 0 ? NetworkAnomalyDetectorGUI.LogEntry.NO_TIME : time + 1_000L;
+                }
+                entry.timeMillis = time;
+                entry.timestamp = NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(time);
+                entry.logName = "System";
+                entry.eventId = 7036;
+                entry.recordId = recordId;
+                entry.message = "entry " + (first + entries.size());
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> messages(List<NetworkAnomalyDetectorGUI.LogEntry> entries) {
+        return entries.stream().map(entry -> entry.message).toList();
+    }
+}
@@ -0,0 +1,228 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// EvtxReader over files written here: one BinXML template per chunk, defined inline by the chunk's first record and
+// instantiated by the rest, with the event data as a nested BinXML substitution
+class EvtxReaderTest {
+    private static final Instant T0 = Instant.parse("2026-10-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesRecordsNewestFirst() throws IOException {
+        Chunk chunk = new Chunk();
+        chunk.record(101, T0, "Microsoft-Windows-Security-Auditing", 4625, 0, "Security",
+                "TargetUserName", "alice", "IpAddress", "10.0.0.5", "LogonType", "3");
+        chunk.record(102, T0.plusSeconds(5), "Microsoft-Windows-Security-Auditing", 4625, 0, "Security",
+                "TargetUserName", "-", "IpAddress", "::1");
+        chunk.record(103, T0.plusSeconds(9), "Service Control Manager", 7036, 2, "System",
+                "param1", "Windows Update", "param2", "running & <ok>");
+
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = NetworkAnomalyDetectorGUI.EvtxReader.read(write(chunk));
+
+        assertEquals(List.of(103L, 102L, 101L), recordIds(entries));
+        NetworkAnomalyDetectorGUI.LogEntry service = entries.get(0);
+        assertEquals(7036, service.eventId);
+        assertEquals("System", service.logName);
+        assertEquals("Error", service.level);
+        assertEquals(T0.plusSeconds(9).toEpochMilli(), service.timeMillis);
+        assertEquals("Service Control Manager event 7036.\n\tparam1:\tWindows Update\n\tparam2:\trunning & <ok>", service.message);
+        assertNull(service.originalLine); // Derived on demand
+        assertTrue(service.block().startsWith("TimeCreated      : " + service.timestamp + "\nLogName          : System\nRecordId         : 103\n"));
+
+        NetworkAnomalyDetectorGUI.LogEntry loopback = entries.get(1);
+        assertEquals("localhost", loopback.sourceIp);
+        assertEquals("N/A", loopback.accountName);
+        NetworkAnomalyDetectorGUI.LogEntry failed = entries.get(2);
+        assertEquals("Information", failed.level);
+        assertEquals("10.0.0.5", failed.sourceIp);
+        assertEquals("alice", failed.accountName);
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.FAILED_LOGIN, failed.anomalyType);
+    }
+
+    @Test
+    void readsWrappedChunksInRecordOrder() throws IOException {
+        // A full log overwrote its first chunk with the newest records; the chunk after it still holds older ones
+        Chunk newer = new Chunk();
+        newer.record(203, T0.plusSeconds(30), "Service Control Manager", 7036, 4, "System", "param1", "c");
+        newer.record(204, T0.plusSeconds(40), "Service Control Manager", 7036, 4, "System", "param1", "d");
+        Chunk older = new Chunk();
+        older.record(201, T0.plusSeconds(10), "Service Control Manager", 7036, 4, "System", "param1", "a");
+        older.record(202, T0.plusSeconds(20), "Service Control Manager", 7036, 4, "System", "param1", "b");
+
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = NetworkAnomalyDetectorGUI.EvtxReader.read(write(newer, older, null));
+
+        assertEquals(List.of(204L, 203L, 202L, 201L), recordIds(entries));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path small = Files.write(directory.resolve("small.evtx"), new byte[100]);
+        assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.EvtxReader.read(small));
+        Path unsigned = Files.write(directory.resolve("unsigned.evtx"), new byte[4096 + 65536]);
+        assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.EvtxReader.read(unsigned));
+    }
+
+    private static List<Long> recordIds(List<NetworkAnomalyDetectorGUI.LogEntry> entries) {
+        return entries.stream().map(entry -> entry.recordId).collect(Collectors.toList());
+    }
+
+    // The file header, then the chunks in the order given; null leaves a pre-allocated, never written chunk
+    private Path write(Chunk... chunks) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        byte[] header = new byte[4096];
+        System.arraycopy("ElfFile\0".getBytes(StandardCharsets.US_ASCII), 0, header, 0, 8);
+        file.write(header);
+        for (Chunk chunk : chunks) file.write(chunk != null ? chunk.finish() : new byte[65536]);
+        return Files.write(directory.resolve("events.evtx"), file.toByteArray());
+    }
+
+    private static long fileTime(Instant time) {
+        return time.toEpochMilli() * 10_000 + 116444736000000000L;
+    }
+
+    private static final class Chunk {
+        private final ByteBuffer bytes = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+        private long firstRecordId = -1;
+        private int templateOffset = -1;
+
+        Chunk() {
+            bytes.position(512);
+        }
+
+        // data: field names and values in turn
+        void record(long recordId, Instant time, String provider, int eventId, int level, String channel, String... data) {
+            int start = bytes.position();
+            if (firstRecordId < 0) firstRecordId = recordId;
+            Xml body = new Xml(start + 24);
+            body.u8(0x0F).u8(1).u8(1).u8(0);
+            body.u8(0x0C).u8(1).u32(0x1234);
+            boolean inline = templateOffset < 0;
+            if (inline) templateOffset = body.offset() + 4;
+            body.u32(templateOffset);
+            if (inline) {
+                body.u32(0);
+                for (int i = 0; i < 16; i++) body.u8(0x11);
+                Xml template = new Xml(body.offset() + 4);
+                template.u8(0x0F).u8(1).u8(1).u8(0);
+                template.open("Event").open("System");
+                template.openWithAttribute("Provider", "Name", xml -> xml.substitution(0, 0x01)).u8(0x03);
+                template.open("EventID").substitution(1, 0x06).end();
+                template.open("Level").substitution(2, 0x04).end();
+                template.openWithAttribute("TimeCreated", "SystemTime", xml -> xml.substitution(3, 0x11)).u8(0x03);
+                template.open("EventRecordID").substitution(4, 0x0A).end();
+                template.open("Channel").substitution(5, 0x01).end();
+                template.end();
+                template.open("EventData").substitution(6, 0x21).end();
+                template.end();
+                template.u8(0x00);
+                body.u32(template.size()).bytes(template.toByteArray());
+            }
+            byte[][] values = {
+                    utf16(provider),
+                    Xml.little(2, eventId),
+                    Xml.little(1, level),
+                    Xml.little(8, fileTime(time)),
+                    Xml.little(8, recordId),
+                    utf16(channel),
+                    null};
+            int[] types = {0x01, 0x06, 0x04, 0x11, 0x0A, 0x01, 0x21};
+            int valuesStart = body.offset() + 4 + 4 * values.length;
+            for (int i = 0; i < values.length - 1; i++) valuesStart += values[i].length;
+            Xml eventData = new Xml(valuesStart);
+            eventData.u8(0x0F).u8(1).u8(1).u8(0);
+            for (int i = 0; i < data.length; i += 2) {
+                String name = data[i];
+                eventData.openWithAttribute("Data", "Name", xml -> xml.text(name)).u8(0x02).text(data[i + 1]).end();
+            }
+            eventData.u8(0x00);
+            values[values.length - 1] = eventData.toByteArray();
+            body.u32(values.length);
+            for (int i = 0; i < values.length; i++) body.u16(values[i].length).u8(types[i]).u8(0);
+            for (byte[] value : values) body.bytes(value);
+            body.u8(0x00);
+
+            int size = 24 + body.size() + 4;
+            bytes.putInt(0x2a2a).putInt(size).putLong(recordId).putLong(fileTime(time)).put(body.toByteArray()).putInt(size);
+        }
+
+        byte[] finish() {
+            bytes.put(0, "ElfChnk\0".getBytes(StandardCharsets.US_ASCII));
+            bytes.putLong(24, firstRecordId);
+            bytes.putInt(48, bytes.position()); // Free space starts after the last record
+            return bytes.array();
+        }
+
+        private static byte[] utf16(String text) {
+            return text.getBytes(StandardCharsets.UTF_16LE);
+        }
+    }
+
+    // BinXML tokens, written at a known chunk offset so names can point at their inline definitions
+    private static final class Xml extends ByteArrayOutputStream {
+        private final int base;
+
+        Xml(int base) {
+            this.base = base;
+        }
+
+        int offset() { return base + size(); }
+
+        Xml u8(int value) { write(value); return this; }
+        Xml u16(int value) { return bytes(little(2, value)); }
+        Xml u32(int value) { return bytes(little(4, value)); }
+        Xml bytes(byte[] value) { writeBytes(value); return this; }
+
+        static byte[] little(int length, long value) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) bytes[i] = (byte) (value >>> (8 * i));
+            return bytes;
+        }
+
+        // Defined in place: offset of the definition (just after this field), hash, length, UTF-16 text, terminator
+        Xml name(String name) {
+            u32(offset() + 4).u32(0).u16(0).u16(name.length());
+            return bytes(name.getBytes(StandardCharsets.UTF_16LE)).u16(0);
+        }
+
+        Xml open(String name) {
+            u8(0x01).u16(0xFFFF).u32(0).name(name);
+            return u8(0x02);
+        }
+
+        // Leaves the element open for its close token (0x02 before content, 0x03 when empty)
+        Xml openWithAttribute(String name, String attribute, Consumer<Xml> value) {
+            u8(0x41).u16(0xFFFF).u32(0).name(name).u32(0);
+            u8(0x06).name(attribute);
+            value.accept(this);
+            return this;
+        }
+
+        Xml end() { return u8(0x04); }
+
+        Xml substitution(int index, int type) { return u8(0x0E).u16(index).u8(type); }
+
+        Xml text(String text) {
+            u8(0x05).u8(0x01).u16(text.length());
+            return bytes(text.getBytes(StandardCharsets.UTF_16LE));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+// HeavyHitters against exact counts kept in a HashMap, alone and merged
+class HeavyHittersTest {
+    private static final int KEYS = 2000;
+
+    @Test
+    void boundsHoldForOneStream() {
+        Map<String, Long> exact = new HashMap<>();
+        NetworkAnomalyDetectorGUI.HeavyHitters summary = summarize(new Random(1), 0, 50_000, exact);
+        checkBounds(summary, exact);
+    }
+
+    @Test
+    void boundsHoldAfterMerging() {
+        Random random = new Random(2);
+        for (int shift : new int[] {0, 10, KEYS / 2}) {
+            Map<String, Long> exact = new HashMap<>();
+            NetworkAnomalyDetectorGUI.HeavyHitters summary = summarize(random, 0, 40_000, exact);
+            // Heavy keys partly shared, a summary not yet full, and one from a single key
+            summary.merge(summarize(random, shift, 30_000, exact));
+            summary.merge(summarize(random, KEYS, 50, exact));
+            summary.merge(summarize(random, KEYS + 7, 1, exact));
+            checkBounds(summary, exact);
+        }
+    }
+
+    @Test
+    void mergeKeepsTheHeaviestKeys() {
+        // Each side alone sees only its own heavy keys; merged, the ten keys heavy on both sides lead
+        Map<String, Long> exact = new HashMap<>();
+        NetworkAnomalyDetectorGUI.HeavyHitters left = new NetworkAnomalyDetectorGUI.HeavyHitters();
+        NetworkAnomalyDetectorGUI.HeavyHitters right = new NetworkAnomalyDetectorGUI.HeavyHitters();
+        for (int key = 0; key < 200; key++) {
+            int count = key < 10 ? 500 : 100;
+            for (int i = 0; i < count; i++) {
+                add(key < 10 || key % 2 == 0 ? left : right, "key-" + key, exact);
+                if (key < 10) add(right, "key-" + key, exact);
+            }
+        }
+        left.merge(right);
+        checkBounds(left, exact);
+        Set<String> top = left.top(10).stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+        assertEquals(Set.of("key-0", "key-1", "key-2", "key-3", "key-4", "key-5", "key-6", "key-7", "key-8", "key-9"), top);
+        assertTrue(left.top(10).stream().allMatch(entry -> entry.getValue() == 1000), left.top(10).toString());
+    }
+
+    @Test
+    void writtenSummaryReadsBack() throws IOException {
+        Map<String, Long> exact = new HashMap<>();
+        NetworkAnomalyDetectorGUI.HeavyHitters summary = summarize(new Random(3), 0, 20_000, exact);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.writeTo(new DataOutputStream(bytes));
+
+        NetworkAnomalyDetectorGUI.HeavyHitters read = new NetworkAnomalyDetectorGUI.HeavyHitters();
+        read.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), true);
+        assertEquals(describe(summary.tracked()), describe(read.tracked()));
+        assertEquals(summary.top(20), read.top(20));
+        for (int key = 0; key < KEYS; key += 37) assertEquals(summary.estimate("key-" + key), read.estimate("key-" + key));
+        checkBounds(read, exact);
+    }
+
+    // Every tracked key's exact count lies within [count - error, count], no untracked key outweighs the lightest,
+    // and the reported counts are upper bounds no larger than the tracked ones
+    private static void checkBounds(NetworkAnomalyDetectorGUI.HeavyHitters summary, Map<String, Long> exact) {
+        List<Map.Entry<String, long[]>> tracked = summary.tracked();
+        assertTrue(tracked.size() <= NetworkAnomalyDetectorGUI.HeavyHitters.CAPACITY);
+        for (Map.Entry<String, long[]> entry : tracked) {
+            long truth = exact.getOrDefault(entry.getKey(), 0L), count = entry.getValue()[0], error = entry.getValue()[1];
+            assertTrue(count - error <= truth && truth <= count, entry.getKey() + ": " + truth + " not in [" + (count - error) + ", " + count + "]");
+        }
+        long lightest = tracked.size() < NetworkAnomalyDetectorGUI.HeavyHitters.CAPACITY ? 0 : tracked.get(0).getValue()[0];
+        Set<String> trackedKeys = tracked.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            if (!trackedKeys.contains(entry.getKey())) assertTrue(entry.getValue() <= lightest, entry.getKey() + " outweighs the lightest");
+            assertTrue(summary.estimate(entry.getKey()) >= entry.getValue(), entry.getKey());
+        }
+        Map<String, Long> counts = tracked.stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue()[0]));
+        for (Map.Entry<String, Long> reported : summary.top(tracked.size())) {
+            long truth = exact.getOrDefault(reported.getKey(), 0L);
+            assertTrue(truth <= reported.getValue() && reported.getValue() <= counts.get(reported.getKey()), reported.getKey());
+        }
+    }
+
+    // events keys drawn from a skewed distribution over key-first .. key-(first + KEYS - 1)
+    private static NetworkAnomalyDetectorGUI.HeavyHitters summarize(Random random, int first, int events, Map<String, Long> exact) {
+        NetworkAnomalyDetectorGUI.HeavyHitters summary = new NetworkAnomalyDetectorGUI.HeavyHitters();
+        for (int i = 0; i < events; i++) {
+            int rank = (int) Math.floor(Math.pow(KEYS, random.nextDouble())) - 1; // Roughly Zipf: key k with weight ~1/k
+            add(summary, "key-" + (first + rank), exact);
+        }
+        return summary;
+    }
+
+    private static void add(NetworkAnomalyDetectorGUI.HeavyHitters summary, String key, Map<String, Long> exact) {
+        summary.add(key);
+        exact.merge(key, 1L, Long::sum);
+    }
+
+    private static String describe(List<Map.Entry<String, long[]>> tracked) {
+        return tracked.stream().map(entry -> entry.getKey() + "=" + entry.getValue()[0] + "/" + entry.getValue()[1])
+                .sorted().collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+// The single-pass scanner in LogEntry against the regex cascade it replaced, on the blocks most likely to tell
+// them apart
+class LogEntryTest {
+    private static final Pattern TIME_PATTERN = Pattern.compile("^TimeCreated\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+    private static final Pattern ID_PATTERN = Pattern.compile("^Id\\s*:\\s*(\\d+)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEVEL_PATTERN = Pattern.compile("^LevelDisplayName\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOGNAME_PATTERN = Pattern.compile("^LogName\\s*:\\s*(.*)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("^Message\\s*:\\s*(.*)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern IP_PATTERN = Pattern.compile("(?:Source Network Address|Client Network Address):\\s*([\\d.:a-fA-F\\-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ACCOUNT_PATTERN = Pattern.compile("Account Name:\\s*([^\\n\\r]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final String FAILED_LOGON = "TimeCreated      : 10/1/2026 12:00:00 PM\r\n"
+            + "LogName          : Security\r\n"
+            + "RecordId         : 81234\r\n"
+            + "Id               : 4625\r\n"
+            + "LevelDisplayName : Information\r\n"
+            + "Message          : An account failed to log on.\r\n"
+            + "\r\n"
+            + "                   Account For Which Logon Failed:\r\n"
+            + "                   \tAccount Name:\t\talice\r\n"
+            + "                   Network Information:\r\n"
+            + "                   \tSource Network Address:\t10.0.0.5\r\n";
+
+    @Test
+    void matchesRegexCascade() {
+        List<String> blocks = List.of(
+                FAILED_LOGON,
+                FAILED_LOGON.replace("\r\n", "\n"),
+                FAILED_LOGON.replace("10.0.0.5", "::1").replace("alice", "-"),
+                FAILED_LOGON.replace("Source Network Address:\t10.0.0.5", "Source Network Address:\t-\r\n\tClient Network Address: fe80::1"),
+                FAILED_LOGON.replace("alice", "   "),
+                FAILED_LOGON.replace("Security", "security").replace("LogName", "LOGNAME").replace("Id   ", "id   "),
+                FAILED_LOGON.replace("4625", "4624"),
+                // Message first: the block's own message; anywhere else: the whole block
+                "Message : First line\nsecond line\nId : 7036\nLogName : System\n",
+                "  Message : indented, so not at the start\nId : 7036\n",
+                // A header whose value is on the next line, and headers repeated further down
+                "TimeCreated :\n   10/1/2026 12:00:05 PM\nId : 1\nId : 2\nLogName : Application\nLogName : System\n",
+                // Ids that do not parse: no digits, and too large for an int
+                "Id : abc\nId : 4624\n",
+                "Id : 99999999999\nLevelDisplayName : Error\n",
+                "LevelDisplayName:Warning\rLogName  :  Setup  \u2028Id:  41\u0085RecordId : 17\n",
+                "Id\t:\t6008 and text\fLevelDisplayName\u000B: Critical",
+                "",
+                "no headers at all");
+        for (String block : blocks) {
+            NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry(block);
+            NetworkAnomalyDetectorGUI.LogEntry expected = parseWithRegexes(block);
+            String context = "block: " + block;
+            assertEquals(expected.timestamp, entry.timestamp, context);
+            assertEquals(expected.eventId, entry.eventId, context);
+            assertEquals(expected.level, entry.level, context);
+            assertEquals(expected.logName, entry.logName, context);
+            assertEquals(expected.message, entry.message, context);
+            assertEquals(expected.sourceIp, entry.sourceIp, context);
+            assertEquals(expected.accountName, entry.accountName, context);
+        }
+    }
+
+    @Test
+    void readsRecordIdAndTime() {
+        NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry(FAILED_LOGON);
+        assertEquals(81234, entry.recordId);
+        assertEquals("10.0.0.5", entry.sourceIp);
+        assertEquals("alice", entry.accountName);
+        assertEquals(-1, new NetworkAnomalyDetectorGUI.LogEntry("RecordId : 99999999999999999999\n").recordId);
+        assertEquals(NetworkAnomalyDetectorGUI.LogEntry.NO_TIME, new NetworkAnomalyDetectorGUI.LogEntry("TimeCreated : not a time\n").timeMillis);
+    }
+
+    private static NetworkAnomalyDetectorGUI.LogEntry parseWithRegexes(String block) {
+        NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+        Matcher m = TIME_PATTERN.matcher(block);
+        if (m.find()) entry.timestamp = m.group(1).trim();
+        m = ID_PATTERN.matcher(block);
+        if (m.find()) {
+            try { entry.eventId = Integer.parseInt(m.group(1).trim()); }
+            catch (NumberFormatException nfe) { entry.eventId = -2; }
+        }
+        m = LEVEL_PATTERN.matcher(block);
+        if (m.find()) entry.level = m.group(1).trim();
+        m = LOGNAME_PATTERN.matcher(block);
+        if (m.find()) entry.logName = m.group(1).trim();
+        m = MESSAGE_PATTERN.matcher(block);
+        entry.message = m.find() ? m.group(1).trim() : block;
+        if ("Security".equalsIgnoreCase(entry.logName) && List.of(4625, 4740, 4720, 4726, 4732, 4756, 4728).contains(entry.eventId)) {
+            m = IP_PATTERN.matcher(block);
+            if (m.find()) entry.sourceIp = NetworkAnomalyDetectorGUI.LogEntry.normalizeSourceIp(m.group(1).trim());
+            m = ACCOUNT_PATTERN.matcher(block);
+            if (m.find()) entry.accountName = NetworkAnomalyDetectorGUI.LogEntry.normalizeAccountName(m.group(1).trim());
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,228 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// MultiHostCollector over stand-in sources, and the hosts file
+class MultiHostCollectorTest {
+    private static final long T0 = 1_790_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void failingAndStuckHostsDoNotHoldUpTheOthers() throws InterruptedException {
+        Map<String, Long> flushed = new ConcurrentHashMap<>();
+        Map<String, List<NetworkAnomalyDetectorGUI.LogEntry>> received = new ConcurrentHashMap<>();
+        List<NetworkAnomalyDetectorGUI.Host> hosts = List.of(
+                host("good", 60_000, (engine, sink) -> engine.runEntries(events(3), sink)),
+                host("broken", 60_000, (engine, sink) -> { throw new IllegalStateException("unreachable"); }),
+                host("stuck", 1_000, (engine, sink) -> {
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException e) {
+                        engine.runEntries(events(2), sink); // Too late: dropped
+                    }
+                }));
+
+        long start = System.currentTimeMillis();
+        List<NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome> outcomes = collect(hosts, host -> new Sink(host, received, flushed));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(List.of("good", "broken", "stuck"), outcomes.stream().map(outcome -> outcome.host.name).collect(Collectors.toList()));
+        NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome good = outcomes.get(0);
+        assertTrue(good.succeeded());
+        assertNull(good.reported);
+        assertEquals(3, received.get("good").size());
+        assertTrue(received.get("good").stream().allMatch(entry -> entry.host.equals("good")));
+        assertTrue(flushed.get("good") - start < 1_000, "good waited for the others");
+
+        assertEquals("unreachable", outcomes.get(1).error);
+        assertTrue(flushed.containsKey("broken")); // Flushed although it failed
+
+        NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome stuck = outcomes.get(2);
+        assertEquals("no answer within 1 s", stuck.error);
+        assertTrue(stuck.abandoned());
+        assertNull(received.get("stuck"));
+        assertTrue(elapsed >= 1_000 + NetworkAnomalyDetectorGUI.MultiHostCollector.GRACE_MILLIS - 100, "gave up after " + elapsed + " ms");
+        assertTrue(elapsed < 1_000 + NetworkAnomalyDetectorGUI.MultiHostCollector.GRACE_MILLIS + 3_000, "gave up after " + elapsed + " ms");
+    }
+
+    @Test
+    void runsAtMostMaxParallelHostsAtOnce() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<NetworkAnomalyDetectorGUI.Host> hosts = new ArrayList<>();
+        int parallel = NetworkAnomalyDetectorGUI.MultiHostCollector.MAX_PARALLEL_HOSTS;
+        for (int i = 0; i < parallel * 3; i++) {
+            // Each host takes most of its timeout, so one whose deadline counted from the start would be abandoned
+            hosts.add(host("host-" + i, 1_000, (engine, sink) -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(900);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+        }
+
+        List<NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome> outcomes = collect(hosts, host -> new Sink(host, new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+
+        assertEquals(parallel, mostRunning.get());
+        assertTrue(outcomes.stream().allMatch(NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome::succeeded));
+    }
+
+    @Test
+    void storeTellsMoreThan256HostsApart() throws InterruptedException {
+        Map<String, List<NetworkAnomalyDetectorGUI.LogEntry>> received = new ConcurrentHashMap<>();
+        List<NetworkAnomalyDetectorGUI.Host> hosts = IntStream.range(0, 300)
+                .mapToObj(i -> host("host-" + i, 60_000, (engine, sink) -> engine.runEntries(events(2), sink)))
+                .collect(Collectors.toList());
+
+        collect(hosts, host -> new Sink(host, received, new ConcurrentHashMap<>()));
+        NetworkAnomalyDetectorGUI.EventStore store = new NetworkAnomalyDetectorGUI.EventStore();
+        for (List<NetworkAnomalyDetectorGUI.LogEntry> entries : received.values()) store.addAll(entries);
+
+        assertEquals(600, store.filter("All Hosts", "All Logs", "Show All Logs", "").cardinality());
+        for (String name : List.of("host-0", "host-255", "host-256", "host-299")) {
+            NetworkAnomalyDetectorGUI.RowBitmap rows = store.filter(name, "All Logs", "Show All Logs", "");
+            assertEquals(2, rows.cardinality(), name);
+            assertEquals(name, store.row(rows.select(0)).host());
+        }
+    }
+
+    @Test
+    void loadsTheHostsFile() throws IOException {
+        Path file = Files.writeString(directory.resolve("hosts.txt"), String.join("\n",
+                "# Collected every refresh",
+                "",
+                ".",
+                "web01 | remote: WEB01.corp.example | 30",
+                "branch | drop: " + directory,
+                "lab | worker: sh tools/powershell-replay.sh capture.txt",
+                "db01",
+                ""));
+        List<NetworkAnomalyDetectorGUI.Host> hosts = NetworkAnomalyDetectorGUI.Host.loadList(file);
+        try {
+            assertEquals(List.of("localhost", "web01", "branch", "lab", "db01"), hosts.stream().map(host -> host.name).collect(Collectors.toList()));
+            assertTrue(hosts.get(0).isLocal());
+            assertEquals(30_000, hosts.get(1).timeoutMillis);
+            assertEquals(NetworkAnomalyDetectorGUI.PowerShellSession.TIMEOUT_MILLIS, hosts.get(4).timeoutMillis);
+            assertTrue(hosts.get(1).source instanceof NetworkAnomalyDetectorGUI.PowerShellSource);
+            assertTrue(hosts.get(2).source instanceof NetworkAnomalyDetectorGUI.DropSource);
+            assertTrue(hosts.get(3).source instanceof NetworkAnomalyDetectorGUI.PowerShellSource);
+        } finally {
+            for (NetworkAnomalyDetectorGUI.Host host : hosts) host.close();
+        }
+
+        assertEquals(List.of("localhost"), names(NetworkAnomalyDetectorGUI.Host.loadList(directory.resolve("absent.txt"))));
+        assertEquals(List.of("localhost"), names(NetworkAnomalyDetectorGUI.Host.loadList(Files.writeString(directory.resolve("empty.txt"), "# none\n"))));
+    }
+
+    @Test
+    void rejectsBadHostsFiles() throws IOException {
+        for (String line : List.of("web01 | remote:", "web01 | ftp: x", "web01 | remote: x | soon", "web01 | remote: x | 0",
+                "a | b | c | d", " | remote: x")) {
+            Path file = Files.writeString(directory.resolve("hosts.txt"), "localhost\n" + line + "\n");
+            IOException failure = assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.Host.loadList(file), line);
+            assertTrue(failure.getMessage().startsWith("hosts.txt line 2: "), failure.getMessage());
+        }
+        Path twice = Files.writeString(directory.resolve("hosts.txt"), "web01\nWEB01 | drop: /tmp\n");
+        assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.Host.loadList(twice));
+
+        int limit = NetworkAnomalyDetectorGUI.EventStore.MAX_SHORT_CODES;
+        Path tooMany = Files.write(directory.resolve("hosts.txt"),
+                IntStream.rangeClosed(0, limit).mapToObj(i -> "host-" + i + " | drop: /tmp").collect(Collectors.toList()));
+        IOException failure = assertThrows(IOException.class, () -> NetworkAnomalyDetectorGUI.Host.loadList(tooMany));
+        assertTrue(failure.getMessage().contains("more than " + limit + " hosts"), failure.getMessage());
+    }
+
+    private static List<NetworkAnomalyDetectorGUI.MultiHostCollector.Outcome> collect(List<NetworkAnomalyDetectorGUI.Host> hosts,
+            Function<NetworkAnomalyDetectorGUI.Host, NetworkAnomalyDetectorGUI.MultiHostCollector.HostSink> sinks)
+            throws InterruptedException {
+        return NetworkAnomalyDetectorGUI.MultiHostCollector.collect(hosts, null, new HashMap<>(), new NetworkAnomalyDetectorGUI.TopTalkers(), sinks);
+    }
+
+    private static List<String> names(List<NetworkAnomalyDetectorGUI.Host> hosts) throws IOException {
+        for (NetworkAnomalyDetectorGUI.Host host : hosts) host.close();
+        return hosts.stream().map(host -> host.name).collect(Collectors.toList());
+    }
+
+    // count distinct System events, newest first
+    private static List<NetworkAnomalyDetectorGUI.LogEntry> events(int count) {
+        List<NetworkAnomalyDetectorGUI.LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+            entry.timeMillis = T0 + i * 1_000L;
+            entry.timestamp = NetworkAnomalyDetectorGUI.LogEntry.formatTimestamp(entry.timeMillis);
+            entry.logName = "System";
+            entry.eventId = 7036;
+            entry.recordId = i + 1;
+            entry.message = "Service Control Manager event 7036.\n\tparam1:\tservice " + i;
+            entries.add(entry);
+        }
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    private static NetworkAnomalyDetectorGUI.Host host(String name, long timeoutMillis, Fetch fetch) {
+        return new NetworkAnomalyDetectorGUI.Host(name, new NetworkAnomalyDetectorGUI.HostSource() {
+            @Override
+            public String collect(NetworkAnomalyDetectorGUI.QueryPlan plan, Map<String, NetworkAnomalyDetectorGUI.HighWaterMark> marks,
+                               long timeoutMillis, NetworkAnomalyDetectorGUI.IngestEngine engine,
+                               Consumer<NetworkAnomalyDetectorGUI.LogEntry> sink, Runnable onPoll) {
+                fetch.run(engine, sink);
+                return null;
+            }
+
+            @Override
+            public void close() {}
+        }, timeoutMillis);
+    }
+
+    private interface Fetch {
+        void run(NetworkAnomalyDetectorGUI.IngestEngine engine, Consumer<NetworkAnomalyDetectorGUI.LogEntry> sink);
+    }
+
+    private static final class Sink implements NetworkAnomalyDetectorGUI.MultiHostCollector.HostSink {
+        private final String host;
+        private final Map<String, List<NetworkAnomalyDetectorGUI.LogEntry>> received;
+        private final Map<String, Long> flushed;
+
+        Sink(NetworkAnomalyDetectorGUI.Host host, Map<String, List<NetworkAnomalyDetectorGUI.LogEntry>> received, Map<String, Long> flushed) {
+            this.host = host.name;
+            this.received = received;
+            this.flushed = flushed;
+        }
+
+        @Override
+        public void accept(NetworkAnomalyDetectorGUI.LogEntry entry) {
+            received.computeIfAbsent(host, key -> new ArrayList<>()).add(entry);
+        }
+
+        @Override
+        public void flush() {
+            flushed.put(host, System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// PowerShellSession against tools/powershell-replay.sh and small sh workers that misbehave on their first request
+class PowerShellSessionTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void framesResponsesOfOneWorker() throws IOException {
+        Path first = capture("first.txt", "TimeCreated : 10/1/2026 12:00:00 PM\n\nMessage : ünïcode\n@@NAD-END not-this-request 0\n");
+        Path second = capture("second.txt", "second\n");
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = replay(first, second)) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals("TimeCreated : 10/1/2026 12:00:00 PM\n\nMessage : ünïcode\n@@NAD-END not-this-request 0\n\n", readAll(response));
+            assertEquals(0, response.status());
+            // The replay answers the n-th request with the n-th capture, so the same worker answered both
+            response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals("second\n\n", readAll(response));
+            assertEquals(0, response.status());
+        }
+    }
+
+    @Test
+    void reportsTheWorkersStatusWithItsStderr() throws IOException, InterruptedException {
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = replay(directory.resolve("missing.txt"))) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals("\n", readAll(response));
+            assertEquals(1, response.status());
+            // cat's complaint is captured rather than inherited; it was written before the end line, but is drained apart
+            for (int wait = 0; wait < 100 && !response.errors().contains("missing.txt"); wait++) Thread.sleep(50);
+            assertTrue(response.errors().contains("missing.txt"), response.errors());
+        }
+    }
+
+    @Test
+    void noMatchingEventsIsNotAnError() throws IOException {
+        String noEvents = base64("No events were found that match the specified selection criteria.");
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = answering(
+                "echo \"@@NAD-ERROR $id NoMatchingEventsFound,Microsoft.PowerShell.Commands.GetWinEventCommand " + noEvents + "\"",
+                "echo \"@@NAD-END $id 1\"")) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals("", readAll(response));
+            assertEquals(0, response.status());
+            assertEquals("", response.errors());
+        }
+    }
+
+    @Test
+    void otherErrorsAreReportedWithTheirMessages() throws IOException {
+        String noEvents = base64("No events were found that match the specified selection criteria.");
+        String denied = base64("Attempted to perform an unauthorized operation.");
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = answering(
+                "echo event",
+                "echo \"@@NAD-ERROR $id NoMatchingEventsFound,Microsoft.PowerShell.Commands.GetWinEventCommand " + noEvents + "\"",
+                "echo \"@@NAD-ERROR $id System.UnauthorizedAccessException,Microsoft.PowerShell.Commands.GetWinEventCommand " + denied + "\"",
+                "echo \"@@NAD-END $id 1\"")) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals("event\n", readAll(response)); // The error lines are not part of the output
+            assertEquals(1, response.status());
+            assertEquals("Attempted to perform an unauthorized operation.", response.errors());
+        }
+    }
+
+    @Test
+    void responseClosedEarlyRestartsTheWorker() throws IOException {
+        Path first = capture("first.txt", "first\nmore\n");
+        Path second = capture("second.txt", "second\n");
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = replay(first, second)) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            assertEquals('f', response.read());
+            response.close();
+            // A fresh worker starts over with the first capture, rather than the rest of the first answer turning up
+            assertEquals("first\nmore\n\n", readAll(session.execute("Get-WinEvent", TIMEOUT_MILLIS)));
+        }
+    }
+
+    @Test
+    void timeoutKillsTheWorkerAndTheNextRequestRestartsIt() throws IOException {
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = worker("exec sleep 30")) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", 300);
+            long start = System.nanoTime();
+            IOException failure = assertThrows(IOException.class, () -> readAll(response));
+            assertTrue(failure.getMessage().contains("did not answer within 300 ms"), failure.getMessage());
+            assertTrue(System.nanoTime() - start < 10_000_000_000L);
+            assertEquals("answered\n", readAll(session.execute("Get-WinEvent", TIMEOUT_MILLIS)));
+        }
+    }
+
+    @Test
+    void workerExitingMidResponseFailsTheRequest() throws IOException {
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = worker("echo partial; printf '@@NAD-END %s' \"$id\"; exit 1")) {
+            NetworkAnomalyDetectorGUI.PowerShellSession.Response response = session.execute("Get-WinEvent", TIMEOUT_MILLIS);
+            IOException failure = assertThrows(IOException.class, () -> readAll(response));
+            assertTrue(failure.getMessage().contains("exited during the request"), failure.getMessage());
+            assertEquals("answered\n", readAll(session.execute("Get-WinEvent", TIMEOUT_MILLIS)));
+        }
+    }
+
+    @Test
+    void workerThatExitedIsStartedAgain() throws IOException, InterruptedException {
+        try (NetworkAnomalyDetectorGUI.PowerShellSession session = worker("echo \"@@NAD-END $id 0\"; exit 0")) {
+            assertEquals("", readAll(session.execute("Get-WinEvent", TIMEOUT_MILLIS)));
+            Thread.sleep(200); // The worker has exited by now
+            assertEquals("answered\n", readAll(session.execute("Get-WinEvent", TIMEOUT_MILLIS)));
+        }
+    }
+
+    private NetworkAnomalyDetectorGUI.PowerShellSession replay(Path... captures) {
+        List<String> command = new ArrayList<>(List.of("sh", Path.of("tools", "powershell-replay.sh").toAbsolutePath().toString()));
+        for (Path capture : captures) command.add(capture.toString());
+        return new NetworkAnomalyDetectorGUI.PowerShellSession(command);
+    }
+
+    // A worker that runs firstRequest (with $id set) on the first request it ever gets, and answers "answered" after
+    private NetworkAnomalyDetectorGUI.PowerShellSession worker(String firstRequest) throws IOException {
+        Path marker = directory.resolve("started-once");
+        Path script = Files.writeString(directory.resolve("worker.sh"), String.join("\n",
+                "while read -r marker id payload; do",
+                "    if [ ! -e '" + marker + "' ]; then",
+                "        touch '" + marker + "'",
+                "        " + firstRequest,
+                "    else",
+                "        echo answered",
+                "        echo \"@@NAD-END $id 0\"",
+                "    fi",
+                "done",
+                ""));
+        return new NetworkAnomalyDetectorGUI.PowerShellSession(List.of("sh", script.toString()));
+    }
+
+    // A worker that runs the same lines (with $id set) on every request
+    private NetworkAnomalyDetectorGUI.PowerShellSession answering(String... lines) throws IOException {
+        Path script = Files.writeString(directory.resolve("answering.sh"),
+                "while read -r marker id payload; do\n    " + String.join("\n    ", lines) + "\ndone\n");
+        return new NetworkAnomalyDetectorGUI.PowerShellSession(List.of("sh", script.toString()));
+    }
+
+    private static String base64(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path capture(String name, String text) throws IOException {
+        return Files.writeString(directory.resolve(name), text, StandardCharsets.UTF_8);
+    }
+
+    private static String readAll(Reader response) throws IOException {
+        StringWriter text = new StringWriter();
+        response.transferTo(text);
+        return text.toString();
+    }
+}
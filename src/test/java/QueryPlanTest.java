@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+// Get-WinEvent commands planned from rules naming many event IDs and levels, against the comparison budget of a Select
+// and the (event ID, level) pairs those rules can match
+class QueryPlanTest {
+    private static final Pattern QUERY = Pattern.compile("<QueryList>.*?</QueryList>");
+    private static final Pattern SELECT = Pattern.compile("<Select Path=\"([^\"]*)\">(.*?)</Select>");
+    private static final Pattern COMPARISON = Pattern.compile("(EventID|Level|EventRecordID|@SystemTime)(>=|<=|=|>)");
+    private static final Pattern MARK_TERM = Pattern.compile(" and TimeCreated\\[@SystemTime>='[^']*'\\]| and EventRecordID>\\{0\\}");
+    private static final String[] LEVELS = {"*", "Critical", "Error", "Warning", "Information", "Verbose"};
+    private static final String[] TYPES = {"FAILED_LOGIN", "SERVICE_CRASH"};
+    private static final int MAX_ID = 600;
+
+    private static final Map<String, NetworkAnomalyDetectorGUI.HighWaterMark> NO_MARKS = Map.of();
+
+    @Test
+    void everySelectStaysWithinTheTermBudget() {
+        Random random = new Random(42);
+        Instant since = Instant.parse("2026-10-01T08:00:00.123456Z");
+        for (int round = 0; round < 40; round++) {
+            List<String[]> lines = randomRules(random);
+            NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.parse(String.join("\n", AnomalyRulesTest.toText(lines)));
+            for (String filter : filters()) {
+                NetworkAnomalyDetectorGUI.QueryPlan plan = NetworkAnomalyDetectorGUI.QueryPlan.forFilter("All Logs", filter, rules);
+                for (Map<String, NetworkAnomalyDetectorGUI.HighWaterMark> marks : List.of(NO_MARKS,
+                        markEveryLog(new NetworkAnomalyDetectorGUI.HighWaterMark(41_000, since)),
+                        markEveryLog(new NetworkAnomalyDetectorGUI.HighWaterMark(-1, since)))) { // Time and RecordId both
+                    for (String query : queries(plan.toCommand(marks, "web01", ""))) {
+                        for (String[] select : selects(query)) {
+                            Matcher comparisons = COMPARISON.matcher(select[1]);
+                            int count = 0;
+                            while (comparisons.find()) count++;
+                            assertTrue(count <= NetworkAnomalyDetectorGUI.MAX_XPATH_TERMS, count + " comparisons in " + select[1]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void selectsFetchWhatTheRulesCanMatch() {
+        Random random = new Random(7);
+        for (int round = 0; round < 15; round++) {
+            List<String[]> lines = randomRules(random);
+            NetworkAnomalyDetectorGUI.AnomalyRules rules = NetworkAnomalyDetectorGUI.AnomalyRules.parse(String.join("\n", AnomalyRulesTest.toText(lines)));
+            TreeSet<Integer> ids = probeIds(lines);
+            for (String log : List.of("Security", "System", "Application")) {
+                for (String type : TYPES) {
+                    String filter = NetworkAnomalyDetectorGUI.AnomalyType.valueOf(type).getDisplayName();
+                    List<String> queries = queries(NetworkAnomalyDetectorGUI.QueryPlan.forFilter(log, filter, rules).toCommand(NO_MARKS, null, ""));
+                    List<String[]> applicable = lines.stream().filter(line -> line[4].equals(type) && matchesLog(line[0], log)).toList();
+                    String context = log + "/" + type + " under " + String.join("; ", AnomalyRulesTest.toText(lines));
+                    if (applicable.isEmpty()) {
+                        assertTrue(queries.isEmpty(), context);
+                        continue;
+                    }
+                    for (int id : ids) {
+                        for (int level = 0; level <= 5; level++) {
+                            int eventId = id, eventLevel = level;
+                            boolean expected = applicable.stream().anyMatch(line -> AnomalyRulesTest.matchesIds(line[1], eventId)
+                                    && (AnomalyRulesTest.levelNumber(line[2]) < 0 || AnomalyRulesTest.levelNumber(line[2]) == eventLevel));
+                            assertEquals(expected, fetches(queries.get(0), log, id, level), "ID " + id + ", level " + level + ": " + context);
+                        }
+                    }
+                }
+
+                // The whole log, plus a call of its own for the IDs rules name for it specifically
+                List<String> queries = queries(NetworkAnomalyDetectorGUI.QueryPlan.forFilter(log, "Show All Logs", rules).toCommand(NO_MARKS, null, ""));
+                List<String[]> naming = lines.stream().filter(line -> line[0].equalsIgnoreCase(log) && !line[1].equals("*")).toList();
+                assertEquals(naming.isEmpty() ? 1 : 2, queries.size(), log);
+                assertTrue(fetches(queries.get(0), log, 4624, 4));
+                if (naming.isEmpty()) continue;
+                for (int id : ids) {
+                    boolean expected = naming.stream().anyMatch(line -> AnomalyRulesTest.matchesIds(line[1], id));
+                    assertEquals(expected, fetches(queries.get(1), log, id, 0), "ID " + id + " in " + log);
+                }
+            }
+        }
+    }
+
+    private static List<String> filters() {
+        List<String> filters = new ArrayList<>(List.of("Show All Logs", "Show All Anomalies"));
+        for (String type : TYPES) filters.add(NetworkAnomalyDetectorGUI.AnomalyType.valueOf(type).getDisplayName());
+        return filters;
+    }
+
+    private static Map<String, NetworkAnomalyDetectorGUI.HighWaterMark> markEveryLog(NetworkAnomalyDetectorGUI.HighWaterMark mark) {
+        return Map.of("Application", mark, "Security", mark, "System", mark, "Setup", mark);
+    }
+
+    // Rules of two types naming up to sixty scattered IDs and ranges each, with and without a level
+    private static List<String[]> randomRules(Random random) {
+        String[] logs = {"*", "Security", "System"};
+        List<String[]> lines = new ArrayList<>();
+        for (int i = 1 + random.nextInt(6); i > 0; i--) {
+            List<String> items = new ArrayList<>();
+            for (int j = 1 + random.nextInt(60); j > 0; j--) {
+                int first = random.nextInt(MAX_ID);
+                int last = random.nextInt(4) == 0 ? Math.min(MAX_ID, first + random.nextInt(6)) : first;
+                items.add(first == last ? String.valueOf(first) : first + "-" + last);
+            }
+            String ids = random.nextInt(12) == 0 ? "*" : String.join(", ", items);
+            String level = LEVELS[random.nextInt(LEVELS.length)];
+            lines.add(new String[] {logs[random.nextInt(logs.length)], ids, level, "*", TYPES[random.nextInt(TYPES.length)]});
+        }
+        return lines;
+    }
+
+    // Every ID at or next to a rule's bounds, and a few no rule names
+    private static TreeSet<Integer> probeIds(List<String[]> lines) {
+        TreeSet<Integer> ids = new TreeSet<>(List.of(0, MAX_ID + 1, 65535));
+        for (String[] line : lines) {
+            if (line[1].equals("*")) continue;
+            for (String item : line[1].split(",")) {
+                for (String bound : item.strip().split("-")) {
+                    int id = Integer.parseInt(bound);
+                    ids.addAll(List.of(Math.max(0, id - 1), id, id + 1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static boolean matchesLog(String field, String log) {
+        return field.equals("*") || field.equalsIgnoreCase(log);
+    }
+
+    // The <QueryList> of each Get-WinEvent call in a command, unquoted
+    private static List<String> queries(String command) {
+        List<String> queries = new ArrayList<>();
+        Matcher query = QUERY.matcher(command.replace("''", "'").replace("{{", "{").replace("}}", "}"));
+        while (query.find()) queries.add(query.group());
+        return queries;
+    }
+
+    // {log, XPath} of each Select in a query
+    private static List<String[]> selects(String query) {
+        List<String[]> selects = new ArrayList<>();
+        Matcher select = SELECT.matcher(query);
+        while (select.find()) selects.add(new String[] {unescapeXml(select.group(1)), unescapeXml(select.group(2))});
+        return selects;
+    }
+
+    // Whether some Select of a query returns an event of log with this ID and level, above any mark
+    private static boolean fetches(String query, String log, int eventId, int level) {
+        for (String[] select : selects(query)) {
+            assertEquals(log, select[0]);
+            String xpath = MARK_TERM.matcher(select[1]).replaceAll("");
+            if (xpath.equals("*")) return true;
+            assertTrue(xpath.startsWith("*[System[(") && xpath.endsWith(")]]"), xpath);
+            if (AnomalyRulesTest.matches(xpath.substring("*[System[".length(), xpath.length() - "]]".length()), eventId, level)) return true;
+        }
+        return false;
+    }
+
+    private static String unescapeXml(String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&");
+    }
+}
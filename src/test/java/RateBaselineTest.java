@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// RateBaseline against the EWMA recomputed from every stream's whole bucket history, and its saved state
+class RateBaselineTest {
+    private static final long T0 = 1_790_000_000_000L / NetworkAnomalyDetectorGUI.RateBaseline.BUCKET_MILLIS
+            * NetworkAnomalyDetectorGUI.RateBaseline.BUCKET_MILLIS;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spikesMatchARecomputedBaseline() {
+        List<NetworkAnomalyDetectorGUI.LogEntry> events = randomEvents(new Random(42), 0, 300);
+        NetworkAnomalyDetectorGUI.RateBaseline baseline = new NetworkAnomalyDetectorGUI.RateBaseline();
+        List<Integer> spikes = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (baseline.accept(events.get(i)) != null) spikes.add(i);
+        }
+        List<Integer> expected = naiveSpikes(events);
+        assertEquals(expected, spikes);
+        assertTrue(expected.size() > 5, "too few spikes to tell anything: " + expected.size());
+    }
+
+    @Test
+    void steadyStreamSpikesOnceAtMeanPlusSigmas() {
+        NetworkAnomalyDetectorGUI.RateBaseline baseline = new NetworkAnomalyDetectorGUI.RateBaseline();
+        int steady = 2;
+        long recordId = 1;
+        for (int bucket = 0; bucket < NetworkAnomalyDetectorGUI.RateBaseline.WARMUP_BUCKETS; bucket++) {
+            for (int i = 0; i < steady; i++) assertNull(baseline.accept(event("System", 7036, bucket, i, recordId++)));
+        }
+        // Mean 2 and no variance, so the floor on the deviation sets the bar: more than 2 + SIGMAS * MIN_STDDEV events
+        int bar = (int) Math.floor(steady + NetworkAnomalyDetectorGUI.RateBaseline.SIGMAS * NetworkAnomalyDetectorGUI.RateBaseline.MIN_STDDEV);
+        int spikeBucket = NetworkAnomalyDetectorGUI.RateBaseline.WARMUP_BUCKETS;
+        for (int i = 0; i < bar; i++) assertNull(baseline.accept(event("System", 7036, spikeBucket, i, recordId++)), "event " + i);
+        NetworkAnomalyDetectorGUI.LogEntry spike = baseline.accept(event("System", 7036, spikeBucket, bar, recordId++));
+        assertNotNull(spike);
+        assertEquals(NetworkAnomalyDetectorGUI.AnomalyType.RATE_SPIKE, spike.anomalyType);
+        assertTrue(spike.message.contains("usual 2.0 ± 0.0"), spike.message);
+        assertNull(baseline.accept(event("System", 7036, spikeBucket, bar + 1, recordId++))); // Once per bucket
+    }
+
+    @Test
+    void savedStateCarriesOn() throws IOException {
+        Random random = new Random(7);
+        List<NetworkAnomalyDetectorGUI.LogEntry> before = randomEvents(random, 0, 150);
+        List<NetworkAnomalyDetectorGUI.LogEntry> after = randomEvents(random, 151, 300);
+        NetworkAnomalyDetectorGUI.RateBaseline running = new NetworkAnomalyDetectorGUI.RateBaseline();
+        for (NetworkAnomalyDetectorGUI.LogEntry entry : before) running.accept(entry);
+        Path file = directory.resolve("rate-baseline.tsv");
+        running.save(file);
+
+        NetworkAnomalyDetectorGUI.RateBaseline restarted = new NetworkAnomalyDetectorGUI.RateBaseline();
+        restarted.load(file);
+        // Events counted before the restart come again (an overlapping fetch) and are not counted twice
+        for (NetworkAnomalyDetectorGUI.LogEntry entry : before) assertNull(restarted.accept(entry));
+        Path again = directory.resolve("again.tsv");
+        restarted.save(again);
+        assertEquals(Files.readString(file), Files.readString(again));
+
+        for (NetworkAnomalyDetectorGUI.LogEntry entry : after) {
+            NetworkAnomalyDetectorGUI.LogEntry expected = running.accept(entry), spike = restarted.accept(entry);
+            assertEquals(expected == null ? null : expected.message, spike == null ? null : spike.message);
+        }
+        running.save(file);
+        restarted.save(again);
+        assertEquals(Files.readString(file), Files.readString(again));
+    }
+
+    @Test
+    void unreadableStateStartsEmpty() throws IOException {
+        NetworkAnomalyDetectorGUI.RateBaseline baseline = new NetworkAnomalyDetectorGUI.RateBaseline();
+        Path file = Files.writeString(directory.resolve("rate-baseline.tsv"), "bucketMillis\t1\nstream\tSystem\t7036\n");
+        baseline.load(file); // Another bucket size: ignored
+        Path saved = directory.resolve("saved.tsv");
+        baseline.save(saved);
+        assertEquals(2, Files.readAllLines(saved).size());
+
+        Files.writeString(file, "bucketMillis\t" + NetworkAnomalyDetectorGUI.RateBaseline.BUCKET_MILLIS + "\nstream\tSystem\tnot a number\n");
+        IOException failure = assertThrows(IOException.class, () -> baseline.load(file));
+        assertTrue(failure.getMessage().startsWith("rate-baseline.tsv: "), failure.getMessage());
+        baseline.save(saved);
+        assertEquals(2, Files.readAllLines(saved).size());
+    }
+
+    // Events in time order over buckets [from, to): two streams of one log and one of another, mostly a few events a
+    // bucket with quiet stretches and the odd flood
+    private static List<NetworkAnomalyDetectorGUI.LogEntry> randomEvents(Random random, int from, int to) {
+        String[][] streams = {{"System", "7036"}, {"System", "10016"}, {"Security", "4625"}};
+        Map<String, Long> recordIds = new HashMap<>();
+        List<NetworkAnomalyDetectorGUI.LogEntry> events = new ArrayList<>();
+        for (int bucket = from; bucket < to; bucket++) {
+            for (int offset = 0; offset < 60; offset++) {
+                for (String[] stream : streams) {
+                    int roll = random.nextInt(1000);
+                    if (roll < 3 || random.nextInt(60) < (roll < 30 ? 20 : bucket % 50 < 5 ? 0 : 2)) {
+                        long recordId = recordIds.merge(stream[0], 1L, Long::sum) + from * 10_000L;
+                        events.add(event(stream[0], Integer.parseInt(stream[1]), bucket, offset, recordId));
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    private static NetworkAnomalyDetectorGUI.LogEntry event(String logName, int eventId, long bucket, int offset, long recordId) {
+        NetworkAnomalyDetectorGUI.LogEntry entry = new NetworkAnomalyDetectorGUI.LogEntry();
+        entry.timeMillis = T0 + bucket * NetworkAnomalyDetectorGUI.RateBaseline.BUCKET_MILLIS + offset * 1_000L;
+        entry.logName = logName;
+        entry.eventId = eventId;
+        entry.level = "Information";
+        entry.recordId = recordId;
+        return entry;
+    }
+
+    // Indices of the events that make their bucket a spike, with each stream's mean and variance recomputed from the
+    // counts of all its closed buckets (empty ones as zero) every time
+    private static List<Integer> naiveSpikes(List<NetworkAnomalyDetectorGUI.LogEntry> events) {
+        double alpha = NetworkAnomalyDetectorGUI.RateBaseline.ALPHA;
+        Map<String, List<Integer>> closed = new HashMap<>();
+        Map<String, long[]> open = new HashMap<>(); // bucket, count, alerted
+        List<Integer> spikes = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            NetworkAnomalyDetectorGUI.LogEntry entry = events.get(i);
+            String key = entry.logName + "/" + entry.eventId;
+            long bucket = Math.floorDiv(entry.timeMillis, NetworkAnomalyDetectorGUI.RateBaseline.BUCKET_MILLIS);
+            List<Integer> history = closed.computeIfAbsent(key, k -> new ArrayList<>());
+            long[] current = open.computeIfAbsent(key, k -> new long[] {bucket, 0, 0});
+            if (bucket > current[0]) {
+                history.add((int) current[1]);
+                for (long b = current[0] + 1; b < bucket; b++) history.add(0);
+                current[0] = bucket;
+                current[1] = 0;
+                current[2] = 0;
+            }
+            current[1]++;
+            double mean = 0, variance = 0;
+            for (int b = 0; b < history.size(); b++) {
+                if (b == 0) {
+                    mean = history.get(0);
+                    continue;
+                }
+                double diff = history.get(b) - mean;
+                mean += alpha * diff;
+                variance = (1 - alpha) * (variance + alpha * diff * diff);
+            }
+            double bar = mean + NetworkAnomalyDetectorGUI.RateBaseline.SIGMAS * Math.max(Math.sqrt(variance), NetworkAnomalyDetectorGUI.RateBaseline.MIN_STDDEV);
+            if (current[2] == 0 && history.size() >= NetworkAnomalyDetectorGUI.RateBaseline.WARMUP_BUCKETS
+                    && current[1] >= NetworkAnomalyDetectorGUI.RateBaseline.MIN_SPIKE_COUNT && current[1] > bar) {
+                current[2] = 1;
+                spikes.add(i);
+            }
+        }
+        return spikes;
+    }
+}
@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.Test;
+
+// RowBitmap against java.util.BitSet, over rows spanning several containers in both array and bitset form
+class RowBitmapTest {
+    private static final int ROWS = 4 * 65536;
+
+    @Test
+    void andOrSelectMatchBitSet() {
+        Random random = new Random(42);
+        // Dense and sparse containers in every pairing, and containers only one side has
+        IntPredicate[] patterns = {
+                row -> random.nextInt(3) == 0,
+                row -> row % 65536 < 5000 || row >= 3 * 65536 && random.nextInt(100) == 0,
+                row -> row < 65536 ? row % 7 == 0 : row >= 2 * 65536 && row % 11 == 0,
+                row -> row % 100 == 0,
+                row -> false};
+        for (IntPredicate first : patterns) {
+            for (IntPredicate second : patterns) {
+                BitSet a = rows(first), b = rows(second);
+                check(a, bitmapOf(a));
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                check(and, NetworkAnomalyDetectorGUI.RowBitmap.and(bitmapOf(a), bitmapOf(b)));
+                BitSet or = (BitSet) a.clone();
+                or.or(b);
+                check(or, NetworkAnomalyDetectorGUI.RowBitmap.or(bitmapOf(a), bitmapOf(b)));
+            }
+        }
+    }
+
+    @Test
+    void combiningLeavesOperandsAlone() {
+        NetworkAnomalyDetectorGUI.RowBitmap a = bitmapOf(rows(row -> row % 2 == 0));
+        NetworkAnomalyDetectorGUI.RowBitmap b = bitmapOf(rows(row -> row % 3 == 0));
+        int[] before = a.toArray();
+        NetworkAnomalyDetectorGUI.RowBitmap.and(a, b);
+        NetworkAnomalyDetectorGUI.RowBitmap.or(a, b);
+        NetworkAnomalyDetectorGUI.RowBitmap copy = a.copy();
+        copy.add(ROWS + 1);
+        assertArrayEquals(before, a.toArray());
+        assertFalse(a.contains(ROWS + 1));
+    }
+
+    @Test
+    void addKeepsOrder() {
+        NetworkAnomalyDetectorGUI.RowBitmap bitmap = new NetworkAnomalyDetectorGUI.RowBitmap();
+        bitmap.add(70000);
+        bitmap.add(70000); // Repeating the last row is a no-op
+        assertEquals(1, bitmap.cardinality());
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(69999));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitmap.select(1));
+        assertTrue(new NetworkAnomalyDetectorGUI.RowBitmap().isEmpty());
+    }
+
+    private static BitSet rows(IntPredicate pattern) {
+        BitSet rows = new BitSet(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            if (pattern.test(row)) rows.set(row);
+        }
+        return rows;
+    }
+
+    private static NetworkAnomalyDetectorGUI.RowBitmap bitmapOf(BitSet rows) {
+        NetworkAnomalyDetectorGUI.RowBitmap bitmap = new NetworkAnomalyDetectorGUI.RowBitmap();
+        rows.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void check(BitSet expected, NetworkAnomalyDetectorGUI.RowBitmap bitmap) {
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+        int index = 0;
+        for (int row = expected.nextSetBit(0); row >= 0; row = expected.nextSetBit(row + 1)) {
+            assertEquals(row, bitmap.select(index++));
+        }
+        for (int row = 0; row < ROWS; row += 997) assertEquals(expected.get(row), bitmap.contains(row));
+    }
+}
@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextIndexTest {
+    private static final List<String> TEXTS = List.of(
+            "an account failed to log on. account name: alice source network address: 10.0.0.5",
+            "an account failed to log on. account name: malice source network address: 10.0.0.50",
+            "the windows update service entered the running state.",
+            "special privileges assigned to new logon. account name: alice",
+            "dhcp lease for 10.0.0.5 renewed",
+            "überprüfung der anmeldung: benutzer älice",
+            "");
+
+    @Test
+    void candidatesCoverEveryMatch() {
+        NetworkAnomalyDetectorGUI.TextIndex index = indexOf(TEXTS);
+        for (String keyword : List.of("alice", "lice", "ali", "account name: alice", "10.0.0.5", "0.0.5", ".5",
+                "name:", "log on.", "failed to", "überprüfung", "älice", "running state", "absent", "e", "x y")) {
+            boolean[] exact = {false};
+            BitSet candidates = index.candidates(keyword, TEXTS.size(), exact);
+            BitSet matches = matches(keyword);
+            BitSet missed = (BitSet) matches.clone();
+            missed.andNot(candidates);
+            assertTrue(missed.isEmpty(), () -> keyword + " misses " + missed);
+            if (exact[0]) assertEquals(matches, candidates, keyword);
+        }
+    }
+
+    @Test
+    void exactOnlyForOneRun() {
+        NetworkAnomalyDetectorGUI.TextIndex index = indexOf(TEXTS);
+        boolean[] exact = {false};
+
+        assertEquals(BitSet.valueOf(new long[] {0b1011}), index.candidates("alice", TEXTS.size(), exact));
+        assertTrue(exact[0]);
+
+        assertEquals(BitSet.valueOf(new long[] {0b1001}), index.candidates("account name: alice", TEXTS.size(), exact));
+        assertFalse(exact[0]); // Several runs: "account" may not be followed by "name: alice"
+
+        assertEquals(BitSet.valueOf(new long[] {0b10011}), index.candidates("10.0.0.5", TEXTS.size(), exact));
+        assertFalse(exact[0]);
+
+        assertTrue(index.candidates("absent", TEXTS.size(), exact).isEmpty());
+        assertTrue(exact[0]);
+    }
+
+    @Test
+    void noTokenCharactersMeansScan() {
+        NetworkAnomalyDetectorGUI.TextIndex index = indexOf(TEXTS);
+        boolean[] exact = {true};
+        assertNull(index.candidates("", TEXTS.size(), exact));
+        assertFalse(exact[0]);
+        assertNull(index.candidates(": ", TEXTS.size(), exact));
+        assertFalse(exact[0]);
+    }
+
+    @Test
+    void containsLowerCaseMatchesStringSearch() {
+        for (String text : List.of("Account Name: ALICE", "İstanbul", "ΟΔΟΣ", "emoji 😀 here", "")) {
+            for (String keyword : List.of("alice", "i̇stanbul", "istanbul", "οδος", "οδοσ", "😀", "")) {
+                assertEquals(text.toLowerCase().contains(keyword), NetworkAnomalyDetectorGUI.TextIndex.containsLowerCase(text, keyword),
+                        text + " / " + keyword);
+            }
+        }
+    }
+
+    private static NetworkAnomalyDetectorGUI.TextIndex indexOf(List<String> texts) {
+        NetworkAnomalyDetectorGUI.TextIndex index = new NetworkAnomalyDetectorGUI.TextIndex();
+        for (int serial = 0; serial < texts.size(); serial++) index.add(serial, texts.get(serial));
+        return index;
+    }
+
+    private static BitSet matches(String keyword) {
+        BitSet matches = new BitSet();
+        for (int serial = 0; serial < TEXTS.size(); serial++) {
+            if (TEXTS.get(serial).contains(keyword)) matches.set(serial);
+        }
+        return matches;
+    }
+}
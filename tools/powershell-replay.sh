@@ -0,0 +1,18 @@
+#!/bin/sh
+# Stand-in for the PowerShell worker session (PowerShellSession) on machines without Windows. It speaks the same
+# line protocol and answers the n-th request with the n-th recorded Format-List capture; the last one repeats.
+#
+#   java -Dnad.powershell.worker="sh tools/powershell-replay.sh first.txt later.txt" -jar network-anomaly-detector-gui-1.0-SNAPSHOT.jar
+#
+# Each request's decoded command is logged to stderr, which the session keeps for the error text of a failing request.
+[ $# -gt 0 ] || { echo "usage: $0 capture.txt [capture.txt ...]" >&2; exit 2; }
+
+while IFS=' ' read -r marker id payload; do
+    [ "$marker" = "@@NAD-REQUEST" ] || continue
+    echo "request $id: $(printf '%s' "$payload" | base64 -d 2>/dev/null | cut -c1-160)" >&2
+    capture=$1
+    [ $# -gt 1 ] && shift
+    if cat "$capture"; then status=0; else status=1; fi
+    echo
+    echo "@@NAD-END $id $status"
+done